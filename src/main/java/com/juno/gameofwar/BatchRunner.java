@@ -0,0 +1,269 @@
+package com.juno.gameofwar;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays many games with the same suits, ranks and players across a number of threads and summarises them
+ * in a GameStats.
+ *
+ * Every thread records into its own GameStats and they are merged once the threads are done, so the game loop
+ * never takes a lock. Threads take chunks of games sized to how long their games have been taking and shrinking
+ * as the batch runs out, so no thread is left playing a long run of games after the others are done. Game n is
+ * always shuffled with the same seed for the same master seed, no matter which thread plays it or in which chunk.
+ * Games too big for every thread to hold one at once are admitted against a HeapBudget, so only as many are
+ * played at once as the heap has room for.
+ */
+public class BatchRunner {
+
+    // how long a chunk of games a thread takes at once should keep it busy
+    private static final long CHUNK_NANOS = 1000000;
+    // a chunk is at most a thread's share of the games left divided by this
+    private static final int CHUNKS_PER_THREAD_LEFT = 4;
+
+    private final GameConfig config;
+    private final long masterSeed;
+    private final CardStorage storage;
+    // when set, games are looked up here before they are played
+    private ResultCache cache = null;
+    // when set, games are played with this engine rather than the way GameConfig.play does
+    private Engine engine = null;
+    // when set, a record of every game played is written here
+    private ColumnarResultWriter output = null;
+    // games played by run are admitted against this when too many of them at once wouldn't fit
+    private HeapBudget budget = HeapBudget.shared();
+    // how busy the threads of the last run were
+    private WorkerLoad load = null;
+
+    /**
+     * @param numberOfSuits
+     * @param numberOfRanks
+     * @param numberOfPlayers
+     * @param masterSeed - every game seed is derived from this one
+     * @param storage - where games keep their decks and hands
+     */
+    public BatchRunner(final int numberOfSuits, final int numberOfRanks, final int numberOfPlayers,
+                       final long masterSeed, final CardStorage storage) {
+        this(new GameConfig(numberOfSuits, numberOfRanks, numberOfPlayers), masterSeed, storage);
+    }
+
+    /**
+     * @param config - the game, rules included, every game of the batch plays
+     * @param masterSeed - every game seed is derived from this one
+     * @param storage - where games keep their decks and hands
+     */
+    public BatchRunner(final GameConfig config, final long masterSeed, final CardStorage storage) {
+        this.config = config;
+        this.masterSeed = masterSeed;
+        this.storage = storage;
+    }
+
+    /**
+     * Look games up in a cache before playing them and store the ones that had to be played
+     * @param resultCache
+     */
+    public void setCache(final ResultCache resultCache) {
+        this.cache = resultCache;
+    }
+
+    /**
+     * Play every game with the given engine
+     * @param gameEngine
+     */
+    public void setEngine(final Engine gameEngine) {
+        this.engine = gameEngine;
+    }
+
+    /**
+     * Admit the games run plays against the given budget rather than the shared one
+     * @param heapBudget
+     */
+    public void setHeapBudget(final HeapBudget heapBudget) {
+        this.budget = heapBudget;
+    }
+
+    /**
+     * Write a record of every game played to a columnar file. The writer is not closed by the batch.
+     * @param writer
+     */
+    public void setOutput(final ColumnarResultWriter writer) {
+        this.output = writer;
+    }
+
+    /**
+     * Play a number of games and summarise them
+     * @param games
+     * @param threads
+     * @return
+     */
+    public GameStats run(final long games, final int threads) {
+        if (threads < 1) {
+            throw new InvalidParameterException("threads must be greater than zero.");
+        }
+
+        // threads take the next chunk of game numbers until there are none left
+        final AtomicLong nextGame = new AtomicLong();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final WorkerLoad workerLoad = new WorkerLoad(threads);
+        // a game on every thread at once usually fits, and then no thread waits on the budget
+        final long gameBytes = HeapBudget.estimateBytes(config, storage);
+        final long gameDirectBytes = HeapBudget.estimateDirectBytes(config, storage);
+        final boolean admit = !budget.fits(gameBytes, gameDirectBytes, threads);
+        final long start = System.nanoTime();
+
+        try {
+            List<Future<GameStats>> workers = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                final int worker = i;
+                workers.add(executor.submit(() -> {
+                    GameStats stats = new GameStats(config.getNumberOfPlayers());
+                    ColumnarResultWriter.Chunk records = null;
+                    if (output != null) {
+                        records = output.newChunk();
+                    }
+                    long played = 0;
+                    long busy = 0;
+                    for (long from = nextGame.get(); from < games; from = nextGame.get()) {
+                        final long to = chunkEnd(from, games, threads, played, busy);
+                        if (!nextGame.compareAndSet(from, to)) {
+                            continue;
+                        }
+                        final long chunkStart = System.nanoTime();
+                        long waitNanos = 0;
+                        for (long game = from; game < to; game++) {
+                            if (admit) {
+                                waitNanos += waitForBudget(gameBytes, gameDirectBytes);
+                            }
+                            final GameResult result = playAdmitted(game, admit, gameBytes, gameDirectBytes);
+                            stats.record(result);
+                            if (records != null) {
+                                records.add(game, gameSeed(masterSeed, game), config, result);
+                            }
+                        }
+                        // waiting for the budget isn't play, and would make the next chunk too small
+                        final long chunkNanos = System.nanoTime() - chunkStart - waitNanos;
+                        workerLoad.recordChunk(worker, chunkNanos);
+                        workerLoad.recordWait(worker, waitNanos);
+                        played += to - from;
+                        busy += chunkNanos;
+                    }
+                    workerLoad.recordFinished(worker, System.nanoTime() - start);
+                    if (records != null) {
+                        records.flush();
+                    }
+                    return stats;
+                }));
+            }
+
+            GameStats total = new GameStats(config.getNumberOfPlayers());
+            for (Future<GameStats> worker : workers) {
+                total.merge(worker.get());
+            }
+            workerLoad.recordWall(System.nanoTime() - start);
+            load = workerLoad;
+            return total;
+
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while playing games", ie);
+        } catch (ExecutionException ee) {
+            throw new IllegalStateException("A game failed", ee.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Get how busy the threads of the last run were, or null before the first run has finished
+     * @return
+     */
+    public WorkerLoad getLoad() {
+        return load;
+    }
+
+    /**
+     * Work out where the chunk of games a thread takes next ends. A chunk is as many games as the thread has
+     * played in CHUNK_NANOS so far, so long games are taken one at a time, but never more than a share of the
+     * games left, so chunks shrink to single games as the batch runs out and every thread finishes at once.
+     * @param from - the first game of the chunk
+     * @param games - in the batch
+     * @param threads
+     * @param played - games the thread has played
+     * @param busyNanos - the time it took to play them
+     * @return one past the last game of the chunk
+     */
+    static long chunkEnd(final long from, final long games, final int threads, final long played,
+                         final long busyNanos) {
+        long size = 1;
+        if (played > 0) {
+            // a game takes at least a nanosecond
+            size = CHUNK_NANOS * played / Math.max(played, busyNanos);
+        }
+        size = Math.min(size, (games - from) / ((long) threads * CHUNKS_PER_THREAD_LEFT));
+        return from + Math.max(1, size);
+    }
+
+    /**
+     * Wait until the heap budget admits a game
+     * @param gameBytes - of heap
+     * @param gameDirectBytes - of direct memory
+     * @return the time spent waiting
+     */
+    private long waitForBudget(final long gameBytes, final long gameDirectBytes) {
+        final long asked = System.nanoTime();
+        budget.admit(gameBytes, gameDirectBytes);
+        return System.nanoTime() - asked;
+    }
+
+    /**
+     * Play one game, handing its bytes back to the heap budget once it is done if it was admitted
+     * @param game
+     * @param admitted
+     * @param gameBytes - of heap
+     * @param gameDirectBytes - of direct memory
+     * @return
+     */
+    private GameResult playAdmitted(final long game, final boolean admitted, final long gameBytes,
+                                    final long gameDirectBytes) {
+        if (!admitted) {
+            return playGame(game);
+        }
+        try {
+            return playGame(game);
+        } finally {
+            budget.release(gameBytes, gameDirectBytes);
+        }
+    }
+
+    /**
+     * Play one game of the batch on this thread
+     * @param game - the number of the game in the batch, starting at zero
+     * @return
+     */
+    public GameResult playGame(final long game) {
+        final long seed = gameSeed(masterSeed, game);
+        if (cache != null) {
+            return cache.play(config, seed, storage, engine);
+        }
+        if (engine != null) {
+            return engine.play(config, seed, storage);
+        }
+        return config.play(seed, storage);
+    }
+
+    /**
+     * Derive the seed for one game of a batch, the child of the master seed at the game's index in Seeds
+     * @param master
+     * @param game
+     * @return
+     */
+    static long gameSeed(final long master, final long game) {
+        return Seeds.of(master, game);
+    }
+}
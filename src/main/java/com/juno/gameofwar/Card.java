@@ -5,6 +5,9 @@ package com.juno.gameofwar;
  */
 public class Card {
 
+    // used to combine suit and rank into a hash code
+    private static final int HASH_MULTIPLIER = 31;
+
     private final int suit;
     private final int rank;
 
@@ -33,4 +36,26 @@ public class Card {
     public int getRank() {
         return rank;
     }
+
+    /**
+     * Cards are equal if they have the same suit and rank
+     * @param o
+     * @return
+     */
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Card)) {
+            return false;
+        }
+        Card other = (Card) o;
+        return suit == other.suit && rank == other.rank;
+    }
+
+    @Override
+    public int hashCode() {
+        return HASH_MULTIPLIER * suit + rank;
+    }
 }
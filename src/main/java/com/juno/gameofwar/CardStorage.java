@@ -0,0 +1,146 @@
+package com.juno.gameofwar;
+
+import java.security.InvalidParameterException;
+
+/**
+ * The kinds of memory that decks and hands can keep their cards in.
+ */
+public enum CardStorage {
+
+    // primitive arrays on the java heap
+    HEAP("heap") {
+        @Override
+        public CardStore newStore(final int expectedCards) {
+            return new HeapCardStore(expectedCards);
+        }
+    },
+
+    // direct memory outside of the java heap
+    OFF_HEAP("offheap") {
+        @Override
+        public CardStore newStore(final int expectedCards) {
+            return new OffHeapCardStore(expectedCards);
+        }
+
+        @Override
+        public boolean keepsCardsOnHeap() {
+            return false;
+        }
+    },
+
+    // ranks and suits packed into as few bits as they need, on the java heap
+    PACKED("packed") {
+        @Override
+        public CardStore newStore(final int expectedCards) {
+            return new PackedCardStore(expectedCards, true);
+        }
+
+        @Override
+        public int bitsPerCard(final int numberOfSuits, final int numberOfRanks) {
+            return PackedCardStore.bitsFor(numberOfSuits - 1) + PackedCardStore.bitsFor(numberOfRanks - 1);
+        }
+
+        @Override
+        public boolean setsFromManyThreads() {
+            return false;
+        }
+    },
+
+    // only the ranks packed, which is all a game compares. Cards come back with suit zero
+    PACKED_RANKS("packed-ranks") {
+        @Override
+        public CardStore newStore(final int expectedCards) {
+            return new PackedCardStore(expectedCards, false);
+        }
+
+        @Override
+        public int bitsPerCard(final int numberOfSuits, final int numberOfRanks) {
+            return PackedCardStore.bitsFor(numberOfRanks - 1);
+        }
+
+        @Override
+        public boolean keepsSuits() {
+            return false;
+        }
+
+        @Override
+        public boolean setsFromManyThreads() {
+            return false;
+        }
+    };
+
+    // the name used to select this storage on the command line
+    private final String optionName;
+
+    /**
+     * @param optionName
+     */
+    CardStorage(final String optionName) {
+        this.optionName = optionName;
+    }
+
+    /**
+     * Create an empty store of this kind
+     * @param expectedCards - a sizing hint, the store will grow past it if needed
+     * @return
+     */
+    public abstract CardStore newStore(int expectedCards);
+
+    /**
+     * How many bits a card takes up in a store of this kind, for a deck of the given size
+     * @param numberOfSuits
+     * @param numberOfRanks
+     * @return
+     */
+    public int bitsPerCard(final int numberOfSuits, final int numberOfRanks) {
+        // an int each for suit and rank, or eight bytes of direct memory
+        return 2 * Integer.SIZE;
+    }
+
+    /**
+     * Whether cards come back out of the store with the suit they went in with
+     * @return
+     */
+    public boolean keepsSuits() {
+        return true;
+    }
+
+    /**
+     * Whether the cards of a store of this kind take up heap, rather than direct memory
+     * @return
+     */
+    public boolean keepsCardsOnHeap() {
+        return true;
+    }
+
+    /**
+     * Whether cards at different indexes of a store of this kind can be set from many threads at once. Packed
+     * stores can't, as neighbouring cards share a word
+     * @return
+     */
+    public boolean setsFromManyThreads() {
+        return true;
+    }
+
+    /**
+     * Get the name used to select this storage on the command line
+     * @return
+     */
+    public String getOptionName() {
+        return optionName;
+    }
+
+    /**
+     * Look up a storage by its command line name. Throws an exception if there is no such storage.
+     * @param name
+     * @return
+     */
+    public static CardStorage fromOptionName(final String name) {
+        for (CardStorage storage : values()) {
+            if (storage.optionName.equalsIgnoreCase(name)) {
+                return storage;
+            }
+        }
+        throw new InvalidParameterException("Unknown storage '" + name + "'");
+    }
+}
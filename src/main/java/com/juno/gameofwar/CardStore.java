@@ -0,0 +1,54 @@
+package com.juno.gameofwar;
+
+/**
+ * An ordered sequence of cards that is filled at the back and played from the front.
+ * Backs both the undealt cards of a deck and the hand of a player, so the memory used for
+ * cards can be switched (see CardStorage) without changing how decks and players behave.
+ *
+ * Indexes passed to suitAt, rankAt and set are relative to the front of the store
+ * i.e. index 0 is the next card that take will return.
+ */
+public interface CardStore {
+
+    /**
+     * Add a card to the back of the store
+     * @param suit
+     * @param rank
+     */
+    void add(int suit, int rank);
+
+    /**
+     * Remove the card at the front of the store and return it.
+     * Returns null if the store is empty.
+     * @return
+     */
+    Card take();
+
+    /**
+     * Returns the number of cards left in the store
+     * @return
+     */
+    int size();
+
+    /**
+     * Get the suit of the card at index
+     * @param index
+     * @return
+     */
+    int suitAt(int index);
+
+    /**
+     * Get the rank of the card at index
+     * @param index
+     * @return
+     */
+    int rankAt(int index);
+
+    /**
+     * Overwrite the card at index
+     * @param index
+     * @param suit
+     * @param rank
+     */
+    void set(int index, int suit, int rank);
+}
@@ -0,0 +1,312 @@
+package com.juno.gameofwar;
+
+import org.apache.commons.cli.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the command line with commons-cli
+ * This understands every way of writing the options and prints the usage, so it is only used when
+ * {@link FastOptionParser} can't read the command line
+ */
+public final class CliOptionParser {
+
+    /**
+     * Private constructor
+     */
+    private CliOptionParser() { }
+
+    /**
+     * Parse the command line, printing the usage instead if help was asked for
+     * @param args
+     * @return the value of each option given keyed by its short name, or null if the usage was printed
+     */
+    public static Map<String, String> parse(final String[] args) {
+        final Options options = createOptions();
+        final Map<String, String> values = new HashMap<>();
+
+        try {
+            CommandLine cmd = new DefaultParser().parse(options, args);
+
+            if (cmd.hasOption(GameOfWar.HELP_OPT)) {
+                HelpFormatter formatter = new HelpFormatter();
+                System.out.println("");
+                formatter.printHelp(GameOfWar.PROGRAM_CMD, options);
+                System.out.println("");
+                return null;
+            }
+
+            for (Option option : cmd.getOptions()) {
+                // the first value given wins, same as CommandLine.getOptionValue
+                if (!values.containsKey(option.getOpt())) {
+                    values.put(option.getOpt(), option.getValue());
+                }
+            }
+        } catch (ParseException pe) {
+            System.out.println("Error parsing options.  Use '-h' or '-help' for a description of the arguments.");
+        }
+
+        return values;
+    }
+
+    /**
+     * Build the command line options the program accepts
+     * @return
+     */
+    public static Options createOptions() {
+        Options options = new Options();
+
+        Option suitsOption = Option.builder(GameOfWar.SUITS_OPT)
+                .argName(GameOfWar.SUITS_OPT_NAME)
+                .longOpt(GameOfWar.SUITS_OPT_LONG)
+                .hasArg()
+                .desc("Number of suits to use for the deck of cards. Minimum value is "
+                        + GameOfWar.MIN_SUITS + ", max value is " + GameOfWar.MAX_SUITS)
+                .build();
+
+        Option ranksOption = Option.builder(GameOfWar.RANKS_OPT)
+                .argName(GameOfWar.RANKS_OPT_NAME)
+                .longOpt(GameOfWar.RANKS_OPT_LONG)
+                .hasArg()
+                .desc("Number of ranks to use for the deck of cards. Minimum value is "
+                        + GameOfWar.MIN_RANKS + ", max value is " + GameOfWar.MAX_RANKS)
+                .build();
+
+        Option playersOption = Option.builder(GameOfWar.PLAYERS_OPT)
+                .argName(GameOfWar.PLAYERS_OPT_NAME)
+                .longOpt(GameOfWar.PLAYERS_OPT_LONG)
+                .hasArg()
+                .desc("Number of players to use for the game. Minimum value is "
+                        + GameOfWar.MIN_PLAYERS + ", max is " + GameOfWar.MAX_PLAYERS)
+                .build();
+
+        Option storageOption = Option.builder(GameOfWar.STORAGE_OPT)
+                .argName(GameOfWar.STORAGE_OPT_NAME)
+                .longOpt(GameOfWar.STORAGE_OPT_LONG)
+                .hasArg()
+                .desc("Where to keep the deck and the players hands: '" + CardStorage.HEAP.getOptionName()
+                        + "' (default), '" + CardStorage.OFF_HEAP.getOptionName()
+                        + "' for direct memory outside of the java heap, '" + CardStorage.PACKED.getOptionName()
+                        + "' to pack ranks and suits into as few bits as they need or '"
+                        + CardStorage.PACKED_RANKS.getOptionName() + "' to pack only the ranks")
+                .build();
+
+        Option seedOption = Option.builder(GameOfWar.SEED_OPT)
+                .argName(GameOfWar.SEED_OPT_NAME)
+                .longOpt(GameOfWar.SEED_OPT_LONG)
+                .hasArg()
+                .desc("Seed for shuffling the deck. The same seed and options always play the same game.")
+                .build();
+
+        Option checkpointOption = Option.builder(GameOfWar.CHECKPOINT_OPT)
+                .argName(GameOfWar.CHECKPOINT_OPT_NAME)
+                .longOpt(GameOfWar.CHECKPOINT_OPT_LONG)
+                .hasArg()
+                .desc("Save the state of the game to this file as it is played so it can be resumed.")
+                .build();
+
+        Option checkpointIntervalOption = Option.builder(GameOfWar.CHECKPOINT_INTERVAL_OPT)
+                .argName(GameOfWar.CHECKPOINT_INTERVAL_OPT_NAME)
+                .longOpt(GameOfWar.CHECKPOINT_INTERVAL_OPT_LONG)
+                .hasArg()
+                .desc("Number of rounds between checkpoints. Default is " + War.DEFAULT_CHECKPOINT_INTERVAL)
+                .build();
+
+        Option resumeOption = Option.builder(GameOfWar.RESUME_OPT)
+                .argName(GameOfWar.RESUME_OPT_NAME)
+                .longOpt(GameOfWar.RESUME_OPT_LONG)
+                .hasArg()
+                .desc("Finish the game saved in this checkpoint file. Suits, ranks, players and seed come from "
+                        + "the file and checkpoints keep being written to it.")
+                .build();
+
+        Option parallelThresholdOption = Option.builder(GameOfWar.PARALLEL_THRESHOLD_OPT)
+                .argName(GameOfWar.PARALLEL_THRESHOLD_OPT_NAME)
+                .longOpt(GameOfWar.PARALLEL_THRESHOLD_OPT_LONG)
+                .hasArg()
+                .desc("Rounds with at least this many players still in are played across all cores. Default is "
+                        + War.DEFAULT_PARALLEL_ROUND_THRESHOLD)
+                .build();
+
+        Option tournamentOption = Option.builder(GameOfWar.TOURNAMENT_OPT)
+                .argName(GameOfWar.TOURNAMENT_OPT_NAME)
+                .longOpt(GameOfWar.TOURNAMENT_OPT_LONG)
+                .hasArg()
+                .desc("Play a knockout tournament with this many entrants instead of a single game. "
+                        + "Players sets the most players at one table, by default one per card up to "
+                        + GameOfWar.MAX_PLAYERS
+                        + ". Minimum value is " + GameOfWar.MIN_ENTRANTS + ", max is " + GameOfWar.MAX_ENTRANTS)
+                .build();
+
+        Option gamesOption = Option.builder(GameOfWar.GAMES_OPT)
+                .argName(GameOfWar.GAMES_OPT_NAME)
+                .longOpt(GameOfWar.GAMES_OPT_LONG)
+                .hasArg()
+                .desc("Play this many games and print statistics about them instead of the winners of one game. "
+                        + "Minimum value is " + GameOfWar.MIN_GAMES)
+                .build();
+
+        Option gameOption = Option.builder(GameOfWar.GAME_OPT)
+                .argName(GameOfWar.GAME_OPT_NAME)
+                .longOpt(GameOfWar.GAME_OPT_LONG)
+                .hasArg()
+                .desc("Play just this game of the batch with the given seed, counting from zero. Every game of a "
+                        + "batch is the same game however many threads play the batch.")
+                .build();
+
+        Option threadsOption = Option.builder(GameOfWar.THREADS_OPT)
+                .argName(GameOfWar.THREADS_OPT_NAME)
+                .longOpt(GameOfWar.THREADS_OPT_LONG)
+                .hasArg()
+                .desc("Number of threads to play games with. Default is one per core, max is "
+                        + GameOfWar.MAX_THREADS)
+                .build();
+
+        Option workersOption = Option.builder(GameOfWar.WORKERS_OPT)
+                .argName(GameOfWar.WORKERS_OPT_NAME)
+                .longOpt(GameOfWar.WORKERS_OPT_LONG)
+                .hasArg()
+                .desc("Split the games of a batch across this many worker JVMs, each playing on one thread. "
+                        + "Max is " + GameOfWar.MAX_THREADS)
+                .build();
+
+        Option rulesOption = Option.builder(GameOfWar.RULES_OPT)
+                .argName(GameOfWar.RULES_OPT_NAME)
+                .longOpt(GameOfWar.RULES_OPT_LONG)
+                .hasArg()
+                .desc("House rules as name=value pairs: " + Rules.DISCARDS + "=0-" + Rules.MAX_WAR_DISCARDS
+                        + " cards down per war, " + Rules.OUT_OF_CARDS + "=first|last player wins when nobody has "
+                        + "cards, " + Rules.SCORING + "=cards|face value. Default " + Rules.STANDARD)
+                .build();
+
+        Option compareOption = Option.builder(GameOfWar.COMPARE_OPT)
+                .argName(GameOfWar.COMPARE_OPT_NAME)
+                .longOpt(GameOfWar.COMPARE_OPT_LONG)
+                .hasArg()
+                .desc("Compare the game against a variant on the same shuffles, for example 'players=5', "
+                        + "'suits=2,ranks=26' or 'discards=3'. Stops once the difference is known precisely "
+                        + "enough or after -games pairs, " + PairedComparison.DEFAULT_MAX_GAMES + " by default")
+                .build();
+
+        Option precisionOption = Option.builder(GameOfWar.PRECISION_OPT)
+                .argName(GameOfWar.PRECISION_OPT_NAME)
+                .longOpt(GameOfWar.PRECISION_OPT_LONG)
+                .hasArg()
+                .desc("Half width of the 95% confidence intervals of a comparison as a fraction of the mean, "
+                        + "default is " + PairedComparison.DEFAULT_PRECISION)
+                .build();
+
+        Option recordsOption = Option.builder(GameOfWar.RECORDS_OPT)
+                .argName(GameOfWar.RECORDS_OPT_NAME)
+                .longOpt(GameOfWar.RECORDS_OPT_LONG)
+                .hasArg()
+                .desc("Write a record of every game of a batch to this file in a compressed columnar format, "
+                        + "see ColumnarResultReader.")
+                .build();
+
+        Option deckOption = Option.builder(GameOfWar.DECK_OPT)
+                .argName(GameOfWar.DECK_OPT_NAME)
+                .longOpt(GameOfWar.DECK_OPT_LONG)
+                .hasArg()
+                .desc("Play a single game with the cards of this deck file in the order they are in the file, "
+                        + "see MappedDeck. The file sets the suits and ranks.")
+                .build();
+
+        Option cacheOption = Option.builder(GameOfWar.CACHE_OPT)
+                .argName(GameOfWar.CACHE_OPT_NAME)
+                .longOpt(GameOfWar.CACHE_OPT_LONG)
+                .hasArg()
+                .desc("Keep the results of batch games in this directory and reuse them instead of playing the "
+                        + "same game again.")
+                .build();
+
+        Option cacheSizeOption = Option.builder(GameOfWar.CACHE_SIZE_OPT)
+                .argName(GameOfWar.CACHE_SIZE_OPT_NAME)
+                .longOpt(GameOfWar.CACHE_SIZE_OPT_LONG)
+                .hasArg()
+                .desc("Disk space the result cache may use, oldest results are dropped first. Default is "
+                        + GameOfWar.DEFAULT_CACHE_SIZE_MB)
+                .build();
+
+        Option daemonOption = Option.builder(GameOfWar.DAEMON_OPT)
+                .argName(GameOfWar.DAEMON_OPT_NAME)
+                .longOpt(GameOfWar.DAEMON_OPT_LONG)
+                .desc("Keep running and answer game requests read from stdin, one per line as 'suits ranks players "
+                        + "seed count', with one line per game on stdout. Threads sets the number of workers.")
+                .build();
+
+        Option daemonPortOption = Option.builder(GameOfWar.DAEMON_PORT_OPT)
+                .argName(GameOfWar.DAEMON_PORT_OPT_NAME)
+                .longOpt(GameOfWar.DAEMON_PORT_OPT_LONG)
+                .hasArg()
+                .desc("Like daemon but answer the requests of connections to this port on the loopback address. "
+                        + "0 picks a free port.")
+                .build();
+
+        Option httpPortOption = Option.builder(GameOfWar.HTTP_PORT_OPT)
+                .argName(GameOfWar.HTTP_PORT_OPT_NAME)
+                .longOpt(GameOfWar.HTTP_PORT_OPT_LONG)
+                .hasArg()
+                .desc("Keep running and play games for HTTP requests to this port on the loopback address, see "
+                        + "SimulationServer. Threads sets the number of engine threads. 0 picks a free port.")
+                .build();
+
+        StringBuilder engines = new StringBuilder();
+        for (Engine engine : Engine.values()) {
+            engines.append(", '").append(engine.getOptionName()).append("'");
+        }
+        Option engineOption = Option.builder(GameOfWar.ENGINE_OPT)
+                .argName(GameOfWar.ENGINE_OPT_NAME)
+                .longOpt(GameOfWar.ENGINE_OPT_LONG)
+                .hasArg()
+                .desc("Engine to play single games and batches with: '" + GameOfWar.AUTO_ENGINE + "' (default) to "
+                        + "pick the quickest from the cost model" + engines + ". Checkpointed games and games with a "
+                        + "parallel threshold always play on the standard game.")
+                .build();
+
+        Option engineTableOption = Option.builder(GameOfWar.ENGINE_TABLE_OPT)
+                .argName(GameOfWar.ENGINE_TABLE_OPT_NAME)
+                .longOpt(GameOfWar.ENGINE_TABLE_OPT_LONG)
+                .hasArg()
+                .desc("Calibration table written by EngineCalibration for the cost model. By default the table in "
+                        + "the jar is used.")
+                .build();
+
+        Option helpOption = Option.builder(GameOfWar.HELP_OPT)
+                .argName(GameOfWar.HELP_OPT_NAME)
+                .longOpt(GameOfWar.HELP_OPT_LONG)
+                .desc("Print this message.")
+                .build();
+
+        options.addOption(suitsOption);
+        options.addOption(ranksOption);
+        options.addOption(playersOption);
+        options.addOption(storageOption);
+        options.addOption(seedOption);
+        options.addOption(checkpointOption);
+        options.addOption(checkpointIntervalOption);
+        options.addOption(resumeOption);
+        options.addOption(parallelThresholdOption);
+        options.addOption(tournamentOption);
+        options.addOption(gamesOption);
+        options.addOption(gameOption);
+        options.addOption(threadsOption);
+        options.addOption(workersOption);
+        options.addOption(rulesOption);
+        options.addOption(compareOption);
+        options.addOption(precisionOption);
+        options.addOption(recordsOption);
+        options.addOption(deckOption);
+        options.addOption(cacheOption);
+        options.addOption(cacheSizeOption);
+        options.addOption(daemonOption);
+        options.addOption(daemonPortOption);
+        options.addOption(httpPortOption);
+        options.addOption(engineOption);
+        options.addOption(engineTableOption);
+        options.addOption(helpOption);
+
+        return options;
+    }
+}
@@ -0,0 +1,288 @@
+package com.juno.gameofwar;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Reads the game records ColumnarResultWriter wrote, one chunk at a time and only the columns asked for.
+ *
+ * Each column of a chunk that is wanted is memory mapped and decoded into an array, the rest are skipped without
+ * being touched, so a scan of one or two columns reads a fraction of the file. A chunk that was only partly
+ * written when the writer stopped is ignored, along with anything after it.
+ */
+public final class ColumnarResultReader implements Closeable {
+
+    private static final int VARINT_BITS = 7;
+    private static final int VARINT_MORE = 0x80;
+    private static final int VARINT_MASK = 0x7F;
+    private static final int BYTE_MASK = 0xFF;
+
+    private final Path file;
+    private final FileChannel channel;
+
+    /**
+     * @param file - written by ColumnarResultWriter
+     */
+    public ColumnarResultReader(final Path file) {
+        this.file = file;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            final ByteBuffer header = ByteBuffer.allocate(ColumnarResultWriter.HEADER_BYTES);
+            if (!readFully(header, 0) || header.getInt(0) != ColumnarResultWriter.MAGIC) {
+                channel.close();
+                throw new IllegalStateException(file + " is not a file of game records");
+            }
+            if (header.getInt(Integer.BYTES) != ColumnarResultWriter.VERSION) {
+                channel.close();
+                throw new IllegalStateException(file + " was written by another version");
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to open " + file, ioe);
+        }
+    }
+
+    /**
+     * Decode the given columns of every chunk in the file and hand each chunk to a visitor
+     * @param columns - the columns to read, the others are skipped
+     * @param visitor
+     * @return the number of games in the file
+     */
+    public long scan(final Set<ResultColumn> columns, final Consumer<Chunk> visitor) {
+        try {
+            final long size = channel.size();
+            final int columnCount = ResultColumn.values().length;
+            final ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + 1 + Integer.BYTES * columnCount);
+            long position = ColumnarResultWriter.HEADER_BYTES;
+            long games = 0;
+
+            while (position < size) {
+                header.clear();
+                header.limit(Integer.BYTES + 1);
+                if (!readFully(header, position)) {
+                    break;
+                }
+                final int rows = header.getInt(0);
+                // files from a later version may have more columns, which are skipped
+                final int stored = header.get(Integer.BYTES) & BYTE_MASK;
+                final ByteBuffer lengths = ByteBuffer.allocate(Integer.BYTES * stored);
+                if (!readFully(lengths, position + Integer.BYTES + 1)) {
+                    break;
+                }
+
+                long columnStart = position + Integer.BYTES + 1 + lengths.capacity();
+                long chunkEnd = columnStart;
+                for (int c = 0; c < stored; c++) {
+                    chunkEnd += lengths.getInt(c * Integer.BYTES);
+                }
+                if (chunkEnd > size) {
+                    break;
+                }
+
+                final Chunk chunk = new Chunk(rows);
+                for (int c = 0; c < stored; c++) {
+                    final int length = lengths.getInt(c * Integer.BYTES);
+                    if (c < columnCount && columns.contains(ResultColumn.values()[c])) {
+                        final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, columnStart,
+                                length);
+                        chunk.decode(ResultColumn.values()[c], mapped);
+                    }
+                    columnStart += length;
+                }
+                visitor.accept(chunk);
+                games += rows;
+                position = chunkEnd;
+            }
+            return games;
+
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to read " + file, ioe);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to close " + file, ioe);
+        }
+    }
+
+    /**
+     * @param buffer - filled up to its limit
+     * @param position
+     * @return false if the file ended first
+     * @throws IOException
+     */
+    private boolean readFully(final ByteBuffer buffer, final long position) throws IOException {
+        long at = position;
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, at);
+            if (read < 0) {
+                return false;
+            }
+            at += read;
+        }
+        return true;
+    }
+
+    /**
+     * @param buffer
+     * @return the next varint in the buffer
+     */
+    static long getVarint(final ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        int b = buffer.get();
+        while ((b & VARINT_MORE) != 0) {
+            value |= (long) (b & VARINT_MASK) << shift;
+            shift += VARINT_BITS;
+            b = buffer.get();
+        }
+        return value | (long) (b & VARINT_MASK) << shift;
+    }
+
+    /**
+     * Undo ColumnarResultWriter.zigZag
+     * @param value
+     * @return
+     */
+    static long unZigZag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * The games of one chunk, with the columns that were scanned decoded
+     */
+    public static final class Chunk {
+
+        private final int rows;
+        private final long[][] values = new long[ResultColumn.values().length][];
+        private final List<GameConfig> configs = new ArrayList<>();
+        private final List<List<Integer>> winnerSets = new ArrayList<>();
+
+        /**
+         * @param rows
+         */
+        private Chunk(final int rows) {
+            this.rows = rows;
+        }
+
+        /**
+         * @return the number of games in the chunk
+         */
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * @param column - one that was scanned
+         * @param row
+         * @return the value, or for CONFIG and WINNERS the index into the chunk's dictionary
+         */
+        public long get(final ResultColumn column, final int row) {
+            return column(column)[row];
+        }
+
+        /**
+         * @param row
+         * @return the config of a game, when CONFIG was scanned
+         */
+        public GameConfig getConfig(final int row) {
+            return configs.get((int) column(ResultColumn.CONFIG)[row]);
+        }
+
+        /**
+         * @param row
+         * @return the seats of the winners of a game, when WINNERS was scanned
+         */
+        public List<Integer> getWinners(final int row) {
+            return winnerSets.get((int) column(ResultColumn.WINNERS)[row]);
+        }
+
+        /**
+         * @param column
+         * @return
+         */
+        private long[] column(final ResultColumn column) {
+            if (values[column.ordinal()] == null) {
+                throw new InvalidParameterException("column " + column + " was not scanned");
+            }
+            return values[column.ordinal()];
+        }
+
+        /**
+         * @param column
+         * @param buffer - the bytes of the column in this chunk
+         */
+        private void decode(final ResultColumn column, final ByteBuffer buffer) {
+            if (column == ResultColumn.CONFIG) {
+                readConfigs(buffer);
+            } else if (column == ResultColumn.WINNERS) {
+                readWinnerSets(buffer);
+            }
+
+            final long[] decoded = new long[rows];
+            if (column == ResultColumn.SEED) {
+                for (int row = 0; row < rows; row++) {
+                    decoded[row] = buffer.getLong();
+                }
+            } else if (column == ResultColumn.GAME) {
+                long game = 0;
+                for (int row = 0; row < rows; row++) {
+                    game += unZigZag(getVarint(buffer));
+                    decoded[row] = game;
+                }
+            } else {
+                for (int row = 0; row < rows; row++) {
+                    decoded[row] = getVarint(buffer);
+                }
+            }
+            values[column.ordinal()] = decoded;
+        }
+
+        /**
+         * @param buffer
+         */
+        private void readConfigs(final ByteBuffer buffer) {
+            final int count = (int) getVarint(buffer);
+            for (int i = 0; i < count; i++) {
+                final int suits = (int) getVarint(buffer);
+                final int ranks = (int) getVarint(buffer);
+                final int players = (int) getVarint(buffer);
+                final byte[] rules = new byte[(int) getVarint(buffer)];
+                buffer.get(rules);
+                configs.add(new GameConfig(suits, ranks, players,
+                        Rules.STANDARD.with(new String(rules, StandardCharsets.UTF_8))));
+            }
+        }
+
+        /**
+         * @param buffer
+         */
+        private void readWinnerSets(final ByteBuffer buffer) {
+            final int count = (int) getVarint(buffer);
+            for (int i = 0; i < count; i++) {
+                final int winners = (int) getVarint(buffer);
+                final List<Integer> seats = new ArrayList<>(winners);
+                for (int w = 0; w < winners; w++) {
+                    seats.add((int) getVarint(buffer));
+                }
+                winnerSets.add(Collections.unmodifiableList(seats));
+            }
+        }
+    }
+}
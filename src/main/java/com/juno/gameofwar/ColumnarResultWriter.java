@@ -0,0 +1,368 @@
+package com.juno.gameofwar;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a record of every game of a batch to a file, one column at a time.
+ *
+ * Games are gathered into chunks of rows. A chunk stores each ResultColumn as one run of bytes: counts as varints,
+ * game numbers as the difference from the previous game, and configs and sets of winners as a dictionary plus a
+ * small index per game. A game of the standard deck takes around fifteen bytes, eight of them the seed, where a
+ * line of text would take sixty or more. Because every column of a chunk is contiguous, ColumnarResultReader can
+ * skip the columns it isn't asked for without reading them.
+ *
+ * Chunks go to the file through a large buffer and a FileChannel. Each thread of a batch fills its own Chunk and
+ * only takes the writer's lock to hand a full one over, so chunks from different threads are interleaved in the
+ * file and games are not in order across chunks.
+ *
+ * The file starts with a magic number and a version. Each chunk is the number of rows, the number of columns,
+ * the byte length of each column and then the columns.
+ */
+public final class ColumnarResultWriter implements Closeable {
+
+    // "WARC"
+    static final int MAGIC = 0x57415243;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+
+    // rows per chunk, large enough that a column of a chunk spans many pages
+    public static final int DEFAULT_CHUNK_ROWS = 65536;
+    // chunks are copied into a buffer this big and written out once it is full
+    private static final int BUFFER_BYTES = 1048576;
+
+    private static final int VARINT_BITS = 7;
+    private static final int VARINT_MORE = 0x80;
+    private static final int VARINT_MASK = 0x7F;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final int chunkRows;
+    private long rows = 0;
+    private long bytes = HEADER_BYTES;
+
+    /**
+     * Create or replace a file
+     * @param file
+     */
+    public ColumnarResultWriter(final Path file) {
+        this(file, DEFAULT_CHUNK_ROWS);
+    }
+
+    /**
+     * @param file
+     * @param chunkRows - the most games in a chunk
+     */
+    ColumnarResultWriter(final Path file, final int chunkRows) {
+        this.file = file;
+        this.chunkRows = chunkRows;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to create " + file, ioe);
+        }
+        buffer.putInt(MAGIC).putInt(VERSION);
+    }
+
+    /**
+     * Start a chunk for one thread to fill. It is written when it is full or flushed.
+     * @return
+     */
+    public Chunk newChunk() {
+        return new Chunk(this, chunkRows);
+    }
+
+    /**
+     * @return the number of games written so far
+     */
+    public synchronized long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the size of the file so far
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            drain();
+            channel.close();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to write " + file, ioe);
+        }
+    }
+
+    /**
+     * Append a chunk to the file
+     * @param chunkRowCount
+     * @param columns - the bytes of each column in ResultColumn order
+     */
+    private synchronized void write(final int chunkRowCount, final ColumnBuffer[] columns) {
+        try {
+            if (buffer.remaining() < Integer.BYTES * (columns.length + 2)) {
+                drain();
+            }
+            buffer.putInt(chunkRowCount);
+            buffer.put((byte) columns.length);
+            long chunkBytes = Integer.BYTES + 1;
+            for (ColumnBuffer column : columns) {
+                buffer.putInt(column.size);
+                chunkBytes += Integer.BYTES + column.size;
+            }
+            for (ColumnBuffer column : columns) {
+                int offset = 0;
+                while (offset < column.size) {
+                    if (!buffer.hasRemaining()) {
+                        drain();
+                    }
+                    final int length = Math.min(buffer.remaining(), column.size - offset);
+                    buffer.put(column.bytes, offset, length);
+                    offset += length;
+                }
+            }
+            rows += chunkRowCount;
+            bytes += chunkBytes;
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to write " + file, ioe);
+        }
+    }
+
+    /**
+     * Write out everything in the buffer
+     * @throws IOException
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * The games one thread has played since its last chunk was written. Not thread safe.
+     */
+    public static final class Chunk {
+
+        private final ColumnarResultWriter writer;
+        private final int capacity;
+        private final ColumnBuffer[] columns = new ColumnBuffer[ResultColumn.values().length];
+        private final Map<GameConfig, Integer> configs = new HashMap<>();
+        private final Map<List<Integer>, Integer> winnerSets = new HashMap<>();
+        private int rows = 0;
+        private long lastGame = 0;
+
+        /**
+         * @param writer
+         * @param capacity
+         */
+        private Chunk(final ColumnarResultWriter writer, final int capacity) {
+            this.writer = writer;
+            this.capacity = capacity;
+            for (int c = 0; c < columns.length; c++) {
+                columns[c] = new ColumnBuffer();
+            }
+        }
+
+        /**
+         * Add one game, writing the chunk if that fills it
+         * @param game - the number of the game in its batch
+         * @param seed
+         * @param config
+         * @param result
+         */
+        public void add(final long game, final long seed, final GameConfig config, final GameResult result) {
+            columns[ResultColumn.GAME.ordinal()].putVarint(zigZag(game - lastGame));
+            lastGame = game;
+            columns[ResultColumn.SEED.ordinal()].putLong(seed);
+            columns[ResultColumn.CONFIG.ordinal()].putVarint(indexOf(configs, config));
+            columns[ResultColumn.ROUNDS.ordinal()].putVarint(result.getRounds());
+            columns[ResultColumn.WARS.ordinal()].putVarint(result.getWars());
+            columns[ResultColumn.LONGEST_WAR.ordinal()].putVarint(result.getMaxWarDepth());
+            columns[ResultColumn.WINNERS.ordinal()].putVarint(indexOf(winnerSets, seats(result.getWinners())));
+            columns[ResultColumn.HIGH_SCORE.ordinal()].putVarint(result.getHighScore());
+
+            rows++;
+            if (rows == capacity) {
+                flush();
+            }
+        }
+
+        /**
+         * Write whatever games the chunk holds and empty it
+         */
+        public void flush() {
+            if (rows == 0) {
+                return;
+            }
+            columns[ResultColumn.CONFIG.ordinal()] = withDictionary(configDictionary(),
+                    columns[ResultColumn.CONFIG.ordinal()]);
+            columns[ResultColumn.WINNERS.ordinal()] = withDictionary(winnerDictionary(),
+                    columns[ResultColumn.WINNERS.ordinal()]);
+            writer.write(rows, columns);
+
+            for (ColumnBuffer column : columns) {
+                column.size = 0;
+            }
+            configs.clear();
+            winnerSets.clear();
+            rows = 0;
+            lastGame = 0;
+        }
+
+        /**
+         * @return the configs of the chunk in index order, each as suits, ranks, players and rules
+         */
+        private ColumnBuffer configDictionary() {
+            final GameConfig[] ordered = new GameConfig[configs.size()];
+            for (Map.Entry<GameConfig, Integer> entry : configs.entrySet()) {
+                ordered[entry.getValue()] = entry.getKey();
+            }
+            final ColumnBuffer dictionary = new ColumnBuffer();
+            dictionary.putVarint(ordered.length);
+            for (GameConfig config : ordered) {
+                dictionary.putVarint(config.getNumberOfSuits());
+                dictionary.putVarint(config.getNumberOfRanks());
+                dictionary.putVarint(config.getNumberOfPlayers());
+                final byte[] rules = config.getRules().toString().getBytes(StandardCharsets.UTF_8);
+                dictionary.putVarint(rules.length);
+                dictionary.put(rules, rules.length);
+            }
+            return dictionary;
+        }
+
+        /**
+         * @return the sets of winners of the chunk in index order, each as a count and the seats
+         */
+        private ColumnBuffer winnerDictionary() {
+            final List<List<Integer>> ordered = new ArrayList<>(winnerSets.keySet());
+            ordered.sort((a, b) -> Integer.compare(winnerSets.get(a), winnerSets.get(b)));
+            final ColumnBuffer dictionary = new ColumnBuffer();
+            dictionary.putVarint(ordered.size());
+            for (List<Integer> seats : ordered) {
+                dictionary.putVarint(seats.size());
+                for (int seat : seats) {
+                    dictionary.putVarint(seat);
+                }
+            }
+            return dictionary;
+        }
+
+        /**
+         * @param dictionary
+         * @param indexes
+         * @return the dictionary followed by the indexes
+         */
+        private static ColumnBuffer withDictionary(final ColumnBuffer dictionary, final ColumnBuffer indexes) {
+            dictionary.put(indexes.bytes, indexes.size);
+            return dictionary;
+        }
+
+        /**
+         * @param dictionary
+         * @param value
+         * @param <T>
+         * @return the index of the value, added to the dictionary if it is new
+         */
+        private static <T> int indexOf(final Map<T, Integer> dictionary, final T value) {
+            Integer index = dictionary.get(value);
+            if (index == null) {
+                index = dictionary.size();
+                dictionary.put(value, index);
+            }
+            return index;
+        }
+
+        /**
+         * @param winners
+         * @return the seats of the winners
+         */
+        private static List<Integer> seats(final List<Player> winners) {
+            final Integer[] seats = new Integer[winners.size()];
+            for (int i = 0; i < seats.length; i++) {
+                seats[i] = winners.get(i).getId();
+            }
+            return Arrays.asList(seats);
+        }
+    }
+
+    /**
+     * Fold a signed number so small negative numbers are small varints too
+     * @param value
+     * @return
+     */
+    static long zigZag(final long value) {
+        return (value << 1) ^ (value >> (Long.SIZE - 1));
+    }
+
+    /**
+     * A growing array of bytes for one column of a chunk
+     */
+    private static final class ColumnBuffer {
+
+        private static final int INITIAL_BYTES = 1024;
+
+        private byte[] bytes = new byte[INITIAL_BYTES];
+        private int size = 0;
+
+        /**
+         * Seven bits at a time, lowest first, with the top bit set on every byte but the last
+         * @param value - treated as unsigned
+         */
+        void putVarint(final long value) {
+            ensure(Long.BYTES + 2);
+            long rest = value;
+            while ((rest & ~VARINT_MASK) != 0) {
+                bytes[size++] = (byte) ((rest & VARINT_MASK) | VARINT_MORE);
+                rest >>>= VARINT_BITS;
+            }
+            bytes[size++] = (byte) rest;
+        }
+
+        /**
+         * @param value - big endian
+         */
+        void putLong(final long value) {
+            ensure(Long.BYTES);
+            for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        /**
+         * @param source
+         * @param length
+         */
+        void put(final byte[] source, final int length) {
+            ensure(length);
+            System.arraycopy(source, 0, bytes, size, length);
+            size += length;
+        }
+
+        /**
+         * @param extra
+         */
+        private void ensure(final int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.juno.gameofwar;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for dealing the deck out to the players.
+ * Disabled unless a recording turns it on, see gameofwar.jfc.
+ */
+@Name(DealEvent.NAME)
+@Label("Deal")
+@Category("Game of War")
+@Description("Dealing every card of the deck to the players")
+@Enabled(false)
+@StackTrace(false)
+public final class DealEvent extends Event {
+
+    public static final String NAME = "com.juno.gameofwar.Deal";
+
+    @Label("Players")
+    private int players;
+
+    @Label("Cards")
+    private int cards;
+
+    /**
+     * @param numberOfPlayers
+     * @param cardsDealt
+     */
+    void setDeal(final int numberOfPlayers, final int cardsDealt) {
+        this.players = numberOfPlayers;
+        this.cards = cardsDealt;
+    }
+}
@@ -1,5 +1,7 @@
 package com.juno.gameofwar;
 
+import java.util.List;
+
 /**
  * Created by Joe Teibel.
  */
@@ -8,4 +10,34 @@ public interface Deck {
     void create(int numberOfSuits, int numberOfRanks);
     void shuffle();
     Card deal();
+
+    /**
+     * Get the number of cards in the deck that have not been dealt, for decks that know it before dealing them
+     * @return the number of cards, or -1 if the deck can't tell
+     */
+    default int numberOfUndealtCards() {
+        return -1;
+    }
+
+    /**
+     * Deal every card left to the players in turn, starting with the first. Decks that can put cards straight
+     * into the hands without making a Card for each one should override this.
+     * @param players
+     * @return the number of cards dealt
+     */
+    default int dealTo(final List<Player> players) {
+        int cardsDealt = 0;
+        int curPlayer = 0;
+        for (Card dealCard = deal(); dealCard != null; dealCard = deal()) {
+            players.get(curPlayer).addCardToHand(dealCard);
+            cardsDealt++;
+
+            // loop through player list
+            curPlayer++;
+            if (curPlayer == players.size()) {
+                curPlayer = 0;
+            }
+        }
+        return cardsDealt;
+    }
 }
@@ -0,0 +1,479 @@
+package com.juno.gameofwar;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The on-disk tier of the ResultCache.
+ *
+ * Results are appended to a log file and found again through an open addressing hash table kept in a memory
+ * mapped index file, so a lookup is one probe of mapped memory plus one read of the log. Nothing is ever
+ * rewritten in place.
+ *
+ * Eviction is by size and works in generations. Writes go to the current generation. Once it holds half of the
+ * size budget it becomes the previous generation, the old previous generation is deleted and a new, empty one
+ * is started. Lookups check both generations and a hit in the previous generation is copied into the current
+ * one, so results that keep being used survive while the rest age out.
+ *
+ * Every record carries its full key and a checksum, so a record that was only partly written before a crash
+ * is treated as a miss. Each log starts with the format version, and generations written under another version,
+ * where the same key may have played a different game, are dropped when the store is opened. A lock file keeps
+ * a second process from using the same directory at the same time. Methods are synchronized so any number of
+ * threads can share one store.
+ *
+ * The index of a generation is capped at MAX_SLOTS, so with a budget of more than about 6 GB a generation fills
+ * up by its index before its log and the store holds fewer results than the budget allows.
+ */
+public final class DiskResultStore implements Closeable {
+
+    private static final String LOCK_FILE = "cache.lock";
+    private static final String LOG_PREFIX = "results-";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    // "WRRC" and the version at the start of every log. Bump the version whenever the records change or the same
+    // key would play a different game, as it did when big decks started being shuffled in parallel
+    private static final int LOG_MAGIC = 0x57525243;
+    static final int FORMAT_VERSION = 2;
+    private static final int LOG_HEADER_BYTES = 8;
+
+    // key hash then log offset + 1, zero means the slot is empty
+    static final int SLOT_BYTES = 16;
+    // the size of a record with a single winner, used to size the index
+    private static final int TYPICAL_RECORD_BYTES = 64;
+    // start a new generation when the index is this full
+    private static final double MAX_LOAD = 0.75;
+    private static final int MIN_SLOTS = 1024;
+    // the index is one mapping addressed by int, so it must stay under 2 GB
+    private static final int MAX_SLOT_BITS = 26;
+    static final int MAX_SLOTS = 1 << MAX_SLOT_BITS;
+    // length, seed, suits, ranks, players, rules, high score, rounds, wars, longest war, winner count ... crc
+    // records from before rules were kept have the high score, never zero, where the rules now go, and the
+    // standard rules are zero, so those records never match a key
+    private static final int RECORD_FIXED_BYTES = 60;
+    private static final int RECORD_BODY_OFFSET = 4;
+
+    private final Path directory;
+    private final long generationBytes;
+    private final int slots;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+
+    private Generation current;
+    private Generation previous;
+
+    /**
+     * Open or create a store in a directory
+     * @param directory - created if it does not exist
+     * @param maxBytes - roughly the most disk space the store will use
+     */
+    public DiskResultStore(final Path directory, final long maxBytes) {
+        this.directory = directory;
+        this.generationBytes = Math.max(maxBytes / 2, (long) MIN_SLOTS * TYPICAL_RECORD_BYTES);
+        this.slots = slotsFor(generationBytes);
+
+        try {
+            Files.createDirectories(directory);
+            lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE);
+            lock = lockChannel.tryLock();
+            if (lock == null) {
+                lockChannel.close();
+                throw new IllegalStateException("Result cache " + directory + " is in use by another process");
+            }
+
+            // pick up the two newest generations and drop anything older or written in another format
+            List<Long> generations = existingGenerations();
+            long newest = 0;
+            if (!generations.isEmpty()) {
+                newest = generations.get(generations.size() - 1);
+            }
+            for (long generation : generations) {
+                if (generation < newest - 1 || !isCurrentFormat(generation)) {
+                    deleteGeneration(generation);
+                }
+            }
+            if (Files.exists(logFile(newest - 1))) {
+                previous = new Generation(newest - 1);
+            }
+            current = new Generation(newest);
+
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to open result cache " + directory, ioe);
+        }
+    }
+
+    /**
+     * Look up a result
+     * @param key
+     * @return null if it is not stored
+     */
+    public synchronized GameResult get(final ResultCache.Key key) {
+        try {
+            GameResult result = current.find(key);
+            if (result == null && previous != null) {
+                result = previous.find(key);
+                if (result != null) {
+                    // keep it from aging out
+                    put(key, result);
+                }
+            }
+            return result;
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to read result cache " + directory, ioe);
+        }
+    }
+
+    /**
+     * Store a result
+     * @param key
+     * @param result
+     */
+    public synchronized void put(final ResultCache.Key key, final GameResult result) {
+        try {
+            if (current.isFull()) {
+                rotate();
+            }
+            current.append(key, result);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to write result cache " + directory, ioe);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            current.close();
+            if (previous != null) {
+                previous.close();
+            }
+            lock.release();
+            lockChannel.close();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to close result cache " + directory, ioe);
+        }
+    }
+
+    /**
+     * Retire the previous generation and start a new one
+     */
+    private void rotate() throws IOException {
+        if (previous != null) {
+            previous.close();
+            deleteGeneration(previous.number);
+        }
+        previous = current;
+        current = new Generation(previous.number + 1);
+    }
+
+    /**
+     * @return the numbers of the generations in the directory, oldest first
+     */
+    private List<Long> existingGenerations() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, LOG_PREFIX + "*" + LOG_SUFFIX)) {
+            for (Path file : files) {
+                final String name = String.valueOf(file.getFileName());
+                try {
+                    generations.add(Long.parseLong(name.substring(LOG_PREFIX.length(),
+                            name.length() - LOG_SUFFIX.length())));
+                } catch (NumberFormatException nfe) {
+                    // not one of ours
+                    continue;
+                }
+            }
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    /**
+     * @param generation
+     */
+    private void deleteGeneration(final long generation) throws IOException {
+        Files.deleteIfExists(logFile(generation));
+        Files.deleteIfExists(indexFile(generation));
+    }
+
+    /**
+     * Whether a generation's log starts with this version's header and its index can be mapped
+     * @param generation
+     * @return
+     */
+    private boolean isCurrentFormat(final long generation) throws IOException {
+        final long indexBytes = Files.size(indexFile(generation));
+        if (indexBytes > (long) MAX_SLOTS * SLOT_BYTES || indexBytes % SLOT_BYTES != 0
+                || Integer.bitCount((int) (indexBytes / SLOT_BYTES)) > 1) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_BYTES);
+        try (FileChannel log = FileChannel.open(logFile(generation), StandardOpenOption.READ)) {
+            while (header.hasRemaining()) {
+                if (log.read(header) < 0) {
+                    return false;
+                }
+            }
+        }
+        return header.getInt(0) == LOG_MAGIC && header.getInt(Integer.BYTES) == FORMAT_VERSION;
+    }
+
+    /**
+     * @param generation
+     * @return
+     */
+    private Path logFile(final long generation) {
+        return directory.resolve(LOG_PREFIX + generation + LOG_SUFFIX);
+    }
+
+    /**
+     * @param generation
+     * @return
+     */
+    private Path indexFile(final long generation) {
+        return directory.resolve(LOG_PREFIX + generation + INDEX_SUFFIX);
+    }
+
+    /**
+     * Size the index so it fills up at about the same time as the log
+     * @param bytes
+     * @return a power of two, no more than MAX_SLOTS
+     */
+    static int slotsFor(final long bytes) {
+        final long wanted = (long) ((double) bytes / TYPICAL_RECORD_BYTES / MAX_LOAD);
+        int result = MIN_SLOTS;
+        while (result < wanted && result < MAX_SLOTS) {
+            result <<= 1;
+        }
+        return result;
+    }
+
+    /**
+     * One log file and its index
+     */
+    private final class Generation {
+
+        private final long number;
+        private final FileChannel log;
+        private final FileChannel indexChannel;
+        private final MappedByteBuffer index;
+        private long logSize;
+        private int entries;
+
+        /**
+         * Open or create a generation
+         * @param number
+         */
+        Generation(final long number) throws IOException {
+            this.number = number;
+            this.log = FileChannel.open(logFile(number), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.indexChannel = FileChannel.open(indexFile(number), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            if (log.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_BYTES);
+                header.putInt(LOG_MAGIC).putInt(FORMAT_VERSION).flip();
+                while (header.hasRemaining()) {
+                    log.write(header, header.position());
+                }
+            }
+
+            // an index written with another budget may have a different size, the slot count is taken from the file
+            long indexBytes = indexChannel.size();
+            if (indexBytes == 0) {
+                indexBytes = (long) slots * SLOT_BYTES;
+            }
+            this.index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexBytes);
+            this.logSize = log.size();
+            for (int slot = 0; slot < slotCount(); slot++) {
+                if (index.getLong(slot * SLOT_BYTES + Long.BYTES) != 0) {
+                    entries++;
+                }
+            }
+        }
+
+        /**
+         * @return true once this generation has used its share of the budget
+         */
+        boolean isFull() {
+            return logSize >= generationBytes || entries >= slotCount() * MAX_LOAD;
+        }
+
+        /**
+         * Probe the index for the key and read the record it points at
+         * @param key
+         * @return null if not found
+         */
+        GameResult find(final ResultCache.Key key) throws IOException {
+            final long hash = key.longHash();
+            final int mask = slotCount() - 1;
+
+            int slot = (int) hash & mask;
+            long offset = index.getLong(slot * SLOT_BYTES + Long.BYTES);
+
+            // linear probing - stop at the first empty slot
+            while (offset != 0) {
+                if (index.getLong(slot * SLOT_BYTES) == hash) {
+                    GameResult result = read(offset - 1, key);
+                    if (result != null) {
+                        return result;
+                    }
+                }
+                slot = (slot + 1) & mask;
+                offset = index.getLong(slot * SLOT_BYTES + Long.BYTES);
+            }
+            return null;
+        }
+
+        /**
+         * Append a record to the log and point the index at it
+         * @param key
+         * @param result
+         */
+        void append(final ResultCache.Key key, final GameResult result) throws IOException {
+            final List<Player> winners = result.getWinners();
+            ByteBuffer record = ByteBuffer.allocate(RECORD_FIXED_BYTES + Integer.BYTES * winners.size());
+            record.putInt(record.capacity() - RECORD_BODY_OFFSET);
+            record.putLong(key.getSeed());
+            record.putInt(key.getConfig().getNumberOfSuits());
+            record.putInt(key.getConfig().getNumberOfRanks());
+            record.putInt(key.getConfig().getNumberOfPlayers());
+            record.putInt(key.getConfig().getRules().getCode());
+            record.putInt(result.getHighScore());
+            record.putLong(result.getRounds());
+            record.putLong(result.getWars());
+            record.putInt(result.getMaxWarDepth());
+            record.putInt(winners.size());
+            for (Player winner : winners) {
+                record.putInt(winner.getId());
+            }
+            record.putInt((int) crc(record.array(), record.position()));
+            record.flip();
+
+            // the record goes down before the index points at it
+            final long offset = logSize;
+            while (record.hasRemaining()) {
+                log.write(record, offset + record.position());
+            }
+            logSize += record.limit();
+
+            final long hash = key.longHash();
+            final int mask = slotCount() - 1;
+            int slot = (int) hash & mask;
+            while (index.getLong(slot * SLOT_BYTES + Long.BYTES) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            index.putLong(slot * SLOT_BYTES, hash);
+            index.putLong(slot * SLOT_BYTES + Long.BYTES, offset + 1);
+            entries++;
+        }
+
+        /**
+         * Read a record and check it is intact and for the key we want
+         * @param offset
+         * @param key
+         * @return null if it isn't
+         */
+        private GameResult read(final long offset, final ResultCache.Key key) throws IOException {
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            if (!readFully(length, offset)) {
+                return null;
+            }
+            final int bodyBytes = length.getInt(0);
+            if (bodyBytes < RECORD_FIXED_BYTES - RECORD_BODY_OFFSET
+                    || offset + RECORD_BODY_OFFSET + bodyBytes > logSize) {
+                return null;
+            }
+            ByteBuffer record = ByteBuffer.allocate(RECORD_BODY_OFFSET + bodyBytes);
+            record.putInt(bodyBytes);
+            if (!readFully(record, offset + RECORD_BODY_OFFSET)) {
+                return null;
+            }
+            final int crcOffset = record.capacity() - Integer.BYTES;
+            if (record.getInt(crcOffset) != (int) crc(record.array(), crcOffset)) {
+                return null;
+            }
+
+            record.position(RECORD_BODY_OFFSET);
+            final long seed = record.getLong();
+            final int suits = record.getInt();
+            final int ranks = record.getInt();
+            final int players = record.getInt();
+            final int rules = record.getInt();
+            if (seed != key.getSeed() || suits != key.getConfig().getNumberOfSuits()
+                    || ranks != key.getConfig().getNumberOfRanks()
+                    || players != key.getConfig().getNumberOfPlayers()
+                    || rules != key.getConfig().getRules().getCode()) {
+                return null;
+            }
+
+            final int highScore = record.getInt();
+            final long rounds = record.getLong();
+            final long wars = record.getLong();
+            final int maxWarDepth = record.getInt();
+            final int winnerCount = record.getInt();
+            List<Player> winners = new ArrayList<>(winnerCount);
+            for (int i = 0; i < winnerCount; i++) {
+                winners.add(new Player(record.getInt()));
+            }
+            return new GameResult(winners, highScore, rounds, wars, maxWarDepth);
+        }
+
+        /**
+         * Fill the buffer from the log
+         * @return false if the log ends first
+         */
+        private boolean readFully(final ByteBuffer buffer, final long position) throws IOException {
+            long at = position;
+            while (buffer.hasRemaining()) {
+                final int read = log.read(buffer, at);
+                if (read < 0) {
+                    return false;
+                }
+                at += read;
+            }
+            return true;
+        }
+
+        /**
+         * @return the number of slots in the index
+         */
+        private int slotCount() {
+            return index.capacity() / SLOT_BYTES;
+        }
+
+        /**
+         * Flush and close the files
+         */
+        void close() throws IOException {
+            log.force(false);
+            index.force();
+            log.close();
+            indexChannel.close();
+        }
+    }
+
+    /**
+     * CRC32 of the first length bytes
+     * @param bytes
+     * @param length
+     * @return
+     */
+    private static long crc(final byte[] bytes, final int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return crc.getValue();
+    }
+}
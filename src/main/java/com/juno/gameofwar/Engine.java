@@ -0,0 +1,165 @@
+package com.juno.gameofwar;
+
+import java.security.InvalidParameterException;
+
+/**
+ * The ways a game can be played. Every engine plays the same game for the same config and seed, they only
+ * differ in how long it takes. EngineSelector picks the quickest one for a game.
+ */
+public enum Engine {
+
+    // every round is played on the calling thread
+    SEQUENTIAL("sequential") {
+        @Override
+        public GameResult play(final GameConfig config, final long seed, final CardStorage storage) {
+            return playOnWar(config, seed, storage, Integer.MAX_VALUE);
+        }
+    },
+
+    // rounds with more than one slice of players still in are split across the cores, see ParallelRound
+    PARALLEL_ROUNDS("parallel") {
+        @Override
+        public GameResult play(final GameConfig config, final long seed, final CardStorage storage) {
+            return playOnWar(config, seed, storage, PARALLEL_THRESHOLD);
+        }
+
+        @Override
+        public boolean supports(final GameConfig config) {
+            // only War's own round loop splits rounds, rule variants are played on one thread
+            return config.getRules().isStandard();
+        }
+
+        @Override
+        public boolean usesAllCores(final GameConfig config) {
+            return config.getNumberOfPlayers() >= PARALLEL_THRESHOLD;
+        }
+
+        @Override
+        public boolean playsLikeSequential(final GameConfig config) {
+            // no round ever has enough players to be split
+            return !usesAllCores(config);
+        }
+    },
+
+    // two players by the standard rules, both hands compared as arrays of ranks, see TwoPlayerWar
+    TWO_PLAYER("two-player") {
+        @Override
+        public GameResult play(final GameConfig config, final long seed, final CardStorage storage) {
+            return TwoPlayerWar.play(config.getNumberOfSuits(), config.getNumberOfRanks(), seed, storage);
+        }
+
+        @Override
+        public boolean supports(final GameConfig config) {
+            return config.getNumberOfPlayers() == 2 && config.getRules().isStandard();
+        }
+    },
+
+    // two players by the standard rules, segments of the game played at once on a guess of where they start and
+    // checked afterwards, see SpeculativeWar
+    SPECULATIVE("speculative") {
+        @Override
+        public GameResult play(final GameConfig config, final long seed, final CardStorage storage) {
+            return SpeculativeWar.play(config.getNumberOfSuits(), config.getNumberOfRanks(), seed, storage);
+        }
+
+        @Override
+        public boolean supports(final GameConfig config) {
+            return config.getNumberOfPlayers() == 2 && config.getRules().isStandard();
+        }
+
+        @Override
+        public boolean usesAllCores(final GameConfig config) {
+            // the first player holds half the cards
+            return config.getNumberOfCards() >= 2 * 2 * SpeculativeWar.MIN_SEGMENT_CARDS;
+        }
+    };
+
+    // rounds with at least two slices of players are worth splitting
+    private static final int PARALLEL_THRESHOLD = 2 * ParallelRound.SLICE_SIZE;
+
+    // the name used to force this engine on the command line and in calibration tables
+    private final String optionName;
+
+    /**
+     * @param optionName
+     */
+    Engine(final String optionName) {
+        this.optionName = optionName;
+    }
+
+    /**
+     * Play one game without printing anything
+     * @param config
+     * @param seed - the shuffle seed
+     * @param storage - where to keep the deck and hands
+     * @return
+     */
+    public abstract GameResult play(GameConfig config, long seed, CardStorage storage);
+
+    /**
+     * Whether this engine can play games with the given config. Engines that can't are never selected.
+     * @param config
+     * @return
+     */
+    public boolean supports(final GameConfig config) {
+        return true;
+    }
+
+    /**
+     * Whether this engine spreads a game with this config across the cores, so it gets quicker on a machine
+     * with more of them
+     * @param config
+     * @return
+     */
+    public boolean usesAllCores(final GameConfig config) {
+        return false;
+    }
+
+    /**
+     * Whether this engine runs exactly the sequential engine's code for games with this config, so there is
+     * nothing to choose between them
+     * @param config
+     * @return
+     */
+    public boolean playsLikeSequential(final GameConfig config) {
+        return false;
+    }
+
+    /**
+     * Get the name used to select this engine on the command line
+     * @return
+     */
+    public String getOptionName() {
+        return optionName;
+    }
+
+    /**
+     * Look up an engine by its command line name. Throws an exception if there is no such engine.
+     * @param name
+     * @return
+     */
+    public static Engine fromOptionName(final String name) {
+        for (Engine engine : values()) {
+            if (engine.optionName.equalsIgnoreCase(name)) {
+                return engine;
+            }
+        }
+        throw new InvalidParameterException("Unknown engine '" + name + "'");
+    }
+
+    /**
+     * Play a game on War, splitting rounds across threads from the given number of players
+     * @param config
+     * @param seed
+     * @param storage
+     * @param parallelRoundThreshold
+     * @return
+     */
+    private static GameResult playOnWar(final GameConfig config, final long seed, final CardStorage storage,
+                                        final int parallelRoundThreshold) {
+        final War war = War.forRules(storage, config.getRules());
+        war.setSeed(seed);
+        war.setParallelRoundThreshold(parallelRoundThreshold);
+        return war.playGame(config.getNumberOfSuits(), config.getNumberOfRanks(), config.getNumberOfPlayers());
+    }
+}
@@ -0,0 +1,263 @@
+package com.juno.gameofwar;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Benchmark harness that times every engine over a spread of games and writes the calibration table
+ * EngineSelector estimates costs from.
+ *
+ * Every engine plays every game a few times to warm up, then the engines take turns playing each game a few
+ * more times and the quickest time of each is kept. The
+ * coefficients of each engine are fitted to those times by least squares on the relative error, so small games
+ * count as much as big ones.
+ *
+ * Run it on the machine that will play the games:
+ * java -cp build/libs/war-1.0.jar com.juno.gameofwar.EngineCalibration engine-calibration.properties
+ */
+public final class EngineCalibration {
+
+    // suits, ranks and players of the calibration games, from a handful of cards up to the most the program allows
+    private static final int[][] GAMES = {
+        {4, 13, 2}, {4, 13, 13}, {4, 13, 52},
+        {4, 250, 2}, {4, 250, 100}, {4, 250, 1000},
+        {10, 1000, 2}, {10, 1000, 100}, {10, 1000, 5000}, {10, 1000, 10000},
+        {100, 1000, 2}, {100, 1000, 4096}, {100, 1000, 50000},
+        {100, 10000, 2}, {100, 10000, 50000},
+    };
+    private static final String DEFAULT_FILE = "engine-calibration.properties";
+    private static final int WARM_UP_PASSES = 5;
+    private static final int TIMED_RUNS = 7;
+    private static final long SEED = 1;
+    private static final int COEFFICIENTS = 3;
+    // the positions of the coefficients, as in EngineSelector
+    private static final int PER_CARD = 1;
+    private static final int PER_ROUND = 2;
+    // rounds per card closer than this, relatively, are the same
+    private static final double SAME_RATIO = 1e-9;
+
+    /**
+     * Private constructor
+     */
+    private EngineCalibration() { }
+
+    /**
+     * Write a calibration table for this machine
+     * @param args - the file to write, engine-calibration.properties by default
+     */
+    public static void main(final String[] args) {
+        Path file = Paths.get(DEFAULT_FILE);
+        if (args.length > 0) {
+            file = Paths.get(args[0]);
+        }
+        final Properties table = calibrate();
+
+        final Path directory = file.toAbsolutePath().getParent();
+        try {
+            if (directory != null) {
+                Files.createDirectories(directory);
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Failed to write the engine calibration table " + file, ioe);
+        }
+        try (OutputStream out = Files.newOutputStream(file)) {
+            table.store(out, "Engine cost model written by EngineCalibration, estimated nanoseconds for a game are "
+                    + "fixed + perCard * cards + perRound * cards / players");
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Failed to write the engine calibration table " + file, ioe);
+        }
+        System.out.println("\nWrote " + file);
+    }
+
+    /**
+     * Time every engine and fit its coefficients
+     * @return the calibration table
+     */
+    public static Properties calibrate() {
+        final Properties table = new Properties();
+        table.setProperty(EngineSelector.CORES_KEY, Integer.toString(Runtime.getRuntime().availableProcessors()));
+
+        final Engine[] engines = Engine.values();
+        final double[][] features = new double[GAMES.length][];
+        final GameConfig[] configs = new GameConfig[GAMES.length];
+        for (int i = 0; i < GAMES.length; i++) {
+            configs[i] = new GameConfig(GAMES[i][0], GAMES[i][1], GAMES[i][2]);
+            features[i] = EngineSelector.features(configs[i]);
+        }
+
+        // warm every engine up on every game first so the JIT has settled before anything is timed
+        for (int pass = 0; pass < WARM_UP_PASSES; pass++) {
+            for (GameConfig config : configs) {
+                for (Engine engine : engines) {
+                    if (engine.supports(config)) {
+                        engine.play(config, SEED + pass, CardStorage.HEAP);
+                    }
+                }
+            }
+        }
+
+        // the engines take turns on each game so none of them is timed on a warmer JVM than the others
+        final double[][] nanos = new double[engines.length][GAMES.length];
+        for (int i = 0; i < GAMES.length; i++) {
+            for (int e = 0; e < engines.length; e++) {
+                nanos[e][i] = Double.MAX_VALUE;
+            }
+            for (int run = 0; run < TIMED_RUNS; run++) {
+                for (int e = 0; e < engines.length; e++) {
+                    if (!engines[e].supports(configs[i])) {
+                        continue;
+                    }
+                    final long start = System.nanoTime();
+                    engines[e].play(configs[i], SEED + run, CardStorage.HEAP);
+                    nanos[e][i] = Math.min(nanos[e][i], System.nanoTime() - start);
+                }
+            }
+            for (int e = 0; e < engines.length; e++) {
+                if (!engines[e].supports(configs[i])) {
+                    continue;
+                }
+                System.out.println(engines[e].getOptionName() + ": " + configs[i] + " in " + (long) nanos[e][i]
+                        + "ns");
+            }
+        }
+
+        for (int e = 0; e < engines.length; e++) {
+            // an engine is only fitted to the games it can play
+            final List<Integer> games = supportedGames(engines[e], configs);
+            final double[][] engineFeatures = new double[games.size()][];
+            final double[] engineNanos = new double[games.size()];
+            for (int i = 0; i < games.size(); i++) {
+                engineFeatures[i] = features[games.get(i)];
+                engineNanos[i] = nanos[e][games.get(i)];
+            }
+            final double[] coefficients = fit(engineFeatures, engineNanos);
+            final String prefix = engines[e].getOptionName() + ".";
+            table.setProperty(prefix + EngineSelector.FIXED_KEY, Double.toString(coefficients[0]));
+            table.setProperty(prefix + EngineSelector.PER_CARD_KEY, Double.toString(coefficients[1]));
+            table.setProperty(prefix + EngineSelector.PER_ROUND_KEY, Double.toString(coefficients[2]));
+        }
+        return table;
+    }
+
+    /**
+     * @param engine
+     * @param configs
+     * @return the numbers of the games the engine supports
+     */
+    private static List<Integer> supportedGames(final Engine engine, final GameConfig[] configs) {
+        final List<Integer> games = new ArrayList<>(configs.length);
+        for (int i = 0; i < configs.length; i++) {
+            if (engine.supports(configs[i])) {
+                games.add(i);
+            }
+        }
+        return games;
+    }
+
+    /**
+     * Fit non negative coefficients so that features times coefficients comes close to the measured times,
+     * minimising the squared relative error. A coefficient that comes out negative is dropped and the rest refit.
+     * @param features - one row per game
+     * @param nanos - the time of each game
+     * @return
+     */
+    static double[] fit(final double[][] features, final double[] nanos) {
+        // games that all have the same number of players can't tell the per round cost from the per card cost
+        final boolean[] used = {true, true, playersVary(features)};
+        double[] coefficients = new double[COEFFICIENTS];
+
+        boolean refit = true;
+        while (refit) {
+            coefficients = solve(features, nanos, used);
+            refit = false;
+            for (int i = 0; i < COEFFICIENTS; i++) {
+                if (coefficients[i] < 0) {
+                    used[i] = false;
+                    refit = true;
+                }
+            }
+        }
+        return coefficients;
+    }
+
+    /**
+     * @param features
+     * @return whether the rounds per card differ between the games
+     */
+    private static boolean playersVary(final double[][] features) {
+        final double first = features[0][PER_ROUND] / features[0][PER_CARD];
+        for (double[] row : features) {
+            if (Math.abs(row[PER_ROUND] / row[PER_CARD] - first) > SAME_RATIO * first) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Weighted least squares over the used coefficients, the others are zero
+     * @param features
+     * @param nanos
+     * @param used
+     * @return
+     */
+    private static double[] solve(final double[][] features, final double[] nanos, final boolean[] used) {
+        // normal equations, each row weighted by one over its time
+        final double[][] a = new double[COEFFICIENTS][COEFFICIENTS + 1];
+        for (int row = 0; row < features.length; row++) {
+            final double weight = 1 / (nanos[row] * nanos[row]);
+            for (int i = 0; i < COEFFICIENTS; i++) {
+                for (int j = 0; j < COEFFICIENTS; j++) {
+                    a[i][j] += weight * features[row][i] * features[row][j];
+                }
+                a[i][COEFFICIENTS] += weight * features[row][i] * nanos[row];
+            }
+        }
+        for (int i = 0; i < COEFFICIENTS; i++) {
+            if (!used[i]) {
+                // pin the coefficient to zero
+                for (int j = 0; j <= COEFFICIENTS; j++) {
+                    a[i][j] = 0;
+                }
+                a[i][i] = 1;
+            }
+        }
+
+        // Gaussian elimination with partial pivoting
+        for (int col = 0; col < COEFFICIENTS; col++) {
+            int pivot = col;
+            for (int row = col + 1; row < COEFFICIENTS; row++) {
+                if (Math.abs(a[row][col]) > Math.abs(a[pivot][col])) {
+                    pivot = row;
+                }
+            }
+            final double[] swap = a[col];
+            a[col] = a[pivot];
+            a[pivot] = swap;
+
+            for (int row = col + 1; row < COEFFICIENTS; row++) {
+                final double factor = a[row][col] / a[col][col];
+                for (int j = col; j <= COEFFICIENTS; j++) {
+                    a[row][j] -= factor * a[col][j];
+                }
+            }
+        }
+
+        final double[] coefficients = new double[COEFFICIENTS];
+        for (int row = COEFFICIENTS - 1; row >= 0; row--) {
+            double sum = a[row][COEFFICIENTS];
+            for (int j = row + 1; j < COEFFICIENTS; j++) {
+                sum -= a[row][j] * coefficients[j];
+            }
+            coefficients[row] = sum / a[row][row];
+        }
+        return coefficients;
+    }
+}
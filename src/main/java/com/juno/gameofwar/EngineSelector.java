@@ -0,0 +1,168 @@
+package com.juno.gameofwar;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.InvalidParameterException;
+import java.util.Properties;
+
+/**
+ * Picks the engine expected to play a game the quickest.
+ *
+ * A game plays every card exactly once, in rounds of about one card per player, so the time an engine takes is
+ * estimated as fixed + perCard * cards + perRound * cards / players nanoseconds. The three coefficients of each
+ * engine come from a calibration table written by EngineCalibration. Engines missing from the table are never
+ * picked. When an engine splits a game across cores its per card cost is scaled by the cores the table was
+ * calibrated on over the cores of this machine, but a table calibrated on the machine that plays is best.
+ *
+ * An engine that would run the same code as the sequential one for a game is left out of the choice, so noise in
+ * the table can't pick between two names for the same loop.
+ */
+public final class EngineSelector {
+
+    // the table shipped in the jar
+    public static final String DEFAULT_TABLE = "/engine-calibration.properties";
+    // table keys, the coefficients are <engine>.<coefficient>
+    public static final String CORES_KEY = "cores";
+    public static final String FIXED_KEY = "fixed";
+    public static final String PER_CARD_KEY = "perCard";
+    public static final String PER_ROUND_KEY = "perRound";
+
+    private static final int FIXED = 0;
+    private static final int PER_CARD = 1;
+    private static final int PER_ROUND = 2;
+    private static final int COEFFICIENTS = 3;
+
+    // coefficients of the calibrated engines by ordinal, an EnumMap would reflect on Engine during startup
+    private final double[][] coefficients = new double[Engine.values().length][];
+    // the cores the table was calibrated on over the cores games are played on
+    private final double coreRatio;
+
+    /**
+     * @param table - a calibration table
+     * @param cores - the number of cores games will be played on
+     */
+    public EngineSelector(final Properties table, final int cores) {
+        this.coreRatio = parse(table, CORES_KEY, cores) / cores;
+
+        for (Engine engine : Engine.values()) {
+            final String prefix = engine.getOptionName() + ".";
+            if (!table.containsKey(prefix + FIXED_KEY)) {
+                continue;
+            }
+
+            final double[] engineCoefficients = new double[COEFFICIENTS];
+            engineCoefficients[FIXED] = parse(table, prefix + FIXED_KEY, 0);
+            engineCoefficients[PER_CARD] = parse(table, prefix + PER_CARD_KEY, 0);
+            engineCoefficients[PER_ROUND] = parse(table, prefix + PER_ROUND_KEY, 0);
+            coefficients[engine.ordinal()] = engineCoefficients;
+        }
+    }
+
+    /**
+     * Use the calibration table shipped in the jar, or no table at all if there isn't one
+     * @return
+     */
+    public static EngineSelector defaults() {
+        final Properties table = new Properties();
+        try (InputStream in = EngineSelector.class.getResourceAsStream(DEFAULT_TABLE)) {
+            if (in != null) {
+                table.load(in);
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Failed to read the engine calibration table", ioe);
+        }
+        return new EngineSelector(table, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Use a calibration table written by EngineCalibration
+     * @param file
+     * @return
+     */
+    public static EngineSelector load(final Path file) {
+        final Properties table = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            table.load(in);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Failed to read the engine calibration table " + file, ioe);
+        }
+        return new EngineSelector(table, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Pick the engine expected to play a game with this config the quickest
+     * @param config
+     * @return the cheapest calibrated engine, or the first one that can be picked if none are calibrated
+     */
+    public Engine select(final GameConfig config) {
+        Engine cheapest = null;
+        double cheapestCost = Double.POSITIVE_INFINITY;
+
+        for (Engine engine : Engine.values()) {
+            if (!engine.supports(config) || engine.playsLikeSequential(config)) {
+                continue;
+            }
+            final double cost = estimateNanos(engine, config);
+            if (cheapest == null || cost < cheapestCost) {
+                cheapest = engine;
+                cheapestCost = cost;
+            }
+        }
+        return cheapest;
+    }
+
+    /**
+     * Estimate how long an engine takes to play a game
+     * @param engine
+     * @param config
+     * @return nanoseconds, infinite if the engine isn't calibrated
+     */
+    public double estimateNanos(final Engine engine, final GameConfig config) {
+        final double[] engineCoefficients = coefficients[engine.ordinal()];
+        if (engineCoefficients == null) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        final double[] x = features(config);
+        if (engine.usesAllCores(config)) {
+            x[PER_CARD] *= coreRatio;
+        }
+        double cost = 0;
+        for (int i = 0; i < x.length; i++) {
+            cost += engineCoefficients[i] * x[i];
+        }
+        return Math.max(0, cost);
+    }
+
+    /**
+     * The quantities the cost of a game is linear in
+     * @param config
+     * @return one, the number of cards and the number of rounds without wars
+     */
+    static double[] features(final GameConfig config) {
+        final double cards = config.getNumberOfCards();
+        return new double[] {1, cards, cards / Math.max(1, config.getNumberOfPlayers())};
+    }
+
+    /**
+     * Read a number from the table
+     * @param table
+     * @param key
+     * @param missing - the value if the key isn't in the table
+     * @return
+     */
+    private static double parse(final Properties table, final String key, final double missing) {
+        final String value = table.getProperty(key);
+        if (value == null) {
+            return missing;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException nfe) {
+            throw new InvalidParameterException("Invalid number for " + key + " in the engine calibration table");
+        }
+    }
+}
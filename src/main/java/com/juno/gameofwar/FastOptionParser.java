@@ -0,0 +1,114 @@
+package com.juno.gameofwar;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the command line without commons-cli
+ * Building the commons-cli options and parser costs more than playing a small game, so the plain ways of
+ * writing the options, "-s 4", "-suits 4", "--suits 4" and "--suits=4", are read here with a table lookup.
+ * Anything else, help included, is left to {@link CliOptionParser}.
+ */
+public final class FastOptionParser {
+
+    // short and long name of every option that takes a value
+    private static final String[][] VALUE_OPTIONS = {
+        {GameOfWar.SUITS_OPT, GameOfWar.SUITS_OPT_LONG},
+        {GameOfWar.RANKS_OPT, GameOfWar.RANKS_OPT_LONG},
+        {GameOfWar.PLAYERS_OPT, GameOfWar.PLAYERS_OPT_LONG},
+        {GameOfWar.STORAGE_OPT, GameOfWar.STORAGE_OPT_LONG},
+        {GameOfWar.SEED_OPT, GameOfWar.SEED_OPT_LONG},
+        {GameOfWar.CHECKPOINT_OPT, GameOfWar.CHECKPOINT_OPT_LONG},
+        {GameOfWar.CHECKPOINT_INTERVAL_OPT, GameOfWar.CHECKPOINT_INTERVAL_OPT_LONG},
+        {GameOfWar.RESUME_OPT, GameOfWar.RESUME_OPT_LONG},
+        {GameOfWar.PARALLEL_THRESHOLD_OPT, GameOfWar.PARALLEL_THRESHOLD_OPT_LONG},
+        {GameOfWar.TOURNAMENT_OPT, GameOfWar.TOURNAMENT_OPT_LONG},
+        {GameOfWar.GAMES_OPT, GameOfWar.GAMES_OPT_LONG},
+        {GameOfWar.GAME_OPT, GameOfWar.GAME_OPT_LONG},
+        {GameOfWar.THREADS_OPT, GameOfWar.THREADS_OPT_LONG},
+        {GameOfWar.WORKERS_OPT, GameOfWar.WORKERS_OPT_LONG},
+        {GameOfWar.RULES_OPT, GameOfWar.RULES_OPT_LONG},
+        {GameOfWar.COMPARE_OPT, GameOfWar.COMPARE_OPT_LONG},
+        {GameOfWar.PRECISION_OPT, GameOfWar.PRECISION_OPT_LONG},
+        {GameOfWar.RECORDS_OPT, GameOfWar.RECORDS_OPT_LONG},
+        {GameOfWar.DECK_OPT, GameOfWar.DECK_OPT_LONG},
+        {GameOfWar.CACHE_OPT, GameOfWar.CACHE_OPT_LONG},
+        {GameOfWar.CACHE_SIZE_OPT, GameOfWar.CACHE_SIZE_OPT_LONG},
+        {GameOfWar.DAEMON_PORT_OPT, GameOfWar.DAEMON_PORT_OPT_LONG},
+        {GameOfWar.HTTP_PORT_OPT, GameOfWar.HTTP_PORT_OPT_LONG},
+        {GameOfWar.ENGINE_OPT, GameOfWar.ENGINE_OPT_LONG},
+        {GameOfWar.ENGINE_TABLE_OPT, GameOfWar.ENGINE_TABLE_OPT_LONG},
+    };
+
+    private static final String LONG_PREFIX = "--";
+    private static final String SHORT_PREFIX = "-";
+
+    /**
+     * Private constructor
+     */
+    private FastOptionParser() { }
+
+    /**
+     * Parse the command line
+     * @param args
+     * @return the value of each option given keyed by its short name, or null if the command line needs
+     * the full parser
+     */
+    public static Map<String, String> parse(final String[] args) {
+        final Map<String, String> values = new HashMap<>();
+
+        int i = 0;
+        while (i < args.length) {
+            final String arg = args[i++];
+            String opt;
+            String value = null;
+
+            if (arg.startsWith(LONG_PREFIX)) {
+                String name = arg.substring(LONG_PREFIX.length());
+                final int equals = name.indexOf('=');
+                if (equals >= 0) {
+                    value = name.substring(equals + 1);
+                    name = name.substring(0, equals);
+                }
+                opt = lookup(name, false);
+            } else if (arg.startsWith(SHORT_PREFIX)) {
+                opt = lookup(arg.substring(SHORT_PREFIX.length()), true);
+            } else {
+                // commons-cli has its own idea of what to do with stray arguments
+                return null;
+            }
+
+            // an option given twice is left to the full parser as well
+            if (opt == null || values.containsKey(opt)) {
+                return null;
+            }
+
+            if (value == null) {
+                // a value that looks like an option, a negative seed say, needs the full parser to tell
+                if (i == args.length || args[i].startsWith(SHORT_PREFIX)) {
+                    return null;
+                }
+                value = args[i++];
+            }
+
+            values.put(opt, value);
+        }
+
+        return values;
+    }
+
+    /**
+     * Find the option with the given name
+     * @param name
+     * @param matchShort - whether the short names are matched as well as the long ones
+     * @return the short name of the option, or null if there isn't one with exactly that name
+     */
+    private static String lookup(final String name, final boolean matchShort) {
+        for (String[] option : VALUE_OPTIONS) {
+            if ((matchShort && option[0].equals(name)) || option[1].equals(name)) {
+                return option[0];
+            }
+        }
+        return null;
+    }
+}
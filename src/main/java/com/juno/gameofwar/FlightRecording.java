@@ -0,0 +1,62 @@
+package com.juno.gameofwar;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Whether flight recorder is running, for the engines to decide whether to create their events.
+ *
+ * Java 8 only has flight recorder from update 262 on, so nothing outside this class and the event classes refers
+ * to it. Its classes are looked up by name once, and the events are only created when they were found and
+ * something has started a recording.
+ */
+final class FlightRecording {
+
+    private static final String RECORDER_CLASS = "jdk.jfr.FlightRecorder";
+    // whether this JVM has flight recorder at all
+    private static final boolean AVAILABLE = isAvailable();
+
+    /**
+     * Private constructor
+     */
+    private FlightRecording() { }
+
+    /**
+     * Whether flight recorder has been started. The events are only created when it has, because loading an event
+     * class sets flight recorder up and costs a small game more than the rest of its startup. A running recorder
+     * needn't have the game's events turned on, so they must still check shouldCommit before they are filled in.
+     * @return
+     */
+    static boolean isRunning() {
+        return AVAILABLE && Recorder.isInitialized();
+    }
+
+    /**
+     * @return true if the flight recorder classes can be loaded
+     */
+    private static boolean isAvailable() {
+        try {
+            Class.forName(RECORDER_CLASS, false, FlightRecording.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException cnfe) {
+            return false;
+        }
+    }
+
+    /**
+     * Links to flight recorder, only loaded once it is known to be there
+     */
+    private static final class Recorder {
+
+        /**
+         * Private constructor
+         */
+        private Recorder() { }
+
+        /**
+         * @return
+         */
+        static boolean isInitialized() {
+            return FlightRecorder.isInitialized();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.juno.gameofwar;
+
+import java.security.InvalidParameterException;
+
+/**
+ * The settings that decide how a game plays out, other than the shuffle
+ */
+public final class GameConfig {
+
+    // used to combine the fields into a hash code
+    private static final int HASH_MULTIPLIER = 31;
+
+    private final int numberOfSuits;
+    private final int numberOfRanks;
+    private final int numberOfPlayers;
+    private final Rules rules;
+
+    /**
+     * A game by the standard rules. Throws an exception if there are not enough cards for every player to get one
+     * @param numberOfSuits
+     * @param numberOfRanks
+     * @param numberOfPlayers
+     */
+    public GameConfig(final int numberOfSuits, final int numberOfRanks, final int numberOfPlayers) {
+        this(numberOfSuits, numberOfRanks, numberOfPlayers, Rules.STANDARD);
+    }
+
+    /**
+     * Throws an exception if there are not enough cards for every player to get one
+     * @param numberOfSuits
+     * @param numberOfRanks
+     * @param numberOfPlayers
+     * @param rules
+     */
+    public GameConfig(final int numberOfSuits, final int numberOfRanks, final int numberOfPlayers,
+                      final Rules rules) {
+        if (numberOfSuits < 1 || numberOfRanks < 1) {
+            throw new InvalidParameterException("numberOfSuits and numberOfRanks must be great than zero.");
+        }
+        if ((long) numberOfSuits * numberOfRanks < numberOfPlayers) {
+            throw new InvalidParameterException("numberOfSuits time numberOfRanks must be great than numberOfPlayers");
+        }
+        this.numberOfSuits = numberOfSuits;
+        this.numberOfRanks = numberOfRanks;
+        this.numberOfPlayers = numberOfPlayers;
+        this.rules = rules;
+    }
+
+    /**
+     * @return
+     */
+    public int getNumberOfSuits() {
+        return numberOfSuits;
+    }
+
+    /**
+     * @return
+     */
+    public int getNumberOfRanks() {
+        return numberOfRanks;
+    }
+
+    /**
+     * @return
+     */
+    public int getNumberOfPlayers() {
+        return numberOfPlayers;
+    }
+
+    /**
+     * @return the rules the game is played by
+     */
+    public Rules getRules() {
+        return rules;
+    }
+
+    /**
+     * @return the number of cards in the deck
+     */
+    public int getNumberOfCards() {
+        return numberOfSuits * numberOfRanks;
+    }
+
+    /**
+     * Play one game with this config and the given shuffle seed, without printing anything
+     * @param seed
+     * @param storage - where to keep the deck and hands
+     * @return
+     */
+    public GameResult play(final long seed, final CardStorage storage) {
+        War war = War.forRules(storage, rules);
+        war.setSeed(seed);
+        return war.playGame(numberOfSuits, numberOfRanks, numberOfPlayers);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GameConfig)) {
+            return false;
+        }
+        GameConfig other = (GameConfig) o;
+        return numberOfSuits == other.numberOfSuits && numberOfRanks == other.numberOfRanks
+                && numberOfPlayers == other.numberOfPlayers && rules.equals(other.rules);
+    }
+
+    @Override
+    public int hashCode() {
+        return ((HASH_MULTIPLIER * numberOfSuits + numberOfRanks) * HASH_MULTIPLIER + numberOfPlayers)
+                * HASH_MULTIPLIER + rules.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        final String game = numberOfPlayers + " players, " + numberOfSuits + " suits and " + numberOfRanks + " ranks";
+        if (rules.isStandard()) {
+            return game;
+        }
+        return game + " with " + rules;
+    }
+}
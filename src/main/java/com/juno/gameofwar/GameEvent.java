@@ -0,0 +1,89 @@
+package com.juno.gameofwar;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a whole game, from the deal or the resume to the winners being found.
+ * Disabled unless a recording turns it on, see gameofwar.jfc.
+ */
+@Name(GameEvent.NAME)
+@Label("Game")
+@Category("Game of War")
+@Description("A game from the start to the winners, with its configuration and result")
+@Enabled(false)
+@StackTrace(false)
+public final class GameEvent extends Event {
+
+    public static final String NAME = "com.juno.gameofwar.Game";
+
+    @Label("Suits")
+    private int suits;
+
+    @Label("Ranks")
+    private int ranks;
+
+    @Label("Players")
+    private int players;
+
+    @Label("Seed")
+    private long seed;
+
+    @Label("Storage")
+    private String storage;
+
+    @Label("Resumed")
+    @Description("Whether the game was picked up from a checkpoint")
+    private boolean resumed;
+
+    @Label("Rounds")
+    private long rounds;
+
+    @Label("Wars")
+    private long wars;
+
+    @Label("Longest War")
+    private int maxWarDepth;
+
+    @Label("High Score")
+    private int highScore;
+
+    @Label("Winners")
+    private int winners;
+
+    /**
+     * Set how the game was configured
+     * @param numberOfSuits
+     * @param numberOfRanks
+     * @param numberOfPlayers
+     * @param shuffleSeed
+     * @param cardStorage
+     * @param fromCheckpoint
+     */
+    void setConfig(final int numberOfSuits, final int numberOfRanks, final int numberOfPlayers,
+                   final long shuffleSeed, final CardStorage cardStorage, final boolean fromCheckpoint) {
+        this.suits = numberOfSuits;
+        this.ranks = numberOfRanks;
+        this.players = numberOfPlayers;
+        this.seed = shuffleSeed;
+        this.storage = cardStorage.getOptionName();
+        this.resumed = fromCheckpoint;
+    }
+
+    /**
+     * Set how the game came out
+     * @param result
+     */
+    void setResult(final GameResult result) {
+        this.rounds = result.getRounds();
+        this.wars = result.getWars();
+        this.maxWarDepth = result.getMaxWarDepth();
+        this.highScore = result.getHighScore();
+        this.winners = result.getWinners().size();
+    }
+}
@@ -1,8 +1,19 @@
 package com.juno.gameofwar;
 
-import org.apache.commons.cli.*;
-
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.InvalidParameterException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Holds the main entry point for the application
@@ -25,6 +36,77 @@ public final class GameOfWar {
     public static final String PLAYERS_OPT = "p";
     public static final String PLAYERS_OPT_LONG = "players";
     public static final String PLAYERS_OPT_NAME = "Players";
+    public static final String STORAGE_OPT = "m";
+    public static final String STORAGE_OPT_LONG = "storage";
+    public static final String STORAGE_OPT_NAME = "Storage";
+    public static final String SEED_OPT = "sd";
+    public static final String SEED_OPT_LONG = "seed";
+    public static final String SEED_OPT_NAME = "Seed";
+    public static final String CHECKPOINT_OPT = "c";
+    public static final String CHECKPOINT_OPT_LONG = "checkpoint";
+    public static final String CHECKPOINT_OPT_NAME = "File";
+    public static final String CHECKPOINT_INTERVAL_OPT = "ci";
+    public static final String CHECKPOINT_INTERVAL_OPT_LONG = "checkpoint-interval";
+    public static final String CHECKPOINT_INTERVAL_OPT_NAME = "Rounds";
+    public static final String RESUME_OPT = "rs";
+    public static final String RESUME_OPT_LONG = "resume";
+    public static final String RESUME_OPT_NAME = "File";
+    public static final String PARALLEL_THRESHOLD_OPT = "pt";
+    public static final String PARALLEL_THRESHOLD_OPT_LONG = "parallel-threshold";
+    public static final String PARALLEL_THRESHOLD_OPT_NAME = "Players";
+    public static final String TOURNAMENT_OPT = "t";
+    public static final String TOURNAMENT_OPT_LONG = "tournament";
+    public static final String TOURNAMENT_OPT_NAME = "Entrants";
+    public static final String GAMES_OPT = "n";
+    public static final String GAMES_OPT_LONG = "games";
+    public static final String GAMES_OPT_NAME = "Games";
+    public static final String GAME_OPT = "g";
+    public static final String GAME_OPT_LONG = "game";
+    public static final String GAME_OPT_NAME = "Game";
+    public static final String THREADS_OPT = "th";
+    public static final String THREADS_OPT_LONG = "threads";
+    public static final String THREADS_OPT_NAME = "Threads";
+    public static final String WORKERS_OPT = "w";
+    public static final String WORKERS_OPT_LONG = "workers";
+    public static final String WORKERS_OPT_NAME = "Workers";
+    public static final String COMPARE_OPT = "cmp";
+    public static final String COMPARE_OPT_LONG = "compare";
+    public static final String COMPARE_OPT_NAME = "Variant";
+    public static final String PRECISION_OPT = "pr";
+    public static final String PRECISION_OPT_LONG = "precision";
+    public static final String PRECISION_OPT_NAME = "Fraction";
+    public static final String RULES_OPT = "ru";
+    public static final String RULES_OPT_LONG = "rules";
+    public static final String RULES_OPT_NAME = "Rules";
+    public static final String RECORDS_OPT = "rec";
+    public static final String RECORDS_OPT_LONG = "records";
+    public static final String RECORDS_OPT_NAME = "File";
+    public static final String DECK_OPT = "dk";
+    public static final String DECK_OPT_LONG = "deck";
+    public static final String DECK_OPT_NAME = "File";
+    public static final String CACHE_OPT = "cd";
+    public static final String CACHE_OPT_LONG = "cache";
+    public static final String CACHE_OPT_NAME = "Directory";
+    public static final String CACHE_SIZE_OPT = "cs";
+    public static final String CACHE_SIZE_OPT_LONG = "cache-size";
+    public static final String CACHE_SIZE_OPT_NAME = "MB";
+    public static final String DAEMON_OPT = "d";
+    public static final String DAEMON_OPT_LONG = "daemon";
+    public static final String DAEMON_OPT_NAME = "Daemon";
+    public static final String DAEMON_PORT_OPT = "dp";
+    public static final String DAEMON_PORT_OPT_LONG = "daemon-port";
+    public static final String DAEMON_PORT_OPT_NAME = "Port";
+    public static final String HTTP_PORT_OPT = "hp";
+    public static final String HTTP_PORT_OPT_LONG = "http-port";
+    public static final String HTTP_PORT_OPT_NAME = "Port";
+    public static final String ENGINE_OPT = "e";
+    public static final String ENGINE_OPT_LONG = "engine";
+    public static final String ENGINE_OPT_NAME = "Engine";
+    public static final String ENGINE_TABLE_OPT = "ec";
+    public static final String ENGINE_TABLE_OPT_LONG = "engine-calibration";
+    public static final String ENGINE_TABLE_OPT_NAME = "File";
+    // engine option value that lets the cost model pick
+    public static final String AUTO_ENGINE = "auto";
     public static final String HELP_OPT = "h";
     public static final String HELP_OPT_LONG = "help";
     public static final String HELP_OPT_NAME = "Help";
@@ -34,9 +116,22 @@ public final class GameOfWar {
     public static final Integer MIN_SUITS = 1;
     public static final Integer MAX_RANKS = 10000;
     public static final Integer MIN_RANKS = 1;
-    // according to wikipedia this is actually the max players :)
-    public static final Integer MAX_PLAYERS = 600;
+    // according to wikipedia 600 is actually the max players :)
+    // but big rounds are played in parallel so we allow far more
+    public static final Integer MAX_PLAYERS = 50000;
     public static final Integer MIN_PLAYERS = 2;
+    public static final Integer MAX_ENTRANTS = 10000000;
+    public static final Integer MIN_ENTRANTS = 2;
+    public static final Long MIN_GAMES = 1L;
+    public static final Integer MIN_THREADS = 1;
+    public static final Integer MAX_THREADS = 1024;
+    public static final Long DEFAULT_CACHE_SIZE_MB = 256L;
+    public static final Long MIN_CACHE_SIZE_MB = 1L;
+    public static final Integer MIN_PORT = 0;
+    public static final Integer MAX_PORT = 65535;
+    // results kept in memory by the result cache
+    public static final int CACHE_MEMORY_ENTRIES = 100000;
+    private static final long BYTES_PER_MB = 1024 * 1024;
 
     /**
      * Private constructor
@@ -49,104 +144,593 @@ public final class GameOfWar {
      */
     public static void main(final String[] args) {
 
-        // set up options parsing
-        Options options = new Options();
-
-        Option suitsOption = Option.builder(SUITS_OPT)
-                .argName(SUITS_OPT_NAME)
-                .longOpt(SUITS_OPT_LONG)
-                .hasArg()
-                .desc("Number of suits to use for the deck of cards. Minimum value is "
-                        + MIN_SUITS + ", max value is " + MAX_SUITS)
-                .build();
-
-        Option ranksOption = Option.builder(RANKS_OPT)
-                .argName(RANKS_OPT_NAME)
-                .longOpt(RANKS_OPT_LONG)
-                .hasArg()
-                .desc("Number of ranks to use for the deck of cards. Minimum value is "
-                        + MIN_RANKS + ", max value is " + MAX_RANKS)
-                .build();
-
-        Option playersOption = Option.builder(PLAYERS_OPT)
-                .argName(PLAYERS_OPT_NAME)
-                .longOpt(PLAYERS_OPT_LONG)
-                .hasArg()
-                .desc("Number of players to use for the game. Minimum value is "
-                        + MIN_PLAYERS + ", max is " + MAX_PLAYERS)
-                .build();
-
-        Option helpOption = Option.builder(HELP_OPT)
-                .argName(HELP_OPT_NAME)
-                .longOpt(HELP_OPT_LONG)
-                .desc("Print this message.")
-                .build();
-
-        options.addOption(suitsOption);
-        options.addOption(ranksOption);
-        options.addOption(playersOption);
-        options.addOption(helpOption);
-
-        CommandLineParser parser = new DefaultParser();
-
         Integer numSuits = DEFAULT_NUM_SUITS;
         int numRanks = DEFAULT_NUM_RANKS;
         int numPlayers = DEFAULT_NUM_PLAYERS;
+        CardStorage storage = CardStorage.HEAP;
+        Long seed = null;
+        Path checkpointFile = null;
+        long checkpointInterval = War.DEFAULT_CHECKPOINT_INTERVAL;
+        Path resumeFile = null;
+        int parallelThreshold = War.DEFAULT_PARALLEL_ROUND_THRESHOLD;
+        Integer numEntrants = null;
+        Long numGames = null;
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        Integer numWorkers = null;
+        Rules rules = Rules.STANDARD;
+        GameConfig compareVariant = null;
+        double precision = PairedComparison.DEFAULT_PRECISION;
+        Path cacheDirectory = null;
+        Path recordsFile = null;
+        Path deckFile = null;
+        long cacheSizeMB = DEFAULT_CACHE_SIZE_MB;
+        boolean daemon = false;
+        Integer daemonPort = null;
+        Integer httpPort = null;
+        Engine forcedEngine = null;
+        Path engineTable = null;
 
-        try {
-            CommandLine cmd = parser.parse(options, args);
-
-            if (cmd.hasOption(HELP_OPT)) {
-                HelpFormatter formatter = new HelpFormatter();
-                System.out.println("");
-                formatter.printHelp(PROGRAM_CMD, options);
-                System.out.println("");
+        // the usual options are read without commons-cli so that a small game starts quickly, only help and
+        // the less common ways of writing options need the full parser
+        Map<String, String> opts = FastOptionParser.parse(args);
+        if (opts == null) {
+            opts = CliOptionParser.parse(args);
+            if (opts == null) {
+                // help was printed
                 return;
             }
+        }
 
-            if (cmd.hasOption(SUITS_OPT)) {
-                numSuits = Integer.parseInt(cmd.getOptionValue(SUITS_OPT));
+        try {
+            if (opts.containsKey(SUITS_OPT)) {
+                numSuits = Integer.parseInt(opts.get(SUITS_OPT));
 
                 if (numSuits < MIN_SUITS || numSuits > MAX_SUITS) {
                     displayParamError(SUITS_OPT_NAME, MIN_SUITS, MAX_SUITS);
                     return;
                 }
             }
-            if (cmd.hasOption(RANKS_OPT)) {
-                numRanks = Integer.parseInt(cmd.getOptionValue(RANKS_OPT));
+            if (opts.containsKey(RANKS_OPT)) {
+                numRanks = Integer.parseInt(opts.get(RANKS_OPT));
 
                 if (numRanks < MIN_RANKS || numRanks > MAX_RANKS) {
                     displayParamError(RANKS_OPT_NAME, MIN_RANKS, MAX_RANKS);
                     return;
                 }
             }
-            if (cmd.hasOption(PLAYERS_OPT)) {
-                numPlayers = Integer.parseInt(cmd.getOptionValue(PLAYERS_OPT));
+            if (opts.containsKey(PLAYERS_OPT)) {
+                numPlayers = Integer.parseInt(opts.get(PLAYERS_OPT));
 
                 if (numPlayers < MIN_PLAYERS || numPlayers > MAX_PLAYERS) {
                     displayParamError(PLAYERS_OPT_NAME, MIN_PLAYERS, MAX_PLAYERS);
                     return;
                 }
             }
+            if (opts.containsKey(RULES_OPT)) {
+                rules = Rules.STANDARD.with(opts.get(RULES_OPT));
+            }
+            if (opts.containsKey(STORAGE_OPT)) {
+                storage = CardStorage.fromOptionName(opts.get(STORAGE_OPT));
+            }
+            if (opts.containsKey(SEED_OPT)) {
+                seed = Long.parseLong(opts.get(SEED_OPT));
+            }
+            if (opts.containsKey(CHECKPOINT_OPT)) {
+                checkpointFile = Paths.get(opts.get(CHECKPOINT_OPT));
+            }
+            if (opts.containsKey(CHECKPOINT_INTERVAL_OPT)) {
+                checkpointInterval = Long.parseLong(opts.get(CHECKPOINT_INTERVAL_OPT));
+            }
+            if (opts.containsKey(RESUME_OPT)) {
+                resumeFile = Paths.get(opts.get(RESUME_OPT));
+            }
+            if (opts.containsKey(PARALLEL_THRESHOLD_OPT)) {
+                parallelThreshold = Integer.parseInt(opts.get(PARALLEL_THRESHOLD_OPT));
+            }
+            if (opts.containsKey(TOURNAMENT_OPT)) {
+                numEntrants = Integer.parseInt(opts.get(TOURNAMENT_OPT));
+
+                if (numEntrants < MIN_ENTRANTS || numEntrants > MAX_ENTRANTS) {
+                    displayParamError(TOURNAMENT_OPT_NAME, MIN_ENTRANTS, MAX_ENTRANTS);
+                    return;
+                }
+                if (!opts.containsKey(PLAYERS_OPT)) {
+                    // seat as many players as the deck allows
+                    numPlayers = Math.min(MAX_PLAYERS, numSuits * numRanks);
+                }
+            }
+            if (opts.containsKey(GAMES_OPT)) {
+                numGames = Long.parseLong(opts.get(GAMES_OPT));
+
+                if (numGames < MIN_GAMES) {
+                    displayParamError(GAMES_OPT_NAME, MIN_GAMES, Long.MAX_VALUE);
+                    return;
+                }
+            }
+            if (opts.containsKey(GAME_OPT)) {
+                // one game of the batch the seed is the master seed of, played on its own
+                final long game = Long.parseLong(opts.get(GAME_OPT));
+                if (seed == null || numGames != null || game < 0) {
+                    System.out.println("Invalid input detected: a game of a batch is played with the batch's seed "
+                            + "and without a number of games");
+                    return;
+                }
+                seed = BatchRunner.gameSeed(seed, game);
+            }
+            if (opts.containsKey(THREADS_OPT)) {
+                numThreads = Integer.parseInt(opts.get(THREADS_OPT));
+
+                if (numThreads < MIN_THREADS || numThreads > MAX_THREADS) {
+                    displayParamError(THREADS_OPT_NAME, MIN_THREADS, MAX_THREADS);
+                    return;
+                }
+            }
+            if (opts.containsKey(WORKERS_OPT)) {
+                numWorkers = Integer.parseInt(opts.get(WORKERS_OPT));
+
+                if (numWorkers < MIN_THREADS || numWorkers > MAX_THREADS) {
+                    displayParamError(WORKERS_OPT_NAME, MIN_THREADS, MAX_THREADS);
+                    return;
+                }
+            }
+            if (opts.containsKey(COMPARE_OPT)) {
+                compareVariant = variant(new GameConfig(numSuits, numRanks, numPlayers, rules),
+                        opts.get(COMPARE_OPT));
+            }
+            if (opts.containsKey(PRECISION_OPT)) {
+                precision = Double.parseDouble(opts.get(PRECISION_OPT));
+
+                if (!(precision > 0 && precision < 1)) {
+                    displayParamError(PRECISION_OPT_NAME, 0, 1);
+                    return;
+                }
+            }
+            if (opts.containsKey(RECORDS_OPT)) {
+                recordsFile = Paths.get(opts.get(RECORDS_OPT));
+            }
+            if (opts.containsKey(DECK_OPT)) {
+                deckFile = Paths.get(opts.get(DECK_OPT));
+            }
+            if (opts.containsKey(CACHE_OPT)) {
+                cacheDirectory = Paths.get(opts.get(CACHE_OPT));
+            }
+            if (opts.containsKey(CACHE_SIZE_OPT)) {
+                cacheSizeMB = Long.parseLong(opts.get(CACHE_SIZE_OPT));
+
+                if (cacheSizeMB < MIN_CACHE_SIZE_MB) {
+                    displayParamError(CACHE_SIZE_OPT_NAME, MIN_CACHE_SIZE_MB, Long.MAX_VALUE / BYTES_PER_MB);
+                    return;
+                }
+            }
+            if (opts.containsKey(DAEMON_OPT)) {
+                daemon = true;
+            }
+            if (opts.containsKey(DAEMON_PORT_OPT)) {
+                daemonPort = Integer.parseInt(opts.get(DAEMON_PORT_OPT));
+
+                if (daemonPort < MIN_PORT || daemonPort > MAX_PORT) {
+                    displayParamError(DAEMON_PORT_OPT_NAME, MIN_PORT, MAX_PORT);
+                    return;
+                }
+            }
+            if (opts.containsKey(HTTP_PORT_OPT)) {
+                httpPort = Integer.parseInt(opts.get(HTTP_PORT_OPT));
+
+                if (httpPort < MIN_PORT || httpPort > MAX_PORT) {
+                    displayParamError(HTTP_PORT_OPT_NAME, MIN_PORT, MAX_PORT);
+                    return;
+                }
+            }
+            if (opts.containsKey(ENGINE_OPT) && !AUTO_ENGINE.equalsIgnoreCase(opts.get(ENGINE_OPT))) {
+                forcedEngine = Engine.fromOptionName(opts.get(ENGINE_OPT));
+            }
+            if (opts.containsKey(ENGINE_TABLE_OPT)) {
+                engineTable = Paths.get(opts.get(ENGINE_TABLE_OPT));
+            }
 
-        } catch (ParseException pe) {
-            System.out.println("Error parsing options.  Use '-h' or '-help' for a description of the arguments.");
         } catch (NumberFormatException nfe) {
             System.out.println("Invalid integer argument found.");
             return;
+        } catch (InvalidParameterException ipe) {
+            System.out.println("Invalid input detected: " + ipe.getMessage());
+            return;
         }
 
-        final War war = new War();
+        if (httpPort != null) {
+            runServer(httpPort, numThreads, storage);
+            return;
+        }
 
-        System.out.println("\n" + numPlayers + " players playing war with "
-                + numSuits + " suits and " + numRanks + " ranks");
+        if (daemon || daemonPort != null) {
+            serveDaemon(daemonPort, numThreads, storage, cacheDirectory, cacheSizeMB);
+            return;
+        }
+
+        if (numEntrants != null || numGames != null || compareVariant != null) {
+            if (deckFile != null) {
+                System.out.println("Invalid input detected: a deck file can only be played as a single game");
+                return;
+            }
+            if (seed == null) {
+                seed = Seeds.fresh();
+            }
+            try {
+                if (compareVariant != null) {
+                    runComparison(new GameConfig(numSuits, numRanks, numPlayers, rules), compareVariant, numGames,
+                            precision, numThreads, seed, storage);
+                } else if (numEntrants != null) {
+                    runTournament(numEntrants, numSuits, numRanks, numPlayers, seed, storage, rules);
+                } else if (numWorkers != null) {
+                    runSweep(numGames, numWorkers, new GameConfig(numSuits, numRanks, numPlayers, rules), seed,
+                            storage);
+                } else {
+                    ResultCache cache = null;
+                    if (cacheDirectory != null) {
+                        cache = new ResultCache(CACHE_MEMORY_ENTRIES, cacheDirectory, cacheSizeMB * BYTES_PER_MB);
+                    }
+                    final GameConfig config = new GameConfig(numSuits, numRanks, numPlayers, rules);
+                    final BatchRunner batch = new BatchRunner(config, seed, storage);
+                    batch.setEngine(chooseEngine(config, forcedEngine, engineTable));
+
+                    System.out.println("\n" + numGames + " games of war with " + config + " on " + numThreads
+                            + " threads, seed " + seed);
+                    runBatch(batch, numGames, numThreads, cache, recordsFile);
+                }
+            } catch (InvalidParameterException ipe) {
+                System.out.println("Invalid input detected: " + ipe.getMessage());
+            } catch (UncheckedIOException uioe) {
+                System.out.println(uioe.getMessage() + ": " + uioe.getCause().getMessage());
+            } catch (IllegalStateException ise) {
+                System.out.println(ise.getMessage());
+            }
+            return;
+        }
+
+        final War war = War.forRules(storage, rules);
+        // only games played on War itself can be checkpointed or have their parallel threshold set
+        final boolean playOnWar = resumeFile != null || checkpointFile != null || deckFile != null
+                || opts.containsKey(PARALLEL_THRESHOLD_OPT);
 
         try {
-            war.play(numSuits, numRanks, numPlayers);
+            war.setParallelRoundThreshold(parallelThreshold);
+
+            if (resumeFile != null) {
+                System.out.println("\nResuming the game saved in " + resumeFile);
+                resume(war, opts.containsKey(RULES_OPT), storage, resumeFile, checkpointInterval, parallelThreshold);
+                return;
+            }
+
+            if (seed != null) {
+                war.setSeed(seed);
+            }
+            if (checkpointFile != null) {
+                war.enableCheckpoints(checkpointFile, checkpointInterval);
+            }
+            if (deckFile != null) {
+                // the file decides how many suits and ranks there are
+                final MappedDeck deck = new MappedDeck(deckFile);
+                war.setDeck(deck);
+                numSuits = deck.getNumberOfSuits();
+                numRanks = deck.getNumberOfRanks();
+            }
+
+            System.out.println("\n" + numPlayers + " players playing war with "
+                    + numSuits + " suits and " + numRanks + " ranks");
+
+            if (playOnWar) {
+                war.play(numSuits, numRanks, numPlayers);
+                return;
+            }
+
+            if (seed == null) {
+                seed = Seeds.fresh();
+            }
+            final GameConfig config = new GameConfig(numSuits, numRanks, numPlayers, rules);
+            war.printResult(chooseEngine(config, forcedEngine, engineTable).play(config, seed, storage));
 
         } catch (InvalidParameterException ipe) {
             System.out.println("Invalid input detected: " + ipe.getMessage());
+        } catch (UncheckedIOException uioe) {
+            System.out.println(uioe.getMessage() + ": " + uioe.getCause().getMessage());
+        } catch (IllegalStateException ise) {
+            System.out.println(ise.getMessage());
+        }
+    }
+
+    /**
+     * Play a game saved in a checkpoint file to the end, by the rules it was saved with. Rules given on the
+     * command line have to be the same.
+     * @param war - playing by the rules from the command line
+     * @param rulesGiven - whether the command line gave rules
+     * @param storage
+     * @param file
+     * @param checkpointInterval
+     * @param parallelThreshold
+     */
+    private static void resume(final War war, final boolean rulesGiven, final CardStorage storage, final Path file,
+                               final long checkpointInterval, final int parallelThreshold) {
+        War resumed = war;
+        if (!rulesGiven) {
+            resumed = War.forCheckpoint(storage, file);
+            resumed.setParallelRoundThreshold(parallelThreshold);
+        }
+        resumed.enableCheckpoints(file, checkpointInterval);
+        resumed.resume(file);
+    }
+
+    /**
+     * Pick the engine to play games with this config. Only a forced engine is printed, so the output of a game
+     * doesn't change with the engine the cost model picks.
+     * @param config
+     * @param forcedEngine - null to let the cost model pick
+     * @param engineTable - calibration table for the cost model, null for the one in the jar
+     * @return
+     */
+    private static Engine chooseEngine(final GameConfig config, final Engine forcedEngine, final Path engineTable) {
+        if (forcedEngine != null) {
+            System.out.println("\nPlaying with the " + forcedEngine.getOptionName() + " engine, as asked");
+            return forcedEngine;
+        }
+
+        EngineSelector selector;
+        if (engineTable == null) {
+            selector = EngineSelector.defaults();
+        } else {
+            selector = EngineSelector.load(engineTable);
+        }
+        return selector.select(config);
+    }
+
+    /**
+     * Run the daemon until its requests end, with a result cache if a directory is given
+     * @param port - null to read stdin
+     * @param threads
+     * @param storage
+     * @param cacheDirectory - may be null
+     * @param cacheSizeMB
+     */
+    private static void serveDaemon(final Integer port, final int threads, final CardStorage storage,
+                                    final Path cacheDirectory, final long cacheSizeMB) {
+        ResultCache cache = null;
+        try {
+            if (cacheDirectory != null) {
+                cache = new ResultCache(CACHE_MEMORY_ENTRIES, cacheDirectory, cacheSizeMB * BYTES_PER_MB);
+            }
+            runDaemon(port, threads, storage, cache);
+        } catch (IOException ioe) {
+            // stdout or the port is gone, there is nobody left to tell
+            System.err.println("Daemon stopped: " + ioe.getMessage());
+        } catch (UncheckedIOException uioe) {
+            System.out.println(uioe.getMessage() + ": " + uioe.getCause().getMessage());
+        } catch (IllegalStateException ise) {
+            System.out.println(ise.getMessage());
+        } finally {
+            if (cache != null) {
+                cache.close();
+            }
+        }
+    }
+
+    /**
+     * Start serving games over HTTP, the server's threads keep the JVM up once main returns
+     * @param port
+     * @param threads - engine threads
+     * @param storage
+     */
+    private static void runServer(final int port, final int threads, final CardStorage storage) {
+        final SimulationServer server = new SimulationServer(threads, storage);
+        try {
+            System.out.println("\nServing games on http://" + hostAndPort(server.start(port)) + "/ with "
+                    + threads + " engine threads");
+        } catch (IOException ioe) {
+            server.stop();
+            System.out.println("Unable to serve on port " + port + ": " + ioe.getMessage());
+        }
+    }
+
+    /**
+     * @param address
+     * @return the numeric host and the port of an address
+     */
+    private static String hostAndPort(final InetSocketAddress address) {
+        return address.getAddress().getHostAddress() + ":" + address.getPort();
+    }
+
+    /**
+     * Answer game requests from stdin, or from connections to a port on the loopback address, until they end
+     * @param port - null to read stdin
+     * @param threads
+     * @param storage
+     * @param cache - may be null
+     * @throws IOException
+     */
+    private static void runDaemon(final Integer port, final int threads, final CardStorage storage,
+                                  final ResultCache cache) throws IOException {
+        final SimulationDaemon simulationDaemon = new SimulationDaemon(threads, storage);
+        simulationDaemon.setCache(cache);
+
+        try {
+            if (port == null) {
+                // nothing else may be printed to stdout, it carries the answers
+                simulationDaemon.serve(new FileInputStream(FileDescriptor.in).getChannel(),
+                        new FileOutputStream(FileDescriptor.out).getChannel());
+                return;
+            }
+
+            try (ServerSocketChannel server = SimulationDaemon.bindLoopback(port)) {
+                System.out.println("\nAnswering game requests on " + server.getLocalAddress() + " with "
+                        + threads + " threads");
+                simulationDaemon.listen(server);
+            }
+        } finally {
+            simulationDaemon.shutdown();
+        }
+    }
+
+    /**
+     * Play a tournament with a table running on every core and print the champion
+     * @param entrants
+     * @param numSuits
+     * @param numRanks
+     * @param tableSize
+     * @param seed
+     * @param storage
+     * @param rules
+     */
+    private static void runTournament(final int entrants, final int numSuits, final int numRanks,
+                                      final int tableSize, final long seed, final CardStorage storage,
+                                      final Rules rules) {
+        final Tournament tournament = new Tournament(numSuits, numRanks, tableSize, seed, storage);
+        tournament.setRules(rules);
+
+        System.out.println("\n" + entrants + " entrants playing a war tournament with " + numSuits + " suits and "
+                + numRanks + " ranks, up to " + tableSize + " players per table");
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            final TournamentResult result = tournament.run(entrants, executor);
+
+            System.out.println("\nThe champion is entrant " + result.getChampion());
+            System.out.println("\n" + result.getTables() + " tables played " + result.getRounds()
+                    + " rounds over " + result.getStages() + " stages");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Play a batch of games and print statistics about them
+     * @param batch
+     * @param games
+     * @param threads
+     * @param cache - may be null
+     * @param records - the file to write a record of every game to, may be null
+     */
+    private static void runBatch(final BatchRunner batch, final long games, final int threads,
+                                 final ResultCache cache, final Path records) {
+        if (cache == null && records == null) {
+            batch.run(games, threads).print();
+            System.out.print("\n" + batch.getLoad().summary());
+            return;
+        }
+
+        ColumnarResultWriter writer = null;
+        try {
+            batch.setCache(cache);
+            if (records != null) {
+                writer = new ColumnarResultWriter(records);
+                batch.setOutput(writer);
+            }
+            batch.run(games, threads).print();
+            System.out.print("\n" + batch.getLoad().summary());
+            if (cache != null) {
+                System.out.println("\nResult cache: " + cache.getHits() + " hits, " + cache.getMisses()
+                        + " misses");
+            }
+        } finally {
+            if (writer != null) {
+                writer.close();
+                System.out.println("\n" + writer.getRows() + " game records, " + writer.getBytes()
+                        + " bytes written to " + records);
+            }
+            if (cache != null) {
+                cache.close();
+            }
+        }
+    }
+
+    /**
+     * Play a batch of games on worker JVMs and print statistics about them
+     * @param games
+     * @param workers
+     * @param config
+     * @param seed
+     * @param storage
+     */
+    private static void runSweep(final long games, final int workers, final GameConfig config, final long seed,
+                                 final CardStorage storage) {
+        final ShardedSweep sweep = new ShardedSweep(workers, ShardedSweep.defaultWorkerCommand(storage));
+
+        System.out.println("\n" + games + " games of war with " + config + " on " + workers
+                + " worker JVMs, seed " + seed);
+
+        sweep.run(Collections.singletonList(config), games, seed).get(0).print();
+        if (sweep.getLostShards() > 0) {
+            System.out.println("\n" + sweep.getLostShards() + " shards were played again after their worker died");
+        }
+    }
+
+    /**
+     * Play two variants on the same shuffles until the difference between them is known precisely enough
+     * @param configA
+     * @param configB
+     * @param maxGames - null for the default
+     * @param precision
+     * @param threads
+     * @param seed
+     * @param storage
+     */
+    private static void runComparison(final GameConfig configA, final GameConfig configB, final Long maxGames,
+                                      final double precision, final int threads, final long seed,
+                                      final CardStorage storage) {
+        final PairedComparison comparison = new PairedComparison(configA, configB, seed, storage);
+        comparison.setPrecision(precision);
+        if (maxGames != null) {
+            comparison.setMaxGames(maxGames);
+        }
+
+        System.out.println("\nA: " + configA + "\nB: " + configB + "\nplayed on the same shuffles on " + threads
+                + " threads, seed " + seed);
+        comparison.run(threads).print(PairedComparison.Z_95);
+    }
+
+    /**
+     * Apply name=value overrides of suits, ranks, players and rules, separated by commas, to a config
+     * @param base
+     * @param overrides - for example "players=5" or "discards=3"
+     * @return
+     */
+    static GameConfig variant(final GameConfig base, final String overrides) {
+        int suits = base.getNumberOfSuits();
+        int ranks = base.getNumberOfRanks();
+        int players = base.getNumberOfPlayers();
+        Rules rules = base.getRules();
+
+        for (String override : overrides.split(",")) {
+            final String[] parts = override.split("=");
+            if (parts.length != 2) {
+                throw new InvalidParameterException("expected name=value to compare against but found '"
+                        + override + "'");
+            }
+            final String name = parts[0].trim();
+            final String value = parts[1].trim();
+
+            if (SUITS_OPT_LONG.equals(name)) {
+                suits = checkBounds(name, Integer.parseInt(value), MIN_SUITS, MAX_SUITS);
+            } else if (RANKS_OPT_LONG.equals(name)) {
+                ranks = checkBounds(name, Integer.parseInt(value), MIN_RANKS, MAX_RANKS);
+            } else if (PLAYERS_OPT_LONG.equals(name)) {
+                players = checkBounds(name, Integer.parseInt(value), MIN_PLAYERS, MAX_PLAYERS);
+            } else {
+                // anything else is a house rule
+                rules = rules.with(name, value);
+            }
+        }
+        return new GameConfig(suits, ranks, players, rules);
+    }
+
+    /**
+     * @param name
+     * @param value
+     * @param min
+     * @param max
+     * @return the value, if it is within bounds
+     */
+    private static int checkBounds(final String name, final int value, final int min, final int max) {
+        if (value < min || value > max) {
+            throw new InvalidParameterException(name + " must be between " + min + " and " + max);
         }
+        return value;
     }
 
     /**
@@ -155,7 +739,7 @@ public final class GameOfWar {
      * @param min
      * @param max
      */
-    private static void displayParamError(final String name, final Integer min, final Integer max) {
+    private static void displayParamError(final String name, final Number min, final Number max) {
         System.out.println("");
         System.out.println(name + " parameter out of bounds. Minimum "
                 + min + ", max " + max);
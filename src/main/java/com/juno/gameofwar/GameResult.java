@@ -0,0 +1,77 @@
+package com.juno.gameofwar;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of one full game of war
+ */
+public class GameResult {
+
+    // the players with the high score, in seat order
+    private final List<Player> winners;
+    // the score of the winners
+    private final int highScore;
+    // the number of rounds played, a war and all the rounds it took to settle it count as one round
+    private final long rounds;
+    // the number of rounds that ended in a tie and went to war
+    private final long wars;
+    // the most war rounds needed to settle one war
+    private final int maxWarDepth;
+
+    /**
+     * @param winners
+     * @param highScore
+     * @param rounds
+     * @param wars
+     * @param maxWarDepth
+     */
+    public GameResult(final List<Player> winners, final int highScore, final long rounds, final long wars,
+                      final int maxWarDepth) {
+        this.winners = Collections.unmodifiableList(winners);
+        this.highScore = highScore;
+        this.rounds = rounds;
+        this.wars = wars;
+        this.maxWarDepth = maxWarDepth;
+    }
+
+    /**
+     * Get the players with the high score, in seat order
+     * @return
+     */
+    public List<Player> getWinners() {
+        return winners;
+    }
+
+    /**
+     * Get the winning score
+     * @return
+     */
+    public int getHighScore() {
+        return highScore;
+    }
+
+    /**
+     * Get the number of rounds the game took
+     * @return
+     */
+    public long getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Get the number of rounds that went to war
+     * @return
+     */
+    public long getWars() {
+        return wars;
+    }
+
+    /**
+     * Get the most war rounds any one war needed, zero if there were no wars
+     * @return
+     */
+    public int getMaxWarDepth() {
+        return maxWarDepth;
+    }
+}
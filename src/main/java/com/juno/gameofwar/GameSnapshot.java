@@ -0,0 +1,429 @@
+package com.juno.gameofwar;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A checkpoint file holding the full state of a game in progress so it can be resumed after the process dies.
+ *
+ * Won cards never go back into a hand, so the hands only ever shrink from the front. That means the file can
+ * hold the hands exactly as they were dealt (written once, when the game starts) and a checkpoint only has to
+ * record how many cards each player has left plus the scores. Checkpoints go into one of two small memory mapped
+ * slots, alternating between them. Each slot carries a sequence number and a checksum so a process that dies
+ * part way through a checkpoint leaves the previous slot intact.
+ *
+ * File layout:
+ *   header   - magic, version, seed, suits, ranks, rules code, number of players
+ *   players  - id and number of cards dealt, per player
+ *   cards    - suit and rank of every dealt card, player by player in hand order
+ *   slot x 2 - sequence, rounds played, wars, longest war, cards left and score per player, checksum
+ */
+public final class GameSnapshot implements Closeable {
+
+    private static final int MAGIC = 0x57415253;
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 32;
+    private static final int PLAYER_BYTES = 8;
+    private static final int CARD_BYTES = 8;
+    // sequence, rounds, wars and longest war at the front of a slot, checksum at the back
+    private static final int SLOT_OVERHEAD_BYTES = 40;
+    private static final int SLOT_PLAYER_BYTES = 8;
+    private static final int SLOT_ROUNDS_OFFSET = 8;
+    private static final int SLOT_WARS_OFFSET = 16;
+    private static final int SLOT_MAX_WAR_DEPTH_OFFSET = 24;
+    private static final int SLOT_PLAYERS_OFFSET = 32;
+    // buffer size (1MB) used when streaming the dealt cards in and out of the file
+    private static final int IO_BUFFER_BYTES = 1048576;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer slots;
+    private final int slotBytes;
+
+    private final long seed;
+    private final int numberOfSuits;
+    private final int numberOfRanks;
+    private final Rules rules;
+    private final int[] playerIds;
+    private final int[] dealtCards;
+    private final long cardsOffset;
+
+    // state from the most recent checkpoint
+    private long sequence;
+    private long rounds;
+    private long wars;
+    private long maxWarDepth;
+    private final int[] cardsLeft;
+    private final int[] scores;
+
+    /**
+     * Use create or open
+     */
+    private GameSnapshot(final FileChannel channel, final long seed, final int numberOfSuits,
+                         final int numberOfRanks, final Rules rules, final int[] playerIds, final int[] dealtCards)
+            throws IOException {
+        this.channel = channel;
+        this.seed = seed;
+        this.numberOfSuits = numberOfSuits;
+        this.numberOfRanks = numberOfRanks;
+        this.rules = rules;
+        this.playerIds = playerIds;
+        this.dealtCards = dealtCards;
+        this.cardsLeft = dealtCards.clone();
+        this.scores = new int[playerIds.length];
+        this.cardsOffset = HEADER_BYTES + (long) PLAYER_BYTES * playerIds.length;
+
+        long totalCards = 0;
+        for (int dealt : dealtCards) {
+            totalCards += dealt;
+        }
+        this.slotBytes = SLOT_OVERHEAD_BYTES + SLOT_PLAYER_BYTES * playerIds.length;
+        this.slots = channel.map(FileChannel.MapMode.READ_WRITE, cardsOffset + CARD_BYTES * totalCards, 2L * slotBytes);
+    }
+
+    /**
+     * Start a checkpoint file for a game whose cards have just been dealt. Any existing file is replaced.
+     *
+     * @param file
+     * @param seed - the seed the deck was shuffled with
+     * @param numberOfSuits
+     * @param numberOfRanks
+     * @param rules - the rules the game is played by
+     * @param players - the players in seat order, holding their dealt hands
+     * @return
+     */
+    public static GameSnapshot create(final Path file, final long seed, final int numberOfSuits,
+                                      final int numberOfRanks, final Rules rules, final List<Player> players) {
+        final int[] ids = new int[players.size()];
+        final int[] dealt = new int[players.size()];
+        for (int i = 0; i < players.size(); i++) {
+            ids[i] = players.get(i).getId();
+            dealt[i] = players.get(i).numberOfCards();
+        }
+
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+            // header and player table
+            ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_BYTES);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(seed)
+                    .putInt(numberOfSuits).putInt(numberOfRanks).putInt(rules.getCode()).putInt(players.size());
+            for (int i = 0; i < players.size(); i++) {
+                flushIfFull(channel, buffer, PLAYER_BYTES);
+                buffer.putInt(ids[i]).putInt(dealt[i]);
+            }
+
+            // the dealt hands, streamed through the buffer
+            for (Player player : players) {
+                CardStore hand = player.getHand();
+                for (int c = 0; c < hand.size(); c++) {
+                    flushIfFull(channel, buffer, CARD_BYTES);
+                    buffer.putInt(hand.suitAt(c)).putInt(hand.rankAt(c));
+                }
+            }
+            buffer.flip();
+            writeFully(channel, buffer);
+
+            GameSnapshot snapshot = new GameSnapshot(channel, seed, numberOfSuits, numberOfRanks, rules, ids, dealt);
+            // slot zero holds the state before the first round
+            snapshot.writeSlot();
+            return snapshot;
+
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to create checkpoint " + file, ioe);
+        }
+    }
+
+    /**
+     * Open an existing checkpoint file and load its most recent valid checkpoint
+     * @param file
+     * @return
+     */
+    public static GameSnapshot open(final Path file) {
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(channel, header, 0);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                channel.close();
+                throw new InvalidParameterException(file + " is not a game checkpoint");
+            }
+            final long seed = header.getLong();
+            final int suits = header.getInt();
+            final int ranks = header.getInt();
+            final int rulesCode = header.getInt();
+            final int numberOfPlayers = header.getInt();
+
+            ByteBuffer table = ByteBuffer.allocate(PLAYER_BYTES * numberOfPlayers);
+            readFully(channel, table, HEADER_BYTES);
+            final int[] ids = new int[numberOfPlayers];
+            final int[] dealt = new int[numberOfPlayers];
+            for (int i = 0; i < numberOfPlayers; i++) {
+                ids[i] = table.getInt();
+                dealt[i] = table.getInt();
+            }
+
+            GameSnapshot snapshot = new GameSnapshot(channel, seed, suits, ranks, Rules.fromCode(rulesCode), ids,
+                    dealt);
+            if (!snapshot.readLatestSlot()) {
+                snapshot.close();
+                throw new InvalidParameterException(file + " does not hold a complete checkpoint");
+            }
+            return snapshot;
+
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to open checkpoint " + file, ioe);
+        }
+    }
+
+    /**
+     * Record the state of the game after a round
+     * @param roundsPlayed
+     * @param warsPlayed
+     * @param longestWar - the most war rounds a war has needed so far
+     * @param players - the same players, in the same order, the snapshot was created with
+     * @param playerScores - the score of every player that has won a round
+     */
+    public void update(final long roundsPlayed, final long warsPlayed, final int longestWar,
+                       final List<Player> players, final Map<Player, Integer> playerScores) {
+        rounds = roundsPlayed;
+        wars = warsPlayed;
+        maxWarDepth = longestWar;
+        for (int i = 0; i < players.size(); i++) {
+            final Player player = players.get(i);
+            cardsLeft[i] = player.numberOfCards();
+            final Integer score = playerScores.get(player);
+            if (score == null) {
+                scores[i] = 0;
+            } else {
+                scores[i] = score;
+            }
+        }
+        sequence++;
+        writeSlot();
+    }
+
+    /**
+     * Rebuild the players as they were at the latest checkpoint
+     * @param storage - where to keep the rebuilt hands
+     * @return the players in seat order
+     */
+    public List<Player> restorePlayers(final CardStorage storage) {
+        List<Player> players = new ArrayList<>(playerIds.length);
+        ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_BYTES);
+        buffer.limit(0);
+        long position = cardsOffset;
+
+        try {
+            for (int i = 0; i < playerIds.length; i++) {
+                Player player = new Player(playerIds[i], storage.newStore(cardsLeft[i]));
+                // skip the cards that were already played
+                position += (long) CARD_BYTES * (dealtCards[i] - cardsLeft[i]);
+                buffer.limit(0);
+
+                for (int c = 0; c < cardsLeft[i]; c++) {
+                    if (buffer.remaining() < CARD_BYTES) {
+                        buffer.clear();
+                        final long toRead = Math.min(buffer.capacity(), (long) CARD_BYTES * (cardsLeft[i] - c));
+                        buffer.limit((int) toRead);
+                        readFully(channel, buffer, position);
+                        position += toRead;
+                    }
+                    player.getHand().add(buffer.getInt(), buffer.getInt());
+                }
+                players.add(player);
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to read checkpoint", ioe);
+        }
+        return players;
+    }
+
+    /**
+     * Get the score a player had at the latest checkpoint
+     * @param seat - index of the player in seat order
+     * @return
+     */
+    public int getScore(final int seat) {
+        return scores[seat];
+    }
+
+    /**
+     * Get the number of rounds played at the latest checkpoint
+     * @return
+     */
+    public long getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Get the number of wars played at the latest checkpoint
+     * @return
+     */
+    public long getWars() {
+        return wars;
+    }
+
+    /**
+     * Get the most war rounds a war had needed at the latest checkpoint
+     * @return
+     */
+    public int getMaxWarDepth() {
+        return (int) maxWarDepth;
+    }
+
+    /**
+     * Get the seed the deck was shuffled with
+     * @return
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return
+     */
+    public int getNumberOfSuits() {
+        return numberOfSuits;
+    }
+
+    /**
+     * @return
+     */
+    public int getNumberOfRanks() {
+        return numberOfRanks;
+    }
+
+    /**
+     * Get the rules the game is played by
+     * @return
+     */
+    public Rules getRules() {
+        return rules;
+    }
+
+    /**
+     * @return
+     */
+    public int getNumberOfPlayers() {
+        return playerIds.length;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to close checkpoint", ioe);
+        }
+    }
+
+    /**
+     * Write the current state into the slot for the current sequence number and flush it to disk
+     */
+    private void writeSlot() {
+        final int offset = (int) (sequence % 2) * slotBytes;
+        slots.putLong(offset, sequence);
+        slots.putLong(offset + SLOT_ROUNDS_OFFSET, rounds);
+        slots.putLong(offset + SLOT_WARS_OFFSET, wars);
+        slots.putLong(offset + SLOT_MAX_WAR_DEPTH_OFFSET, maxWarDepth);
+        for (int i = 0; i < playerIds.length; i++) {
+            slots.putInt(offset + SLOT_PLAYERS_OFFSET + i * SLOT_PLAYER_BYTES, cardsLeft[i]);
+            slots.putInt(offset + SLOT_PLAYERS_OFFSET + i * SLOT_PLAYER_BYTES + Integer.BYTES, scores[i]);
+        }
+        slots.putLong(offset + slotBytes - Long.BYTES, checksum(offset));
+        slots.force();
+    }
+
+    /**
+     * Load whichever slot holds the newest intact checkpoint
+     * @return false if neither slot is intact
+     */
+    private boolean readLatestSlot() {
+        int latest = -1;
+        for (int slot = 0; slot < 2; slot++) {
+            final int offset = slot * slotBytes;
+            final boolean intact = slots.getLong(offset + slotBytes - Long.BYTES) == checksum(offset);
+            if (intact && (latest < 0 || slots.getLong(offset) > slots.getLong(latest * slotBytes))) {
+                latest = slot;
+            }
+        }
+        if (latest < 0) {
+            return false;
+        }
+
+        final int offset = latest * slotBytes;
+        sequence = slots.getLong(offset);
+        rounds = slots.getLong(offset + SLOT_ROUNDS_OFFSET);
+        wars = slots.getLong(offset + SLOT_WARS_OFFSET);
+        maxWarDepth = slots.getLong(offset + SLOT_MAX_WAR_DEPTH_OFFSET);
+        for (int i = 0; i < playerIds.length; i++) {
+            cardsLeft[i] = slots.getInt(offset + SLOT_PLAYERS_OFFSET + i * SLOT_PLAYER_BYTES);
+            scores[i] = slots.getInt(offset + SLOT_PLAYERS_OFFSET + i * SLOT_PLAYER_BYTES + Integer.BYTES);
+        }
+        return true;
+    }
+
+    /**
+     * Checksum of a slot, excluding the checksum field itself
+     * @param offset
+     * @return
+     */
+    private long checksum(final int offset) {
+        ByteBuffer body = slots.duplicate();
+        body.position(offset);
+        body.limit(offset + slotBytes - Long.BYTES);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return crc.getValue();
+    }
+
+    /**
+     * Write the buffer out if it does not have room for another record
+     */
+    private static void flushIfFull(final FileChannel channel, final ByteBuffer buffer,
+                                    final int recordBytes) throws IOException {
+        if (buffer.remaining() < recordBytes) {
+            buffer.flip();
+            writeFully(channel, buffer);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Write all remaining bytes of buffer at the channels current position
+     */
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Fill the buffer from the file starting at position, then flip it for reading
+     */
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer,
+                                  final long position) throws IOException {
+        long at = position;
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, at);
+            if (read < 0) {
+                throw new IOException("Unexpected end of checkpoint file");
+            }
+            at += read;
+        }
+        buffer.flip();
+    }
+}
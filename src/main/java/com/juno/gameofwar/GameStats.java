@@ -0,0 +1,202 @@
+package com.juno.gameofwar;
+
+import java.security.InvalidParameterException;
+import java.util.Locale;
+
+/**
+ * Fixed memory summary of any number of games: distributions of game length, wars, longest war and winning score,
+ * plus how often each seat won.
+ *
+ * Not thread safe - give each thread its own stats and merge them when the threads are done, no locking needed.
+ */
+public class GameStats {
+
+    // quantiles printed in the summary
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double PERCENT = 100.0;
+
+    private long games = 0;
+    // games where more than one player had the high score
+    private long sharedWins = 0;
+    private final LogHistogram rounds = new LogHistogram();
+    private final LogHistogram wars = new LogHistogram();
+    private final LogHistogram maxWarDepth = new LogHistogram();
+    private final LogHistogram highScore = new LogHistogram();
+    // number of games each seat won or shared, seat 1 at index 0
+    private final long[] seatWins;
+
+    /**
+     * @param numberOfPlayers - seated at every game recorded, and the number of rows of the seat table
+     */
+    public GameStats(final int numberOfPlayers) {
+        if (numberOfPlayers < 1) {
+            throw new InvalidParameterException("numberOfPlayers must be greater than zero.");
+        }
+        this.seatWins = new long[numberOfPlayers];
+    }
+
+    /**
+     * Add one game
+     * @param result
+     */
+    public void record(final GameResult result) {
+        games++;
+        rounds.record(result.getRounds());
+        wars.record(result.getWars());
+        maxWarDepth.record(result.getMaxWarDepth());
+        highScore.record(result.getHighScore());
+
+        if (result.getWinners().size() > 1) {
+            sharedWins++;
+        }
+        for (Player winner : result.getWinners()) {
+            recordSeatWin(winner.getId());
+        }
+    }
+
+    /**
+     * Add everything recorded in another stats object, of games with as many players, to this one
+     * @param other
+     */
+    public void merge(final GameStats other) {
+        games += other.games;
+        sharedWins += other.sharedWins;
+        rounds.merge(other.rounds);
+        wars.merge(other.wars);
+        maxWarDepth.merge(other.maxWarDepth);
+        highScore.merge(other.highScore);
+
+        if (other.seatWins.length != seatWins.length) {
+            throw new InvalidParameterException("Can't merge the stats of " + other.seatWins.length
+                    + " player games into " + seatWins.length + " player games");
+        }
+        for (int i = 0; i < other.seatWins.length; i++) {
+            seatWins[i] += other.seatWins[i];
+        }
+    }
+
+    /**
+     * Print the distributions and seat win rates
+     */
+    public void print() {
+        System.out.print(summary());
+    }
+
+    /**
+     * @return the distributions and seat win rates as print prints them
+     */
+    public String summary() {
+        final StringBuilder summary = new StringBuilder();
+        summary.append('\n').append(games).append(" games played, ").append(sharedWins).append(" with a shared win\n");
+        summary.append('\n');
+
+        summary.append(String.format(Locale.ROOT, "%-16s%12s", "", "mean"));
+        for (double q : QUANTILES) {
+            summary.append(String.format(Locale.ROOT, "%10s", "p" + trimQuantile(q)));
+        }
+        summary.append(String.format(Locale.ROOT, "%12s", "max")).append('\n');
+
+        appendRow(summary, "rounds", rounds);
+        appendRow(summary, "wars", wars);
+        appendRow(summary, "longest war", maxWarDepth);
+        appendRow(summary, "winning score", highScore);
+
+        summary.append("\n----- WINS BY SEAT -----\n");
+        for (int i = 0; i < seatWins.length; i++) {
+            summary.append(String.format(Locale.ROOT, "\t%d\t%d\t%.2f%%", i + 1, seatWins[i],
+                    PERCENT * seatWins[i] / Math.max(1, games))).append('\n');
+        }
+        return summary.toString();
+    }
+
+    /**
+     * @return the number of games recorded
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * @return the number of games where the high score was shared
+     */
+    public long getSharedWins() {
+        return sharedWins;
+    }
+
+    /**
+     * @return the distribution of rounds per game
+     */
+    public LogHistogram getRounds() {
+        return rounds;
+    }
+
+    /**
+     * @return the distribution of wars per game
+     */
+    public LogHistogram getWars() {
+        return wars;
+    }
+
+    /**
+     * @return the distribution of the longest war in each game
+     */
+    public LogHistogram getMaxWarDepth() {
+        return maxWarDepth;
+    }
+
+    /**
+     * @return the distribution of the winning score
+     */
+    public LogHistogram getHighScore() {
+        return highScore;
+    }
+
+    /**
+     * Get the number of games a seat won or shared
+     * @param seat - the player id, starting at 1
+     * @return
+     */
+    public long getSeatWins(final int seat) {
+        if (seat < 1 || seat > seatWins.length) {
+            return 0;
+        }
+        return seatWins[seat - 1];
+    }
+
+    /**
+     * @param seat - the player id, starting at 1
+     */
+    private void recordSeatWin(final int seat) {
+        if (seat < 1 || seat > seatWins.length) {
+            throw new InvalidParameterException("seat " + seat + " won but there are " + seatWins.length + " seats");
+        }
+        seatWins[seat - 1]++;
+    }
+
+    /**
+     * Add one line of the summary
+     * @param summary
+     * @param name
+     * @param histogram
+     */
+    private static void appendRow(final StringBuilder summary, final String name, final LogHistogram histogram) {
+        summary.append(String.format(Locale.ROOT, "%-16s%12.2f", name, histogram.getMean()));
+        for (double q : QUANTILES) {
+            summary.append(String.format(Locale.ROOT, "%10d", histogram.quantile(q)));
+        }
+        summary.append(String.format(Locale.ROOT, "%12d", histogram.getMax())).append('\n');
+    }
+
+    /**
+     * 0.99 becomes "99", 0.999 becomes "99.9"
+     * @param q
+     * @return
+     */
+    private static String trimQuantile(final double q) {
+        String percent = String.format(Locale.ROOT, "%.1f", q * PERCENT);
+        if (percent.endsWith(".0")) {
+            return percent.substring(0, percent.length() - 2);
+        }
+        return percent;
+    }
+}
@@ -0,0 +1,289 @@
+package com.juno.gameofwar;
+
+import java.lang.management.ManagementFactory;
+import java.security.InvalidParameterException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Admits games to be played against a budget of bytes, so games played at once never need more memory than
+ * the budget between them.
+ *
+ * A game's bytes are estimated from its config before it starts, see estimateBytes. Games are admitted in the
+ * order they ask, each as soon as it fits next to the games already admitted, so many small games are played
+ * alongside a big one. A game bigger than the whole budget waits until nothing else is being played and is
+ * then played on its own. Every admit must be followed by a release of the same bytes when the game is done.
+ *
+ * Games that keep their cards off the heap need direct memory rather than heap for them, which the JVM caps
+ * separately, so direct memory has a budget of its own and a game is admitted once it fits in both.
+ */
+public final class HeapBudget {
+
+    // the share of the largest heap the JVM will grow to that the shared budget hands out, the rest is left for
+    // everything that isn't a deck or a hand
+    private static final long SHARED_NUMERATOR = 3;
+    private static final long SHARED_DENOMINATOR = 4;
+    // the deck, the hands it is dealt into and a hand holding every card, mid way through growing to twice that
+    private static final int CARD_COPIES = 4;
+    // a deck shuffled in parallel and the store of the same kind it is scattered into, see ParallelShuffle
+    private static final int SHUFFLE_COPIES = 2;
+    // the JVM option that caps direct memory, which is as big as the heap can grow to when it isn't given
+    private static final String MAX_DIRECT_OPTION = "-XX:MaxDirectMemorySize=";
+    private static final String SIZE_UNITS = "kmgt";
+    private static final int BITS_PER_UNIT = 10;
+    // a player, its hand and its place in the score map, with nothing in the hand
+    private static final long BYTES_PER_PLAYER = 256;
+    // everything else a game allocates that doesn't grow with it
+    private static final long BYTES_PER_GAME = 8 * 1024;
+
+    private final long budget;
+    private final long directBudget;
+    // games waiting to be admitted, in the order they asked
+    private final Deque<Object> waiting = new ArrayDeque<>();
+    private long bytesInUse = 0;
+    private long directBytesInUse = 0;
+    private int gamesAdmitted = 0;
+
+    /**
+     * A budget for games that need no more direct memory than the JVM allows
+     * @param budgetBytes - the most bytes of heap the games admitted at once may need between them
+     */
+    public HeapBudget(final long budgetBytes) {
+        this(budgetBytes, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param budgetBytes - the most bytes of heap the games admitted at once may need between them
+     * @param directBudgetBytes - the most bytes of direct memory
+     */
+    public HeapBudget(final long budgetBytes, final long directBudgetBytes) {
+        if (budgetBytes < 1) {
+            throw new InvalidParameterException("the heap budget must be greater than zero.");
+        }
+        if (directBudgetBytes < 1) {
+            throw new InvalidParameterException("the direct memory budget must be greater than zero.");
+        }
+        this.budget = budgetBytes;
+        this.directBudget = directBudgetBytes;
+    }
+
+    /**
+     * The budget shared by everything that plays games in this JVM, three quarters of the heap and of the direct
+     * memory it may grow to
+     * @return
+     */
+    public static HeapBudget shared() {
+        return Shared.BUDGET;
+    }
+
+    /**
+     * Estimate the most bytes of heap a game with this config needs at once
+     * @param config
+     * @param storage - where the game keeps its deck and hands
+     * @return
+     */
+    public static long estimateBytes(final GameConfig config, final CardStorage storage) {
+        return peakBytes(config, storage, true) + config.getNumberOfPlayers() * BYTES_PER_PLAYER + BYTES_PER_GAME;
+    }
+
+    /**
+     * Estimate the most bytes of direct memory a game with this config needs at once
+     * @param config
+     * @param storage - where the game keeps its deck and hands
+     * @return
+     */
+    public static long estimateDirectBytes(final GameConfig config, final CardStorage storage) {
+        return peakBytes(config, storage, false);
+    }
+
+    /**
+     * The most bytes of the heap, or of direct memory, a game needs in any one part of it. A deck is shuffled,
+     * through a second store of its kind if it is big, then dealt. War deals it into stores of the same kind that
+     * grow as the game is played, and the two player engines into int arrays of ranks on the heap.
+     * @param config
+     * @param storage
+     * @param heap - true for bytes of heap, false for bytes of direct memory
+     * @return
+     */
+    private static long peakBytes(final GameConfig config, final CardStorage storage, final boolean heap) {
+        final long cards = config.getNumberOfCards();
+        final long bits = cards * storage.bitsPerCard(config.getNumberOfSuits(), config.getNumberOfRanks());
+        final long deckBytes = (bits + Byte.SIZE - 1) / Byte.SIZE;
+        // the stores count against the memory asked about if they are kept in it, ints always go on the heap
+        long stores = 0;
+        long ints = 0;
+        if (storage.keepsCardsOnHeap() == heap) {
+            stores = 1;
+        }
+        if (heap) {
+            ints = 1;
+        }
+
+        long shuffle = stores * deckBytes;
+        if (cards >= WarDeck.PARALLEL_SHUFFLE_THRESHOLD) {
+            final long chunks = (cards + ParallelShuffle.DEFAULT_CHUNK_SIZE - 1) / ParallelShuffle.DEFAULT_CHUNK_SIZE;
+            final long buckets = (cards + ParallelShuffle.DEFAULT_BUCKET_SIZE - 1)
+                    / ParallelShuffle.DEFAULT_BUCKET_SIZE;
+            shuffle = stores * SHUFFLE_COPIES * deckBytes + ints * chunks * buckets * Integer.BYTES;
+        }
+        long play = stores * CARD_COPIES * deckBytes;
+        if (Engine.TWO_PLAYER.supports(config)) {
+            // the deck is still held while its ranks are copied out
+            play = Math.max(play, stores * deckBytes + ints * cards * Integer.BYTES);
+        }
+        return Math.max(shuffle, play);
+    }
+
+    /**
+     * Whether this many games of the given size fit in the heap budget at once, so they needn't be admitted
+     * @param bytes - of each game
+     * @param games
+     * @return
+     */
+    public boolean fits(final long bytes, final int games) {
+        return fits(bytes, 0, games);
+    }
+
+    /**
+     * Whether this many games of the given size fit in the budget at once, so they needn't be admitted
+     * @param bytes - of heap for each game
+     * @param directBytes - of direct memory for each game
+     * @param games
+     * @return
+     */
+    public boolean fits(final long bytes, final long directBytes, final int games) {
+        return bytes <= budget / games && directBytes <= directBudget / games;
+    }
+
+    /**
+     * Wait until a game that needs no direct memory can be played
+     * @param bytes
+     */
+    public void admit(final long bytes) {
+        admit(bytes, 0);
+    }
+
+    /**
+     * Wait until a game of the given size can be played
+     * @param bytes - of heap
+     * @param directBytes - of direct memory
+     */
+    public synchronized void admit(final long bytes, final long directBytes) {
+        final Object game = new Object();
+        waiting.add(game);
+        try {
+            while (waiting.peek() != game || gamesAdmitted > 0
+                    && (bytesInUse + bytes > budget || directBytesInUse + directBytes > directBudget)) {
+                wait();
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for heap to play a game", ie);
+        } finally {
+            waiting.remove(game);
+            // the next game in line may fit too
+            notifyAll();
+        }
+        bytesInUse += bytes;
+        directBytesInUse += directBytes;
+        gamesAdmitted++;
+    }
+
+    /**
+     * Hand back the bytes of a game that needed no direct memory and is done
+     * @param bytes - as admitted
+     */
+    public void release(final long bytes) {
+        release(bytes, 0);
+    }
+
+    /**
+     * Hand back the bytes of a game that is done
+     * @param bytes - of heap, as admitted
+     * @param directBytes - of direct memory, as admitted
+     */
+    public synchronized void release(final long bytes, final long directBytes) {
+        bytesInUse -= bytes;
+        directBytesInUse -= directBytes;
+        gamesAdmitted--;
+        notifyAll();
+    }
+
+    /**
+     * Get the most bytes of heap the games admitted at once may need between them
+     * @return
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Get the most bytes of direct memory the games admitted at once may need between them
+     * @return
+     */
+    public long getDirectBudget() {
+        return directBudget;
+    }
+
+    /**
+     * Get the bytes of heap of the games admitted and not yet released
+     * @return
+     */
+    public synchronized long getBytesInUse() {
+        return bytesInUse;
+    }
+
+    /**
+     * Get the bytes of direct memory of the games admitted and not yet released
+     * @return
+     */
+    public synchronized long getDirectBytesInUse() {
+        return directBytesInUse;
+    }
+
+    /**
+     * Work out the most direct memory the JVM hands out from the options it was started with
+     * @param jvmOptions
+     * @param maxHeap - the largest heap the JVM will grow to
+     * @return
+     */
+    static long maxDirectMemory(final List<String> jvmOptions, final long maxHeap) {
+        long max = maxHeap;
+        for (String option : jvmOptions) {
+            if (option.startsWith(MAX_DIRECT_OPTION)) {
+                // the last one given wins, as it does for the JVM
+                max = parseSize(option.substring(MAX_DIRECT_OPTION.length()));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @param size - a number of bytes, with an optional k, m, g or t after it
+     * @return
+     */
+    private static long parseSize(final String size) {
+        final int unit = SIZE_UNITS.indexOf(size.toLowerCase(Locale.ROOT).charAt(size.length() - 1));
+        if (unit < 0) {
+            return Long.parseLong(size);
+        }
+        return Long.parseLong(size.substring(0, size.length() - 1)) << (BITS_PER_UNIT * (unit + 1));
+    }
+
+    /**
+     * Holds the shared budget, created the first time it is asked for
+     */
+    private static final class Shared {
+        private static final HeapBudget BUDGET = new HeapBudget(
+                Runtime.getRuntime().maxMemory() / SHARED_DENOMINATOR * SHARED_NUMERATOR,
+                maxDirectMemory(ManagementFactory.getRuntimeMXBean().getInputArguments(),
+                        Runtime.getRuntime().maxMemory()) / SHARED_DENOMINATOR * SHARED_NUMERATOR);
+
+        /**
+         * Private constructor
+         */
+        private Shared() { }
+    }
+}
@@ -0,0 +1,97 @@
+package com.juno.gameofwar;
+
+/**
+ * A CardStore that keeps suits and ranks in primitive arrays on the java heap.
+ * Cards are taken by moving a cursor rather than shifting the arrays, so playing a card is constant time.
+ */
+public class HeapCardStore implements CardStore {
+
+    // the smallest array we grow to once a card is added
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] suits;
+    private int[] ranks;
+    // index of the next card to take
+    private int head = 0;
+    // index one past the last card added
+    private int tail = 0;
+
+    /**
+     * Create an empty store
+     */
+    public HeapCardStore() {
+        this(0);
+    }
+
+    /**
+     * Create an empty store sized to hold expectedCards without growing
+     * @param expectedCards
+     */
+    public HeapCardStore(final int expectedCards) {
+        suits = new int[expectedCards];
+        ranks = new int[expectedCards];
+    }
+
+    @Override
+    public void add(final int suit, final int rank) {
+        if (tail == suits.length) {
+            grow();
+        }
+        suits[tail] = suit;
+        ranks[tail] = rank;
+        tail++;
+    }
+
+    @Override
+    public Card take() {
+        if (head == tail) {
+            return null;
+        }
+        Card c = new Card(suits[head], ranks[head]);
+        head++;
+        return c;
+    }
+
+    @Override
+    public int size() {
+        return tail - head;
+    }
+
+    @Override
+    public int suitAt(final int index) {
+        return suits[head + index];
+    }
+
+    @Override
+    public int rankAt(final int index) {
+        return ranks[head + index];
+    }
+
+    @Override
+    public void set(final int index, final int suit, final int rank) {
+        suits[head + index] = suit;
+        ranks[head + index] = rank;
+    }
+
+    /**
+     * Make room for more cards. Played cards at the front are dropped first and the arrays
+     * only get bigger if that did not free up enough space.
+     */
+    private void grow() {
+        int size = size();
+        int capacity = suits.length;
+
+        if (size >= capacity / 2) {
+            capacity = Math.max(MIN_CAPACITY, capacity * 2);
+        }
+
+        int[] newSuits = new int[capacity];
+        int[] newRanks = new int[capacity];
+        System.arraycopy(suits, head, newSuits, 0, size);
+        System.arraycopy(ranks, head, newRanks, 0, size);
+        suits = newSuits;
+        ranks = newRanks;
+        head = 0;
+        tail = size;
+    }
+}
@@ -0,0 +1,161 @@
+package com.juno.gameofwar;
+
+import java.util.Arrays;
+
+/**
+ * A fixed precision histogram of non-negative longs for estimating quantiles over any number of values.
+ *
+ * Values below 2^PRECISION_BITS each get their own bucket and are counted exactly. Above that, every power of two
+ * is split into 2^PRECISION_BITS buckets, so a quantile is off by less than 1 part in 2^(PRECISION_BITS + 1)
+ * and memory only depends on the size of the largest value, never on how many values were recorded.
+ * Count, sum, min and max are kept exactly.
+ *
+ * Not thread safe - give each thread its own histogram and merge them when the threads are done.
+ */
+public class LogHistogram {
+
+    // 128 buckets per power of two, under 0.4% error
+    private static final int PRECISION_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << PRECISION_BITS;
+    private static final int HIGHEST_BIT = 63;
+
+    // counts per bucket, grown to the highest bucket used
+    private long[] counts = new long[SUB_BUCKETS];
+    private long count = 0;
+    private long sum = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    /**
+     * Record one value
+     * @param value - zero or more
+     */
+    public void record(final long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("LogHistogram only records values of zero or more");
+        }
+        final int index = bucketIndex(value);
+        if (index >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(index + 1, counts.length * 2));
+        }
+        counts[index]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Add everything recorded in another histogram to this one
+     * @param other
+     */
+    public void merge(final LogHistogram other) {
+        if (other.counts.length > counts.length) {
+            counts = Arrays.copyOf(counts, other.counts.length);
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Estimate the value at quantile q e.g. 0.5 for the median. Returns zero if nothing was recorded.
+     * @param q - between 0 and 1
+     * @return
+     */
+    public long quantile(final double q) {
+        if (count == 0) {
+            return 0;
+        }
+        // the rank of the value we are after, counting from 1
+        final long rank = Math.max(1, (long) Math.ceil(q * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                // never report anything outside of what was actually recorded
+                return Math.max(min, Math.min(max, bucketMiddle(i)));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return the number of values recorded
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the sum of the values recorded
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * @return the mean of the values recorded, zero if there are none
+     */
+    public double getMean() {
+        if (count == 0) {
+            return 0;
+        }
+        return (double) sum / count;
+    }
+
+    /**
+     * @return the smallest value recorded, zero if there are none
+     */
+    public long getMin() {
+        if (count == 0) {
+            return 0;
+        }
+        return min;
+    }
+
+    /**
+     * @return the largest value recorded, zero if there are none
+     */
+    public long getMax() {
+        if (count == 0) {
+            return 0;
+        }
+        return max;
+    }
+
+    /**
+     * Find the bucket for a value
+     * @param value
+     * @return
+     */
+    static int bucketIndex(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        // which power of two, then which slice of it
+        final int exponent = HIGHEST_BIT - Long.numberOfLeadingZeros(value);
+        final int shift = exponent - PRECISION_BITS;
+        final int slice = (int) (value >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS * (shift + 1) + slice;
+    }
+
+    /**
+     * The value in the middle of a bucket
+     * @param index
+     * @return
+     */
+    static long bucketMiddle(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        final long slice = index % SUB_BUCKETS;
+        final long lowest = (SUB_BUCKETS + slice) << shift;
+        return lowest + ((1L << shift) - 1) / 2;
+    }
+}
@@ -0,0 +1,289 @@
+package com.juno.gameofwar;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.InvalidParameterException;
+import java.util.List;
+
+/**
+ * A deck read from a binary card file through memory mapping, to replay a captured shuffle or play a deck built
+ * to test something. Cards are dealt in the order they are in the file, so shuffling it does nothing.
+ *
+ * The file is a 32 byte big endian header followed by the cards packed into as few bits as the biggest rank and
+ * suit need, rank in the low bits and suit above it, card n starting at bit n * width of the data, lowest bits of
+ * each byte first. Files without suits give every card suit zero and spend no bits on them. The header is the magic
+ * number "WRDK", the version, the number of cards as a long, the number of suits and ranks as ints, the rank and
+ * suit widths as bytes and padding. The data ends with eight zero bytes so every card can be read with one long.
+ *
+ * Cards are read straight out of the mapped file. Dealing with dealTo puts them into the hands without making a
+ * Card for each one, which is what War does, so a deck of hundreds of millions of cards costs nothing on the heap
+ * until it is in the hands. Files bigger than a mapping can hold are mapped in overlapping segments.
+ */
+public final class MappedDeck implements Deck {
+
+    // "WRDK"
+    static final int MAGIC = 0x5752444B;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    // where each field of the header starts
+    private static final int COUNT_AT = 8;
+    private static final int SUITS_AT = 16;
+    private static final int RANKS_AT = 20;
+    private static final int RANK_BITS_AT = 24;
+    private static final int SUIT_BITS_AT = 25;
+    // a card is read as a long from the byte it starts in, so it can't be wider than this
+    static final int MAX_CARD_BITS = Long.SIZE - Byte.SIZE;
+
+    // data bytes in each mapping, mappings overlap by a long so a card never spans two
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_BYTES = 1L << SEGMENT_SHIFT;
+    private static final int BYTE_SHIFT = 3;
+    private static final int BIT_IN_BYTE = Byte.SIZE - 1;
+    // cards are packed into a buffer this big and written out once it is full
+    private static final int BUFFER_BYTES = 1048576;
+
+    private final MappedByteBuffer[] segments;
+    private final int cards;
+    private final int numberOfSuits;
+    private final int numberOfRanks;
+    private final int rankWidth;
+    private final int cardWidth;
+    private final long rankMask;
+
+    // index of the next card to deal
+    private int next = 0;
+
+    /**
+     * Map a card file
+     * @param file
+     */
+    public MappedDeck(final Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            int read = 0;
+            while (header.hasRemaining() && read >= 0) {
+                read = channel.read(header);
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+                throw new IllegalStateException(file + " is not a card file");
+            }
+            if (header.getInt(Integer.BYTES) != VERSION) {
+                throw new IllegalStateException(file + " was written by another version");
+            }
+            final long count = header.getLong(COUNT_AT);
+            numberOfSuits = header.getInt(SUITS_AT);
+            numberOfRanks = header.getInt(RANKS_AT);
+            rankWidth = header.get(RANK_BITS_AT);
+            cardWidth = rankWidth + header.get(SUIT_BITS_AT);
+            if (count < 0 || count > Integer.MAX_VALUE || rankWidth < 1 || cardWidth > MAX_CARD_BITS) {
+                throw new IllegalStateException(file + " has a corrupt header");
+            }
+            cards = (int) count;
+            rankMask = (1L << rankWidth) - 1;
+
+            final long dataBytes = dataBytes(cards, cardWidth);
+            if (channel.size() < HEADER_BYTES + dataBytes) {
+                throw new IllegalStateException(file + " is missing some of its " + cards + " cards");
+            }
+            segments = new MappedByteBuffer[(int) ((dataBytes - 1) >>> SEGMENT_SHIFT) + 1];
+            for (int s = 0; s < segments.length; s++) {
+                final long start = s * SEGMENT_BYTES;
+                final long length = Math.min(dataBytes - start, SEGMENT_BYTES + Long.BYTES);
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + start, length);
+                segments[s].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to read the card file " + file, ioe);
+        }
+    }
+
+    /**
+     * Start dealing again from the first card of the file. The file decides the cards, not the arguments.
+     * @param suits - ignored
+     * @param ranks - ignored
+     */
+    @Override
+    public void create(final int suits, final int ranks) {
+        next = 0;
+    }
+
+    /**
+     * Does nothing, the order the cards were written in is the order they are dealt in
+     */
+    @Override
+    public void shuffle() {
+    }
+
+    /**
+     * Get the number of cards in the file that have not been dealt
+     * @return
+     */
+    @Override
+    public int numberOfUndealtCards() {
+        return cards - next;
+    }
+
+    @Override
+    public Card deal() {
+        if (next == cards) {
+            return null;
+        }
+        final long card = cardAt(next++);
+        return new Card((int) (card >>> rankWidth), (int) (card & rankMask));
+    }
+
+    @Override
+    public int dealTo(final List<Player> players) {
+        final int dealt = cards - next;
+        int curPlayer = 0;
+        while (next < cards) {
+            final long card = cardAt(next++);
+            players.get(curPlayer).getHand().add((int) (card >>> rankWidth), (int) (card & rankMask));
+
+            curPlayer++;
+            if (curPlayer == players.size()) {
+                curPlayer = 0;
+            }
+        }
+        return dealt;
+    }
+
+    /**
+     * @return the number of cards in the file
+     */
+    public int getNumberOfCards() {
+        return cards;
+    }
+
+    /**
+     * @return one more than the biggest suit in the file
+     */
+    public int getNumberOfSuits() {
+        return numberOfSuits;
+    }
+
+    /**
+     * @return one more than the biggest rank in the file
+     */
+    public int getNumberOfRanks() {
+        return numberOfRanks;
+    }
+
+    /**
+     * Write a card file
+     * @param file - created or replaced
+     * @param deck - the cards, in the order they will be dealt
+     * @param keepSuits - false to write only the ranks
+     */
+    public static void write(final Path file, final CardStore deck, final boolean keepSuits) {
+        int maxSuit = 0;
+        int maxRank = 0;
+        for (int i = 0; i < deck.size(); i++) {
+            if (deck.rankAt(i) < 0 || deck.suitAt(i) < 0) {
+                throw new InvalidParameterException("card " + i + " has a negative rank or suit");
+            }
+            maxRank = Math.max(maxRank, deck.rankAt(i));
+            if (keepSuits) {
+                maxSuit = Math.max(maxSuit, deck.suitAt(i));
+            }
+        }
+        final int rankBits = bitsFor(maxRank);
+        int suitBits = 0;
+        if (maxSuit > 0) {
+            suitBits = bitsFor(maxSuit);
+        }
+        final int cardBits = rankBits + suitBits;
+        if (cardBits > MAX_CARD_BITS) {
+            throw new InvalidParameterException("ranks and suits this big need more than " + MAX_CARD_BITS
+                    + " bits a card");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(deck.size()).putInt(maxSuit + 1).putInt(maxRank + 1)
+                    .put((byte) rankBits).put((byte) suitBits);
+            buffer.position(HEADER_BYTES);
+
+            long bits = 0;
+            int filled = 0;
+            for (int i = 0; i < deck.size(); i++) {
+                long card = deck.rankAt(i);
+                if (suitBits > 0) {
+                    card |= (long) deck.suitAt(i) << rankBits;
+                }
+                bits |= card << filled;
+                filled += cardBits;
+                while (filled >= Byte.SIZE) {
+                    if (!buffer.hasRemaining()) {
+                        drain(channel, buffer);
+                    }
+                    buffer.put((byte) bits);
+                    bits >>>= Byte.SIZE;
+                    filled -= Byte.SIZE;
+                }
+            }
+            // what is left of the last card, then the padding
+            if (filled > 0) {
+                if (!buffer.hasRemaining()) {
+                    drain(channel, buffer);
+                }
+                buffer.put((byte) bits);
+            }
+            if (buffer.remaining() < Long.BYTES) {
+                drain(channel, buffer);
+            }
+            buffer.putLong(0);
+            drain(channel, buffer);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to write the card file " + file, ioe);
+        }
+    }
+
+    /**
+     * @param index
+     * @return the rank of a card with its suit above it
+     */
+    private long cardAt(final int index) {
+        final long bit = (long) index * cardWidth;
+        final long offset = bit >>> BYTE_SHIFT;
+        final long word = segments[(int) (offset >>> SEGMENT_SHIFT)].getLong((int) (offset & (SEGMENT_BYTES - 1)));
+        return (word >>> (bit & BIT_IN_BYTE)) & ((1L << cardWidth) - 1);
+    }
+
+    /**
+     * @param cardCount
+     * @param width
+     * @return the bytes of card data in a file, padding included
+     */
+    private static long dataBytes(final int cardCount, final int width) {
+        return ((long) cardCount * width + BIT_IN_BYTE) / Byte.SIZE + Long.BYTES;
+    }
+
+    /**
+     * @param value
+     * @return the bits needed to hold a value, at least one
+     */
+    private static int bitsFor(final int value) {
+        return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(value));
+    }
+
+    /**
+     * @param channel
+     * @param buffer
+     * @throws IOException
+     */
+    private static void drain(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,127 @@
+package com.juno.gameofwar;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A CardStore that keeps its cards in direct memory outside of the java heap.
+ * Very large games can then run with a small heap, and the garbage collector never has to
+ * scan or copy the cards. Direct memory is capped by -XX:MaxDirectMemorySize.
+ */
+public class OffHeapCardStore implements CardStore {
+
+    // each card is stored as two ints - suit then rank
+    private static final int BYTES_PER_CARD = 8;
+    private static final int RANK_OFFSET = 4;
+    // a direct buffer can be at most Integer.MAX_VALUE bytes
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE / BYTES_PER_CARD;
+    private static final int MIN_CAPACITY = 16;
+
+    private ByteBuffer cards;
+    // index of the next card to take
+    private int head = 0;
+    // index one past the last card added
+    private int tail = 0;
+
+    /**
+     * Create an empty store
+     */
+    public OffHeapCardStore() {
+        this(0);
+    }
+
+    /**
+     * Create an empty store sized to hold expectedCards without growing
+     * @param expectedCards
+     */
+    public OffHeapCardStore(final int expectedCards) {
+        cards = allocate(Math.min(expectedCards, MAX_CAPACITY));
+    }
+
+    @Override
+    public void add(final int suit, final int rank) {
+        if (tail == capacity()) {
+            grow();
+        }
+        final int offset = tail * BYTES_PER_CARD;
+        cards.putInt(offset, suit);
+        cards.putInt(offset + RANK_OFFSET, rank);
+        tail++;
+    }
+
+    @Override
+    public Card take() {
+        if (head == tail) {
+            return null;
+        }
+        final int offset = head * BYTES_PER_CARD;
+        Card c = new Card(cards.getInt(offset), cards.getInt(offset + RANK_OFFSET));
+        head++;
+        return c;
+    }
+
+    @Override
+    public int size() {
+        return tail - head;
+    }
+
+    @Override
+    public int suitAt(final int index) {
+        return cards.getInt((head + index) * BYTES_PER_CARD);
+    }
+
+    @Override
+    public int rankAt(final int index) {
+        return cards.getInt((head + index) * BYTES_PER_CARD + RANK_OFFSET);
+    }
+
+    @Override
+    public void set(final int index, final int suit, final int rank) {
+        final int offset = (head + index) * BYTES_PER_CARD;
+        cards.putInt(offset, suit);
+        cards.putInt(offset + RANK_OFFSET, rank);
+    }
+
+    /**
+     * The number of cards the current buffer can hold
+     * @return
+     */
+    private int capacity() {
+        return cards.capacity() / BYTES_PER_CARD;
+    }
+
+    /**
+     * Move the unplayed cards into a new buffer, dropping played cards and growing if needed.
+     * The old buffer is released once it is no longer referenced.
+     */
+    private void grow() {
+        final int size = size();
+        long capacity = capacity();
+
+        if (size >= capacity / 2) {
+            capacity = Math.max(MIN_CAPACITY, capacity * 2);
+        }
+        if (size == MAX_CAPACITY) {
+            throw new IllegalStateException("Off-heap card store cannot hold more than " + MAX_CAPACITY + " cards");
+        }
+
+        ByteBuffer newCards = allocate((int) Math.min(capacity, MAX_CAPACITY));
+        ByteBuffer live = cards.duplicate();
+        live.limit(tail * BYTES_PER_CARD);
+        live.position(head * BYTES_PER_CARD);
+        newCards.put(live);
+
+        cards = newCards;
+        head = 0;
+        tail = size;
+    }
+
+    /**
+     * Allocate a native ordered direct buffer for numberOfCards cards
+     * @param numberOfCards
+     * @return
+     */
+    private static ByteBuffer allocate(final int numberOfCards) {
+        return ByteBuffer.allocateDirect(numberOfCards * BYTES_PER_CARD).order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,221 @@
+package com.juno.gameofwar;
+
+import java.security.InvalidParameterException;
+
+/**
+ * A CardStore that packs each rank into as few bits as the biggest rank added so far needs, 14 bits for the most
+ * ranks the program allows and 4 bits for a standard deck, instead of an int for the suit and another for the rank.
+ *
+ * Games only ever compare ranks, so suits are kept in a second packed array only if the store was asked to keep
+ * them, and even then take no space until a suit other than zero is added. A store that doesn't keep suits gives
+ * every card back with suit zero.
+ *
+ * Like HeapCardStore, cards are taken by moving a cursor. When a wider rank or suit arrives the cards left are
+ * repacked at the new width, which only happens a few times over the life of a store.
+ */
+public class PackedCardStore implements CardStore {
+
+    // the smallest number of cards we grow to once a card is added
+    private static final int MIN_CAPACITY = 16;
+    private static final int BITS_PER_WORD = Long.SIZE;
+    private static final int WORD_SHIFT = 6;
+    private static final long BIT_IN_WORD = BITS_PER_WORD - 1;
+
+    // whether suits are kept, or read back as zero
+    private final boolean keepSuits;
+
+    // ranks then suits, each packed into words at its own width. A width of zero stores nothing and reads zero
+    private long[] ranks = new long[0];
+    private int rankWidth = 0;
+    private long[] suits = new long[0];
+    private int suitWidth = 0;
+
+    // the number of cards the words have room for
+    private int capacity;
+    // index of the next card to take
+    private int head = 0;
+    // index one past the last card added
+    private int tail = 0;
+
+    /**
+     * Create an empty store that keeps suits
+     */
+    public PackedCardStore() {
+        this(0, true);
+    }
+
+    /**
+     * Create an empty store with room for expectedCards before growing, though a wider rank still repacks it
+     * @param expectedCards
+     * @param keepSuits - false to keep only the ranks
+     */
+    public PackedCardStore(final int expectedCards, final boolean keepSuits) {
+        this.capacity = expectedCards;
+        this.keepSuits = keepSuits;
+    }
+
+    @Override
+    public void add(final int suit, final int rank) {
+        if (tail == capacity || bitsFor(rank) > rankWidth || keepSuits && bitsFor(suit) > suitWidth) {
+            int newCapacity = capacity;
+            if (tail == capacity && size() >= capacity / 2) {
+                newCapacity = Math.max(MIN_CAPACITY, capacity * 2);
+            }
+            repack(newCapacity, suit, rank);
+        }
+        put(ranks, rankWidth, tail, rank);
+        if (keepSuits) {
+            put(suits, suitWidth, tail, suit);
+        }
+        tail++;
+    }
+
+    @Override
+    public Card take() {
+        if (head == tail) {
+            return null;
+        }
+        Card c = new Card(get(suits, suitWidth, head), get(ranks, rankWidth, head));
+        head++;
+        return c;
+    }
+
+    @Override
+    public int size() {
+        return tail - head;
+    }
+
+    @Override
+    public int suitAt(final int index) {
+        return get(suits, suitWidth, head + index);
+    }
+
+    @Override
+    public int rankAt(final int index) {
+        return get(ranks, rankWidth, head + index);
+    }
+
+    @Override
+    public void set(final int index, final int suit, final int rank) {
+        if (bitsFor(rank) > rankWidth || keepSuits && bitsFor(suit) > suitWidth) {
+            repack(capacity, suit, rank);
+        }
+        put(ranks, rankWidth, head + index, rank);
+        if (keepSuits) {
+            put(suits, suitWidth, head + index, suit);
+        }
+    }
+
+    /**
+     * Get the number of bits each rank is packed into
+     * @return
+     */
+    public int getRankWidth() {
+        return rankWidth;
+    }
+
+    /**
+     * Get the number of bits each suit is packed into, zero while every suit is zero or suits aren't kept
+     * @return
+     */
+    public int getSuitWidth() {
+        return suitWidth;
+    }
+
+    /**
+     * Move the cards left to the front of new words, wide enough for the given card as well as the ones we have
+     * @param newCapacity
+     * @param suit
+     * @param rank
+     */
+    private void repack(final int newCapacity, final int suit, final int rank) {
+        final int size = size();
+        final int newRankWidth = Math.max(rankWidth, bitsFor(rank));
+        int newSuitWidth = suitWidth;
+        if (keepSuits) {
+            newSuitWidth = Math.max(suitWidth, bitsFor(suit));
+        }
+
+        final long[] newRanks = new long[wordsFor(newCapacity, newRankWidth)];
+        final long[] newSuits = new long[wordsFor(newCapacity, newSuitWidth)];
+        for (int i = 0; i < size; i++) {
+            put(newRanks, newRankWidth, i, get(ranks, rankWidth, head + i));
+            put(newSuits, newSuitWidth, i, get(suits, suitWidth, head + i));
+        }
+
+        ranks = newRanks;
+        rankWidth = newRankWidth;
+        suits = newSuits;
+        suitWidth = newSuitWidth;
+        capacity = newCapacity;
+        head = 0;
+        tail = size;
+    }
+
+    /**
+     * The number of bits needed to hold a value
+     * @param value
+     * @return
+     */
+    static int bitsFor(final int value) {
+        if (value < 0) {
+            throw new InvalidParameterException("Packed cards can't have a negative suit or rank");
+        }
+        return Integer.SIZE - Integer.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * The number of words needed to hold cards values of width bits
+     * @param cards
+     * @param width
+     * @return
+     */
+    private static int wordsFor(final int cards, final int width) {
+        return (int) (((long) cards * width + BIT_IN_WORD) >>> WORD_SHIFT);
+    }
+
+    /**
+     * Read the value at index, which may straddle two words
+     * @param words
+     * @param width
+     * @param index
+     * @return
+     */
+    private static int get(final long[] words, final int width, final int index) {
+        if (width == 0) {
+            return 0;
+        }
+        final long bit = (long) index * width;
+        final int word = (int) (bit >>> WORD_SHIFT);
+        final int offset = (int) (bit & BIT_IN_WORD);
+
+        long value = words[word] >>> offset;
+        if (offset + width > BITS_PER_WORD) {
+            value |= words[word + 1] << (BITS_PER_WORD - offset);
+        }
+        return (int) (value & ((1L << width) - 1));
+    }
+
+    /**
+     * Write the value at index, which may straddle two words. The value must fit in width bits.
+     * @param words
+     * @param width
+     * @param index
+     * @param value
+     */
+    private static void put(final long[] words, final int width, final int index, final int value) {
+        if (width == 0) {
+            return;
+        }
+        final long mask = (1L << width) - 1;
+        final long bit = (long) index * width;
+        final int word = (int) (bit >>> WORD_SHIFT);
+        final int offset = (int) (bit & BIT_IN_WORD);
+
+        words[word] = words[word] & ~(mask << offset) | (long) value << offset;
+        if (offset + width > BITS_PER_WORD) {
+            final int spilled = BITS_PER_WORD - offset;
+            words[word + 1] = words[word + 1] & ~(mask >>> spilled) | (long) value >>> spilled;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.juno.gameofwar;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares two variants of a game by playing them in pairs on the same shuffles, so the difference between them
+ * isn't drowned out by the luck of the deal.
+ *
+ * Game n of both variants is shuffled with the seed game n of a batch with the master seed would get, the same
+ * thing as common random numbers in a simulation study. Games are played in blocks across a number of threads and
+ * the comparison stops after the first block where the confidence interval on the mean difference of every metric
+ * is within precision times the mean of variant A, or within precision when that mean is under one. If that never
+ * happens it stops at the most games allowed.
+ *
+ * Variants that deal differently, a different number of suits or ranks, still get the same seeds but not the same
+ * deck, so they gain little from the pairing. Variants that only change the rules gain the most.
+ */
+public class PairedComparison {
+
+    // pairs played between checks of the confidence intervals
+    public static final int BLOCK_SIZE = 1000;
+    // stop when every interval is within 1% of the mean
+    public static final double DEFAULT_PRECISION = 0.01;
+    public static final long DEFAULT_MAX_GAMES = 1000000;
+    // standard errors either side of the mean for a 95% interval
+    public static final double Z_95 = 1.959963984540054;
+
+    private final BatchRunner a;
+    private final BatchRunner b;
+    private double precision = DEFAULT_PRECISION;
+    private long maxGames = DEFAULT_MAX_GAMES;
+
+    /**
+     * @param configA
+     * @param configB
+     * @param masterSeed - every game seed is derived from this one
+     * @param storage - where games keep their decks and hands
+     */
+    public PairedComparison(final GameConfig configA, final GameConfig configB, final long masterSeed,
+                            final CardStorage storage) {
+        this.a = new BatchRunner(configA, masterSeed, storage);
+        this.b = new BatchRunner(configB, masterSeed, storage);
+    }
+
+    /**
+     * Set how tight the confidence intervals must be to stop
+     * @param relativeHalfWidth - half the width of the interval over the mean of variant A
+     */
+    public void setPrecision(final double relativeHalfWidth) {
+        if (!(relativeHalfWidth > 0)) {
+            throw new InvalidParameterException("precision must be greater than zero.");
+        }
+        this.precision = relativeHalfWidth;
+    }
+
+    /**
+     * Set the most pairs to play if the intervals never get tight enough
+     * @param games
+     */
+    public void setMaxGames(final long games) {
+        if (games < 1) {
+            throw new InvalidParameterException("games must be greater than zero.");
+        }
+        this.maxGames = games;
+    }
+
+    /**
+     * Play pairs until the intervals are tight enough or the most games have been played
+     * @param threads
+     * @return
+     */
+    public PairedStats run(final int threads) {
+        if (threads < 1) {
+            throw new InvalidParameterException("threads must be greater than zero.");
+        }
+
+        final PairedStats total = new PairedStats();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long played = 0;
+            while (played < maxGames) {
+                final long end = Math.min(maxGames, played + BLOCK_SIZE);
+                total.merge(playBlock(played, end, threads, executor));
+                played = end;
+
+                if (isPrecise(total)) {
+                    break;
+                }
+            }
+            return total;
+
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while playing games", ie);
+        } catch (ExecutionException ee) {
+            throw new IllegalStateException("A game failed", ee.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Whether every interval is tight enough to stop
+     * @param stats
+     * @return
+     */
+    boolean isPrecise(final PairedStats stats) {
+        for (int m = 0; m < PairedStats.getMetrics(); m++) {
+            final double scale = Math.max(1, Math.abs(stats.getMeanA(m)));
+            if (stats.getHalfWidth(m, Z_95) > precision * scale) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Play pairs first to end - 1 across the threads
+     * @param first
+     * @param end
+     * @param threads
+     * @param executor
+     * @return
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    private PairedStats playBlock(final long first, final long end, final int threads,
+                                  final ExecutorService executor) throws InterruptedException, ExecutionException {
+        final AtomicLong nextGame = new AtomicLong(first);
+
+        final List<Future<PairedStats>> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            workers.add(executor.submit(() -> {
+                PairedStats stats = new PairedStats();
+                for (long game = nextGame.getAndIncrement(); game < end; game = nextGame.getAndIncrement()) {
+                    stats.record(a.playGame(game), b.playGame(game));
+                }
+                return stats;
+            }));
+        }
+
+        final PairedStats block = new PairedStats();
+        for (Future<PairedStats> worker : workers) {
+            block.merge(worker.get());
+        }
+        return block;
+    }
+}
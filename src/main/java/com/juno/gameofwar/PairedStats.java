@@ -0,0 +1,211 @@
+package com.juno.gameofwar;
+
+import java.util.Locale;
+
+/**
+ * Summary of games played in pairs, where both games of a pair were dealt the same shuffle but played under two
+ * different variants, A and B. For game length, wars, longest war and winning score it keeps the mean of each
+ * variant and the mean and variance of the difference B - A within a pair.
+ *
+ * Because both games of a pair start from the same deck, most of the luck of the shuffle cancels out of the
+ * difference, and its variance is usually far smaller than the variance of the difference of two independent
+ * games. The ratio of the two is how many times more games independent sampling would need for the same interval.
+ *
+ * Only a running mean and sum of squared distances from it are kept for each, so memory is fixed and the variance
+ * stays accurate however big and close together the values are. Not thread safe - give each thread its own stats
+ * and merge them.
+ */
+public class PairedStats {
+
+    // the metrics compared, in the order of the arrays below
+    public static final int ROUNDS = 0;
+    public static final int WARS = 1;
+    public static final int LONGEST_WAR = 2;
+    public static final int WINNING_SCORE = 3;
+    private static final String[] NAMES = {"rounds", "wars", "longest war", "winning score"};
+
+    private long pairs = 0;
+    // means of each metric in variant A and B and of the difference B - A, and the sums of squared distances from
+    // those means, updated a pair at a time by Welford's method
+    private final double[] meanA = new double[NAMES.length];
+    private final double[] squaresA = new double[NAMES.length];
+    private final double[] meanB = new double[NAMES.length];
+    private final double[] squaresB = new double[NAMES.length];
+    private final double[] meanDifference = new double[NAMES.length];
+    private final double[] squaresDifference = new double[NAMES.length];
+
+    /**
+     * Add one pair of games that were dealt the same shuffle
+     * @param a
+     * @param b
+     */
+    public void record(final GameResult a, final GameResult b) {
+        pairs++;
+        record(ROUNDS, a.getRounds(), b.getRounds());
+        record(WARS, a.getWars(), b.getWars());
+        record(LONGEST_WAR, a.getMaxWarDepth(), b.getMaxWarDepth());
+        record(WINNING_SCORE, a.getHighScore(), b.getHighScore());
+    }
+
+    /**
+     * Add everything recorded in another stats object to this one
+     * @param other
+     */
+    public void merge(final PairedStats other) {
+        if (other.pairs == 0) {
+            return;
+        }
+        for (int m = 0; m < NAMES.length; m++) {
+            merge(meanA, squaresA, other.meanA, other.squaresA, m, other.pairs);
+            merge(meanB, squaresB, other.meanB, other.squaresB, m, other.pairs);
+            merge(meanDifference, squaresDifference, other.meanDifference, other.squaresDifference, m, other.pairs);
+        }
+        pairs += other.pairs;
+    }
+
+    /**
+     * Print the means, the differences with their confidence intervals and how much the pairing saved
+     * @param z - the number of standard errors either side of the mean the intervals span, 1.96 for 95%
+     */
+    public void print(final double z) {
+        System.out.println("\n" + pairs + " pairs of games played");
+        System.out.println("");
+        System.out.println(String.format(Locale.ROOT, "%-16s%12s%12s%12s%12s%12s", "", "mean A", "mean B",
+                "B - A", "+/-", "saving"));
+
+        for (int m = 0; m < NAMES.length; m++) {
+            System.out.println(String.format(Locale.ROOT, "%-16s%12.3f%12.3f%12.3f%12.3f%11.1fx", NAMES[m],
+                    getMeanA(m), getMeanB(m), getMeanDifference(m), getHalfWidth(m, z), getSaving(m)));
+        }
+    }
+
+    /**
+     * @return the number of pairs recorded
+     */
+    public long getPairs() {
+        return pairs;
+    }
+
+    /**
+     * @param metric - ROUNDS, WARS, LONGEST_WAR or WINNING_SCORE
+     * @return the mean of the metric under variant A
+     */
+    public double getMeanA(final int metric) {
+        return meanA[metric];
+    }
+
+    /**
+     * @param metric
+     * @return the mean of the metric under variant B
+     */
+    public double getMeanB(final int metric) {
+        return meanB[metric];
+    }
+
+    /**
+     * @param metric
+     * @return the mean of B - A
+     */
+    public double getMeanDifference(final int metric) {
+        return meanDifference[metric];
+    }
+
+    /**
+     * Half the width of the confidence interval around the mean difference
+     * @param metric
+     * @param z - the number of standard errors either side of the mean, 1.96 for 95%
+     * @return infinite until there are two pairs
+     */
+    public double getHalfWidth(final int metric, final double z) {
+        if (pairs < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return z * Math.sqrt(variance(squaresDifference[metric]) / pairs);
+    }
+
+    /**
+     * How many times more games two independent samples would need for the same interval on the difference
+     * @param metric
+     * @return
+     */
+    public double getSaving(final int metric) {
+        final double paired = variance(squaresDifference[metric]);
+        final double independent = variance(squaresA[metric]) + variance(squaresB[metric]);
+        if (paired == 0) {
+            if (independent == 0) {
+                return 1;
+            }
+            return Double.POSITIVE_INFINITY;
+        }
+        return independent / paired;
+    }
+
+    /**
+     * Get the name of a metric, as printed
+     * @param metric
+     * @return
+     */
+    public static String getName(final int metric) {
+        return NAMES[metric];
+    }
+
+    /**
+     * @return the number of metrics compared
+     */
+    public static int getMetrics() {
+        return NAMES.length;
+    }
+
+    /**
+     * @param metric
+     * @param a
+     * @param b
+     */
+    private void record(final int metric, final long a, final long b) {
+        add(meanA, squaresA, metric, a);
+        add(meanB, squaresB, metric, b);
+        add(meanDifference, squaresDifference, metric, (double) b - a);
+    }
+
+    /**
+     * Move a mean and its sum of squared distances on by one value, pairs already counting it
+     * @param mean
+     * @param squares
+     * @param metric
+     * @param value
+     */
+    private void add(final double[] mean, final double[] squares, final int metric, final double value) {
+        final double delta = value - mean[metric];
+        mean[metric] += delta / pairs;
+        squares[metric] += delta * (value - mean[metric]);
+    }
+
+    /**
+     * Combine another mean and sum of squared distances into these, before pairs counts the other's pairs
+     * @param mean
+     * @param squares
+     * @param otherMean
+     * @param otherSquares
+     * @param metric
+     * @param otherPairs
+     */
+    private void merge(final double[] mean, final double[] squares, final double[] otherMean,
+                       final double[] otherSquares, final int metric, final long otherPairs) {
+        final double total = pairs + otherPairs;
+        final double delta = otherMean[metric] - mean[metric];
+        mean[metric] += delta * otherPairs / total;
+        squares[metric] += otherSquares[metric] + delta * delta * pairs / total * otherPairs;
+    }
+
+    /**
+     * Sample variance from a sum of squared distances from the mean
+     * @param squares
+     * @return
+     */
+    private double variance(final double squares) {
+        if (pairs < 2) {
+            return 0;
+        }
+        return squares / (pairs - 1);
+    }
+}
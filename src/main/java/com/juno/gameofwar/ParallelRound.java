@@ -0,0 +1,126 @@
+package com.juno.gameofwar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Plays one "basic" round of war with the players split into slices across the common fork join pool.
+ *
+ * Every slice plays a card for each of its players and keeps the highest rank it saw together with the players
+ * that played it, in seat order. Slices are then merged left to right: a higher rank replaces what came before
+ * and an equal rank appends its players. That leaves exactly the winner, or the tied players in seat order,
+ * that War.playRound finds when it walks the players one at a time.
+ *
+ * Only worth it when a round has thousands of players still in, see War.setParallelRoundThreshold.
+ */
+public final class ParallelRound {
+
+    // slices are this many players, the last one may be smaller
+    public static final int SLICE_SIZE = 1024;
+
+    // number of cards played in this slice
+    private int cardsPlayed = 0;
+    // the highest rank played in this slice, only valid if leaders is not empty
+    private int highRank = 0;
+    // the players that played highRank, in seat order
+    private List<Player> leaders = new ArrayList<>(1);
+
+    /**
+     * Use playRound
+     */
+    private ParallelRound() { }
+
+    /**
+     * Play one round in parallel. Gives the same result as War.playRound.
+     *
+     * @param players - a random access list of players
+     * @param startingScore
+     * @return
+     */
+    public static RoundResult playRound(final List<Player> players, final int startingScore) {
+        final int slices = (players.size() + SLICE_SIZE - 1) / SLICE_SIZE;
+
+        // the stream is ordered so the slices are merged in seat order
+        ParallelRound round = IntStream.range(0, slices)
+                .parallel()
+                .mapToObj(slice -> playSlice(players, slice * SLICE_SIZE,
+                        Math.min(players.size(), (slice + 1) * SLICE_SIZE)))
+                .reduce(new ParallelRound(), ParallelRound::merge);
+
+        // game policy: if no one has cards left, the first player wins
+        if (round.leaders.isEmpty()) {
+            return new RoundResult(startingScore, players.get(0));
+        }
+
+        // score equals the number of cards played
+        final int score = startingScore + round.cardsPlayed;
+
+        if (round.leaders.size() == 1) {
+            return new RoundResult(score, round.leaders.get(0));
+        } else {
+            return new RoundResult(score, round.leaders);
+        }
+    }
+
+    /**
+     * Play a card for every player in a slice on this thread
+     * @param players
+     * @param from - index of the first player of the slice
+     * @param to - index one past the last player of the slice
+     * @return
+     */
+    private static ParallelRound playSlice(final List<Player> players, final int from, final int to) {
+        ParallelRound slice = new ParallelRound();
+
+        for (int i = from; i < to; i++) {
+            final Player player = players.get(i);
+            final Card card = player.playCardFromHand();
+
+            if (card == null) {
+                // the player is out of cards and cannot be considered
+                continue;
+            }
+
+            slice.cardsPlayed++;
+
+            if (slice.leaders.isEmpty() || card.getRank() > slice.highRank) {
+                slice.leaders.clear();
+                slice.leaders.add(player);
+                slice.highRank = card.getRank();
+
+            } else if (card.getRank() == slice.highRank) {
+                slice.leaders.add(player);
+            }
+        }
+        return slice;
+    }
+
+    /**
+     * Combine two neighbouring results, left being the one for the lower seats
+     * @param left
+     * @param right
+     * @return
+     */
+    private static ParallelRound merge(final ParallelRound left, final ParallelRound right) {
+        ParallelRound merged = new ParallelRound();
+        merged.cardsPlayed = left.cardsPlayed + right.cardsPlayed;
+
+        if (right.leaders.isEmpty() || (!left.leaders.isEmpty() && left.highRank > right.highRank)) {
+            merged.leaders = left.leaders;
+            merged.highRank = left.highRank;
+
+        } else if (left.leaders.isEmpty() || right.highRank > left.highRank) {
+            merged.leaders = right.leaders;
+            merged.highRank = right.highRank;
+
+        } else {
+            // same high rank on both sides - everyone ties, lower seats first
+            merged.leaders = new ArrayList<>(left.leaders.size() + right.leaders.size());
+            merged.leaders.addAll(left.leaders);
+            merged.leaders.addAll(right.leaders);
+            merged.highRank = left.highRank;
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,244 @@
+package com.juno.gameofwar;
+
+import java.security.InvalidParameterException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Shuffles big decks across the cores of a fork join pool.
+ *
+ * Every card is scattered into a bucket picked uniformly at random, then every bucket is shuffled with
+ * Fisher-Yates and the buckets are laid end to end. Random bucket sizes followed by a uniform shuffle of each
+ * bucket give a uniform permutation of the whole deck.
+ *
+ * The cards are split into chunks for the scatter, and both the chunks and the buckets are sized from the
+ * number of cards alone. Each chunk and each bucket draws from its own generator seeded in a fixed order, so the
+ * same seed gives the same permutation no matter how many threads the pool has or which of them does the work.
+ *
+ * A store is shuffled through a second store of its own kind, so the shuffle needs one more deck's worth of the
+ * same memory and, whatever the kind, an int of heap for every pair of a chunk and a bucket.
+ */
+public final class ParallelShuffle {
+
+    // cards in one chunk of the scatter and the average cards in one bucket, sized to stay in a core's cache
+    public static final int DEFAULT_CHUNK_SIZE = 65536;
+    public static final int DEFAULT_BUCKET_SIZE = 65536;
+
+    /**
+     * Private constructor
+     */
+    private ParallelShuffle() { }
+
+    /**
+     * Shuffle the cards of a store in place, scattering them into a second store of the same kind rather than
+     * into arrays on the heap, so a deck kept off the heap or packed still needs no more heap than its own kind
+     * of memory. Kinds of store that can be set from many threads at once are scattered and shuffled across the
+     * pool, the others on this thread, into the same permutation.
+     * @param cards
+     * @param storage - the kind of store cards is
+     * @param seed
+     * @param pool
+     */
+    public static void shuffle(final CardStore cards, final CardStorage storage, final long seed,
+                               final ForkJoinPool pool) {
+        final int size = cards.size();
+        final boolean parallel = storage.setsFromManyThreads();
+        final int chunks = chunksOf(size, DEFAULT_CHUNK_SIZE);
+        final int buckets = Math.max(1, chunksOf(size, DEFAULT_BUCKET_SIZE));
+        final long chunkParent = Seeds.of(seed, 0);
+        final long bucketParent = Seeds.of(seed, 1);
+
+        // counting only reads the store, so it is always spread over the pool
+        final int[][] slots = new int[chunks][];
+        final int[] bucketStarts = layOut(slots, size, buckets, chunkParent, pool, DEFAULT_CHUNK_SIZE);
+
+        // filled with the cards themselves so a packed store starts out as wide as the deck
+        final CardStore scattered = storage.newStore(size);
+        for (int i = 0; i < size; i++) {
+            scattered.add(cards.suitAt(i), cards.rankAt(i));
+        }
+
+        run(pool, chunks, parallel, chunk -> {
+            final SplittableRandom random = new SplittableRandom(Seeds.of(chunkParent, chunk));
+            final int[] nextSlot = slots[chunk];
+            final int end = chunkEnd(chunk, DEFAULT_CHUNK_SIZE, size);
+            for (int i = chunk * DEFAULT_CHUNK_SIZE; i < end; i++) {
+                final int slot = nextSlot[random.nextInt(buckets)]++;
+                scattered.set(slot, cards.suitAt(i), cards.rankAt(i));
+            }
+        });
+
+        run(pool, buckets, parallel, bucket -> {
+            final SplittableRandom random = new SplittableRandom(Seeds.of(bucketParent, bucket));
+            final int start = bucketStarts[bucket];
+            final int end = bucketStarts[bucket + 1];
+            for (int i = end - 1; i > start; i--) {
+                final int j = start + random.nextInt(i - start + 1);
+                final int suit = scattered.suitAt(i);
+                final int rank = scattered.rankAt(i);
+                scattered.set(i, scattered.suitAt(j), scattered.rankAt(j));
+                scattered.set(j, suit, rank);
+            }
+            for (int i = start; i < end; i++) {
+                cards.set(i, scattered.suitAt(i), scattered.rankAt(i));
+            }
+        });
+    }
+
+    /**
+     * Shuffle cards held as a suit array and a rank array in place
+     * @param suits
+     * @param ranks - the same length as suits
+     * @param seed
+     * @param pool
+     */
+    public static void shuffle(final int[] suits, final int[] ranks, final long seed, final ForkJoinPool pool) {
+        shuffle(suits, ranks, seed, pool, DEFAULT_CHUNK_SIZE, DEFAULT_BUCKET_SIZE);
+    }
+
+    /**
+     * Shuffle cards held as a suit array and a rank array in place, with the given sizes of chunks and buckets
+     * @param suits
+     * @param ranks - the same length as suits
+     * @param seed
+     * @param pool
+     * @param chunkSize - cards per chunk of the scatter
+     * @param bucketSize - average cards per bucket
+     */
+    static void shuffle(final int[] suits, final int[] ranks, final long seed, final ForkJoinPool pool,
+                        final int chunkSize, final int bucketSize) {
+        if (suits.length != ranks.length) {
+            throw new InvalidParameterException("suits and ranks must hold the same number of cards.");
+        }
+
+        final int size = suits.length;
+        final int chunks = chunksOf(size, chunkSize);
+        final int buckets = Math.max(1, chunksOf(size, bucketSize));
+
+        // every chunk and bucket is seeded by its number, so no thread decides which generator it gets
+        final long chunkParent = Seeds.of(seed, 0);
+        final long bucketParent = Seeds.of(seed, 1);
+
+        final int[][] slots = new int[chunks][];
+        final int[] bucketStarts = layOut(slots, size, buckets, chunkParent, pool, chunkSize);
+
+        // scatter, drawing the same buckets again from the same generators
+        final int[] scatteredSuits = new int[size];
+        final int[] scatteredRanks = new int[size];
+        run(pool, chunks, chunk -> {
+            final SplittableRandom random = new SplittableRandom(Seeds.of(chunkParent, chunk));
+            final int[] nextSlot = slots[chunk];
+            final int end = chunkEnd(chunk, chunkSize, size);
+            for (int i = chunk * chunkSize; i < end; i++) {
+                final int slot = nextSlot[random.nextInt(buckets)]++;
+                scatteredSuits[slot] = suits[i];
+                scatteredRanks[slot] = ranks[i];
+            }
+        });
+
+        // Fisher-Yates each bucket and copy it back
+        run(pool, buckets, bucket -> {
+            final SplittableRandom random = new SplittableRandom(Seeds.of(bucketParent, bucket));
+            final int start = bucketStarts[bucket];
+            final int end = bucketStarts[bucket + 1];
+            for (int i = end - 1; i > start; i--) {
+                final int j = start + random.nextInt(i - start + 1);
+                final int suit = scatteredSuits[i];
+                final int rank = scatteredRanks[i];
+                scatteredSuits[i] = scatteredSuits[j];
+                scatteredRanks[i] = scatteredRanks[j];
+                scatteredSuits[j] = suit;
+                scatteredRanks[j] = rank;
+            }
+            System.arraycopy(scatteredSuits, start, suits, start, end - start);
+            System.arraycopy(scatteredRanks, start, ranks, start, end - start);
+        });
+    }
+
+    /**
+     * Count how many cards of each chunk go to each bucket, then turn the counts into the first slot of each
+     * chunk's share of each bucket, with the chunks of a bucket in order and the buckets in order
+     * @param slots - filled with an array of slots per chunk
+     * @param size
+     * @param buckets
+     * @param chunkParent - the seed the chunks' seeds are derived from
+     * @param pool
+     * @param chunkSize
+     * @return the first slot of each bucket, and size after the last
+     */
+    private static int[] layOut(final int[][] slots, final int size, final int buckets, final long chunkParent,
+                                final ForkJoinPool pool, final int chunkSize) {
+        run(pool, slots.length, chunk -> {
+            final SplittableRandom random = new SplittableRandom(Seeds.of(chunkParent, chunk));
+            final int[] counts = new int[buckets];
+            final int end = chunkEnd(chunk, chunkSize, size);
+            for (int i = chunk * chunkSize; i < end; i++) {
+                counts[random.nextInt(buckets)]++;
+            }
+            slots[chunk] = counts;
+        });
+
+        final int[] bucketStarts = new int[buckets + 1];
+        int next = 0;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            bucketStarts[bucket] = next;
+            for (int[] chunk : slots) {
+                final int count = chunk[bucket];
+                chunk[bucket] = next;
+                next += count;
+            }
+        }
+        bucketStarts[buckets] = size;
+        return bucketStarts;
+    }
+
+    /**
+     * Run a task for every number from zero up to count, in the given pool
+     * @param pool
+     * @param count
+     * @param task
+     */
+    private static void run(final ForkJoinPool pool, final int count, final IntConsumer task) {
+        // a parallel stream started from inside a fork join pool splits its work in that pool
+        pool.submit(() -> IntStream.range(0, count).parallel().forEach(task)).join();
+    }
+
+    /**
+     * Run a task for every number from zero up to count, in the given pool or in order on this thread
+     * @param pool
+     * @param count
+     * @param parallel
+     * @param task
+     */
+    private static void run(final ForkJoinPool pool, final int count, final boolean parallel,
+                            final IntConsumer task) {
+        if (parallel) {
+            run(pool, count, task);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            task.accept(i);
+        }
+    }
+
+    /**
+     * @param chunk
+     * @param chunkSize
+     * @param size
+     * @return the index after the last card of a chunk
+     */
+    private static int chunkEnd(final int chunk, final int chunkSize, final int size) {
+        return (int) Math.min(size, (chunk + 1L) * chunkSize);
+    }
+
+    /**
+     * @param size
+     * @param chunkSize
+     * @return the number of chunks needed to cover size
+     */
+    private static int chunksOf(final int size, final int chunkSize) {
+        return (int) (((long) size + chunkSize - 1) / chunkSize);
+    }
+}
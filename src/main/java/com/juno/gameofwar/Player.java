@@ -1,15 +1,12 @@
 package com.juno.gameofwar;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Created by Joe Teibel.
  */
 public class Player {
 
-    // list of cards this player is holding
-    private List<Card> hand = new ArrayList<>(0);
+    // cards this player is holding
+    private final CardStore hand;
     // an integer id for the player
     private final int id;
 
@@ -18,7 +15,17 @@ public class Player {
      * @param id - identifier for the player
      */
     public Player(final int id) {
+        this(id, new HeapCardStore());
+    }
+
+    /**
+     * Create a new player with id whose hand is kept in the given store
+     * @param id - identifier for the player
+     * @param hand - an empty store to hold the players cards
+     */
+    public Player(final int id, final CardStore hand) {
         this.id = id;
+        this.hand = hand;
     }
 
     /**
@@ -35,7 +42,7 @@ public class Player {
      * @param card
      */
     public void addCardToHand(final Card card) {
-        hand.add(card);
+        hand.add(card.getSuit(), card.getRank());
     }
 
     /**
@@ -43,14 +50,8 @@ public class Player {
      * Returns null if this player has no cards in their hand.
      */
     public Card playCardFromHand() {
-        // do we have a card to return?
-        if (hand.size() == 0) {
-            return null;
-        }
-
-        Card returnCard = hand.get(0);
-        hand.remove(0);
-        return returnCard;
+        // the store returns null when there are no cards left
+        return hand.take();
     }
 
     /**
@@ -61,6 +62,14 @@ public class Player {
         return hand.size() != 0;
     }
 
+    /**
+     * Get the store holding this players hand, front first
+     * @return
+     */
+    public CardStore getHand() {
+        return hand;
+    }
+
     /**
      * Returns the number of cards in the players hand
      * @return
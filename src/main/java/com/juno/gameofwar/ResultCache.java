@@ -0,0 +1,287 @@
+package com.juno.gameofwar;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the results of games so that playing the same game again is a lookup.
+ *
+ * A game is identified by its config and shuffle seed. Results are kept in a bounded least recently used map in
+ * memory and, optionally, in a DiskResultStore so they survive between runs. Safe to share between threads.
+ *
+ * Keys are canonical: suits never affect the outcome of a game, only how many cards each rank has, so the key
+ * holds the number of suits and nothing else about them. When there is only one rank every card ties every
+ * other card and every shuffle plays the same game, so the seed is dropped from the key and all of those
+ * games share one entry.
+ *
+ * Entries keep the seats of the winners rather than the players, so a cached result never holds on to the hands
+ * the game was played with. Results answered from the cache have players without cards.
+ */
+public class ResultCache implements Closeable {
+
+    // used to build the hash code of a key
+    private static final int HASH_MULTIPLIER = 31;
+    private static final int HASH_SHIFT = 32;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    // in memory entries, most recently used last
+    private final Map<Key, Entry> memory;
+    // may be null if results are only kept in memory
+    private final DiskResultStore disk;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Create a cache
+     * @param memoryEntries - the most results to keep in memory
+     * @param disk - where to keep results between runs, may be null
+     */
+    public ResultCache(final int memoryEntries, final DiskResultStore disk) {
+        this.disk = disk;
+        this.memory = new LeastRecentlyUsed(memoryEntries);
+    }
+
+    /**
+     * Create a cache that also keeps results in a directory
+     * @param memoryEntries - the most results to keep in memory
+     * @param directory
+     * @param maxDiskBytes - roughly the most disk space to use
+     */
+    public ResultCache(final int memoryEntries, final Path directory, final long maxDiskBytes) {
+        this(memoryEntries, new DiskResultStore(directory, maxDiskBytes));
+    }
+
+    /**
+     * Return the stored result of a game, or play it and store the result if there isn't one
+     * @param config
+     * @param seed
+     * @param storage - where to keep the deck and hands if the game has to be played
+     * @return
+     */
+    public GameResult play(final GameConfig config, final long seed, final CardStorage storage) {
+        return play(config, seed, storage, null);
+    }
+
+    /**
+     * Return the stored result of a game, or play it with the given engine and store the result if there isn't one
+     * @param config
+     * @param seed
+     * @param storage - where to keep the deck and hands if the game has to be played
+     * @param engine - may be null to play it the way GameConfig.play does
+     * @return
+     */
+    public GameResult play(final GameConfig config, final long seed, final CardStorage storage,
+                           final Engine engine) {
+        final Key key = new Key(config, seed);
+
+        GameResult result = get(key);
+        if (result != null) {
+            hits.incrementAndGet();
+            return result;
+        }
+
+        misses.incrementAndGet();
+        if (engine == null) {
+            result = config.play(seed, storage);
+        } else {
+            result = engine.play(config, seed, storage);
+        }
+        put(key, result);
+        return result;
+    }
+
+    /**
+     * @return the number of games answered from the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of games that had to be played
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public void close() {
+        if (disk != null) {
+            disk.close();
+        }
+    }
+
+    /**
+     * Check memory first, then disk
+     * @param key
+     * @return null if the game isn't stored
+     */
+    private GameResult get(final Key key) {
+        Entry entry;
+        synchronized (memory) {
+            entry = memory.get(key);
+        }
+        if (entry != null) {
+            return entry.toResult();
+        }
+        if (disk == null) {
+            return null;
+        }
+        final GameResult result = disk.get(key);
+        if (result != null) {
+            synchronized (memory) {
+                memory.put(key, new Entry(result));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Store in memory and on disk
+     * @param key
+     * @param result
+     */
+    private void put(final Key key, final GameResult result) {
+        final Entry entry = new Entry(result);
+        synchronized (memory) {
+            memory.put(key, entry);
+        }
+        if (disk != null) {
+            disk.put(key, result);
+        }
+    }
+
+    /**
+     * A result as it is kept in memory, with the seats of the winners and not the players
+     */
+    private static final class Entry {
+
+        private final int[] winners;
+        private final int highScore;
+        private final long rounds;
+        private final long wars;
+        private final int maxWarDepth;
+
+        /**
+         * @param result
+         */
+        private Entry(final GameResult result) {
+            final List<Player> players = result.getWinners();
+            winners = new int[players.size()];
+            for (int i = 0; i < winners.length; i++) {
+                winners[i] = players.get(i).getId();
+            }
+            highScore = result.getHighScore();
+            rounds = result.getRounds();
+            wars = result.getWars();
+            maxWarDepth = result.getMaxWarDepth();
+        }
+
+        /**
+         * @return the result with players that hold no cards
+         */
+        private GameResult toResult() {
+            final List<Player> players = new ArrayList<>(winners.length);
+            for (int seat : winners) {
+                players.add(new Player(seat));
+            }
+            return new GameResult(players, highScore, rounds, wars, maxWarDepth);
+        }
+    }
+
+    /**
+     * A map that drops its least recently used entry once it holds more than its limit
+     */
+    private static final class LeastRecentlyUsed extends LinkedHashMap<Key, Entry> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        /**
+         * @param maxEntries
+         */
+        private LeastRecentlyUsed(final int maxEntries) {
+            super(INITIAL_CAPACITY, LOAD_FACTOR, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Key, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+    /**
+     * Identifies a game
+     */
+    public static final class Key {
+
+        private final GameConfig config;
+        private final long seed;
+
+        /**
+         * @param config
+         * @param seed - the shuffle seed, canonicalized
+         */
+        public Key(final GameConfig config, final long seed) {
+            this.config = config;
+            if (config.getNumberOfRanks() == 1) {
+                // every shuffle plays the same game
+                this.seed = 0;
+            } else {
+                this.seed = seed;
+            }
+        }
+
+        /**
+         * @return
+         */
+        public GameConfig getConfig() {
+            return config;
+        }
+
+        /**
+         * @return the canonical seed
+         */
+        public long getSeed() {
+            return seed;
+        }
+
+        /**
+         * A well mixed 64 bit hash for the disk index, never zero
+         * @return
+         */
+        public long longHash() {
+            long h = BatchRunner.gameSeed(seed, config.hashCode());
+            if (h == 0) {
+                h = 1;
+            }
+            return h;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return seed == other.seed && config.equals(other.config);
+        }
+
+        @Override
+        public int hashCode() {
+            return HASH_MULTIPLIER * config.hashCode() + (int) (seed ^ (seed >>> HASH_SHIFT));
+        }
+    }
+}
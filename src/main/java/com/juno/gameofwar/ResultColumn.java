@@ -0,0 +1,30 @@
+package com.juno.gameofwar;
+
+/**
+ * The columns of a game record in a file written by ColumnarResultWriter, in the order they are stored in
+ * every chunk. New columns go at the end so older files can still be read.
+ */
+public enum ResultColumn {
+
+    // the number of the game in its batch, the difference from the previous game of the chunk as a varint
+    GAME,
+    // the shuffle seed, eight bytes because seeds are random and don't compress
+    SEED,
+    // suits, ranks, players and rules, a dictionary of the configs in the chunk and an index per game
+    CONFIG,
+    // varints
+    ROUNDS,
+    WARS,
+    LONGEST_WAR,
+    // the seats of the winners, a dictionary of the sets of winners in the chunk and an index per game
+    WINNERS,
+    // varint
+    HIGH_SCORE;
+
+    /**
+     * @return whether the column holds an index into a dictionary rather than a value
+     */
+    public boolean isDictionary() {
+        return this == CONFIG || this == WINNERS;
+    }
+}
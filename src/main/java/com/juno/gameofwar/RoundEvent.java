@@ -0,0 +1,60 @@
+package com.juno.gameofwar;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for one round, including any war it started. Only one round in every SAMPLE_INTERVAL
+ * is recorded so that games of millions of rounds don't flood the recording.
+ * Disabled unless a recording turns it on, see gameofwar.jfc.
+ */
+@Name(RoundEvent.NAME)
+@Label("Round")
+@Category("Game of War")
+@Description("A sampled round, including any war it started")
+@Enabled(false)
+@StackTrace(false)
+public final class RoundEvent extends Event {
+
+    public static final String NAME = "com.juno.gameofwar.Round";
+    // rounds 0, SAMPLE_INTERVAL, 2 * SAMPLE_INTERVAL and so on are recorded, must be a power of two
+    public static final int SAMPLE_INTERVAL = 1024;
+
+    @Label("Round")
+    @Description("The number of the round in the game, starting at zero")
+    private long round;
+
+    @Label("Players")
+    @Description("The number of players in the game")
+    private int players;
+
+    @Label("Score")
+    private int score;
+
+    @Label("War")
+    @Description("Whether the round tied and went to war")
+    private boolean war;
+
+    @Label("Winner")
+    private int winner;
+
+    /**
+     * @param roundNumber
+     * @param numberOfPlayers
+     * @param wentToWar
+     * @param result - how the round ended, after any war
+     */
+    void setRound(final long roundNumber, final int numberOfPlayers, final boolean wentToWar,
+                  final RoundResult result) {
+        this.round = roundNumber;
+        this.players = numberOfPlayers;
+        this.war = wentToWar;
+        this.score = result.getScore();
+        this.winner = result.getWinner().getId();
+    }
+}
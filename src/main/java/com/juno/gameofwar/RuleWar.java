@@ -0,0 +1,135 @@
+package com.juno.gameofwar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A game of war played by rules other than the standard ones, see Rules.
+ *
+ * War plays the standard rules with them written into its round loop. This class replaces that loop and the war
+ * loop with ones that read the rules from final fields, so the standard game never pays for the variants and the
+ * JIT only ever sees one implementation of each loop until a variant is actually played. Rounds are always
+ * played on the calling thread, whatever the parallel round threshold.
+ */
+final class RuleWar extends War {
+
+    private final Rules rules;
+    private final int warDiscards;
+    private final boolean lastPlayerWhenOut;
+    private final boolean faceValue;
+
+    /**
+     * @param storage
+     * @param rules
+     */
+    RuleWar(final CardStorage storage, final Rules rules) {
+        super(storage);
+        this.rules = rules;
+        this.warDiscards = rules.getWarDiscards();
+        this.lastPlayerWhenOut = rules.getOutOfCards() == Rules.OutOfCards.LAST_PLAYER;
+        this.faceValue = rules.getScoring() == Rules.Scoring.FACE_VALUE;
+    }
+
+    @Override
+    public Rules getRules() {
+        return rules;
+    }
+
+    @Override
+    public RoundResult playRound(final List<Player> players, final int startingScore) {
+        Player winningPlayer = null;
+        int winningRank = -1;
+        List<Player> tiedPlayers = null;
+        int score = startingScore;
+
+        for (int i = 0; i < players.size(); i++) {
+            final Player player = players.get(i);
+            final Card card = player.playCardFromHand();
+            if (card == null) {
+                // the player is out of cards and cannot be considered
+                continue;
+            }
+            score += points(card);
+
+            if (card.getRank() > winningRank) {
+                winningPlayer = player;
+                winningRank = card.getRank();
+                tiedPlayers = null;
+            } else if (card.getRank() == winningRank) {
+                if (tiedPlayers == null) {
+                    tiedPlayers = new ArrayList<>();
+                    tiedPlayers.add(winningPlayer);
+                    winningPlayer = null;
+                }
+                tiedPlayers.add(player);
+            }
+        }
+
+        if (winningRank < 0) {
+            // nobody had a card
+            return new RoundResult(startingScore, outOfCardsWinner(players));
+        }
+        if (winningPlayer != null) {
+            return new RoundResult(score, winningPlayer);
+        }
+        return new RoundResult(score, tiedPlayers);
+    }
+
+    @Override
+    protected RoundResult fightWar(final List<Player> players, final int startingScore) {
+        countWarRound();
+        int score = startingScore;
+
+        // each player discards up to warDiscards cards face down, a player who had none left is out of the war
+        final List<Player> playersStillIn = new ArrayList<>();
+        for (int i = 0; i < players.size(); i++) {
+            final Player player = players.get(i);
+            boolean discarded = false;
+            for (int d = 0; d < warDiscards; d++) {
+                final Card card = player.playCardFromHand();
+                if (card == null) {
+                    break;
+                }
+                score += points(card);
+                discarded = true;
+            }
+            if (discarded || warDiscards == 0) {
+                playersStillIn.add(player);
+            }
+        }
+
+        if (playersStillIn.isEmpty()) {
+            return new RoundResult(score, outOfCardsWinner(players));
+        }
+
+        final RoundResult warResult = playRound(playersStillIn, score);
+        if (warResult.isTie()) {
+            return fightWar(warResult.getTiedPlayers(), warResult.getScore());
+        }
+        return warResult;
+    }
+
+    /**
+     * What a card is worth to the player who wins it
+     * @param card
+     * @return
+     */
+    private int points(final Card card) {
+        if (faceValue) {
+            return card.getRank() + 1;
+        }
+        return 1;
+    }
+
+    /**
+     * The player who wins when nobody has any cards left
+     * @param players
+     * @return
+     */
+    private Player outOfCardsWinner(final List<Player> players) {
+        if (lastPlayerWhenOut) {
+            return players.get(players.size() - 1);
+        }
+        return players.get(0);
+    }
+}
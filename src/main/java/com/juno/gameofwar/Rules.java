@@ -0,0 +1,224 @@
+package com.juno.gameofwar;
+
+import java.security.InvalidParameterException;
+
+/**
+ * The house rules a game is played by: how many cards each player discards face down before a war is decided,
+ * who wins a round when every player in it has run out of cards, and what a won card is worth.
+ *
+ * Games with the standard rules are played by War itself and never look at their rules. Any other rules are
+ * played by RuleWar, so variants cost the standard game nothing. Rules are immutable and compare by value.
+ */
+public final class Rules {
+
+    // a war discards this many cards per player at most
+    public static final int MAX_WAR_DISCARDS = 10;
+    // rule names as written on the command line, e.g. "discards=3,out=last,scoring=face"
+    public static final String DISCARDS = "discards";
+    public static final String OUT_OF_CARDS = "out";
+    public static final String SCORING = "scoring";
+
+    // one card down per war, the first player wins when nobody has cards and every card is worth one point
+    public static final Rules STANDARD = new Rules(1, OutOfCards.FIRST_PLAYER, Scoring.CARDS);
+
+    private static final int HASH_MULTIPLIER = 31;
+    private static final int BYTE_BITS = 8;
+    private static final int BYTE_MASK = 0xFF;
+
+    private final int warDiscards;
+    private final OutOfCards outOfCards;
+    private final Scoring scoring;
+
+    /**
+     * Who wins a round, or a war, when every player in it has run out of cards
+     */
+    public enum OutOfCards {
+        // the first player in seat order
+        FIRST_PLAYER("first"),
+        // the last player in seat order
+        LAST_PLAYER("last");
+
+        private final String optionName;
+
+        /**
+         * @param optionName
+         */
+        OutOfCards(final String optionName) {
+            this.optionName = optionName;
+        }
+
+        /**
+         * @return the name used on the command line
+         */
+        public String getOptionName() {
+            return optionName;
+        }
+    }
+
+    /**
+     * What each card won in a round is worth
+     */
+    public enum Scoring {
+        // one point per card
+        CARDS("cards"),
+        // the rank of the card plus one, so the lowest card is still worth a point
+        FACE_VALUE("face");
+
+        private final String optionName;
+
+        /**
+         * @param optionName
+         */
+        Scoring(final String optionName) {
+            this.optionName = optionName;
+        }
+
+        /**
+         * @return the name used on the command line
+         */
+        public String getOptionName() {
+            return optionName;
+        }
+    }
+
+    /**
+     * @param warDiscards - cards each player discards face down before a war is decided, zero or more
+     * @param outOfCards
+     * @param scoring
+     */
+    public Rules(final int warDiscards, final OutOfCards outOfCards, final Scoring scoring) {
+        if (warDiscards < 0 || warDiscards > MAX_WAR_DISCARDS) {
+            throw new InvalidParameterException(DISCARDS + " must be between 0 and " + MAX_WAR_DISCARDS);
+        }
+        this.warDiscards = warDiscards;
+        this.outOfCards = outOfCards;
+        this.scoring = scoring;
+    }
+
+    /**
+     * Change some of the rules
+     * @param overrides - name=value pairs separated by commas, for example "discards=3,scoring=face"
+     * @return
+     */
+    public Rules with(final String overrides) {
+        Rules rules = this;
+        for (String override : overrides.split(",")) {
+            final String[] parts = override.split("=");
+            if (parts.length != 2) {
+                throw new InvalidParameterException("expected name=value rules but found '" + override + "'");
+            }
+            rules = rules.with(parts[0].trim(), parts[1].trim());
+        }
+        return rules;
+    }
+
+    /**
+     * Change one rule
+     * @param name - discards, out or scoring
+     * @param value
+     * @return
+     */
+    public Rules with(final String name, final String value) {
+        if (DISCARDS.equals(name)) {
+            try {
+                return new Rules(Integer.parseInt(value), outOfCards, scoring);
+            } catch (NumberFormatException nfe) {
+                throw new InvalidParameterException(DISCARDS + " must be a number");
+            }
+        }
+        if (OUT_OF_CARDS.equals(name)) {
+            for (OutOfCards policy : OutOfCards.values()) {
+                if (policy.getOptionName().equalsIgnoreCase(value)) {
+                    return new Rules(warDiscards, policy, scoring);
+                }
+            }
+            throw new InvalidParameterException("Unknown out of cards rule '" + value + "'");
+        }
+        if (SCORING.equals(name)) {
+            for (Scoring points : Scoring.values()) {
+                if (points.getOptionName().equalsIgnoreCase(value)) {
+                    return new Rules(warDiscards, outOfCards, points);
+                }
+            }
+            throw new InvalidParameterException("Unknown scoring rule '" + value + "'");
+        }
+        throw new InvalidParameterException("Unknown rule '" + name + "'");
+    }
+
+    /**
+     * @return cards each player discards face down before a war is decided
+     */
+    public int getWarDiscards() {
+        return warDiscards;
+    }
+
+    /**
+     * @return who wins when every player has run out of cards
+     */
+    public OutOfCards getOutOfCards() {
+        return outOfCards;
+    }
+
+    /**
+     * @return what a won card is worth
+     */
+    public Scoring getScoring() {
+        return scoring;
+    }
+
+    /**
+     * @return whether these are the standard rules
+     */
+    public boolean isStandard() {
+        return equals(STANDARD);
+    }
+
+    /**
+     * The rules as one number for the disk cache, zero for the standard rules
+     * @return
+     */
+    public int getCode() {
+        // one discard is the standard, shift it to zero
+        final int discards = (warDiscards - STANDARD.warDiscards) & BYTE_MASK;
+        return discards | (outOfCards.ordinal() | scoring.ordinal() << BYTE_BITS) << BYTE_BITS;
+    }
+
+    /**
+     * The rules a code from getCode stands for. Throws an exception if no rules have that code.
+     * @param code
+     * @return
+     */
+    public static Rules fromCode(final int code) {
+        final int outOfCards = (code >>> BYTE_BITS) & BYTE_MASK;
+        final int scoring = code >>> (2 * BYTE_BITS);
+        if (outOfCards >= OutOfCards.values().length || scoring >= Scoring.values().length) {
+            throw new InvalidParameterException("Unknown rules code " + code);
+        }
+        // undo the shift of the standard discards to zero
+        final int discards = (code + STANDARD.warDiscards) & BYTE_MASK;
+        return new Rules(discards, OutOfCards.values()[outOfCards], Scoring.values()[scoring]);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Rules)) {
+            return false;
+        }
+        Rules other = (Rules) o;
+        return warDiscards == other.warDiscards && outOfCards == other.outOfCards && scoring == other.scoring;
+    }
+
+    @Override
+    public int hashCode() {
+        return getCode() * HASH_MULTIPLIER;
+    }
+
+    @Override
+    public String toString() {
+        return DISCARDS + "=" + warDiscards + "," + OUT_OF_CARDS + "=" + outOfCards.getOptionName() + ","
+                + SCORING + "=" + scoring.getOptionName();
+    }
+}
@@ -0,0 +1,52 @@
+package com.juno.gameofwar;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Seeds as a tree. A run has one master seed and every game, table or chunk of a shuffle under it gets the seed
+ * of(parent, index), worked out from its index alone. No seed is drawn from a generator shared between threads,
+ * so a result doesn't depend on how many threads played it or in what order, and any game of a batch can be
+ * played again on its own from the master seed and its index.
+ *
+ * The time is only read in fresh, for runs that weren't given a seed, and the seed it makes should be reported
+ * so the run can be repeated.
+ */
+public final class Seeds {
+
+    // constants from the SplitMix64 generator, used to turn a parent seed and an index into a child seed
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final long MIX_1 = 0xBF58476D1CE4E5B9L;
+    private static final long MIX_2 = 0x94D049BB133111EBL;
+    private static final int SHIFT_1 = 30;
+    private static final int SHIFT_2 = 27;
+    private static final int SHIFT_3 = 31;
+
+    // tells apart fresh seeds taken in the same nanosecond
+    private static final AtomicLong FRESH = new AtomicLong();
+
+    /**
+     * Private constructor
+     */
+    private Seeds() { }
+
+    /**
+     * Derive the seed of a child from its parent's seed and its index. Neighbouring children get unrelated seeds.
+     * @param parent
+     * @param index - the child's place among its parent's children, starting at zero
+     * @return
+     */
+    public static long of(final long parent, final long index) {
+        long z = parent + (index + 1) * GOLDEN_GAMMA;
+        z = (z ^ (z >>> SHIFT_1)) * MIX_1;
+        z = (z ^ (z >>> SHIFT_2)) * MIX_2;
+        return z ^ (z >>> SHIFT_3);
+    }
+
+    /**
+     * A master seed for a run that wasn't given one, different every time it is called
+     * @return
+     */
+    public static long fresh() {
+        return of(System.nanoTime(), FRESH.getAndIncrement());
+    }
+}
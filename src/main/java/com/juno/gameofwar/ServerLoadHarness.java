@@ -0,0 +1,232 @@
+package com.juno.gameofwar;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Load test harness for SimulationServer, run on the machine the server runs on.
+ *
+ * A number of clients each send game requests one after another as fast as the answers come back, while a number
+ * of slow clients hold streams open and read them a line at a time with a pause between lines. The latency of the
+ * game requests is printed at the end; it should hardly change with the number of slow clients, because they only
+ * hold request threads and not the engine.
+ *
+ * java -cp build/libs/war-1.0.jar com.juno.gameofwar.ServerLoadHarness [clients] [requests] [slowClients] [port]
+ *
+ * Without a port a server is started in this JVM with an engine thread per core.
+ */
+public final class ServerLoadHarness {
+
+    private static final int DEFAULT_CLIENTS = 64;
+    private static final int DEFAULT_REQUESTS = 200;
+    private static final int DEFAULT_SLOW_CLIENTS = 256;
+    // how long a slow client waits between lines of its stream
+    private static final long SLOW_READ_MILLIS = 20;
+    private static final int SLOW_STREAM_GAMES = 1000000;
+    private static final int CLIENTS_ARG = 0;
+    private static final int REQUESTS_ARG = 1;
+    private static final int SLOW_CLIENTS_ARG = 2;
+    private static final int PORT_ARG = 3;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+    private static final double PERCENT = 100.0;
+    private static final double NANOS_PER_MICRO = 1000.0;
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final int TIMEOUT_MILLIS = 60000;
+    private static final int READ_BUFFER = 4096;
+
+    /**
+     * Private constructor
+     */
+    private ServerLoadHarness() { }
+
+    /**
+     * Run the load test and print the latency of the game requests
+     * @param args - clients, requests per client, slow clients and the port of a running server, all optional
+     * @throws IOException
+     */
+    public static void main(final String[] args) throws IOException {
+        final int clients = intArg(args, CLIENTS_ARG, DEFAULT_CLIENTS);
+        final int requests = intArg(args, REQUESTS_ARG, DEFAULT_REQUESTS);
+        final int slowClients = intArg(args, SLOW_CLIENTS_ARG, DEFAULT_SLOW_CLIENTS);
+
+        SimulationServer server = null;
+        final int port;
+        if (args.length > PORT_ARG) {
+            port = Integer.parseInt(args[PORT_ARG]);
+        } else {
+            server = new SimulationServer(Runtime.getRuntime().availableProcessors(), CardStorage.HEAP);
+            final InetSocketAddress address = server.start(0);
+            port = address.getPort();
+        }
+
+        try {
+            System.out.println("\n" + clients + " clients sending " + requests + " game requests each, "
+                    + slowClients + " slow clients reading streams, port " + port);
+            final LogHistogram latency = run("http://127.0.0.1:" + port, clients, requests, slowClients);
+            print(latency);
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+
+    /**
+     * Send the requests and hold the streams open until every client is done
+     * @param base - the server's address
+     * @param clients
+     * @param requests - per client
+     * @param slowClients
+     * @return the latency of every game request in nanoseconds
+     */
+    static LogHistogram run(final String base, final int clients, final int requests, final int slowClients) {
+        final ExecutorService threads = SimulationServer.requestThreads();
+        final AtomicBoolean done = new AtomicBoolean();
+
+        try {
+            final List<Future<?>> slow = new ArrayList<>(slowClients);
+            for (int i = 0; i < slowClients; i++) {
+                final long seed = i;
+                slow.add(threads.submit(() -> readSlowly(base + "/stream?seed=" + seed + "&count="
+                        + SLOW_STREAM_GAMES, done)));
+            }
+
+            final long start = System.nanoTime();
+            final List<Future<LogHistogram>> fast = new ArrayList<>(clients);
+            for (int i = 0; i < clients; i++) {
+                final int client = i;
+                fast.add(threads.submit(() -> sendGames(base, client, requests)));
+            }
+
+            final LogHistogram latency = new LogHistogram();
+            for (Future<LogHistogram> client : fast) {
+                latency.merge(client.get());
+            }
+            final double seconds = (System.nanoTime() - start) / NANOS_PER_SECOND;
+            System.out.println(String.format(Locale.ROOT, "%n%d requests in %.2fs, %.0f a second",
+                    latency.getCount(), seconds, latency.getCount() / seconds));
+
+            done.set(true);
+            for (Future<?> client : slow) {
+                client.get();
+            }
+            return latency;
+
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during the load test", ie);
+        } catch (ExecutionException ee) {
+            throw new IllegalStateException("A client failed", ee.getCause());
+        } finally {
+            done.set(true);
+            threads.shutdownNow();
+            try {
+                threads.awaitTermination(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Send game requests one after another
+     * @param base
+     * @param client
+     * @param requests
+     * @return the latency of each in nanoseconds
+     * @throws IOException
+     */
+    private static LogHistogram sendGames(final String base, final int client, final int requests)
+            throws IOException {
+        final LogHistogram latency = new LogHistogram();
+        final byte[] buffer = new byte[READ_BUFFER];
+        for (int i = 0; i < requests; i++) {
+            final long start = System.nanoTime();
+            final HttpURLConnection connection = open(base + "/game?seed=" + ((long) client * requests + i));
+            try (InputStream in = connection.getInputStream()) {
+                int read = 0;
+                while (read >= 0) {
+                    read = in.read(buffer);
+                }
+            }
+            latency.record(System.nanoTime() - start);
+        }
+        return latency;
+    }
+
+    /**
+     * Read a stream a line at a time, pausing between lines, until the fast clients are done
+     * @param url
+     * @param done
+     * @return nothing
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private static Void readSlowly(final String url, final AtomicBoolean done)
+            throws IOException, InterruptedException {
+        final HttpURLConnection connection = open(url);
+        try (InputStream in = connection.getInputStream()) {
+            int c = in.read();
+            while (c >= 0 && !done.get()) {
+                if (c == '\n') {
+                    Thread.sleep(SLOW_READ_MILLIS);
+                }
+                c = in.read();
+            }
+        } finally {
+            // drop the stream rather than read the rest of it
+            connection.disconnect();
+        }
+        return null;
+    }
+
+    /**
+     * @param url
+     * @return
+     * @throws IOException
+     */
+    private static HttpURLConnection open(final String url) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        return connection;
+    }
+
+    /**
+     * @param latency - in nanoseconds
+     */
+    private static void print(final LogHistogram latency) {
+        final StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "game latency mean %.0fus",
+                latency.getMean() / NANOS_PER_MICRO));
+        for (double q : QUANTILES) {
+            line.append(String.format(Locale.ROOT, ", p%.0f %.0fus", q * PERCENT,
+                    latency.quantile(q) / NANOS_PER_MICRO));
+        }
+        line.append(String.format(Locale.ROOT, ", max %.0fus", latency.getMax() / NANOS_PER_MICRO));
+        System.out.println(line);
+    }
+
+    /**
+     * @param args
+     * @param index
+     * @param missing
+     * @return
+     */
+    private static int intArg(final String[] args, final int index, final int missing) {
+        if (args.length > index) {
+            return Integer.parseInt(args[index]);
+        }
+        return missing;
+    }
+}
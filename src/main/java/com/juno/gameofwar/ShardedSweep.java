@@ -0,0 +1,394 @@
+package com.juno.gameofwar;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Plays sweeps that are too big for one JVM across a number of worker JVMs on this machine.
+ *
+ * Every grid point of the sweep plays the same numbered games as a batch with the same master seed. The games are
+ * split into shards of consecutive game numbers, and each worker is a GameOfWar daemon that is sent one shard at a
+ * time over its stdin and answers every game on its stdout. The coordinator folds the answers of a shard into a
+ * GameStats and merges it into the grid point once the whole shard is in, so the coordinator's memory doesn't grow
+ * with the number of games.
+ *
+ * A worker that dies or stops answering loses only the shard it was playing. A worker has stopped answering once
+ * it has owed an answer for longer than the answer timeout, and is then killed as if it had died. The shard goes
+ * back to the front of the queue for the next free worker, a new worker JVM is started in place of the dead one,
+ * and the sweep gives up once one shard has been lost MAX_ATTEMPTS times. The stats come out the same as a batch
+ * of the same games.
+ */
+public final class ShardedSweep {
+
+    // games in one shard, the most one daemon request may ask for
+    public static final int DEFAULT_SHARD_SIZE = SimulationDaemon.MAX_GAMES_PER_REQUEST;
+    // times one shard is handed to a worker before the sweep fails
+    public static final int MAX_ATTEMPTS = 3;
+    // the longest a worker may go without answering a game it was sent before it is taken to be hung
+    public static final long DEFAULT_ANSWER_TIMEOUT_MILLIS = 10 * 60 * 1000;
+    // how often idle workers check whether the sweep is done
+    private static final long POLL_MILLIS = 100;
+    private static final int SEED_FIELD = 1;
+    private static final int HIGH_SCORE_FIELD = 2;
+    private static final int ROUNDS_FIELD = 3;
+    private static final int WARS_FIELD = 4;
+    private static final int MAX_WAR_DEPTH_FIELD = 5;
+    private static final int WINNERS_FIELD = 6;
+    private static final int ANSWER_FIELDS = 7;
+
+    private final int workers;
+    private final List<String> workerCommand;
+    private int shardSize = DEFAULT_SHARD_SIZE;
+    private long answerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_ANSWER_TIMEOUT_MILLIS);
+    // shards the workers of the last run lost, each one cost a worker JVM
+    private final AtomicInteger lostShards = new AtomicInteger();
+    // the workers of the running sweep, watched for ones that have stopped answering
+    private final Set<Worker> liveWorkers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param workers - the number of worker JVMs to run at once
+     * @param workerCommand - starts one worker JVM, see defaultWorkerCommand
+     */
+    public ShardedSweep(final int workers, final List<String> workerCommand) {
+        if (workers < 1) {
+            throw new InvalidParameterException("workers must be greater than zero.");
+        }
+        this.workers = workers;
+        this.workerCommand = new ArrayList<>(workerCommand);
+    }
+
+    /**
+     * The command that starts a single threaded daemon with the java and classpath of this JVM
+     * @param storage - where the workers keep their decks and hands
+     * @return
+     */
+    public static List<String> defaultWorkerCommand(final CardStorage storage) {
+        return Arrays.asList(
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                "-cp", System.getProperty("java.class.path"),
+                GameOfWar.class.getName(),
+                "-" + GameOfWar.DAEMON_OPT_LONG,
+                "-" + GameOfWar.THREADS_OPT_LONG, "1",
+                "-" + GameOfWar.STORAGE_OPT_LONG, storage.getOptionName());
+    }
+
+    /**
+     * Set the number of games sent to a worker at a time
+     * @param games
+     */
+    void setShardSize(final int games) {
+        if (games < 1 || games > SimulationDaemon.MAX_GAMES_PER_REQUEST) {
+            throw new InvalidParameterException("shard size must be between 1 and "
+                    + SimulationDaemon.MAX_GAMES_PER_REQUEST);
+        }
+        this.shardSize = games;
+    }
+
+    /**
+     * Set how long a worker may go without answering a game it was sent before it is killed and its shard is
+     * given to another worker. It has to be longer than the longest game of the sweep takes.
+     * @param millis
+     */
+    public void setAnswerTimeout(final long millis) {
+        if (millis < 1) {
+            throw new InvalidParameterException("answer timeout must be greater than zero.");
+        }
+        this.answerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Get the number of times a worker of the last run died or broke with a shard, which was then played again
+     * @return
+     */
+    public int getLostShards() {
+        return lostShards.get();
+    }
+
+    /**
+     * Play the same numbered games at every grid point
+     * @param grid - the configs to play
+     * @param games - the number of games at each grid point
+     * @param masterSeed - every game seed is derived from this one, as in a batch
+     * @return the stats of each grid point, in grid order
+     */
+    public List<GameStats> run(final List<GameConfig> grid, final long games, final long masterSeed) {
+        for (GameConfig config : grid) {
+            if (!config.getRules().isStandard()) {
+                throw new InvalidParameterException("worker JVMs only play the standard rules");
+            }
+        }
+
+        final BlockingDeque<Shard> queue = new LinkedBlockingDeque<>();
+        final GameStats[] stats = new GameStats[grid.size()];
+        for (int point = 0; point < grid.size(); point++) {
+            stats[point] = new GameStats(grid.get(point).getNumberOfPlayers());
+            for (long first = 0; first < games; first += shardSize) {
+                queue.add(new Shard(point, first, (int) Math.min(shardSize, games - first)));
+            }
+        }
+
+        final CountDownLatch remaining = new CountDownLatch(queue.size());
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(workers);
+        final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+        lostShards.set(0);
+        watchdog.scheduleWithFixedDelay(() -> {
+            for (Worker worker : liveWorkers) {
+                worker.killIfHung(answerTimeoutNanos);
+            }
+        }, POLL_MILLIS, POLL_MILLIS, TimeUnit.MILLISECONDS);
+
+        try {
+            final List<Future<?>> coordinators = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                coordinators.add(executor.submit(() ->
+                        coordinate(queue, grid, masterSeed, stats, remaining, failure)));
+            }
+            for (Future<?> coordinator : coordinators) {
+                coordinator.get();
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while playing the sweep", ie);
+        } catch (ExecutionException ee) {
+            throw new IllegalStateException("A sweep worker failed", ee.getCause());
+        } finally {
+            executor.shutdownNow();
+            watchdog.shutdownNow();
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return Arrays.asList(stats);
+    }
+
+    /**
+     * Keep one worker JVM busy with shards until none are left, starting a new one whenever it dies
+     * @param queue
+     * @param grid
+     * @param masterSeed
+     * @param stats
+     * @param remaining - counts down as shards are merged
+     * @param failure - set once the sweep can't finish
+     */
+    private void coordinate(final BlockingDeque<Shard> queue, final List<GameConfig> grid, final long masterSeed,
+                            final GameStats[] stats, final CountDownLatch remaining,
+                            final AtomicReference<RuntimeException> failure) {
+        Worker worker = null;
+        try {
+            while (remaining.getCount() > 0 && failure.get() == null) {
+                final Shard shard = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (shard == null) {
+                    continue;
+                }
+
+                try {
+                    if (worker == null) {
+                        worker = new Worker(workerCommand);
+                        liveWorkers.add(worker);
+                    }
+                    final GameStats shardStats = worker.play(grid.get(shard.point), masterSeed, shard);
+                    synchronized (stats) {
+                        stats[shard.point].merge(shardStats);
+                    }
+                    remaining.countDown();
+
+                } catch (IOException ioe) {
+                    // the worker died or its pipes broke, the shard goes to the next free worker
+                    if (worker != null) {
+                        liveWorkers.remove(worker);
+                        worker.kill();
+                        worker = null;
+                    }
+                    lostShards.incrementAndGet();
+                    shard.attempts++;
+                    if (shard.attempts >= MAX_ATTEMPTS) {
+                        failure.compareAndSet(null, new IllegalStateException("Games " + shard.first + " to "
+                                + (shard.first + shard.count - 1) + " of " + grid.get(shard.point) + " were lost by "
+                                + MAX_ATTEMPTS + " workers: " + ioe.getMessage(), ioe));
+                    } else {
+                        queue.addFirst(shard);
+                    }
+                } catch (IllegalStateException ise) {
+                    failure.compareAndSet(null, ise);
+                }
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (worker != null) {
+                liveWorkers.remove(worker);
+                worker.close();
+            }
+        }
+    }
+
+    /**
+     * Consecutive games of one grid point
+     */
+    private static final class Shard {
+        private final int point;
+        private final long first;
+        private final int count;
+        // times the shard was lost by a worker
+        private int attempts = 0;
+
+        /**
+         * @param point
+         * @param first
+         * @param count
+         */
+        private Shard(final int point, final long first, final int count) {
+            this.point = point;
+            this.first = first;
+            this.count = count;
+        }
+    }
+
+    /**
+     * One worker JVM and the pipes to its daemon
+     */
+    private static final class Worker {
+        private final Process process;
+        private final OutputStream requests;
+        private final BufferedReader answers;
+        // whether the worker has been sent games it hasn't answered yet, and when it last answered or was sent one
+        private volatile boolean owesAnswers = false;
+        private volatile long lastHeardNanos;
+        // set when the worker was killed for not answering
+        private volatile boolean hung = false;
+
+        /**
+         * Start the worker
+         * @param command
+         * @throws IOException
+         */
+        private Worker(final List<String> command) throws IOException {
+            this.process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            this.requests = process.getOutputStream();
+            this.answers = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                    StandardCharsets.US_ASCII));
+        }
+
+        /**
+         * Play one shard and summarise it
+         * @param config
+         * @param masterSeed
+         * @param shard
+         * @return
+         * @throws IOException if the worker died before answering every game
+         */
+        private GameStats play(final GameConfig config, final long masterSeed, final Shard shard)
+                throws IOException {
+            final String request = config.getNumberOfSuits() + " " + config.getNumberOfRanks() + " "
+                    + config.getNumberOfPlayers() + " " + masterSeed + " " + shard.count + " " + shard.first + "\n";
+            lastHeardNanos = System.nanoTime();
+            owesAnswers = true;
+            requests.write(request.getBytes(StandardCharsets.US_ASCII));
+            requests.flush();
+
+            final GameStats stats = new GameStats(config.getNumberOfPlayers());
+            for (long game = shard.first; game < shard.first + shard.count; game++) {
+                final String answer = answers.readLine();
+                if (answer == null && hung) {
+                    throw new IOException("worker stopped answering and was killed");
+                }
+                if (answer == null) {
+                    throw new IOException("worker exited with " + exitStatus());
+                }
+                lastHeardNanos = System.nanoTime();
+                stats.record(parse(answer, BatchRunner.gameSeed(masterSeed, game)));
+            }
+            owesAnswers = false;
+            return stats;
+        }
+
+        /**
+         * Turn one answer line back into a game result
+         * @param answer
+         * @param seed - the seed the game must have been shuffled with
+         * @return
+         */
+        private static GameResult parse(final String answer, final long seed) {
+            final String[] fields = answer.split(" ");
+            if (fields.length != ANSWER_FIELDS || !Long.toString(seed).equals(fields[SEED_FIELD])) {
+                throw new IllegalStateException("A worker could not play game seed " + seed + ": " + answer);
+            }
+
+            final List<Player> winners = new ArrayList<>();
+            for (String id : fields[WINNERS_FIELD].split(",")) {
+                winners.add(new Player(Integer.parseInt(id)));
+            }
+            return new GameResult(winners, Integer.parseInt(fields[HIGH_SCORE_FIELD]),
+                    Long.parseLong(fields[ROUNDS_FIELD]), Long.parseLong(fields[WARS_FIELD]),
+                    Integer.parseInt(fields[MAX_WAR_DEPTH_FIELD]));
+        }
+
+        /**
+         * Describe how the worker ended
+         * @return
+         */
+        private String exitStatus() {
+            try {
+                if (process.waitFor(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return "status " + process.exitValue();
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            return "no status";
+        }
+
+        /**
+         * End the worker's input so its daemon exits once it has answered everything
+         */
+        private void close() {
+            try {
+                requests.close();
+            } catch (IOException ioe) {
+                // already gone
+                process.destroy();
+            }
+        }
+
+        /**
+         * Kill the worker if it has owed an answer for longer than the timeout, which ends the wait for the answer
+         * @param timeoutNanos
+         */
+        private void killIfHung(final long timeoutNanos) {
+            if (owesAnswers && System.nanoTime() - lastHeardNanos > timeoutNanos) {
+                hung = true;
+                kill();
+            }
+        }
+
+        /**
+         * Stop the worker straight away
+         */
+        private void kill() {
+            process.destroyForcibly();
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package com.juno.gameofwar;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidParameterException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Answers game requests for as long as the JVM stays up, so a pipeline that plays millions of games pays for
+ * starting and warming up the JVM once.
+ *
+ * Every line of input is a request of five numbers, "suits ranks players seed count", and optionally a sixth,
+ * "first". It is answered with one line per game, "request seed highScore rounds wars maxWarDepth winners", where
+ * request is the line number of the request, seed is the seed the game was shuffled with and winners is a comma
+ * separated list of player ids. The games of a request are count games of a batch with that master seed, starting
+ * from game number first or zero, so a request can be replayed with the batch options and a batch can be split
+ * across requests. A request that can't be played, or whose games or cache fail, is answered with "request error
+ * message" and the requests after it are still answered. Only failing to read or write the channels ends a session.
+ *
+ * Requests are played concurrently on a pool of workers but always answered in the order they arrived. Input and
+ * output go through buffered channels, and the output is only flushed when the next answer isn't ready yet or there
+ * are no more requests waiting.
+ */
+public final class SimulationDaemon {
+
+    // the most games one request may ask for, bigger runs belong in a batch
+    public static final int MAX_GAMES_PER_REQUEST = 10000;
+    // requests read ahead of the answers being written, per worker
+    private static final int PENDING_PER_WORKER = 4;
+    private static final int BUFFER_SIZE = 65536;
+    private static final int REQUEST_FIELDS = 5;
+    private static final int SEED_FIELD = 3;
+    private static final int COUNT_FIELD = 4;
+    private static final int FIRST_FIELD = 5;
+
+    private final ExecutorService workers;
+    private final int maxPending;
+    private final CardStorage storage;
+    // when set, games are looked up here before they are played
+    private ResultCache cache = null;
+
+    /**
+     * @param threads - number of workers playing games
+     * @param storage - where games keep their decks and hands
+     */
+    public SimulationDaemon(final int threads, final CardStorage storage) {
+        if (threads < 1) {
+            throw new InvalidParameterException("threads must be greater than zero.");
+        }
+        this.workers = Executors.newFixedThreadPool(threads);
+        this.maxPending = threads * PENDING_PER_WORKER;
+        this.storage = storage;
+    }
+
+    /**
+     * Look games up in a cache before playing them and store the ones that had to be played
+     * @param resultCache
+     */
+    public void setCache(final ResultCache resultCache) {
+        this.cache = resultCache;
+    }
+
+    /**
+     * Answer the requests read from one channel until it ends
+     * @param in
+     * @param out
+     * @return the number of requests answered
+     * @throws IOException if either channel fails
+     */
+    public long serve(final ReadableByteChannel in, final WritableByteChannel out) throws IOException {
+        // the reader thread queues the answers in request order, a full queue holds it back
+        final BlockingQueue<CompletableFuture<String>> pending = new ArrayBlockingQueue<>(maxPending);
+        final CompletableFuture<String> end = new CompletableFuture<>();
+
+        final Thread reader = new Thread(() -> readRequests(in, pending, end), "war-daemon-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long answered = 0;
+
+        try {
+            CompletableFuture<String> answer = pending.take();
+            while (answer != end) {
+                if (!answer.isDone()) {
+                    // don't sit on finished answers while waiting for this one
+                    flush(buffer, out);
+                }
+                write(answer.join(), buffer, out);
+                answered++;
+
+                answer = pending.poll();
+                if (answer == null) {
+                    // the client may be waiting on these answers before it sends more requests
+                    flush(buffer, out);
+                    answer = pending.take();
+                }
+            }
+            flush(buffer, out);
+            return answered;
+
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while answering requests");
+        } catch (CompletionException ce) {
+            if (ce.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) ce.getCause()).getCause();
+            }
+            throw ce;
+        } finally {
+            // stops the reader if the answers could not be written
+            reader.interrupt();
+        }
+    }
+
+    /**
+     * Answer the requests of every connection made to a port on the loopback address until the server is closed.
+     * Each connection is served on its own thread and they all share the workers.
+     * @param server - bound with {@link #bindLoopback(int)}
+     * @throws IOException if accepting a connection fails
+     */
+    public void listen(final ServerSocketChannel server) throws IOException {
+        final ExecutorService connections = Executors.newCachedThreadPool();
+        try {
+            while (server.isOpen()) {
+                final SocketChannel connection = server.accept();
+                connections.execute(() -> {
+                    try (SocketChannel channel = connection) {
+                        serve(channel, channel);
+                    } catch (IOException ioe) {
+                        // the client went away, nothing to answer
+                    }
+                });
+            }
+        } catch (ClosedChannelException cce) {
+            // the server was closed while waiting for a connection
+        } finally {
+            connections.shutdownNow();
+        }
+    }
+
+    /**
+     * Open a server socket that only accepts connections from this machine
+     * @param port - zero for any free port
+     * @return
+     * @throws IOException
+     */
+    public static ServerSocketChannel bindLoopback(final int port) throws IOException {
+        final ServerSocketChannel server = ServerSocketChannel.open();
+        try {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        } catch (IOException ioe) {
+            server.close();
+            throw ioe;
+        }
+        return server;
+    }
+
+    /**
+     * Stop the workers, requests being served are abandoned
+     */
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Play every game of one request
+     * @param request - line number of the request
+     * @param line - the request
+     * @return the answer, one line per game or an error line
+     */
+    String answer(final long request, final String line) {
+        final StringBuilder answer = new StringBuilder();
+
+        try {
+            final String[] fields = line.trim().split("\\s+");
+            if (fields.length != REQUEST_FIELDS && fields.length != REQUEST_FIELDS + 1) {
+                throw new InvalidParameterException("expected suits ranks players seed count [first]");
+            }
+
+            final int suits = parseBounded(fields[0], "suits", GameOfWar.MIN_SUITS, GameOfWar.MAX_SUITS);
+            final int ranks = parseBounded(fields[1], "ranks", GameOfWar.MIN_RANKS, GameOfWar.MAX_RANKS);
+            final int players = parseBounded(fields[2], "players", GameOfWar.MIN_PLAYERS, GameOfWar.MAX_PLAYERS);
+            final long seed = Long.parseLong(fields[SEED_FIELD]);
+            final int count = parseBounded(fields[COUNT_FIELD], "count", 1, MAX_GAMES_PER_REQUEST);
+            long first = 0;
+            if (fields.length > FIRST_FIELD) {
+                first = Long.parseLong(fields[FIRST_FIELD]);
+                if (first < 0 || first > Long.MAX_VALUE - count) {
+                    throw new InvalidParameterException("first must not be negative");
+                }
+            }
+
+            final BatchRunner batch = new BatchRunner(suits, ranks, players, seed, storage);
+            batch.setCache(cache);
+
+            for (long game = first; game < first + count; game++) {
+                final GameResult result = batch.playGame(game);
+
+                answer.append(request).append(' ');
+                appendResult(answer, BatchRunner.gameSeed(seed, game), result);
+            }
+
+        } catch (NumberFormatException nfe) {
+            answer.setLength(0);
+            answer.append(request).append(" error invalid number\n");
+        } catch (InvalidParameterException ipe) {
+            answer.setLength(0);
+            answer.append(request).append(" error ").append(ipe.getMessage()).append('\n');
+        } catch (RuntimeException re) {
+            // a game or the cache failing only fails this request, the session goes on with the next one
+            answer.setLength(0);
+            answer.append(request).append(" error ").append(describe(re)).append('\n');
+        }
+
+        return answer.toString();
+    }
+
+    /**
+     * @param failure
+     * @return what went wrong, on one line
+     */
+    private static String describe(final RuntimeException failure) {
+        String message = failure.getMessage();
+        if (message == null) {
+            message = failure.getClass().getSimpleName();
+        }
+        if (failure.getCause() != null && failure.getCause().getMessage() != null) {
+            message += ": " + failure.getCause().getMessage();
+        }
+        return message.replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Read requests off the channel and hand them to the workers until the channel ends
+     * @param in
+     * @param pending - the answers, in request order
+     * @param end - queued once there are no more requests
+     */
+    private void readRequests(final ReadableByteChannel in, final BlockingQueue<CompletableFuture<String>> pending,
+                              final CompletableFuture<String> end) {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        final StringBuilder line = new StringBuilder();
+        long request = 0;
+
+        try {
+            try {
+                while (in.read(buffer) >= 0) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        final char c = (char) buffer.get();
+                        if (c != '\n') {
+                            line.append(c);
+                            continue;
+                        }
+                        request++;
+                        queue(request, line, pending);
+                        line.setLength(0);
+                    }
+                    buffer.clear();
+                }
+                if (line.length() > 0) {
+                    // the last request doesn't need a line break
+                    queue(request + 1, line, pending);
+                }
+            } catch (IOException ioe) {
+                final CompletableFuture<String> failed = new CompletableFuture<>();
+                failed.completeExceptionally(new UncheckedIOException("Failed to read requests", ioe));
+                pending.put(failed);
+            }
+            pending.put(end);
+
+        } catch (InterruptedException ie) {
+            // the answers can't be written anymore
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hand one request to the workers, blank lines are skipped
+     * @param request
+     * @param line
+     * @param pending
+     * @throws InterruptedException
+     */
+    private void queue(final long request, final StringBuilder line,
+                       final BlockingQueue<CompletableFuture<String>> pending) throws InterruptedException {
+        final String text = line.toString().trim();
+        if (!text.isEmpty()) {
+            pending.put(CompletableFuture.supplyAsync(() -> answer(request, text), workers));
+        }
+    }
+
+    /**
+     * Add an answer to the output buffer, writing the buffer out when it fills up
+     * @param answer
+     * @param buffer
+     * @param out
+     * @throws IOException
+     */
+    private static void write(final String answer, final ByteBuffer buffer, final WritableByteChannel out)
+            throws IOException {
+        final byte[] bytes = answer.getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length > buffer.remaining()) {
+            flush(buffer, out);
+        }
+        if (bytes.length > buffer.remaining()) {
+            final ByteBuffer big = ByteBuffer.wrap(bytes);
+            while (big.hasRemaining()) {
+                out.write(big);
+            }
+            return;
+        }
+        buffer.put(bytes);
+    }
+
+    /**
+     * Write out everything in the buffer
+     * @param buffer
+     * @param out
+     * @throws IOException
+     */
+    private static void flush(final ByteBuffer buffer, final WritableByteChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Add the line "seed highScore rounds wars maxWarDepth winners" for one game
+     * @param out
+     * @param seed - the seed the game was shuffled with
+     * @param result
+     */
+    static void appendResult(final StringBuilder out, final long seed, final GameResult result) {
+        out.append(seed)
+                .append(' ').append(result.getHighScore())
+                .append(' ').append(result.getRounds())
+                .append(' ').append(result.getWars())
+                .append(' ').append(result.getMaxWarDepth())
+                .append(' ');
+        for (int i = 0; i < result.getWinners().size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(result.getWinners().get(i).getId());
+        }
+        out.append('\n');
+    }
+
+    /**
+     * Parse a number that must be within bounds
+     * @param field
+     * @param name
+     * @param min
+     * @param max
+     * @return
+     */
+    static int parseBounded(final String field, final String name, final int min, final int max) {
+        final int value = Integer.parseInt(field);
+        if (value < min || value > max) {
+            throw new InvalidParameterException(name + " must be between " + min + " and " + max);
+        }
+        return value;
+    }
+}
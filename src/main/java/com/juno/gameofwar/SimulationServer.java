@@ -0,0 +1,445 @@
+package com.juno.gameofwar;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidParameterException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays games for other programs on the same machine over HTTP on the loopback address.
+ *
+ * GET /game?suits=4&amp;ranks=13&amp;players=2&amp;seed=7 plays one game and answers with the line
+ * "seed highScore rounds wars maxWarDepth winners" that SimulationDaemon answers with.
+ * GET /batch?...&amp;games=1000000 plays a batch with seed as its master seed and answers with the summary the
+ * batch options print. GET /stream?...&amp;count=1000&amp;first=0 answers with one line per game of a batch as
+ * the games are played, in game order, for as long as the batch runs. Every endpoint also takes rules.
+ *
+ * Requests are taken on a thread each, virtual threads on a JDK that has them, and the games are played on a
+ * fixed pool of engine threads. A request thread only parses, waits and writes, so a client that reads its answer
+ * slowly holds up a cheap request thread and never an engine thread, and however many clients there are the
+ * engine threads are all that play. Batches and streams are cut into blocks of games and only a few blocks per
+ * engine thread are in flight for one request, so a stream to a slow client doesn't pile up answers either.
+ * Every game and block is admitted against the shared HeapBudget before it is played, so a client asking for
+ * huge decks has its games wait for room on the heap rather than run it out for everyone.
+ */
+public final class SimulationServer {
+
+    // games of a batch or stream handed to an engine thread at once
+    static final int BLOCK_GAMES = 256;
+    // blocks of one request in flight per engine thread
+    private static final int BLOCKS_PER_THREAD = 2;
+    private static final int OK = 200;
+    private static final int BAD_REQUEST = 400;
+    private static final int METHOD_NOT_ALLOWED = 405;
+    private static final int SERVER_ERROR = 500;
+    // how long stop waits for the games being played
+    private static final long STOP_MILLIS = 60000;
+    private static final String TEXT = "text/plain; charset=us-ascii";
+
+    private final ExecutorService engine;
+    private final ExecutorService requests;
+    private final int maxBlocks;
+    private final CardStorage storage;
+    // games of every request are admitted against this before they are played
+    private final HeapBudget budget = HeapBudget.shared();
+    private HttpServer server = null;
+
+    /**
+     * @param threads - engine threads playing games
+     * @param storage - where games keep their decks and hands
+     */
+    public SimulationServer(final int threads, final CardStorage storage) {
+        if (threads < 1) {
+            throw new InvalidParameterException("threads must be greater than zero.");
+        }
+        final AtomicInteger engineThreads = new AtomicInteger();
+        this.engine = Executors.newFixedThreadPool(threads,
+                task -> new Thread(task, "war-engine-" + engineThreads.incrementAndGet()));
+        this.requests = requestThreads();
+        this.maxBlocks = threads * BLOCKS_PER_THREAD;
+        this.storage = storage;
+    }
+
+    /**
+     * Start answering requests on a port of the loopback address
+     * @param port - zero for any free port
+     * @return the address the server is bound to
+     * @throws IOException
+     */
+    public synchronized InetSocketAddress start(final int port) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("the server is already started");
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/game", exchange -> handle(exchange, this::game));
+        server.createContext("/batch", exchange -> handle(exchange, this::batch));
+        server.createContext("/stream", exchange -> handle(exchange, this::stream));
+        server.setExecutor(requests);
+        server.start();
+        return server.getAddress();
+    }
+
+    /**
+     * Stop taking requests and stop the engine, requests being answered are abandoned. Returns once the games
+     * being played have finished.
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        requests.shutdownNow();
+        engine.shutdownNow();
+        try {
+            engine.awaitTermination(STOP_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A thread per request, virtual on a JDK that has them. The build targets 1.8, so they are looked up rather
+     * than called.
+     * @return
+     */
+    static ExecutorService requestThreads() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException roe) {
+            // before JDK 21, platform threads that are kept for the next request
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Answer one game
+     * @param exchange
+     * @param params
+     * @throws IOException
+     */
+    private void game(final HttpExchange exchange, final Map<String, String> params) throws IOException {
+        final GameConfig config = config(params);
+        final long seed = parseLong(params, "seed", Seeds.fresh());
+
+        final GameResult result = await(engine.submit(admitted(config, () -> config.play(seed, storage))));
+        final StringBuilder answer = new StringBuilder();
+        SimulationDaemon.appendResult(answer, seed, result);
+        send(exchange, answer.toString());
+    }
+
+    /**
+     * Answer the summary of a batch
+     * @param exchange
+     * @param params
+     * @throws IOException
+     */
+    private void batch(final HttpExchange exchange, final Map<String, String> params) throws IOException {
+        final GameConfig config = config(params);
+        final long seed = parseLong(params, "seed", Seeds.fresh());
+        final long games = parseLong(params, "games", 1);
+        if (games < 1) {
+            throw new InvalidParameterException("games must be greater than zero");
+        }
+
+        final BatchRunner batch = new BatchRunner(config, seed, storage);
+        final GameStats total = new GameStats(config.getNumberOfPlayers());
+        inBlocks(config, 0, games, (from, to) -> {
+            final GameStats stats = new GameStats(config.getNumberOfPlayers());
+            for (long game = from; game < to; game++) {
+                stats.record(batch.playGame(game));
+            }
+            return stats;
+        }, total::merge);
+
+        send(exchange, config + ", seed " + seed + "\n" + total.summary());
+    }
+
+    /**
+     * Answer every game of a batch as it is played
+     * @param exchange
+     * @param params
+     * @throws IOException
+     */
+    private void stream(final HttpExchange exchange, final Map<String, String> params) throws IOException {
+        final GameConfig config = config(params);
+        final long seed = parseLong(params, "seed", Seeds.fresh());
+        final long count = parseLong(params, "count", 1);
+        final long first = parseLong(params, "first", 0);
+        if (count < 1 || first < 0 || first > Long.MAX_VALUE - count) {
+            throw new InvalidParameterException("count must be greater than zero and first must not be negative");
+        }
+
+        final BatchRunner batch = new BatchRunner(config, seed, storage);
+        exchange.getResponseHeaders().set("Content-Type", TEXT);
+        // a length of zero sends the answer in chunks as it is written
+        exchange.sendResponseHeaders(OK, 0);
+        try (OutputStream body = exchange.getResponseBody()) {
+            inBlocks(config, first, first + count, (from, to) -> {
+                final StringBuilder lines = new StringBuilder();
+                for (long game = from; game < to; game++) {
+                    SimulationDaemon.appendResult(lines, BatchRunner.gameSeed(seed, game), batch.playGame(game));
+                }
+                return lines.toString();
+            }, lines -> {
+                body.write(lines.getBytes(StandardCharsets.US_ASCII));
+                body.flush();
+            });
+        }
+    }
+
+    /**
+     * Play games in blocks on the engine, a few blocks ahead of the one being handed on
+     * @param config - of every game, for the heap each block is admitted with
+     * @param from - the first game
+     * @param to - one past the last game
+     * @param play - plays a block of games on an engine thread
+     * @param inOrder - takes the blocks in game order on the request thread
+     * @param <T>
+     * @throws IOException if a block can't be handed on, the blocks in flight are cancelled
+     */
+    private <T> void inBlocks(final GameConfig config, final long from, final long to, final Block<T> play,
+                              final Sink<T> inOrder) throws IOException {
+        final Deque<Future<T>> inFlight = new ArrayDeque<>(maxBlocks);
+        long next = from;
+        try {
+            while (next < to || !inFlight.isEmpty()) {
+                while (next < to && inFlight.size() < maxBlocks) {
+                    final long blockFrom = next;
+                    final long blockTo = Math.min(to, next + BLOCK_GAMES);
+                    inFlight.add(engine.submit(admitted(config, () -> play.play(blockFrom, blockTo))));
+                    next = blockTo;
+                }
+                inOrder.accept(await(inFlight.poll()));
+            }
+        } finally {
+            for (Future<T> block : inFlight) {
+                block.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Admit a task against the shared heap budget before it plays, for a game with the given config at a time
+     * @param config
+     * @param task
+     * @param <T>
+     * @return
+     */
+    private <T> Callable<T> admitted(final GameConfig config, final Callable<T> task) {
+        final long bytes = HeapBudget.estimateBytes(config, storage);
+        final long directBytes = HeapBudget.estimateDirectBytes(config, storage);
+        return () -> {
+            budget.admit(bytes, directBytes);
+            try {
+                return task.call();
+            } finally {
+                budget.release(bytes, directBytes);
+            }
+        };
+    }
+
+    /**
+     * Wait for a task of the engine on a request thread
+     * @param task
+     * @param <T>
+     * @return
+     */
+    private static <T> T await(final Future<T> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while playing games", ie);
+        } catch (ExecutionException ee) {
+            if (ee.getCause() instanceof InvalidParameterException) {
+                throw (InvalidParameterException) ee.getCause();
+            }
+            throw new IllegalStateException("A game failed", ee.getCause());
+        }
+    }
+
+    /**
+     * Answer a request, or say why it can't be answered
+     * @param exchange
+     * @param endpoint
+     * @throws IOException
+     */
+    private static void handle(final HttpExchange exchange, final Endpoint endpoint) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                sendError(exchange, METHOD_NOT_ALLOWED, "only GET is supported");
+                return;
+            }
+            endpoint.answer(exchange, query(exchange.getRequestURI().getRawQuery()));
+        } catch (NumberFormatException nfe) {
+            sendError(exchange, BAD_REQUEST, "invalid number");
+        } catch (InvalidParameterException ipe) {
+            sendError(exchange, BAD_REQUEST, ipe.getMessage());
+        } catch (IllegalStateException ise) {
+            sendError(exchange, SERVER_ERROR, ise.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @param params
+     * @return the game the request asks for, the standard 52 card game for two by default
+     */
+    private static GameConfig config(final Map<String, String> params) {
+        Rules rules = Rules.STANDARD;
+        if (params.containsKey("rules")) {
+            rules = rules.with(params.get("rules"));
+        }
+        return new GameConfig(
+                parseInt(params, "suits", GameOfWar.DEFAULT_NUM_SUITS, GameOfWar.MIN_SUITS, GameOfWar.MAX_SUITS),
+                parseInt(params, "ranks", GameOfWar.DEFAULT_NUM_RANKS, GameOfWar.MIN_RANKS, GameOfWar.MAX_RANKS),
+                parseInt(params, "players", GameOfWar.DEFAULT_NUM_PLAYERS, GameOfWar.MIN_PLAYERS,
+                        GameOfWar.MAX_PLAYERS),
+                rules);
+    }
+
+    /**
+     * @param params
+     * @param name
+     * @param missing
+     * @param min
+     * @param max
+     * @return
+     */
+    private static int parseInt(final Map<String, String> params, final String name, final int missing,
+                                final int min, final int max) {
+        if (!params.containsKey(name)) {
+            return missing;
+        }
+        return SimulationDaemon.parseBounded(params.get(name), name, min, max);
+    }
+
+    /**
+     * @param params
+     * @param name
+     * @param missing
+     * @return
+     */
+    private static long parseLong(final Map<String, String> params, final String name, final long missing) {
+        if (!params.containsKey(name)) {
+            return missing;
+        }
+        return Long.parseLong(params.get(name));
+    }
+
+    /**
+     * @param rawQuery - may be null
+     * @return the parameters of a query string
+     */
+    static Map<String, String> query(final String rawQuery) {
+        final Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        try {
+            for (String pair : rawQuery.split("&")) {
+                final int equals = pair.indexOf('=');
+                if (equals < 0) {
+                    params.put(URLDecoder.decode(pair, "UTF-8"), "");
+                } else {
+                    params.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                            URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+                }
+            }
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            throw new InvalidParameterException("malformed query");
+        }
+        return params;
+    }
+
+    /**
+     * @param exchange
+     * @param answer
+     * @throws IOException
+     */
+    private static void send(final HttpExchange exchange, final String answer) throws IOException {
+        final byte[] bytes = answer.getBytes(StandardCharsets.US_ASCII);
+        exchange.getResponseHeaders().set("Content-Type", TEXT);
+        exchange.sendResponseHeaders(OK, bytes.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(bytes);
+        }
+    }
+
+    /**
+     * Answer with an error, unless the answer has already started
+     * @param exchange
+     * @param status
+     * @param message
+     * @throws IOException
+     */
+    private static void sendError(final HttpExchange exchange, final int status, final String message)
+            throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            // part of a stream went out, all that can be done is to cut it short
+            return;
+        }
+        final byte[] bytes = ("error " + message + "\n").getBytes(StandardCharsets.US_ASCII);
+        exchange.getResponseHeaders().set("Content-Type", TEXT);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(bytes);
+        }
+    }
+
+    /**
+     * One of the endpoints
+     */
+    private interface Endpoint {
+        /**
+         * @param exchange
+         * @param params - the query string
+         * @throws IOException
+         */
+        void answer(HttpExchange exchange, Map<String, String> params) throws IOException;
+    }
+
+    /**
+     * Plays a block of games
+     * @param <T>
+     */
+    private interface Block<T> {
+        /**
+         * @param from
+         * @param to
+         * @return
+         */
+        T play(long from, long to);
+    }
+
+    /**
+     * Hands on a played block
+     * @param <T>
+     */
+    private interface Sink<T> {
+        /**
+         * @param block
+         * @throws IOException
+         */
+        void accept(T block) throws IOException;
+    }
+}
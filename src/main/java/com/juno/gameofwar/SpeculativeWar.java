@@ -0,0 +1,144 @@
+package com.juno.gameofwar;
+
+import java.security.InvalidParameterException;
+import java.util.stream.IntStream;
+
+/**
+ * Plays one long two player game of war by the standard rules across the cores, by speculating where each part
+ * of the game starts. Experimental.
+ *
+ * Won cards are never returned to the hands, so the next round of a game only depends on how many cards each
+ * player has played, and with two players that is the same number for both, see TwoPlayerWar.Stretch. The hands
+ * are split into segments of positions and every segment is played at once on the common fork join pool, each
+ * guessing that a round starts at its first position with both players in, which is right unless a war from the
+ * segment before runs over into it.
+ *
+ * The segments are then checked in order. A segment whose guess was right is exact as it was played. A segment
+ * whose guess was wrong is played again from where the game really reached it. Two plays of the same hands that
+ * start a few cards apart soon have a round start at the same position and are the same game from there on, so
+ * the replay stops at the first round past CONVERGE_CARDS into the segment, and if the speculative play started
+ * a round there too the rest of it is used as it is. Only when they haven't met by then is the whole segment
+ * played again. Either way the result is exactly the one TwoPlayerWar and War.playGame give.
+ *
+ * With more than two players a war moves the cursors of the tied players ahead of the others for good, so where a
+ * segment starts depends on every war before it and can't be guessed; those games are left to the other engines.
+ */
+public final class SpeculativeWar {
+
+    // games with fewer cards than two segments of this many are played in one go on the calling thread
+    public static final int MIN_SEGMENT_CARDS = 65536;
+    // how far a misspeculated segment is played again looking for its speculative play
+    static final int CONVERGE_CARDS = 4096;
+    // segments per core, so a core that finishes early can take another
+    private static final int SEGMENTS_PER_CORE = 4;
+    private static final int PLAYERS = 2;
+
+    /**
+     * Use play
+     */
+    private SpeculativeWar() { }
+
+    /**
+     * Play one game without printing anything
+     * @param numberOfSuits
+     * @param numberOfRanks
+     * @param seed - the shuffle seed
+     * @param storage - where the deck is kept before it is dealt
+     * @return
+     */
+    public static GameResult play(final int numberOfSuits, final int numberOfRanks, final long seed,
+                                  final CardStorage storage) {
+        GameEvent event = null;
+        if (FlightRecording.isRunning()) {
+            event = new GameEvent();
+            event.begin();
+        }
+
+        if ((numberOfSuits * numberOfRanks) < PLAYERS) {
+            throw new InvalidParameterException("numberOfSuits time numberOfRanks must be great than numberOfPlayers");
+        }
+
+        final int[][] hands = TwoPlayerWar.deal(numberOfSuits, numberOfRanks, seed, storage);
+        final int cores = Runtime.getRuntime().availableProcessors();
+        final int segmentCards = Math.max(MIN_SEGMENT_CARDS, hands[0].length / (cores * SEGMENTS_PER_CORE) + 1);
+        final GameResult result = play(hands[0], hands[1], segmentCards, CONVERGE_CARDS);
+
+        if (event != null && event.shouldCommit()) {
+            event.setConfig(numberOfSuits, numberOfRanks, PLAYERS, seed, storage, false);
+            event.setResult(result);
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Play out two hands a segment at a time
+     * @param first - the ranks of the first player's hand in the order they are played
+     * @param second - the second player's, no longer than the first and at most one card shorter
+     * @param segmentCards - positions in each segment
+     * @param convergeCards - how far to play a misspeculated segment again before giving up on its speculation
+     * @return
+     */
+    static GameResult play(final int[] first, final int[] second, final int segmentCards,
+                           final int convergeCards) {
+        final int cards = first.length;
+        if (cards < 2 * segmentCards) {
+            return TwoPlayerWar.play(first, second);
+        }
+
+        final int segments = (cards + segmentCards - 1) / segmentCards;
+        final Speculation[] speculations = IntStream.range(0, segments)
+                .parallel()
+                .mapToObj(segment -> new Speculation(first, second, segment * segmentCards,
+                        Math.min(cards, (segment + 1) * segmentCards), convergeCards))
+                .toArray(Speculation[]::new);
+
+        final TwoPlayerWar.Stretch game = new TwoPlayerWar.Stretch(first, second, 0);
+        for (int segment = 0; segment < segments; segment++) {
+            final int start = segment * segmentCards;
+            final int stop = Math.min(cards, start + segmentCards);
+            final Speculation speculation = speculations[segment];
+
+            if (game.getPosition() == start) {
+                game.add(speculation.head);
+                game.add(speculation.tail);
+                continue;
+            }
+
+            // a war ran over into this segment, play it again until it meets the speculation
+            game.playTo(Math.min(stop, start + convergeCards));
+            if (game.getPosition() == speculation.head.getPosition()) {
+                game.add(speculation.tail);
+            } else {
+                game.playTo(stop);
+            }
+        }
+        return game.result();
+    }
+
+    /**
+     * One segment played on the guess that a round starts at its first position
+     */
+    private static final class Speculation {
+
+        // the rounds that start before the segment's first position plus convergeCards
+        private final TwoPlayerWar.Stretch head;
+        // the rest of the segment's rounds
+        private final TwoPlayerWar.Stretch tail;
+
+        /**
+         * @param first
+         * @param second
+         * @param start - the segment's first position
+         * @param stop - the position after the segment's last one
+         * @param convergeCards
+         */
+        private Speculation(final int[] first, final int[] second, final int start, final int stop,
+                            final int convergeCards) {
+            head = new TwoPlayerWar.Stretch(first, second, start);
+            head.playTo(Math.min(stop, start + convergeCards));
+            tail = new TwoPlayerWar.Stretch(first, second, head.getPosition());
+            tail.playTo(stop);
+        }
+    }
+}
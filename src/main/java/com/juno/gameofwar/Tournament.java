@@ -0,0 +1,176 @@
+package com.juno.gameofwar;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a knockout tournament of war games.
+ *
+ * Entrants (numbered from 1) are seated across tables of at most tableSize players and each table plays one game.
+ * The winner of a table advances to a table in the next stage, which seats the winners of up to tableSize
+ * tables from the stage before. Stages repeat until one table is left and its winner is the champion.
+ *
+ * The bracket is built up front as a tree of futures. A table starts as soon as every table feeding it has
+ * finished rather than waiting for the whole stage, so cores never sit idle at the end of a stage.
+ *
+ * Tournament policies:
+ *  - if a table has more than one winner, the one in the lowest seat advances
+ *  - a table with a single seat is a bye and its player advances without playing
+ */
+public class Tournament {
+
+    private final int numberOfSuits;
+    private final int numberOfRanks;
+    // the most players at one table
+    private final int tableSize;
+    // every table gets its own seed derived from this one, so a tournament always plays out the same way
+    private final long seed;
+    private final CardStorage storage;
+    // the rules every table plays by
+    private Rules rules = Rules.STANDARD;
+
+    // counters for the result, updated by the tables as they finish
+    private final AtomicLong tablesPlayed = new AtomicLong();
+    private final AtomicLong roundsPlayed = new AtomicLong();
+
+    /**
+     * @param numberOfSuits - deck used at every table
+     * @param numberOfRanks - deck used at every table
+     * @param tableSize - the most players at one table, every one of them needs at least one card
+     * @param seed
+     * @param storage - where tables keep their decks and hands
+     */
+    public Tournament(final int numberOfSuits, final int numberOfRanks, final int tableSize, final long seed,
+                      final CardStorage storage) {
+        if (tableSize < 2) {
+            throw new InvalidParameterException("tableSize must be at least two.");
+        }
+        if ((numberOfSuits * numberOfRanks) < tableSize) {
+            throw new InvalidParameterException("numberOfSuits time numberOfRanks must be at least tableSize");
+        }
+        this.numberOfSuits = numberOfSuits;
+        this.numberOfRanks = numberOfRanks;
+        this.tableSize = tableSize;
+        this.seed = seed;
+        this.storage = storage;
+    }
+
+    /**
+     * Play every table by the given rules rather than the standard ones
+     * @param tableRules
+     */
+    public void setRules(final Rules tableRules) {
+        this.rules = tableRules;
+    }
+
+    /**
+     * Play the tournament to the end
+     *
+     * @param entrants - the number of entrants, at least two
+     * @param executor - runs the tables
+     * @return
+     */
+    public TournamentResult run(final int entrants, final Executor executor) {
+        if (entrants < 2) {
+            throw new InvalidParameterException("a tournament needs at least two entrants.");
+        }
+
+        // tables are numbered in bracket order and seeded by their number, so seeds don't depend on timing
+        int nextTable = 0;
+
+        // first stage - seat every entrant
+        List<CompletableFuture<Integer>> stage = new ArrayList<>();
+        int nextEntrant = 1;
+        for (int seats : splitEvenly(entrants, tableSize)) {
+            final int[] table = new int[seats];
+            for (int i = 0; i < seats; i++) {
+                table[i] = nextEntrant++;
+            }
+            final long tableSeed = Seeds.of(seed, nextTable++);
+            stage.add(CompletableFuture.supplyAsync(() -> playTable(table, tableSeed), executor));
+        }
+        int stages = 1;
+
+        // later stages - each table waits on just the tables that feed it
+        while (stage.size() > 1) {
+            List<CompletableFuture<Integer>> nextStage = new ArrayList<>();
+            int nextFeeder = 0;
+
+            for (int seats : splitEvenly(stage.size(), tableSize)) {
+                final List<CompletableFuture<Integer>> feeders = stage.subList(nextFeeder, nextFeeder + seats);
+                nextFeeder += seats;
+                final long tableSeed = Seeds.of(seed, nextTable++);
+
+                nextStage.add(CompletableFuture.allOf(feeders.toArray(new CompletableFuture<?>[seats]))
+                        .thenApplyAsync(done -> {
+                            final int[] table = new int[feeders.size()];
+                            for (int i = 0; i < table.length; i++) {
+                                table[i] = feeders.get(i).join();
+                            }
+                            return playTable(table, tableSeed);
+                        }, executor));
+            }
+            stage = nextStage;
+            stages++;
+        }
+
+        final int champion = stage.get(0).join();
+        return new TournamentResult(champion, stages, tablesPlayed.get(), roundsPlayed.get());
+    }
+
+    /**
+     * Play one table
+     * @param entrants - the entrant in each seat
+     * @param tableSeed
+     * @return the entrant that advances
+     */
+    private int playTable(final int[] entrants, final long tableSeed) {
+        // a bye
+        if (entrants.length == 1) {
+            return entrants[0];
+        }
+
+        // tables of a big deck are played only as many at once as the heap has room for
+        final HeapBudget budget = HeapBudget.shared();
+        final GameConfig table = new GameConfig(numberOfSuits, numberOfRanks, entrants.length, rules);
+        final long bytes = HeapBudget.estimateBytes(table, storage);
+        final long directBytes = HeapBudget.estimateDirectBytes(table, storage);
+        final GameResult result;
+        budget.admit(bytes, directBytes);
+        try {
+            War war = War.forRules(storage, rules);
+            war.setSeed(tableSeed);
+            result = war.playGame(numberOfSuits, numberOfRanks, entrants.length);
+        } finally {
+            budget.release(bytes, directBytes);
+        }
+
+        tablesPlayed.incrementAndGet();
+        roundsPlayed.addAndGet(result.getRounds());
+
+        // winners are in seat order and player ids are seat + 1
+        return entrants[result.getWinners().get(0).getId() - 1];
+    }
+
+    /**
+     * Split a number of players into as few tables as possible, with table sizes differing by at most one
+     * @param players
+     * @param maxPerTable
+     * @return the number of players at each table
+     */
+    static int[] splitEvenly(final int players, final int maxPerTable) {
+        final int tables = (players + maxPerTable - 1) / maxPerTable;
+        final int[] sizes = new int[tables];
+        for (int i = 0; i < tables; i++) {
+            sizes[i] = players / tables;
+            if (i < players % tables) {
+                sizes[i]++;
+            }
+        }
+        return sizes;
+    }
+}
@@ -0,0 +1,58 @@
+package com.juno.gameofwar;
+
+/**
+ * The outcome of a tournament
+ */
+public class TournamentResult {
+
+    // the entrant that won the final table
+    private final int champion;
+    // the number of bracket stages, the first stage seats every entrant
+    private final int stages;
+    // the number of tables that played a game, byes don't count
+    private final long tables;
+    // the number of rounds played across every table
+    private final long rounds;
+
+    /**
+     * @param champion
+     * @param stages
+     * @param tables
+     * @param rounds
+     */
+    public TournamentResult(final int champion, final int stages, final long tables, final long rounds) {
+        this.champion = champion;
+        this.stages = stages;
+        this.tables = tables;
+        this.rounds = rounds;
+    }
+
+    /**
+     * Get the id of the winning entrant
+     * @return
+     */
+    public int getChampion() {
+        return champion;
+    }
+
+    /**
+     * @return
+     */
+    public int getStages() {
+        return stages;
+    }
+
+    /**
+     * @return
+     */
+    public long getTables() {
+        return tables;
+    }
+
+    /**
+     * @return
+     */
+    public long getRounds() {
+        return rounds;
+    }
+}
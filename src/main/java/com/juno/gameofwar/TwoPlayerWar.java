@@ -0,0 +1,266 @@
+package com.juno.gameofwar;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plays a two player game of war by the standard rules on two arrays of ranks, without any per round objects.
+ *
+ * With two players the cards are dealt alternately and both players always play or discard a card together, so
+ * the game is the two hands compared position by position. Runs of positions where the ranks differ are
+ * compared in one pass and credited to the players in bulk, two cards a round, and only a tie drops into the
+ * war logic, which follows War.fightWar card for card. The first player holds the odd card of an odd deck, so
+ * they are the only one who can have cards once the other is out.
+ *
+ * Rounds, wars, longest war, scores and winners are the same as War.playGame for the same seed.
+ */
+public final class TwoPlayerWar {
+
+    // the only number of players this engine plays
+    private static final int PLAYERS = 2;
+
+    /**
+     * Use play
+     */
+    private TwoPlayerWar() { }
+
+    /**
+     * Play one game without printing anything
+     * @param numberOfSuits
+     * @param numberOfRanks
+     * @param seed - the shuffle seed
+     * @param storage - where the deck is kept before it is dealt
+     * @return
+     */
+    public static GameResult play(final int numberOfSuits, final int numberOfRanks, final long seed,
+                                  final CardStorage storage) {
+        GameEvent event = null;
+        if (FlightRecording.isRunning()) {
+            event = new GameEvent();
+            event.begin();
+        }
+
+        if ((numberOfSuits * numberOfRanks) < PLAYERS) {
+            throw new InvalidParameterException("numberOfSuits time numberOfRanks must be great than numberOfPlayers");
+        }
+
+        final int[][] hands = deal(numberOfSuits, numberOfRanks, seed, storage);
+        final GameResult result = play(hands[0], hands[1]);
+
+        if (event != null && event.shouldCommit()) {
+            event.setConfig(numberOfSuits, numberOfRanks, PLAYERS, seed, storage, false);
+            event.setResult(result);
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Shuffle a deck and deal it alternately, the first player gets the odd card
+     * @param numberOfSuits
+     * @param numberOfRanks
+     * @param seed
+     * @param storage
+     * @return the ranks of the first and second player's hands in the order they are played
+     */
+    static int[][] deal(final int numberOfSuits, final int numberOfRanks, final long seed,
+                        final CardStorage storage) {
+        final WarDeck deck = new WarDeck(storage, seed);
+        deck.create(numberOfSuits, numberOfRanks);
+        deck.shuffle();
+
+        final int cards = deck.numberOfUndealtCards();
+        final int[] first = new int[(cards + 1) / PLAYERS];
+        final int[] second = new int[cards / PLAYERS];
+        for (int i = 0; i < second.length; i++) {
+            first[i] = deck.rankAt(PLAYERS * i);
+            second[i] = deck.rankAt(PLAYERS * i + 1);
+        }
+        if (first.length > second.length) {
+            first[second.length] = deck.rankAt(cards - 1);
+        }
+        return new int[][] {first, second};
+    }
+
+    /**
+     * Play out two hands
+     * @param first - the ranks of the first player's hand in the order they are played
+     * @param second - the second player's, no longer than the first and at most one card shorter
+     * @return
+     */
+    static GameResult play(final int[] first, final int[] second) {
+        final Stretch game = new Stretch(first, second, 0);
+        game.playTo(first.length);
+        return game.result();
+    }
+
+    /**
+     * The players with the high score in seat order, leaving out a player who never won a round as War does
+     * @param firstScore
+     * @param secondScore
+     * @return
+     */
+    private static List<Player> winners(final int firstScore, final int secondScore) {
+        final List<Player> winners = new ArrayList<>(PLAYERS);
+        if (firstScore > 0 && firstScore >= secondScore) {
+            winners.add(new Player(1));
+        }
+        if (secondScore > 0 && secondScore >= firstScore) {
+            winners.add(new Player(2));
+        }
+        return winners;
+    }
+
+    /**
+     * Rounds of one game played from a position where a round starts. Both players always have played the same
+     * number of cards, so that position is all there is to the state of the game, and stretches of a game can be
+     * played separately and added up.
+     */
+    static final class Stretch {
+
+        private final int[] first;
+        private final int[] second;
+        // where the next round starts
+        private int position;
+        private long rounds = 0;
+        private long wars = 0;
+        private int maxWarDepth = 0;
+        private int firstScore = 0;
+        private int secondScore = 0;
+
+        /**
+         * @param first - the ranks of the first player's hand
+         * @param second - the ranks of the second player's hand
+         * @param position - where a round of the game starts
+         */
+        Stretch(final int[] first, final int[] second, final int position) {
+            this.first = first;
+            this.second = second;
+            this.position = position;
+        }
+
+        /**
+         * Play rounds until the next one would start at or past stop, or the cards run out. A war that starts
+         * before stop is fought to the end, so the stretch can end past stop.
+         * @param stop
+         */
+        void playTo(final int stop) {
+            final int firstCards = first.length;
+            // both players have a card at every position before this
+            final int bothCards = second.length;
+            final int end = Math.min(stop, firstCards);
+
+            while (position < end) {
+                if (position >= bothCards) {
+                    // the second player is out, the first player wins the round with their one card
+                    rounds++;
+                    firstScore++;
+                    position++;
+                    continue;
+                }
+
+                // every round up to the next tie has a clear winner
+                final int start = position;
+                final int runEnd = Math.min(bothCards, end);
+                int firstWins = 0;
+                while (position < runEnd && first[position] != second[position]) {
+                    // one when the first player's rank is higher
+                    firstWins += (second[position] - first[position]) >>> (Integer.SIZE - 1);
+                    position++;
+                }
+                final int decided = position - start;
+                rounds += decided;
+                firstScore += PLAYERS * firstWins;
+                secondScore += PLAYERS * (decided - firstWins);
+                if (position == runEnd) {
+                    continue;
+                }
+
+                fightWar();
+            }
+        }
+
+        /**
+         * Fight the war that starts with the tie at position, the way War.fightWar does
+         */
+        private void fightWar() {
+            final int firstCards = first.length;
+            final int bothCards = second.length;
+
+            rounds++;
+            wars++;
+            position++;
+            int score = PLAYERS;
+            int warDepth = 0;
+            boolean firstWinsWar = true;
+
+            while (true) {
+                warDepth++;
+
+                // each player with a card discards it, a player without one is out of the war
+                final boolean firstIn = position < firstCards;
+                final boolean secondIn = position < bothCards;
+                if (firstIn) {
+                    score++;
+                }
+                if (secondIn) {
+                    score++;
+                }
+                position++;
+
+                // the players still in play a round, nobody in or nobody with a card means the first player wins
+                if (!secondIn || position >= bothCards) {
+                    if (firstIn && position < firstCards) {
+                        score++;
+                        position++;
+                    }
+                    break;
+                }
+                score += PLAYERS;
+                final int firstRank = first[position];
+                final int secondRank = second[position];
+                position++;
+                if (firstRank != secondRank) {
+                    firstWinsWar = firstRank > secondRank;
+                    break;
+                }
+            }
+
+            maxWarDepth = Math.max(maxWarDepth, warDepth);
+            if (firstWinsWar) {
+                firstScore += score;
+            } else {
+                secondScore += score;
+            }
+        }
+
+        /**
+         * Add the rounds of the stretch that follows this one and carry on from where it ends
+         * @param next - a stretch that starts where this one ends
+         */
+        void add(final Stretch next) {
+            position = next.position;
+            rounds += next.rounds;
+            wars += next.wars;
+            maxWarDepth = Math.max(maxWarDepth, next.maxWarDepth);
+            firstScore += next.firstScore;
+            secondScore += next.secondScore;
+        }
+
+        /**
+         * @return where the next round starts
+         */
+        int getPosition() {
+            return position;
+        }
+
+        /**
+         * @return the result of a stretch that covers the whole game
+         */
+        GameResult result() {
+            return new GameResult(winners(firstScore, secondScore), Math.max(firstScore, secondScore), rounds,
+                    wars, maxWarDepth);
+        }
+    }
+}
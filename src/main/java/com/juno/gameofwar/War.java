@@ -1,5 +1,6 @@
 package com.juno.gameofwar;
 
+import java.nio.file.Path;
 import java.security.InvalidParameterException;
 import java.util.*;
 
@@ -8,15 +9,36 @@ import java.util.*;
  */
 public class War {
 
+    // the number of rounds between checkpoints unless set otherwise
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 1000000;
+    // rounds with at least this many players are played in parallel unless set otherwise
+    public static final int DEFAULT_PARALLEL_ROUND_THRESHOLD = 4096;
+
     // map for keeping score of the game
     private HashMap<Player, Integer> playerScoreMap = new HashMap<Player, Integer>();
     // Deck to use to play a game of war
     private Deck deck = null;
+    // the kind of memory the deck and the players hands keep their cards in
+    private final CardStorage storage;
+    // seed used to shuffle the deck this class creates
+    private long seed = Seeds.fresh();
+    // when set, the state of the game is saved to this file every checkpointInterval rounds
+    private Path checkpointFile = null;
+    private long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    // rounds with at least this many players still in are split across threads
+    private int parallelRoundThreshold = DEFAULT_PARALLEL_ROUND_THRESHOLD;
+    // the players that played a card in the last round of the game being played. Hands only ever shrink, so no
+    // more players than this are still in
+    private int playersInLastRound = Integer.MAX_VALUE;
+    // the number of war rounds played so far in the current war, including the one being played
+    private int warDepth = 0;
 
     /**
      * No-arg c'tor - this should be used for "normal" play
      */
-    public War() { }
+    public War() {
+        this(CardStorage.HEAP);
+    }
 
     /**
      * Init with a deck; dependency injection for testing.
@@ -24,10 +46,94 @@ public class War {
      */
     public War(final Deck deck) {
         this.deck = deck;
+        this.storage = CardStorage.HEAP;
+    }
+
+    /**
+     * Deal the next game from this deck rather than a shuffled one, keeping the hands in this game's storage
+     * @param injectedDeck
+     */
+    public void setDeck(final Deck injectedDeck) {
+        this.deck = injectedDeck;
+    }
+
+    /**
+     * Play "normally" but keep the deck and hands in the given kind of storage
+     * @param storage
+     */
+    public War(final CardStorage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Create a game that plays by the given rules and keeps the deck and hands in the given kind of storage.
+     * The standard rules are played by War itself, anything else by RuleWar.
+     * @param storage
+     * @param rules
+     * @return
+     */
+    public static War forRules(final CardStorage storage, final Rules rules) {
+        if (rules.isStandard()) {
+            return new War(storage);
+        }
+        return new RuleWar(storage, rules);
+    }
+
+    /**
+     * Create a game to pick up a checkpoint file with, playing by the rules the file was saved with
+     * @param storage
+     * @param file - a file written by a game with checkpoints enabled
+     * @return
+     */
+    public static War forCheckpoint(final CardStorage storage, final Path file) {
+        try (GameSnapshot snapshot = GameSnapshot.open(file)) {
+            return forRules(storage, snapshot.getRules());
+        }
     }
 
     /**
-     * Play the game of war with the specified number of players, suits and ranks
+     * Get the rules this game plays by
+     * @return
+     */
+    public Rules getRules() {
+        return Rules.STANDARD;
+    }
+
+    /**
+     * Set the seed used to shuffle the deck. Has no effect when a deck was injected.
+     * @param shuffleSeed
+     */
+    public void setSeed(final long shuffleSeed) {
+        this.seed = shuffleSeed;
+    }
+
+    /**
+     * Save the state of the game to a file as it is played so it can be picked up again with resume
+     * @param file - the checkpoint file, replaced when the game starts
+     * @param intervalRounds - the number of rounds between checkpoints
+     */
+    public void enableCheckpoints(final Path file, final long intervalRounds) {
+        if (intervalRounds < 1) {
+            throw new InvalidParameterException("checkpoint interval must be greater than zero.");
+        }
+        this.checkpointFile = file;
+        this.checkpointInterval = intervalRounds;
+    }
+
+    /**
+     * Set the number of players still in a round needs before it is played in parallel (see ParallelRound).
+     * Below this the fork join overhead costs more than it saves. Results are the same either way.
+     * @param minimumPlayers
+     */
+    public void setParallelRoundThreshold(final int minimumPlayers) {
+        if (minimumPlayers < 1) {
+            throw new InvalidParameterException("parallel round threshold must be greater than zero.");
+        }
+        this.parallelRoundThreshold = minimumPlayers;
+    }
+
+    /**
+     * Play the game of war with the specified number of players, suits and ranks and print the winners
      *
      * @param numberOfSuits
      * @param numberOfRanks
@@ -35,32 +141,166 @@ public class War {
      * @return A list of the winning players
      */
     public List<Player> play(final int numberOfSuits, final int numberOfRanks, final int numberOfPlayers) {
+        GameResult result = playGame(numberOfSuits, numberOfRanks, numberOfPlayers);
+        printResult(result);
+        return result.getWinners();
+    }
+
+    /**
+     * Play the game of war with the specified number of players, suits and ranks without printing anything
+     *
+     * @param numberOfSuits
+     * @param numberOfRanks
+     * @param numberOfPlayers
+     * @return the result of the game
+     */
+    public GameResult playGame(final int numberOfSuits, final int numberOfRanks, final int numberOfPlayers) {
+        GameEvent event = null;
+        if (FlightRecording.isRunning()) {
+            event = new GameEvent();
+            event.begin();
+        }
+
+        // a deck that was given to the game may hold other cards than the suits and ranks say, so go by its own count
+        long numberOfCards = (long) numberOfSuits * numberOfRanks;
+        if (deck != null && deck.numberOfUndealtCards() >= 0) {
+            numberOfCards = deck.numberOfUndealtCards();
+        }
 
         // each player should at least have 1 card to play the game - validate
-        if ((numberOfSuits * numberOfRanks) < numberOfPlayers) {
+        if (numberOfCards < numberOfPlayers) {
             throw new InvalidParameterException("numberOfSuits time numberOfRanks must be great than numberOfPlayers");
         }
 
         if (deck == null) {
             // create a deck for the game
-            deck = new WarDeck();
+            deck = new WarDeck(storage, seed);
             deck.create(numberOfSuits, numberOfRanks);
             deck.shuffle();
         }
 
         // for each player, create a player object
         List<Player> players = new ArrayList<>(numberOfPlayers);
+        // size the hands for an even deal so they don't have to grow while dealing
+        final int cardsPerPlayer = (int) (numberOfCards / numberOfPlayers + 1);
 
         for (int i = 0; i < numberOfPlayers; i++) {
-            players.add(new Player(i + 1));
+            players.add(new Player(i + 1, storage.newStore(cardsPerPlayer)));
         }
 
         // now deal the cards
         dealCards(players, deck);
 
+        GameSnapshot snapshot = null;
+        if (checkpointFile != null) {
+            snapshot = GameSnapshot.create(checkpointFile, seed, numberOfSuits, numberOfRanks, getRules(), players);
+        }
+
+        final GameResult result = playToEnd(players, 0, 0, 0, snapshot);
+
+        if (event != null && event.shouldCommit()) {
+            event.setConfig(numberOfSuits, numberOfRanks, numberOfPlayers, seed, storage, false);
+            event.setResult(result);
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Pick up a game from a checkpoint file and play it to the end. The result is the same as if the game had
+     * never been interrupted. Checkpoints keep being written to the same file.
+     *
+     * @param file - a file written by a game with checkpoints enabled
+     * @return A list of the winning players
+     */
+    public List<Player> resume(final Path file) {
+        GameResult result = resumeGame(file);
+        printResult(result);
+        return result.getWinners();
+    }
+
+    /**
+     * Pick up a game from a checkpoint file and play it to the end without printing anything. Throws an
+     * exception if the game was saved playing by other rules than this one plays by, see forCheckpoint.
+     *
+     * @param file - a file written by a game with checkpoints enabled
+     * @return the result of the game
+     */
+    public GameResult resumeGame(final Path file) {
+        GameEvent event = null;
+        if (FlightRecording.isRunning()) {
+            event = new GameEvent();
+            event.begin();
+        }
+
+        final GameSnapshot snapshot = GameSnapshot.open(file);
+        if (!snapshot.getRules().equals(getRules())) {
+            snapshot.close();
+            throw new InvalidParameterException(file + " was saved playing by " + snapshot.getRules()
+                    + " rather than " + getRules());
+        }
+        final List<Player> players = snapshot.restorePlayers(storage);
+
+        for (int i = 0; i < players.size(); i++) {
+            if (snapshot.getScore(i) > 0) {
+                playerScoreMap.put(players.get(i), snapshot.getScore(i));
+            }
+        }
+
+        final GameResult result = playToEnd(players, snapshot.getRounds(), snapshot.getWars(),
+                snapshot.getMaxWarDepth(), snapshot);
+
+        if (event != null && event.shouldCommit()) {
+            event.setConfig(snapshot.getNumberOfSuits(), snapshot.getNumberOfRanks(), players.size(),
+                    snapshot.getSeed(), storage, true);
+            event.setResult(result);
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Print the high score and the winners of a game
+     * @param result
+     */
+    public void printResult(final GameResult result) {
+        System.out.println("\nThe winning score was " + result.getHighScore());
+        System.out.println("\nThere were " + result.getWinners().size() + " winning players!");
+        System.out.println("\n----- WINNERS -----");
+
+        // a plain loop rather than a lambda keeps the lambda bootstrap out of the startup of a small game
+        for (Player player : result.getWinners()) {
+            System.out.println("\t" + player.getId());
+        }
+    }
+
+    /**
+     * Play rounds until every player is out of cards, then find the winners
+     *
+     * @param players - the players in seat order
+     * @param roundsPlayed - the number of rounds already played
+     * @param warsPlayed - the number of wars already played
+     * @param longestWar - the most war rounds a war has needed so far
+     * @param snapshot - checkpoint to update as the game goes, may be null
+     * @return the result of the game
+     */
+    private GameResult playToEnd(final List<Player> players, final long roundsPlayed, final long warsPlayed,
+                                 final int longestWar, final GameSnapshot snapshot) {
+        long rounds = roundsPlayed;
+        long wars = warsPlayed;
+        int maxWarDepth = longestWar;
+        playersInLastRound = Integer.MAX_VALUE;
+
         // play the game
         while (onePlayerHasCards(players)) {
 
+            // only a sample of the rounds is offered to flight recorder, the rest cost nothing
+            RoundEvent roundEvent = null;
+            if ((rounds & (RoundEvent.SAMPLE_INTERVAL - 1)) == 0 && FlightRecording.isRunning()) {
+                roundEvent = new RoundEvent();
+                roundEvent.begin();
+            }
+
             // Play a "Round"
             // A round is where each player plays ONE card and either there is a clear winner
             // and we get the "score" that winner should get OR
@@ -69,11 +309,19 @@ public class War {
             // a list of the tied players
 
             RoundResult rr = playRound(players, 0);
+            final boolean wentToWar = rr.isTie();
+            // a round scores one per card played, so this is how many players still had a card. Rule variants
+            // may score otherwise, but they never split rounds
+            playersInLastRound = rr.getScore();
 
-            if (rr.isTie()) { // WAR!
+            if (wentToWar) { // WAR!
                 // this is a recursive function that will resolve all subsequent ties and
                 // return a final score and winner
+                warDepth = 0;
                 rr = doWar(rr.getTiedPlayers(), rr.getScore());
+
+                wars++;
+                maxWarDepth = Math.max(maxWarDepth, warDepth);
             }
 
             // there should now be one "round result" winner with all wars resolved and
@@ -90,39 +338,49 @@ public class War {
             } else { // first time winner
                 playerScoreMap.put(winningPlayer, rr.getScore());
             }
+
+            if (roundEvent != null && roundEvent.shouldCommit()) {
+                roundEvent.setRound(rounds, players.size(), wentToWar, rr);
+                roundEvent.commit();
+            }
+
+            rounds++;
+            if (snapshot != null && rounds % checkpointInterval == 0) {
+                snapshot.update(rounds, wars, maxWarDepth, players, playerScoreMap);
+            }
+        }
+
+        if (snapshot != null) {
+            snapshot.close();
         }
 
         // find the high score
         Integer highScore = 0;
         // there may be a tie so keep track of who has high score
         List<Player> winningPlayers = new ArrayList<>();
-        // iterate through player scores to find high score(s)
-        Iterator<Map.Entry<Player, Integer>> iter = playerScoreMap.entrySet().iterator();
+        // iterate through player scores in seat order to find high score(s)
+        // so the winners always come out in the same order, resumed or not
+        for (Player player : players) {
+            Integer score = playerScoreMap.get(player);
 
-        while (iter.hasNext()) {
-            Map.Entry<Player, Integer> playerScore = iter.next();
+            if (score == null) {
+                // never won a round
+                continue;
+            }
 
             // if they equaled it, just add them to the map
-            if (playerScore.getValue().equals(highScore)) {
-                winningPlayers.add(playerScore.getKey());
+            if (score.equals(highScore)) {
+                winningPlayers.add(player);
 
-            } else if (playerScore.getValue() > highScore) {
+            } else if (score > highScore) {
                 // else if the current player beat the high score, all previous winners are invalid
                 winningPlayers.clear();
-                winningPlayers.add(playerScore.getKey());
-                highScore = playerScore.getValue();
+                winningPlayers.add(player);
+                highScore = score;
             }
         }
 
-        System.out.println("\nThe winning score was " + highScore);
-        System.out.println("\nThere were " + winningPlayers.size() + " winning players!");
-        System.out.println("\n----- WINNERS -----");
-
-        winningPlayers.forEach(player -> {
-            System.out.println("\t" + player.getId());
-        });
-
-        return winningPlayers;
+        return new GameResult(winningPlayers, highScore, rounds, wars, maxWarDepth);
     }
 
     /**
@@ -132,22 +390,17 @@ public class War {
      * @param deckParam
      */
     public void dealCards(final List<Player> players, final Deck deckParam) {
-        Card dealCard = deckParam.deal();
-        int curPlayer = 0;
-
-        // while we have a valid card
-        while (dealCard != null) {
-            // get the next player and give them the card
-            players.get(curPlayer).addCardToHand(dealCard);
-
-            curPlayer++;
+        DealEvent event = null;
+        if (FlightRecording.isRunning()) {
+            event = new DealEvent();
+            event.begin();
+        }
 
-            // loop through player list
-            if (curPlayer == players.size()) {
-                curPlayer = 0;
-            }
+        final int cardsDealt = deckParam.dealTo(players);
 
-            dealCard = deckParam.deal();
+        if (event != null && event.shouldCommit()) {
+            event.setDeal(players.size(), cardsDealt);
+            event.commit();
         }
     }
 
@@ -163,6 +416,11 @@ public class War {
      */
     public RoundResult playRound(final List<Player> players, final int startingScore) {
 
+        // with enough players it pays to split the round across threads
+        if (splitsRound(players)) {
+            return ParallelRound.playRound(players, startingScore);
+        }
+
         Iterator<Player> playerIter = players.iterator();
         // need to init these in the loop below to find a player that actually has cards
         Player currentWinningPlayer = null;
@@ -249,6 +507,33 @@ public class War {
      * @return
      */
     public RoundResult doWar(final List<Player> players, final int startingScore) {
+        // the whole chain of wars is one flight recorder event
+        WarEvent event = null;
+        if (FlightRecording.isRunning()) {
+            event = new WarEvent();
+            event.begin();
+        }
+        final int depthBefore = warDepth;
+
+        final RoundResult result = fightWar(players, startingScore);
+
+        if (event != null && event.shouldCommit()) {
+            event.setWar(warDepth - depthBefore, players.size(), result);
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Play war rounds until there is one winner or nobody has cards, see doWar
+     *
+     * @param players
+     * @param startingScore
+     * @return
+     */
+    protected RoundResult fightWar(final List<Player> players, final int startingScore) {
+
+        countWarRound();
 
         int score = startingScore;
 
@@ -278,12 +563,29 @@ public class War {
 
         if (warResult.isTie()) {
             // do it again!
-            return doWar(warResult.getTiedPlayers(), warResult.getScore());
+            return fightWar(warResult.getTiedPlayers(), warResult.getScore());
         }
 
         return warResult;
     }
 
+    /**
+     * Count one more round of the war being fought, every round of fightWar must call this
+     */
+    protected final void countWarRound() {
+        warDepth++;
+    }
+
+    /**
+     * Whether a round of these players is split across threads. Late in a game with many seats most of them are
+     * out of cards, and a round of the few still in is played on the calling thread.
+     * @param players
+     * @return
+     */
+    boolean splitsRound(final List<Player> players) {
+        return players.size() >= parallelRoundThreshold && playersInLastRound >= parallelRoundThreshold;
+    }
+
     /**
      * Returns true if one player in the list has cards.  False if no player has cards.
      * @param players
@@ -1,10 +1,8 @@
 package com.juno.gameofwar;
 
 import java.security.InvalidParameterException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Collections;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 
 /**
@@ -12,12 +10,45 @@ import java.util.Random;
  */
 public class WarDeck implements Deck {
 
-    // our list of undealt cards, init to size 0
-    // call create to fill the deck with cards
-    private List<Card> undealtCards = new ArrayList<>(0);
+    // decks with at least this many cards are shuffled across all cores, by way of a second store of the same
+    // kind, see ParallelShuffle
+    public static final int PARALLEL_SHUFFLE_THRESHOLD = 262144;
 
-    // our list of dealt cards.  Cards move from the undealt list to this least via the deal method
-    private List<Card> dealtCards = new ArrayList<>(0);
+    // the kind of memory the cards are kept in
+    private final CardStorage storage;
+    // seed for the random number generator used by shuffle
+    private final long seed;
+
+    // our undealt cards, init to size 0
+    // call create to fill the deck with cards.  Cards leave the store via the deal method
+    private CardStore undealtCards;
+
+    /**
+     * Create an empty deck that keeps its cards on the heap
+     */
+    public WarDeck() {
+        this(CardStorage.HEAP);
+    }
+
+    /**
+     * Create an empty deck that keeps its cards in the given kind of storage
+     * @param storage
+     */
+    public WarDeck(final CardStorage storage) {
+        this(storage, Seeds.fresh());
+    }
+
+    /**
+     * Create an empty deck that keeps its cards in the given kind of storage and always shuffles the same way
+     * for the same seed
+     * @param storage
+     * @param seed
+     */
+    public WarDeck(final CardStorage storage, final long seed) {
+        this.storage = storage;
+        this.seed = seed;
+        this.undealtCards = storage.newStore(0);
+    }
 
     /**
      * Create a new deck of cards. Throws an exception if parameter constraints are not met.
@@ -38,50 +69,81 @@ public class WarDeck implements Deck {
         }
 
         // init the undealt cards
-        undealtCards = new ArrayList<>(numberOfSuits * numberOfRanks);
+        undealtCards = storage.newStore(numberOfSuits * numberOfRanks);
 
         for (int suit = 0; suit < numberOfSuits; suit++) {
 
             for (int rank = 0; rank < numberOfRanks; rank++) {
-                undealtCards.add(new Card(suit, rank));
+                undealtCards.add(suit, rank);
             }
         }
     }
 
     /**
-     * Randomize the list of cards in the deck
+     * Randomize the undealt cards in the deck
      */
     @Override
     public void shuffle() {
-        long seed = System.nanoTime();
-        Collections.shuffle(undealtCards, new Random(seed));
+        if (undealtCards.size() >= PARALLEL_SHUFFLE_THRESHOLD) {
+            // a different permutation than Fisher-Yates would make, but the same one for every run with this seed
+            ParallelShuffle.shuffle(undealtCards, storage, seed, ForkJoinPool.commonPool());
+            return;
+        }
+
+        Random random = new Random(seed);
+
+        // Fisher-Yates in place, walking down from the back - the same swaps Collections.shuffle makes
+        for (int i = undealtCards.size(); i > 1; i--) {
+            swap(i - 1, random.nextInt(i));
+        }
     }
 
     /**
      * Deal a card out of the deck.  Returns null if the deck has not been created yet or all the cards have been dealt.
-     * To make more cards available, call create a new deck or call shuffle to reset all cards to undealt.
+     * To make more cards available, call create a new deck.
      * @return
      */
     @Override
     public Card deal() {
-        // return null if we have no undealt cards
-        if (undealtCards.size() == 0) {
-            return null;
-        }
+        // the store returns null when we have no undealt cards
+        return undealtCards.take();
+    }
 
-        // grab the "top" card from the undealt list, add it to dealt list, remove from it from undealt
-        // then return it
-        Card c = undealtCards.get(0);
-        dealtCards.add(c);
-        undealtCards.remove(0);
-        return c;
+    /**
+     * Get the seed this deck shuffles with
+     * @return
+     */
+    public long getSeed() {
+        return seed;
     }
 
     /**
      * Get the number of cards in the deck that have not been dealt
      * @return
      */
+    @Override
     public int numberOfUndealtCards() {
         return undealtCards.size();
     }
+
+    /**
+     * Get the rank of an undealt card without dealing it
+     * @param index - zero is the next card deal hands out
+     * @return
+     */
+    int rankAt(final int index) {
+        return undealtCards.rankAt(index);
+    }
+
+    /**
+     * Swap two undealt cards
+     * @param i
+     * @param j
+     */
+    private void swap(final int i, final int j) {
+        final int suit = undealtCards.suitAt(i);
+        final int rank = undealtCards.rankAt(i);
+        undealtCards.set(i, undealtCards.suitAt(j), undealtCards.rankAt(j));
+        undealtCards.set(j, suit, rank);
+    }
 }
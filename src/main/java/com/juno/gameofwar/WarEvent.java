@@ -0,0 +1,51 @@
+package com.juno.gameofwar;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a chain of wars, from the first tie until a round has one winner.
+ * Disabled unless a recording turns it on, see gameofwar.jfc.
+ */
+@Name(WarEvent.NAME)
+@Label("War")
+@Category("Game of War")
+@Description("A war and every war that followed from another tie")
+@Enabled(false)
+@StackTrace(false)
+public final class WarEvent extends Event {
+
+    public static final String NAME = "com.juno.gameofwar.War";
+
+    @Label("Depth")
+    @Description("The number of war rounds played before there was a winner")
+    private int depth;
+
+    @Label("Players")
+    @Description("The number of tied players that went to war")
+    private int players;
+
+    @Label("Score")
+    @Description("Cards won by the winner, including the round that tied")
+    private int score;
+
+    @Label("Winner")
+    private int winner;
+
+    /**
+     * @param warRounds
+     * @param tiedPlayers
+     * @param result - how the war ended
+     */
+    void setWar(final int warRounds, final int tiedPlayers, final RoundResult result) {
+        this.depth = warRounds;
+        this.players = tiedPlayers;
+        this.score = result.getScore();
+        this.winner = result.getWinner().getId();
+    }
+}
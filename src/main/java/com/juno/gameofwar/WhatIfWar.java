@@ -0,0 +1,229 @@
+package com.juno.gameofwar;
+
+import java.security.InvalidParameterException;
+
+/**
+ * Answers what a two player game by the standard rules would have come to had some of its cards been different,
+ * without playing the whole game again.
+ *
+ * The baseline game is played once and kept as pieces, one for the rounds that start before each multiple of
+ * snapshotCards positions, see TwoPlayerWar.Stretch. A changed game is the same as the baseline up to the last
+ * piece that starts at or before the first changed position, so those pieces are added up as they are and the
+ * game is played again from there. Once a piece of the replay starts past the last changed position where the
+ * same piece of the baseline starts, the two games are the same from there on and the rest of the baseline's
+ * pieces are added up as they are too. A change that moves a war a few cards usually meets the baseline again in
+ * the next piece, so a what-if costs a piece or two of play rather than the whole game.
+ *
+ * Cards are numbered in deal order from zero, even cards go to the first player and odd cards to the second.
+ * Not thread safe - a what-if changes the hands while it plays and puts them back before it returns.
+ */
+public final class WhatIfWar {
+
+    // positions between the baseline's snapshots
+    public static final int DEFAULT_SNAPSHOT_CARDS = 4096;
+    private static final int PLAYERS = 2;
+
+    private final int[] first;
+    private final int[] second;
+    private final int snapshotCards;
+    // the baseline's rounds that start before each multiple of snapshotCards, and where each piece starts
+    private final TwoPlayerWar.Stretch[] pieces;
+    private final int[] starts;
+    private final GameResult baseline;
+    // positions played again by the last what-if
+    private long replayed = 0;
+
+    /**
+     * Shuffle and deal a deck and play it as the baseline
+     * @param numberOfSuits
+     * @param numberOfRanks
+     * @param seed - the shuffle seed
+     * @param storage - where the deck is kept before it is dealt
+     */
+    public WhatIfWar(final int numberOfSuits, final int numberOfRanks, final long seed, final CardStorage storage) {
+        this(deal(numberOfSuits, numberOfRanks, seed, storage), DEFAULT_SNAPSHOT_CARDS);
+    }
+
+    /**
+     * @param hands - the ranks of the first and second player's hands, as TwoPlayerWar.deal deals them
+     * @param snapshotCards - positions between snapshots of the baseline
+     */
+    WhatIfWar(final int[][] hands, final int snapshotCards) {
+        if (snapshotCards < 1) {
+            throw new InvalidParameterException("snapshotCards must be greater than zero.");
+        }
+        this.first = hands[0];
+        this.second = hands[1];
+        this.snapshotCards = snapshotCards;
+
+        final int count = (first.length + snapshotCards - 1) / snapshotCards;
+        pieces = new TwoPlayerWar.Stretch[count];
+        starts = new int[count];
+        final TwoPlayerWar.Stretch game = new TwoPlayerWar.Stretch(first, second, 0);
+        for (int piece = 0; piece < count; piece++) {
+            starts[piece] = game.getPosition();
+            pieces[piece] = new TwoPlayerWar.Stretch(first, second, starts[piece]);
+            pieces[piece].playTo(boundary(piece));
+            game.add(pieces[piece]);
+        }
+        baseline = game.result();
+    }
+
+    /**
+     * Get the result of the game as dealt
+     * @return
+     */
+    public GameResult getBaseline() {
+        return baseline;
+    }
+
+    /**
+     * Get the number of cards in the game
+     * @return
+     */
+    public int getNumberOfCards() {
+        return first.length + second.length;
+    }
+
+    /**
+     * Get the rank of a card as dealt
+     * @param card - in deal order
+     * @return
+     */
+    public int rankAt(final int card) {
+        checkCard(card);
+        return hand(card)[card / PLAYERS];
+    }
+
+    /**
+     * Play the game with two cards of the deck swapped
+     * @param cardA - in deal order
+     * @param cardB
+     * @return
+     */
+    public GameResult swap(final int cardA, final int cardB) {
+        return withRanks(new int[] {cardA, cardB}, new int[] {rankAt(cardB), rankAt(cardA)});
+    }
+
+    /**
+     * Play the game with some cards of the deck given other ranks
+     * @param cards - in deal order
+     * @param ranks - the rank each of the cards is given
+     * @return
+     */
+    public GameResult withRanks(final int[] cards, final int[] ranks) {
+        if (cards.length != ranks.length) {
+            throw new InvalidParameterException("cards and ranks must be the same length.");
+        }
+        if (cards.length == 0) {
+            replayed = 0;
+            return baseline;
+        }
+
+        final int[] dealt = new int[cards.length];
+        int from = Integer.MAX_VALUE;
+        int to = 0;
+        for (int i = 0; i < cards.length; i++) {
+            dealt[i] = rankAt(cards[i]);
+            from = Math.min(from, cards[i] / PLAYERS);
+            to = Math.max(to, cards[i] / PLAYERS);
+        }
+
+        try {
+            for (int i = 0; i < cards.length; i++) {
+                hand(cards[i])[cards[i] / PLAYERS] = ranks[i];
+            }
+            return replay(from, to);
+        } finally {
+            // every rank was read before any was changed, so a card listed twice still ends up as dealt
+            for (int i = 0; i < cards.length; i++) {
+                hand(cards[i])[cards[i] / PLAYERS] = dealt[i];
+            }
+        }
+    }
+
+    /**
+     * Get the number of positions the last what-if played again, out of the first player's hand
+     * @return
+     */
+    public long getReplayedCards() {
+        return replayed;
+    }
+
+    /**
+     * Play the changed hands from the last snapshot before the change until they meet the baseline again
+     * @param from - the first changed position
+     * @param to - the last changed position
+     * @return
+     */
+    private GameResult replay(final int from, final int to) {
+        int piece = 0;
+        while (piece + 1 < pieces.length && starts[piece + 1] <= from) {
+            piece++;
+        }
+
+        final TwoPlayerWar.Stretch game = new TwoPlayerWar.Stretch(first, second, 0);
+        for (int i = 0; i < piece; i++) {
+            game.add(pieces[i]);
+        }
+
+        final int resumed = game.getPosition();
+        while (piece < pieces.length) {
+            if (game.getPosition() > to && game.getPosition() == starts[piece]) {
+                // the same game as the baseline from here on
+                replayed = game.getPosition() - resumed;
+                for (int i = piece; i < pieces.length; i++) {
+                    game.add(pieces[i]);
+                }
+                return game.result();
+            }
+            game.playTo(boundary(piece));
+            piece++;
+        }
+        replayed = game.getPosition() - resumed;
+        return game.result();
+    }
+
+    /**
+     * @param piece
+     * @return the position the piece plays up to
+     */
+    private int boundary(final int piece) {
+        return (int) Math.min((long) (piece + 1) * snapshotCards, first.length);
+    }
+
+    /**
+     * @param card - in deal order
+     * @return the hand the card is dealt to
+     */
+    private int[] hand(final int card) {
+        if (card % PLAYERS == 0) {
+            return first;
+        }
+        return second;
+    }
+
+    /**
+     * @param card
+     */
+    private void checkCard(final int card) {
+        if (card < 0 || card >= getNumberOfCards()) {
+            throw new InvalidParameterException("card must be from 0 to " + (getNumberOfCards() - 1) + ".");
+        }
+    }
+
+    /**
+     * @param numberOfSuits
+     * @param numberOfRanks
+     * @param seed
+     * @param storage
+     * @return
+     */
+    private static int[][] deal(final int numberOfSuits, final int numberOfRanks, final long seed,
+                                final CardStorage storage) {
+        if ((numberOfSuits * numberOfRanks) < PLAYERS) {
+            throw new InvalidParameterException("numberOfSuits time numberOfRanks must be great than numberOfPlayers");
+        }
+        return TwoPlayerWar.deal(numberOfSuits, numberOfRanks, seed, storage);
+    }
+}
@@ -0,0 +1,136 @@
+package com.juno.gameofwar;
+
+import java.util.Locale;
+
+/**
+ * How busy each thread of a batch was. A thread is busy while it plays a chunk of games and idle while it takes
+ * the next chunk, waits for heap or has run out of games before the batch is done.
+ *
+ * Not thread safe - each thread records into its own slot and the load is only read once the batch is done.
+ */
+public final class WorkerLoad {
+
+    private static final double PERCENT = 100.0;
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final long[] busyNanos;
+    private final long[] waitNanos;
+    private final long[] finishedNanos;
+    private final long[] chunks;
+    private long wallNanos = 0;
+
+    /**
+     * @param workers
+     */
+    WorkerLoad(final int workers) {
+        busyNanos = new long[workers];
+        waitNanos = new long[workers];
+        finishedNanos = new long[workers];
+        chunks = new long[workers];
+    }
+
+    /**
+     * @param worker
+     * @param nanos - spent playing one chunk
+     */
+    void recordChunk(final int worker, final long nanos) {
+        busyNanos[worker] += nanos;
+        chunks[worker]++;
+    }
+
+    /**
+     * @param worker
+     * @param nanos - spent waiting for the heap budget to admit the games of one chunk
+     */
+    void recordWait(final int worker, final long nanos) {
+        waitNanos[worker] += nanos;
+    }
+
+    /**
+     * @param worker
+     * @param nanos - from the start of the batch until the worker ran out of games
+     */
+    void recordFinished(final int worker, final long nanos) {
+        finishedNanos[worker] = nanos;
+    }
+
+    /**
+     * @param nanos - from the start of the batch until the last worker finished
+     */
+    void recordWall(final long nanos) {
+        wallNanos = nanos;
+    }
+
+    /**
+     * Get the share of the batch a worker spent playing games, from zero to one
+     * @param worker
+     * @return
+     */
+    public double getUtilization(final int worker) {
+        if (wallNanos == 0) {
+            return 1;
+        }
+        return Math.min(1, (double) busyNanos[worker] / wallNanos);
+    }
+
+    /**
+     * Get the time a worker spent waiting for the heap budget to admit its games
+     * @param worker
+     * @return
+     */
+    public long getWaitNanos(final int worker) {
+        return waitNanos[worker];
+    }
+
+    /**
+     * Get the time from the first worker running out of games to the end of the batch, when the other workers
+     * were still playing their last games
+     * @return
+     */
+    public long getTailNanos() {
+        long first = wallNanos;
+        for (long finished : finishedNanos) {
+            first = Math.min(first, finished);
+        }
+        return wallNanos - first;
+    }
+
+    /**
+     * Get the number of chunks of games handed out
+     * @return
+     */
+    public long getChunks() {
+        long total = 0;
+        for (long c : chunks) {
+            total += c;
+        }
+        return total;
+    }
+
+    /**
+     * Get the number of workers
+     * @return
+     */
+    public int getWorkers() {
+        return busyNanos.length;
+    }
+
+    /**
+     * A line saying how busy the workers were
+     * @return
+     */
+    public String summary() {
+        double total = 0;
+        double least = 1;
+        long waited = 0;
+        for (int worker = 0; worker < busyNanos.length; worker++) {
+            total += getUtilization(worker);
+            least = Math.min(least, getUtilization(worker));
+            waited += waitNanos[worker];
+        }
+        return String.format(Locale.ROOT,
+                "%d workers %.1f%% busy, the least %.1f%%, %d chunks, %.1fms tail, %.1fms waiting for heap%n",
+                busyNanos.length, total / busyNanos.length * PERCENT, least * PERCENT, getChunks(),
+                getTailNanos() / NANOS_PER_MILLI, waited / NANOS_PER_MILLI);
+    }
+}
@@ -0,0 +1,179 @@
+package com.juno.gameofwar;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Budgets for the bytes the game loop allocates, so allocation creeping back into it fails a test the way a
+ * wrong result fails WarTest.
+ *
+ * Bytes are counted on the test thread with the thread allocation counter of HotSpot. Each path is warmed up
+ * first so the JIT has had its chance to remove allocations that don't escape. Every test warms up and measures
+ * its path a few times over on state of its own and keeps the fewest bytes, so a pass that ran while the compiler
+ * was still busy with what earlier tests left it doesn't fail the test. The budgets are what the paths allocated
+ * when they were set, rounded up. Cards are still objects when they leave a hand, so no engine plays a round for
+ * nothing yet; when one does its budget here should drop to zero.
+ */
+public class AllocationBudgetTest {
+
+    // a round played by two players: an iterator, two cards and the result
+    private static final long ROUND_BUDGET = 128;
+    // one level of war between two players: the list of players still in, four cards, the round and its result
+    private static final long WAR_BUDGET = 256;
+    // a whole game of 52 cards: deck, hands, players, scores and every round and war of the game
+    private static final long GAME_BUDGET = 8 * 1024;
+
+    private static final int WARM_UP = 20000;
+    private static final int MEASURED = 20000;
+    private static final int GAME_WARM_UP = 2000;
+    private static final int MEASURED_GAMES = 2000;
+    private static final int PASSES = 3;
+
+    private com.sun.management.ThreadMXBean threads;
+
+    /**
+     * Skip the suite on a JVM that can't count the bytes a thread allocates
+     */
+    @Before
+    public void setup() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * A round with a clear winner, in every kind of storage
+     */
+    @Test
+    public void testRound() {
+        for (CardStorage storage : CardStorage.values()) {
+            // player one always has the higher card, so no round goes to war
+            final List<Player> players = players(storage, PASSES * (WARM_UP + MEASURED), new int[] {1},
+                    new int[] {0});
+            final War war = new War(storage);
+
+            final long bytes = fewestAllocatedBytes(pass -> {
+                for (int i = 0; i < WARM_UP; i++) {
+                    war.playRound(players, 0);
+                }
+            }, pass -> {
+                for (int i = 0; i < MEASURED; i++) {
+                    war.playRound(players, 0);
+                }
+            });
+            assertWithinBudget("War.playRound with " + storage.getOptionName() + " storage", bytes / MEASURED,
+                    ROUND_BUDGET);
+        }
+    }
+
+    /**
+     * One level of war between two players, in every kind of storage
+     */
+    @Test
+    public void testWar() {
+        for (CardStorage storage : CardStorage.values()) {
+            // each war discards a card and player one wins it with the next
+            final List<Player> players = players(storage, 2 * PASSES * (WARM_UP + MEASURED), new int[] {0, 1},
+                    new int[] {0, 0});
+            final War war = new War(storage);
+
+            final long bytes = fewestAllocatedBytes(pass -> {
+                for (int i = 0; i < WARM_UP; i++) {
+                    war.doWar(players, 0);
+                }
+            }, pass -> {
+                for (int i = 0; i < MEASURED; i++) {
+                    war.doWar(players, 0);
+                }
+            });
+            assertWithinBudget("War.doWar with " + storage.getOptionName() + " storage", bytes / MEASURED,
+                    WAR_BUDGET);
+        }
+    }
+
+    /**
+     * Whole games of the standard deck, from shuffle to result
+     */
+    @Test
+    public void testGame() {
+        assertGameWithinBudget(new GameConfig(4, 13, 2), GAME_BUDGET);
+        assertGameWithinBudget(new GameConfig(4, 13, 4), GAME_BUDGET);
+    }
+
+    /**
+     * @param config
+     * @param budget - bytes per game
+     */
+    private void assertGameWithinBudget(final GameConfig config, final long budget) {
+        final Engine engine = Engine.SEQUENTIAL;
+        // every pass plays seeds of its own
+        final int seedsPerPass = GAME_WARM_UP + MEASURED_GAMES;
+        final long bytes = fewestAllocatedBytes(pass -> {
+            for (int game = 0; game < GAME_WARM_UP; game++) {
+                engine.play(config, pass * seedsPerPass + game, CardStorage.HEAP);
+            }
+        }, pass -> {
+            for (int game = 0; game < MEASURED_GAMES; game++) {
+                engine.play(config, pass * seedsPerPass + GAME_WARM_UP + game, CardStorage.HEAP);
+            }
+        });
+        assertWithinBudget("a game of " + config + " on the " + engine.getOptionName() + " engine",
+                bytes / MEASURED_GAMES, budget);
+    }
+
+    /**
+     * Two players whose hands repeat the given ranks, one card per suit zero
+     * @param storage
+     * @param cards - cards in each hand
+     * @param ranksOne - ranks player one repeats
+     * @param ranksTwo - ranks player two repeats
+     * @return
+     */
+    private static List<Player> players(final CardStorage storage, final int cards, final int[] ranksOne,
+                                        final int[] ranksTwo) {
+        final Player one = new Player(1, storage.newStore(cards));
+        final Player two = new Player(2, storage.newStore(cards));
+        for (int i = 0; i < cards; i++) {
+            one.getHand().add(0, ranksOne[i % ranksOne.length]);
+            two.getHand().add(0, ranksTwo[i % ranksTwo.length]);
+        }
+        return new ArrayList<>(Arrays.asList(one, two));
+    }
+
+    /**
+     * Warm a path up and measure it, PASSES times over
+     * @param warmUp - run before each pass, given the number of the pass
+     * @param path - measured, given the number of the pass
+     * @return the fewest bytes the current thread allocated running the path in one pass
+     */
+    private long fewestAllocatedBytes(final IntConsumer warmUp, final IntConsumer path) {
+        final long thread = Thread.currentThread().getId();
+        long fewest = Long.MAX_VALUE;
+        for (int pass = 0; pass < PASSES; pass++) {
+            warmUp.accept(pass);
+            final long before = threads.getThreadAllocatedBytes(thread);
+            path.accept(pass);
+            fewest = Math.min(fewest, threads.getThreadAllocatedBytes(thread) - before);
+        }
+        return fewest;
+    }
+
+    /**
+     * @param path - what was measured, for the failure message
+     * @param bytes
+     * @param budget
+     */
+    private static void assertWithinBudget(final String path, final long bytes, final long budget) {
+        assertTrue(path + " allocated " + bytes + " bytes, over its budget of " + budget, bytes <= budget);
+    }
+}
@@ -0,0 +1,158 @@
+package com.juno.gameofwar;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * Batches of games
+ */
+public class BatchRunnerTest {
+
+    private static final int NUM_GAMES = 2000;
+    private static final int NUM_PLAYERS = 3;
+    private static final long SEED = 99;
+    private static final int THREADS = 4;
+    private static final long HOLD_MILLIS = 200;
+
+    /**
+     * The statistics of a batch don't depend on how many threads played it
+     */
+    @Test
+    public void testStatsDoNotDependOnThreads() {
+        BatchRunner batch = new BatchRunner(GameOfWar.DEFAULT_NUM_SUITS, GameOfWar.DEFAULT_NUM_RANKS,
+                NUM_PLAYERS, SEED, CardStorage.HEAP);
+
+        GameStats single = batch.run(NUM_GAMES, 1);
+        GameStats parallel = batch.run(NUM_GAMES, THREADS);
+
+        assertEquals(single.getGames(), NUM_GAMES);
+        assertEquals(parallel.getGames(), NUM_GAMES);
+        assertEquals(parallel.getRounds().getSum(), single.getRounds().getSum());
+        assertEquals(parallel.getWars().getSum(), single.getWars().getSum());
+        assertEquals(parallel.getHighScore().quantile(0.9), single.getHighScore().quantile(0.9));
+        assertEquals(parallel.getSharedWins(), single.getSharedWins());
+        for (int seat = 1; seat <= NUM_PLAYERS; seat++) {
+            assertEquals(parallel.getSeatWins(seat), single.getSeatWins(seat));
+        }
+    }
+
+    /**
+     * Chunks hold a millisecond of games, one game at a time for long games, and shrink as the batch runs out
+     */
+    @Test
+    public void testChunkEnd() {
+        // nothing played yet
+        assertEquals(BatchRunner.chunkEnd(0, 1000000, THREADS, 0, 0), 1L);
+        // 10us a game
+        assertEquals(BatchRunner.chunkEnd(100, 1000000, THREADS, 100, 1000000), 200L);
+        // 10ms a game
+        assertEquals(BatchRunner.chunkEnd(100, 1000000, THREADS, 10, 100000000), 101L);
+        // a quarter of each thread's share of the 800 games left
+        assertEquals(BatchRunner.chunkEnd(999200, 1000000, THREADS, 100, 1000000), 999250L);
+        // the last games go one at a time
+        assertEquals(BatchRunner.chunkEnd(999990, 1000000, THREADS, 100, 1000000), 999991L);
+        assertEquals(BatchRunner.chunkEnd(999999, 1000000, THREADS, 100, 1), 1000000L);
+    }
+
+    /**
+     * Every game is played in some chunk and every thread reports how busy it was
+     */
+    @Test
+    public void testLoad() {
+        BatchRunner batch = new BatchRunner(GameOfWar.DEFAULT_NUM_SUITS, GameOfWar.DEFAULT_NUM_RANKS,
+                NUM_PLAYERS, SEED, CardStorage.HEAP);
+        assertEquals(batch.getLoad(), null);
+
+        batch.run(NUM_GAMES, THREADS);
+        WorkerLoad load = batch.getLoad();
+        assertEquals(load.getWorkers(), THREADS);
+        assertTrue(load.getChunks() >= 1 && load.getChunks() <= NUM_GAMES);
+        for (int worker = 0; worker < THREADS; worker++) {
+            assertTrue(load.getUtilization(worker) >= 0 && load.getUtilization(worker) <= 1);
+        }
+        assertTrue(load.summary().startsWith(THREADS + " workers "));
+    }
+
+    /**
+     * Time a thread spends waiting for the heap budget is counted as waiting and not as playing
+     */
+    @Test
+    public void testWaitIsNotBusy() throws InterruptedException {
+        GameConfig config = new GameConfig(GameOfWar.DEFAULT_NUM_SUITS, GameOfWar.DEFAULT_NUM_RANKS, NUM_PLAYERS);
+        BatchRunner batch = new BatchRunner(config, SEED, CardStorage.HEAP);
+        // smaller than one game, so each game waits until nothing else holds the budget
+        HeapBudget budget = new HeapBudget(HeapBudget.estimateBytes(config, CardStorage.HEAP) - 1);
+        batch.setHeapBudget(budget);
+
+        budget.admit(1);
+        Thread holder = new Thread(() -> {
+            try {
+                Thread.sleep(HOLD_MILLIS);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            } finally {
+                budget.release(1);
+            }
+        });
+        holder.start();
+        batch.run(1, 1);
+        holder.join();
+
+        WorkerLoad load = batch.getLoad();
+        assertTrue(load.getWaitNanos(0) >= TimeUnit.MILLISECONDS.toNanos(HOLD_MILLIS / 2));
+        assertTrue(load.getUtilization(0) < 0.5);
+        assertEquals(budget.getBytesInUse(), 0L);
+    }
+
+    /**
+     * The wins by seat table has a row for every seat at the table, no more and no fewer, whichever seats won
+     */
+    @Test
+    public void testSeatTable() {
+        for (int players : new int[] {3, 5}) {
+            GameConfig config = new GameConfig(GameOfWar.DEFAULT_NUM_SUITS, GameOfWar.DEFAULT_NUM_RANKS, players);
+            assertEquals(seatRows(new BatchRunner(config, SEED, CardStorage.HEAP).run(NUM_GAMES, THREADS)),
+                    players);
+
+            // only the first seat ever won
+            GameStats stats = new GameStats(players);
+            stats.record(new GameResult(Collections.singletonList(new Player(1)), 52, 100, 0, 0));
+            assertEquals(seatRows(stats), players);
+            assertEquals(stats.getSeatWins(players), 0L);
+        }
+    }
+
+    /**
+     * Any game of a batch can be played again on its own
+     */
+    @Test
+    public void testReplayOneGame() {
+        BatchRunner batch = new BatchRunner(GameOfWar.DEFAULT_NUM_SUITS, GameOfWar.DEFAULT_NUM_RANKS,
+                NUM_PLAYERS, SEED, CardStorage.HEAP);
+        final long game = 1234;
+
+        GameResult first = batch.playGame(game);
+        GameResult second = batch.playGame(game);
+        assertEquals(second.getRounds(), first.getRounds());
+        assertEquals(second.getWars(), first.getWars());
+        assertEquals(second.getHighScore(), first.getHighScore());
+    }
+
+    /**
+     * @param stats
+     * @return the number of rows of the wins by seat table, checking they are the seats in order
+     */
+    private static int seatRows(final GameStats stats) {
+        String summary = stats.summary();
+        String[] rows = summary.substring(summary.indexOf("WINS BY SEAT")).split("\n");
+        for (int seat = 1; seat < rows.length; seat++) {
+            assertTrue(rows[seat].startsWith("\t" + seat + "\t"));
+        }
+        return rows.length - 1;
+    }
+}
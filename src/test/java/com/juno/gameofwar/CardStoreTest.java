@@ -0,0 +1,119 @@
+package com.juno.gameofwar;
+
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Runs the same checks against every kind of card storage
+ */
+public class CardStoreTest {
+
+    // enough cards to force the stores to grow a few times
+    private static final int NUMBER_OF_CARDS = 1000;
+
+    /**
+     * Cards come back out in the order they were added and null once the store is empty
+     */
+    @Test
+    public void testFirstInFirstOut() {
+        for (CardStorage storage : CardStorage.values()) {
+            CardStore store = storage.newStore(0);
+
+            for (int i = 0; i < NUMBER_OF_CARDS; i++) {
+                store.add(i % 4, i);
+            }
+            assertEquals(store.size(), NUMBER_OF_CARDS);
+
+            for (int i = 0; i < NUMBER_OF_CARDS; i++) {
+                assertEquals(store.take(), card(storage, i % 4, i));
+            }
+            assertEquals(store.size(), 0);
+            assertNull(store.take());
+        }
+    }
+
+    /**
+     * Indexes are relative to the next card to be taken, even after the store has grown
+     */
+    @Test
+    public void testIndexAfterTakeAndGrow() {
+        for (CardStorage storage : CardStorage.values()) {
+            CardStore store = storage.newStore(2);
+            store.add(0, 0);
+            store.add(0, 1);
+            store.take();
+
+            // the store is half played so this add can reuse the front instead of growing
+            store.add(0, 2);
+            store.add(0, 3);
+
+            assertEquals(store.size(), 3);
+            assertEquals(store.rankAt(0), 1);
+            assertEquals(store.rankAt(2), 3);
+
+            store.set(0, 3, 7);
+            assertEquals(store.take(), card(storage, 3, 7));
+        }
+    }
+
+    /**
+     * Ranks are packed into the fewest bits, wider ranks and suits repack the cards already in the store
+     */
+    @Test
+    public void testPackedWidths() {
+        PackedCardStore store = new PackedCardStore(0, true);
+        for (int rank = 0; rank < 13; rank++) {
+            store.add(0, rank);
+        }
+        assertEquals(store.getRankWidth(), 4);
+        assertEquals(store.getSuitWidth(), 0);
+
+        store.take();
+        store.add(3, GameOfWar.MAX_RANKS - 1);
+        assertEquals(store.getRankWidth(), 14);
+        assertEquals(store.getSuitWidth(), 2);
+
+        for (int rank = 1; rank < 13; rank++) {
+            assertEquals(store.take(), new Card(0, rank));
+        }
+        assertEquals(store.take(), new Card(3, GameOfWar.MAX_RANKS - 1));
+
+        PackedCardStore ranksOnly = new PackedCardStore(0, false);
+        ranksOnly.add(3, 5);
+        assertEquals(ranksOnly.getSuitWidth(), 0);
+        assertEquals(ranksOnly.take(), new Card(0, 5));
+    }
+
+    /**
+     * Games play out the same whichever storage they are played in
+     */
+    @Test
+    public void testSameGameInEveryStorage() {
+        GameConfig config = new GameConfig(10, 1000, 7);
+        GameResult expected = config.play(5, CardStorage.HEAP);
+
+        for (CardStorage storage : CardStorage.values()) {
+            GameResult result = config.play(5, storage);
+            assertEquals(result.getRounds(), expected.getRounds());
+            assertEquals(result.getWars(), expected.getWars());
+            assertEquals(result.getHighScore(), expected.getHighScore());
+            assertEquals(result.getWinners().get(0).getId(), expected.getWinners().get(0).getId());
+        }
+    }
+
+    /**
+     * The card a store gives back, which has suit zero if the store doesn't keep suits
+     * @param storage
+     * @param suit
+     * @param rank
+     * @return
+     */
+    private static Card card(final CardStorage storage, final int suit, final int rank) {
+        if (storage.keepsSuits()) {
+            return new Card(suit, rank);
+        }
+        return new Card(0, rank);
+    }
+}
@@ -3,6 +3,7 @@ package com.juno.gameofwar;
 import org.junit.Test;
 
 import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
 
 /**
  * Created by Joe Teibel.
@@ -26,4 +27,11 @@ public class CardTest {
         Card c = new Card(CARD_SUIT, CARD_RANK);
         assertEquals(c.getRank(), CARD_RANK);
     }
+
+    @Test
+    public void testCardEquality() {
+
+        assertEquals(new Card(CARD_SUIT, CARD_RANK), new Card(CARD_SUIT, CARD_RANK));
+        assertFalse(new Card(CARD_SUIT, CARD_RANK).equals(new Card(CARD_SUIT, CARD_RANK + 1)));
+    }
 }
@@ -0,0 +1,155 @@
+package com.juno.gameofwar;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * Game records written in columns and read back
+ */
+public class ColumnarResultWriterTest {
+
+    private static final long SEED = 21;
+    private static final int GAMES = 3000;
+    private static final int CHUNK_ROWS = 256;
+    private static final GameConfig CONFIG = new GameConfig(4, 13, 3, Rules.STANDARD.with("scoring=face"));
+
+    /**
+     * Every column of every game comes back as it was played, whichever thread played it
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path file = Files.createTempFile("war", ".cols");
+        try {
+            BatchRunner batch = new BatchRunner(CONFIG, SEED, CardStorage.HEAP);
+            ColumnarResultWriter writer = new ColumnarResultWriter(file, CHUNK_ROWS);
+            batch.setOutput(writer);
+            batch.run(GAMES, 4);
+            writer.close();
+            assertEquals(writer.getRows(), GAMES);
+            assertEquals(writer.getBytes(), Files.size(file));
+
+            final boolean[] seen = new boolean[GAMES];
+            try (ColumnarResultReader reader = new ColumnarResultReader(file)) {
+                long games = reader.scan(EnumSet.allOf(ResultColumn.class), chunk -> {
+                    for (int row = 0; row < chunk.getRows(); row++) {
+                        int game = (int) chunk.get(ResultColumn.GAME, row);
+                        seen[game] = true;
+
+                        GameResult expected = batch.playGame(game);
+                        assertEquals(chunk.get(ResultColumn.SEED, row), BatchRunner.gameSeed(SEED, game));
+                        assertEquals(chunk.getConfig(row), CONFIG);
+                        assertEquals(chunk.get(ResultColumn.ROUNDS, row), expected.getRounds());
+                        assertEquals(chunk.get(ResultColumn.WARS, row), expected.getWars());
+                        assertEquals(chunk.get(ResultColumn.LONGEST_WAR, row), expected.getMaxWarDepth());
+                        assertEquals(chunk.get(ResultColumn.HIGH_SCORE, row), expected.getHighScore());
+                        assertEquals(chunk.getWinners(row), seats(expected));
+                    }
+                });
+                assertEquals(games, GAMES);
+            }
+            for (boolean game : seen) {
+                assertTrue(game);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * A scan of one column matches the batch statistics, and the records are compact
+     */
+    @Test
+    public void testOneColumn() throws IOException {
+        Path file = Files.createTempFile("war", ".cols");
+        try {
+            BatchRunner batch = new BatchRunner(new GameConfig(4, 13, 3), SEED, CardStorage.HEAP);
+            GameStats stats;
+            try (ColumnarResultWriter writer = new ColumnarResultWriter(file)) {
+                batch.setOutput(writer);
+                stats = batch.run(GAMES, 2);
+            }
+            // the seed alone is eight bytes
+            assertTrue(Files.size(file) < GAMES * 16L);
+
+            final long[] rounds = new long[1];
+            try (ColumnarResultReader reader = new ColumnarResultReader(file)) {
+                reader.scan(EnumSet.of(ResultColumn.ROUNDS), chunk -> {
+                    for (int row = 0; row < chunk.getRows(); row++) {
+                        rounds[0] += chunk.get(ResultColumn.ROUNDS, row);
+                    }
+                });
+            }
+            assertEquals(rounds[0], stats.getRounds().getSum());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * A chunk cut short by a crash is dropped and the chunks before it are still read
+     */
+    @Test
+    public void testTornChunk() throws IOException {
+        Path file = Files.createTempFile("war", ".cols");
+        try {
+            BatchRunner batch = new BatchRunner(CONFIG, SEED, CardStorage.HEAP);
+            try (ColumnarResultWriter writer = new ColumnarResultWriter(file, CHUNK_ROWS)) {
+                batch.setOutput(writer);
+                batch.run(CHUNK_ROWS * 2, 1);
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(channel.size() - 1);
+            }
+
+            try (ColumnarResultReader reader = new ColumnarResultReader(file)) {
+                assertEquals(reader.scan(EnumSet.of(ResultColumn.GAME), chunk -> { }), CHUNK_ROWS);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * A column that wasn't scanned can't be read
+     */
+    @Test (expected = InvalidParameterException.class)
+    public void testColumnNotScanned() throws IOException {
+        Path file = Files.createTempFile("war", ".cols");
+        try {
+            BatchRunner batch = new BatchRunner(CONFIG, SEED, CardStorage.HEAP);
+            try (ColumnarResultWriter writer = new ColumnarResultWriter(file)) {
+                batch.setOutput(writer);
+                batch.run(1, 1);
+            }
+            try (ColumnarResultReader reader = new ColumnarResultReader(file)) {
+                reader.scan(EnumSet.of(ResultColumn.WARS), chunk -> chunk.get(ResultColumn.ROUNDS, 0));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * @param result
+     * @return the seats of the winners
+     */
+    private static List<Integer> seats(final GameResult result) {
+        List<Integer> seats = new ArrayList<>();
+        for (Player winner : result.getWinners()) {
+            seats.add(winner.getId());
+        }
+        return seats;
+    }
+}
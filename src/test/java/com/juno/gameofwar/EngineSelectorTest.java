@@ -0,0 +1,131 @@
+package com.juno.gameofwar;
+
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static com.juno.gameofwar.GameResults.assertSameGame;
+import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Engines, the cost model that picks between them and its calibration
+ */
+public class EngineSelectorTest {
+
+    private static final GameConfig SMALL = new GameConfig(4, 13, 2);
+    private static final GameConfig CROWDED = new GameConfig(100, 100, 5000);
+
+    /**
+     * Every engine plays exactly the same game
+     */
+    @Test
+    public void testEnginesAgree() {
+        for (GameConfig config : new GameConfig[] {SMALL, new GameConfig(10, 100, 7), CROWDED}) {
+            GameResult expected = config.play(3, CardStorage.HEAP);
+
+            for (Engine engine : Engine.values()) {
+                if (!engine.supports(config)) {
+                    continue;
+                }
+                assertSameGame(engine.play(config, 3, CardStorage.HEAP), expected);
+            }
+        }
+    }
+
+    /**
+     * The cheapest engine is picked, and only splitting games across more cores makes the parallel one cheaper
+     */
+    @Test
+    public void testSelectsCheapest() {
+        Properties table = new Properties();
+        table.setProperty("cores", "1");
+        table.setProperty("sequential.fixed", "1000");
+        table.setProperty("sequential.perCard", "50");
+        table.setProperty("sequential.perRound", "0");
+        table.setProperty("parallel.fixed", "5000");
+        table.setProperty("parallel.perCard", "60");
+        table.setProperty("parallel.perRound", "10");
+
+        EngineSelector oneCore = new EngineSelector(table, 1);
+        assertEquals(oneCore.estimateNanos(Engine.SEQUENTIAL, SMALL), 1000.0 + 50 * 52);
+        assertEquals(oneCore.select(SMALL), Engine.SEQUENTIAL);
+        assertEquals(oneCore.select(CROWDED), Engine.SEQUENTIAL);
+
+        EngineSelector eightCores = new EngineSelector(table, 8);
+        assertEquals(eightCores.select(SMALL), Engine.SEQUENTIAL);
+        assertEquals(eightCores.select(CROWDED), Engine.PARALLEL_ROUNDS);
+    }
+
+    /**
+     * Engines missing from the table are never picked, unless none are calibrated
+     */
+    @Test
+    public void testUncalibrated() {
+        Properties table = new Properties();
+        table.setProperty("parallel.fixed", "1000000");
+
+        EngineSelector selector = new EngineSelector(table, 1);
+        assertEquals(selector.select(CROWDED), Engine.PARALLEL_ROUNDS);
+        assertTrue(Double.isInfinite(selector.estimateNanos(Engine.SEQUENTIAL, CROWDED)));
+
+        assertEquals(new EngineSelector(new Properties(), 1).select(SMALL), Engine.values()[0]);
+    }
+
+    /**
+     * The calibration fit finds the coefficients behind exact timings, and drops ones that would be negative
+     */
+    @Test
+    public void testFit() {
+        GameConfig[] configs = {SMALL, new GameConfig(10, 100, 7), CROWDED, new GameConfig(100, 1000, 2)};
+        double[][] features = new double[configs.length][];
+        double[] nanos = new double[configs.length];
+        double[] negativeFixed = new double[configs.length];
+        for (int i = 0; i < configs.length; i++) {
+            features[i] = EngineSelector.features(configs[i]);
+            nanos[i] = 2000 + 40 * features[i][1] + 3 * features[i][2];
+            negativeFixed[i] = 40 * features[i][1] - 100;
+        }
+
+        double[] coefficients = EngineCalibration.fit(features, nanos);
+        assertEquals(coefficients[0], 2000, 1e-3);
+        assertEquals(coefficients[1], 40, 1e-6);
+        assertEquals(coefficients[2], 3, 1e-6);
+
+        for (double coefficient : EngineCalibration.fit(features, negativeFixed)) {
+            assertTrue(coefficient >= 0);
+        }
+    }
+
+    /**
+     * Below the players it splits rounds for, the parallel engine is the sequential loop and is never picked
+     */
+    @Test
+    public void testParallelNeedsPlayers() {
+        Properties table = new Properties();
+        table.setProperty("cores", "1");
+        table.setProperty("sequential.fixed", "1246");
+        table.setProperty("sequential.perCard", "32");
+        table.setProperty("parallel.fixed", "889");
+        table.setProperty("parallel.perCard", "32");
+
+        EngineSelector selector = new EngineSelector(table, 1);
+        assertTrue(selector.estimateNanos(Engine.PARALLEL_ROUNDS, SMALL)
+                < selector.estimateNanos(Engine.SEQUENTIAL, SMALL));
+        assertEquals(selector.select(SMALL), Engine.SEQUENTIAL);
+        assertEquals(selector.select(new GameConfig(10, 100, 7)), Engine.SEQUENTIAL);
+        assertEquals(selector.select(CROWDED), Engine.PARALLEL_ROUNDS);
+    }
+
+    /**
+     * No table is shipped in the jar, so every game is played on the sequential engine
+     */
+    @Test
+    public void testDefaultTable() {
+        EngineSelector selector = EngineSelector.defaults();
+        for (GameConfig config : new GameConfig[] {SMALL, CROWDED}) {
+            assertEquals(selector.select(config), Engine.SEQUENTIAL);
+            assertTrue(Double.isInfinite(selector.estimateNanos(Engine.SEQUENTIAL, config)));
+        }
+    }
+}
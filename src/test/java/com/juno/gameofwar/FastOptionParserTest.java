@@ -0,0 +1,66 @@
+package com.juno.gameofwar;
+
+import org.apache.commons.cli.Option;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * The command line reader used in place of commons-cli
+ */
+public class FastOptionParserTest {
+
+    /**
+     * Every way of writing an option the fast parser reads gives the same values as commons-cli
+     */
+    @Test
+    public void testMatchesCommonsCli() {
+        String[][] commandLines = {
+            {},
+            {"-s", "5", "-r", "20", "-p", "3"},
+            {"--suits", "5", "--ranks=20", "-players", "3", "-sd", "42"},
+            {"-n", "100", "--threads", "2", "-cd", "cache", "--cache-size=16", "-m", "offheap"},
+            {"--seed=-7", "-t", "64"},
+        };
+
+        for (String[] args : commandLines) {
+            Map<String, String> fast = FastOptionParser.parse(args);
+            assertNotNull(fast);
+            assertEquals(fast, CliOptionParser.parse(args));
+        }
+    }
+
+    /**
+     * Every option that takes a value can be read by the fast parser, by either name
+     */
+    @Test
+    public void testKnowsEveryOption() {
+        for (Option option : CliOptionParser.createOptions().getOptions()) {
+            if (!option.hasArg()) {
+                continue;
+            }
+            assertEquals(FastOptionParser.parse(new String[] {"-" + option.getOpt(), "1"}).get(option.getOpt()), "1");
+            assertEquals(FastOptionParser.parse(new String[] {"--" + option.getLongOpt(), "1"}).get(option.getOpt()),
+                    "1");
+        }
+    }
+
+    /**
+     * Help and anything unusual is left to commons-cli
+     */
+    @Test
+    public void testFallsBack() {
+        assertNull(FastOptionParser.parse(new String[] {"-h"}));
+        assertNull(FastOptionParser.parse(new String[] {"-help"}));
+        assertNull(FastOptionParser.parse(new String[] {"-s4"}));
+        assertNull(FastOptionParser.parse(new String[] {"-s", "4", "-s", "5"}));
+        assertNull(FastOptionParser.parse(new String[] {"-sd", "-7"}));
+        assertNull(FastOptionParser.parse(new String[] {"-s"}));
+        assertNull(FastOptionParser.parse(new String[] {"--s", "4"}));
+        assertNull(FastOptionParser.parse(new String[] {"stray"}));
+    }
+}
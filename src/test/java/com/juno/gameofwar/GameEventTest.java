@@ -0,0 +1,115 @@
+package com.juno.gameofwar;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The flight recorder events a game emits
+ */
+public class GameEventTest {
+
+    private static final long SEED = 11;
+
+    /**
+     * With the events turned on a game records itself, its deal, every war and a sample of its rounds
+     */
+    @Test
+    public void testEnabled() throws IOException {
+        War war = new War(CardStorage.HEAP);
+        war.setSeed(SEED);
+        final GameResult result;
+        final List<RecordedEvent> events;
+
+        try (Recording recording = new Recording()) {
+            for (String name : new String[] {GameEvent.NAME, DealEvent.NAME, WarEvent.NAME, RoundEvent.NAME}) {
+                recording.enable(name).withoutThreshold();
+            }
+            recording.start();
+            result = war.playGame(4, 13, 4);
+            recording.stop();
+            events = read(recording);
+        }
+
+        int games = 0;
+        int deals = 0;
+        int wars = 0;
+        int rounds = 0;
+        for (RecordedEvent event : events) {
+            switch (event.getEventType().getName()) {
+                case GameEvent.NAME:
+                    games++;
+                    assertEquals(event.getInt("players"), 4);
+                    assertEquals(event.getLong("seed"), SEED);
+                    assertEquals(event.getLong("rounds"), result.getRounds());
+                    assertEquals(event.getLong("wars"), result.getWars());
+                    assertEquals(event.getInt("highScore"), result.getHighScore());
+                    break;
+                case DealEvent.NAME:
+                    deals++;
+                    assertEquals(event.getInt("cards"), 52);
+                    break;
+                case WarEvent.NAME:
+                    wars++;
+                    assertTrue(event.getInt("depth") >= 1);
+                    assertTrue(event.getInt("depth") <= result.getMaxWarDepth());
+                    break;
+                case RoundEvent.NAME:
+                    rounds++;
+                    assertEquals(event.getLong("round") % RoundEvent.SAMPLE_INTERVAL, 0L);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        assertEquals(games, 1);
+        assertEquals(deals, 1);
+        assertEquals(wars, (int) result.getWars());
+        final long sampled = (result.getRounds() + RoundEvent.SAMPLE_INTERVAL - 1) / RoundEvent.SAMPLE_INTERVAL;
+        assertEquals(rounds, (int) sampled);
+    }
+
+    /**
+     * A recording that doesn't ask for the events gets none of them
+     */
+    @Test
+    public void testDisabledByDefault() throws IOException {
+        final List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.start();
+            new War(CardStorage.HEAP).playGame(4, 13, 4);
+            recording.stop();
+            events = read(recording);
+        }
+
+        for (RecordedEvent event : events) {
+            assertTrue(!event.getEventType().getName().startsWith("com.juno.gameofwar."));
+        }
+    }
+
+    /**
+     * Dump a recording and read its events back
+     * @param recording
+     * @return
+     * @throws IOException
+     */
+    private static List<RecordedEvent> read(final Recording recording) throws IOException {
+        Path file = Files.createTempFile("war", ".jfr");
+        try {
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
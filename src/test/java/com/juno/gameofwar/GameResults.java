@@ -0,0 +1,30 @@
+package com.juno.gameofwar;
+
+import static junit.framework.TestCase.assertEquals;
+
+/**
+ * Checks on game results shared by the tests of the engines
+ */
+public final class GameResults {
+
+    /**
+     * Private constructor
+     */
+    private GameResults() { }
+
+    /**
+     * Assert two results are of the same game, won by the same seats
+     * @param actual
+     * @param expected
+     */
+    public static void assertSameGame(final GameResult actual, final GameResult expected) {
+        assertEquals(actual.getRounds(), expected.getRounds());
+        assertEquals(actual.getWars(), expected.getWars());
+        assertEquals(actual.getMaxWarDepth(), expected.getMaxWarDepth());
+        assertEquals(actual.getHighScore(), expected.getHighScore());
+        assertEquals(actual.getWinners().size(), expected.getWinners().size());
+        for (int i = 0; i < expected.getWinners().size(); i++) {
+            assertEquals(actual.getWinners().get(i).getId(), expected.getWinners().get(i).getId());
+        }
+    }
+}
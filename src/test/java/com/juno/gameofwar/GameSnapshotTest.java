@@ -0,0 +1,103 @@
+package com.juno.gameofwar;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checkpointing and resuming games
+ */
+public class GameSnapshotTest {
+
+    private static final long SEED = 42;
+    private static final int NUM_SUITS = 4;
+    private static final int NUM_RANKS = 13;
+    private static final int NUM_PLAYERS = 3;
+    private static final int CHECKPOINT_INTERVAL = 5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A game resumed from a mid game checkpoint ends exactly like the uninterrupted game
+     */
+    @Test
+    public void testResumeMatchesUninterruptedGame() throws IOException {
+        Path file = folder.newFile().toPath();
+
+        War war = new War();
+        war.setSeed(SEED);
+        war.enableCheckpoints(file, CHECKPOINT_INTERVAL);
+        GameResult expected = war.playGame(NUM_SUITS, NUM_RANKS, NUM_PLAYERS);
+
+        GameSnapshot snapshot = GameSnapshot.open(file);
+        assertTrue(snapshot.getRounds() >= CHECKPOINT_INTERVAL);
+        assertEquals(snapshot.getSeed(), SEED);
+        assertEquals(snapshot.getNumberOfPlayers(), NUM_PLAYERS);
+        snapshot.close();
+
+        GameResult resumed = new War(CardStorage.OFF_HEAP).resumeGame(file);
+        assertEquals(ids(resumed.getWinners()), ids(expected.getWinners()));
+        assertEquals(resumed.getHighScore(), expected.getHighScore());
+        assertEquals(resumed.getRounds(), expected.getRounds());
+        assertEquals(resumed.getWars(), expected.getWars());
+        assertEquals(resumed.getMaxWarDepth(), expected.getMaxWarDepth());
+    }
+
+    /**
+     * A checkpoint that was only half written is ignored in favour of the one before it
+     */
+    @Test
+    public void testTornCheckpointFallsBack() throws IOException {
+        Path file = folder.newFile().toPath();
+
+        List<Player> players = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            players.add(new Player(i + 1));
+            players.get(i).addCardToHand(new Card(0, i));
+            players.get(i).addCardToHand(new Card(1, i));
+        }
+
+        GameSnapshot snapshot = GameSnapshot.create(file, SEED, 2, 2, Rules.STANDARD, players);
+        players.forEach(Player::playCardFromHand);
+        snapshot.update(1, 0, 0, players, new HashMap<>());
+        snapshot.close();
+
+        // corrupt the last byte of the file which belongs to the checkpoint just written
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            final long last = raf.length() - 1;
+            raf.seek(last);
+            final int b = raf.read();
+            raf.seek(last);
+            raf.write(b ^ 1);
+        }
+
+        snapshot = GameSnapshot.open(file);
+        assertEquals(snapshot.getRounds(), 0);
+        List<Player> restored = snapshot.restorePlayers(CardStorage.HEAP);
+        snapshot.close();
+
+        assertEquals(restored.get(1).numberOfCards(), 2);
+        assertEquals(restored.get(1).playCardFromHand(), new Card(0, 1));
+    }
+
+    /**
+     * @param players
+     * @return the ids of the players in order
+     */
+    private static List<Integer> ids(final List<Player> players) {
+        List<Integer> ids = new ArrayList<>();
+        players.forEach(player -> ids.add(player.getId()));
+        return ids;
+    }
+}
@@ -0,0 +1,233 @@
+package com.juno.gameofwar;
+
+import org.junit.Test;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+/**
+ * Games admitted against a heap budget
+ */
+public class HeapBudgetTest {
+
+    private static final long WAIT_MILLIS = 200;
+    private static final long DONE_SECONDS = 10;
+    private static final long SEED = 49;
+    // four parallel shuffles' worth of a standard deck's ranks, which pack into four bits
+    private static final GameConfig BIG_DECK = new GameConfig(4 * WarDeck.PARALLEL_SHUFFLE_THRESHOLD / 13, 13, 2);
+
+    /**
+     * Estimates grow with the deck and the players and shrink with packed storage
+     */
+    @Test
+    public void testEstimate() {
+        GameConfig small = new GameConfig(4, 13, 2);
+        GameConfig big = new GameConfig(100, 10000, 2);
+        long heap = HeapBudget.estimateBytes(big, CardStorage.HEAP);
+
+        assertTrue(HeapBudget.estimateBytes(small, CardStorage.HEAP) < heap);
+        assertTrue(HeapBudget.estimateBytes(new GameConfig(100, 10000, 1000), CardStorage.HEAP) > heap);
+        // four copies of a million cards of two ints each
+        assertTrue(heap > 4 * 8 * 1000000L);
+        assertTrue(HeapBudget.estimateBytes(big, CardStorage.PACKED) < heap / 2);
+        assertTrue(HeapBudget.estimateBytes(big, CardStorage.PACKED_RANKS)
+                < HeapBudget.estimateBytes(big, CardStorage.PACKED));
+    }
+
+    /**
+     * The estimates cover the heap and the direct memory a two player game of a deck above the parallel shuffle
+     * threshold is measured to hold at once, in every kind of storage
+     */
+    @Test
+    public void testEstimateCoversMeasured() {
+        // the first pass loads and initialises everything the game uses, so only the game's own bytes are left
+        for (int pass = 0; pass < 2; pass++) {
+            for (CardStorage storage : CardStorage.values()) {
+                final long[] deck = deckBytes(storage);
+                final long hands = handBytes(storage);
+                // shuffled through a second store of the deck's kind, then the deck is held while it is dealt
+                final long heap = Math.max(2 * deck[0], deck[0] + hands);
+                final long direct = 2 * deck[1];
+                assertTrue(storage + " heap " + heap, HeapBudget.estimateBytes(BIG_DECK, storage) >= heap);
+                assertTrue(storage + " direct " + direct, HeapBudget.estimateDirectBytes(BIG_DECK, storage) >= direct);
+            }
+        }
+        // a deck on the heap is never direct memory
+        assertEquals(HeapBudget.estimateDirectBytes(BIG_DECK, CardStorage.HEAP), 0L);
+    }
+
+    /**
+     * Games that keep their cards off the heap wait on the direct memory budget as well as the heap budget
+     */
+    @Test
+    public void testAdmitDirect() throws Exception {
+        HeapBudget budget = new HeapBudget(100, 100);
+        assertTrue(budget.fits(10, 50, 2));
+        assertFalse(budget.fits(10, 51, 2));
+
+        budget.admit(10, 60);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> waiting = executor.submit(() -> budget.admit(10, 60));
+            assertStillWaiting(waiting);
+            budget.release(10, 60);
+            waiting.get(DONE_SECONDS, TimeUnit.SECONDS);
+            assertEquals(budget.getDirectBytesInUse(), 60L);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * The direct memory cap is read from the JVM's options, and is the heap's when it isn't given
+     */
+    @Test
+    public void testMaxDirectMemory() {
+        assertEquals(HeapBudget.maxDirectMemory(Arrays.asList("-Xmx1g"), 1000), 1000L);
+        assertEquals(HeapBudget.maxDirectMemory(Arrays.asList("-XX:MaxDirectMemorySize=4096"), 1000), 4096L);
+        assertEquals(HeapBudget.maxDirectMemory(
+                Arrays.asList("-XX:MaxDirectMemorySize=2k", "-XX:MaxDirectMemorySize=3G"), 1000), 3L << 30);
+    }
+
+    /**
+     * Small games are admitted alongside each other until the budget is used, then wait for a release
+     */
+    @Test
+    public void testAdmit() throws Exception {
+        HeapBudget budget = new HeapBudget(100);
+        assertTrue(budget.fits(50, 2));
+        assertFalse(budget.fits(51, 2));
+
+        budget.admit(60);
+        budget.admit(40);
+        assertEquals(budget.getBytesInUse(), 100L);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> waiting = executor.submit(() -> budget.admit(10));
+            assertStillWaiting(waiting);
+            budget.release(40);
+            waiting.get(DONE_SECONDS, TimeUnit.SECONDS);
+            assertEquals(budget.getBytesInUse(), 70L);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A game bigger than the budget is played on its own, and small games asking after it wait their turn
+     */
+    @Test
+    public void testBigGameAlone() throws Exception {
+        HeapBudget budget = new HeapBudget(100);
+        budget.admit(10);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CountDownLatch bigAsked = new CountDownLatch(1);
+            Future<?> big = executor.submit(() -> {
+                bigAsked.countDown();
+                budget.admit(500);
+            });
+            bigAsked.await();
+            assertStillWaiting(big);
+            Future<?> small = executor.submit(() -> budget.admit(10));
+            assertStillWaiting(small);
+
+            budget.release(10);
+            big.get(DONE_SECONDS, TimeUnit.SECONDS);
+            assertStillWaiting(small);
+            budget.release(500);
+            small.get(DONE_SECONDS, TimeUnit.SECONDS);
+            assertEquals(budget.getBytesInUse(), 10L);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A batch admitted a game at a time plays the same games as one that isn't admitted at all
+     */
+    @Test
+    public void testBatchInBudget() {
+        GameConfig config = new GameConfig(4, 13, 3);
+        BatchRunner batch = new BatchRunner(config, 48, CardStorage.HEAP);
+        GameStats expected = batch.run(500, 1);
+
+        batch.setHeapBudget(new HeapBudget(HeapBudget.estimateBytes(config, CardStorage.HEAP)));
+        assertEquals(batch.run(500, 4).summary(), expected.summary());
+    }
+
+    /**
+     * @param storage
+     * @return the bytes of heap and of direct memory held by the big deck, created in the given storage
+     */
+    private static long[] deckBytes(final CardStorage storage) {
+        final long heap = liveHeap();
+        final long direct = directMemory();
+        final WarDeck deck = new WarDeck(storage, SEED);
+        deck.create(BIG_DECK.getNumberOfSuits(), BIG_DECK.getNumberOfRanks());
+        final long[] bytes = {liveHeap() - heap, directMemory() - direct};
+        assertEquals(deck.numberOfUndealtCards(), BIG_DECK.getNumberOfCards());
+        return bytes;
+    }
+
+    /**
+     * @param storage
+     * @return the bytes of heap held by the hands the big deck is dealt into by the two player engines
+     */
+    private static long handBytes(final CardStorage storage) {
+        final long heap = liveHeap();
+        final int[][] hands = TwoPlayerWar.deal(BIG_DECK.getNumberOfSuits(), BIG_DECK.getNumberOfRanks(), SEED,
+                storage);
+        final long bytes = liveHeap() - heap;
+        assertEquals(hands[0].length + hands[1].length, BIG_DECK.getNumberOfCards());
+        return bytes;
+    }
+
+    /**
+     * @return the bytes of heap still reachable
+     */
+    private static long liveHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * @return the bytes of direct memory handed out and not yet freed
+     */
+    private static long directMemory() {
+        long used = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                used += pool.getMemoryUsed();
+            }
+        }
+        return used;
+    }
+
+    /**
+     * @param task
+     * @throws Exception
+     */
+    private static void assertStillWaiting(final Future<?> task) throws Exception {
+        try {
+            task.get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            fail("admitted over the budget");
+        } catch (TimeoutException te) {
+            assertFalse(task.isDone());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.juno.gameofwar;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Quantile estimates and merging
+ */
+public class LogHistogramTest {
+
+    private static final int NUM_VALUES = 100000;
+    private static final double MAX_RELATIVE_ERROR = 0.004;
+    private static final long SEED = 3;
+
+    /**
+     * Small values are counted exactly
+     */
+    @Test
+    public void testSmallValuesAreExact() {
+        LogHistogram histogram = new LogHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        assertEquals(histogram.quantile(0.5), 50);
+        assertEquals(histogram.quantile(0.99), 99);
+        assertEquals(histogram.getMin(), 1);
+        assertEquals(histogram.getMax(), 100);
+        assertEquals(histogram.getSum(), 5050);
+    }
+
+    /**
+     * Large values are within the promised relative error, and merged histograms agree with a single one
+     */
+    @Test
+    public void testLargeValuesAndMerge() {
+        Random random = new Random(SEED);
+        long[] values = new long[NUM_VALUES];
+        LogHistogram whole = new LogHistogram();
+        LogHistogram left = new LogHistogram();
+        LogHistogram right = new LogHistogram();
+
+        for (int i = 0; i < NUM_VALUES; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 30);
+            whole.record(values[i]);
+            if (i % 2 == 0) {
+                left.record(values[i]);
+            } else {
+                right.record(values[i]);
+            }
+        }
+        left.merge(right);
+        Arrays.sort(values);
+
+        for (double q : new double[] {0.1, 0.5, 0.9, 0.99}) {
+            final long exact = values[(int) Math.ceil(q * NUM_VALUES) - 1];
+            final long estimate = whole.quantile(q);
+            assertTrue(Math.abs(estimate - exact) <= exact * MAX_RELATIVE_ERROR);
+            assertEquals(left.quantile(q), estimate);
+        }
+        assertEquals(left.getCount(), whole.getCount());
+        assertEquals(left.getMax(), whole.getMax());
+    }
+}
@@ -0,0 +1,202 @@
+package com.juno.gameofwar;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.juno.gameofwar.GameResults.assertSameGame;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * Decks written to card files and dealt from them
+ */
+public class MappedDeckTest {
+
+    private static final long SEED = 44;
+
+    /**
+     * A shuffle captured in a file plays the same game as the shuffle itself
+     */
+    @Test
+    public void testReplayShuffle() throws IOException {
+        Path file = Files.createTempFile("war", ".deck");
+        try {
+            MappedDeck.write(file, shuffled(4, 13), true);
+            MappedDeck deck = new MappedDeck(file);
+            assertEquals(deck.getNumberOfCards(), 52);
+            assertEquals(deck.getNumberOfSuits(), 4);
+            assertEquals(deck.getNumberOfRanks(), 13);
+
+            War replay = new War(CardStorage.HEAP);
+            replay.setDeck(deck);
+            War original = new War(CardStorage.HEAP);
+            original.setSeed(SEED);
+            assertSameGame(replay.playGame(4, 13, 3), original.playGame(4, 13, 3));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Dealing card by card and dealing to the hands give the same cards in the same order
+     */
+    @Test
+    public void testDealTo() throws IOException {
+        Path file = Files.createTempFile("war", ".deck");
+        try {
+            CardStore cards = shuffled(5, 37);
+            MappedDeck.write(file, cards, true);
+            MappedDeck deck = new MappedDeck(file);
+
+            for (int i = 0; i < cards.size(); i++) {
+                Card card = deck.deal();
+                assertEquals(card.getSuit(), cards.suitAt(i));
+                assertEquals(card.getRank(), cards.rankAt(i));
+            }
+            assertNull(deck.deal());
+
+            deck.create(0, 0);
+            List<Player> players = new ArrayList<>();
+            for (int id = 1; id <= 3; id++) {
+                players.add(new Player(id));
+            }
+            assertEquals(deck.dealTo(players), cards.size());
+            for (int i = 0; i < cards.size(); i++) {
+                CardStore hand = players.get(i % 3).getHand();
+                assertEquals(hand.suitAt(i / 3), cards.suitAt(i));
+                assertEquals(hand.rankAt(i / 3), cards.rankAt(i));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * A file of ranks only spends no bits on suits and deals every card as suit zero
+     */
+    @Test
+    public void testRanksOnly() throws IOException {
+        Path file = Files.createTempFile("war", ".deck");
+        try {
+            CardStore cards = shuffled(4, 13);
+            MappedDeck.write(file, cards, false);
+            // four bits a card
+            assertEquals(Files.size(file), MappedDeck.HEADER_BYTES + 26 + 8L);
+
+            MappedDeck deck = new MappedDeck(file);
+            assertEquals(deck.getNumberOfSuits(), 1);
+            for (int i = 0; i < cards.size(); i++) {
+                Card card = deck.deal();
+                assertEquals(card.getSuit(), 0);
+                assertEquals(card.getRank(), cards.rankAt(i));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Shuffling a card file leaves the cards in the order they were written
+     */
+    @Test
+    public void testShuffleDoesNothing() throws IOException {
+        Path file = Files.createTempFile("war", ".deck");
+        try {
+            CardStore cards = shuffled(4, 13);
+            MappedDeck.write(file, cards, true);
+            MappedDeck deck = new MappedDeck(file);
+            deck.shuffle();
+            for (int i = 0; i < cards.size(); i++) {
+                Card card = deck.deal();
+                assertEquals(card.getSuit(), cards.suitAt(i));
+                assertEquals(card.getRank(), cards.rankAt(i));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * A game is checked and dealt by the cards in the file, not by its suits times its ranks
+     */
+    @Test
+    public void testPlayCardsInFile() throws IOException {
+        Path file = Files.createTempFile("war", ".deck");
+        try {
+            // nine cards of one suit and three ranks
+            CardStore cards = CardStorage.HEAP.newStore(9);
+            for (int i = 0; i < 9; i++) {
+                cards.add(0, i % 3);
+            }
+            MappedDeck.write(file, cards, true);
+            MappedDeck deck = new MappedDeck(file);
+            assertEquals(deck.numberOfUndealtCards(), 9);
+
+            War war = new War(CardStorage.HEAP);
+            war.setDeck(deck);
+            GameResult result = war.playGame(deck.getNumberOfSuits(), deck.getNumberOfRanks(), 5);
+            assertEquals(deck.numberOfUndealtCards(), 0);
+            assertTrue(result.getRounds() > 0);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * A game can't have more players than the file has cards
+     */
+    @Test (expected = InvalidParameterException.class)
+    public void testTooFewCardsInFile() throws IOException {
+        Path file = Files.createTempFile("war", ".deck");
+        try {
+            CardStore cards = CardStorage.HEAP.newStore(2);
+            cards.add(3, 12);
+            cards.add(0, 0);
+            MappedDeck.write(file, cards, true);
+            War war = new War(CardStorage.HEAP);
+            war.setDeck(new MappedDeck(file));
+            war.playGame(4, 13, 3);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Anything but a card file is refused
+     */
+    @Test (expected = IllegalStateException.class)
+    public void testNotACardFile() throws IOException {
+        Path file = Files.createTempFile("war", ".deck");
+        try {
+            Files.write(file, ByteBuffer.allocate(MappedDeck.HEADER_BYTES).putInt(ColumnarResultWriter.MAGIC)
+                    .array());
+            new MappedDeck(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * @param suits
+     * @param ranks
+     * @return the cards of a deck shuffled with SEED in the order they are dealt
+     */
+    private static CardStore shuffled(final int suits, final int ranks) {
+        WarDeck deck = new WarDeck(CardStorage.HEAP, SEED);
+        deck.create(suits, ranks);
+        deck.shuffle();
+        CardStore cards = CardStorage.HEAP.newStore(suits * ranks);
+        for (Card card = deck.deal(); card != null; card = deck.deal()) {
+            cards.add(card.getSuit(), card.getRank());
+        }
+        return cards;
+    }
+}
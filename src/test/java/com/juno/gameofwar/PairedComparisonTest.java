@@ -0,0 +1,120 @@
+package com.juno.gameofwar;
+
+import org.junit.Test;
+
+import java.security.InvalidParameterException;
+import java.util.Collections;
+
+import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Comparing two variants on the same shuffles
+ */
+public class PairedComparisonTest {
+
+    private static final long SEED = 9;
+    private static final GameConfig FOUR_PLAYERS = new GameConfig(4, 13, 4);
+
+    /**
+     * A variant compared against itself differs by nothing, so the first block is enough
+     */
+    @Test
+    public void testSameVariant() {
+        PairedStats stats = new PairedComparison(FOUR_PLAYERS, FOUR_PLAYERS, SEED, CardStorage.HEAP).run(2);
+
+        assertEquals(stats.getPairs(), (long) PairedComparison.BLOCK_SIZE);
+        for (int m = 0; m < PairedStats.getMetrics(); m++) {
+            assertEquals(stats.getMeanDifference(m), 0.0);
+            assertEquals(stats.getHalfWidth(m, PairedComparison.Z_95), 0.0);
+            assertEquals(stats.getMeanA(m), stats.getMeanB(m));
+        }
+    }
+
+    /**
+     * Both variants play the games of a batch with the same seed, and it stops at the most games if it must
+     */
+    @Test
+    public void testPlaysBatchGames() {
+        GameConfig fivePlayers = new GameConfig(4, 13, 5);
+        PairedComparison comparison = new PairedComparison(FOUR_PLAYERS, fivePlayers, SEED, CardStorage.HEAP);
+        comparison.setPrecision(1e-9);
+        comparison.setMaxGames(1500);
+        PairedStats stats = comparison.run(3);
+
+        GameStats a = new BatchRunner(4, 13, 4, SEED, CardStorage.HEAP).run(1500, 1);
+        GameStats b = new BatchRunner(4, 13, 5, SEED, CardStorage.HEAP).run(1500, 1);
+
+        assertEquals(stats.getPairs(), 1500L);
+        assertEquals(stats.getMeanA(PairedStats.ROUNDS), a.getRounds().getMean(), 1e-9);
+        assertEquals(stats.getMeanB(PairedStats.ROUNDS), b.getRounds().getMean(), 1e-9);
+        assertEquals(stats.getMeanDifference(PairedStats.WINNING_SCORE),
+                b.getHighScore().getMean() - a.getHighScore().getMean(), 1e-9);
+        assertTrue(stats.getHalfWidth(PairedStats.ROUNDS, PairedComparison.Z_95) > 0);
+    }
+
+    /**
+     * Games of nearly the same huge length still get their variance right, merged or not
+     */
+    @Test
+    public void testVarianceOfLongGames() {
+        final long base = 1000000000000L;
+        PairedStats all = new PairedStats();
+        PairedStats first = new PairedStats();
+        PairedStats second = new PairedStats();
+        for (int i = 0; i < 1000; i++) {
+            GameResult a = result(base + i % 2);
+            GameResult b = result(2 * base + 2 * (i % 2));
+            all.record(a, b);
+            if (i < 300) {
+                first.record(a, b);
+            } else {
+                second.record(a, b);
+            }
+        }
+        first.merge(second);
+
+        // the rounds alternate by one, so their sample variance is a quarter times 1000 / 999
+        final double halfWidth = Math.sqrt(0.25 / 999);
+        for (PairedStats stats : new PairedStats[] {all, first}) {
+            assertEquals(stats.getPairs(), 1000L);
+            assertEquals(stats.getMeanA(PairedStats.ROUNDS), base + 0.5, 1e-3);
+            assertEquals(stats.getMeanDifference(PairedStats.ROUNDS), base + 0.5, 1e-3);
+            assertEquals(stats.getHalfWidth(PairedStats.ROUNDS, 1), halfWidth, halfWidth * 1e-6);
+            assertEquals(stats.getSaving(PairedStats.ROUNDS), 5.0, 1e-6);
+        }
+    }
+
+    /**
+     * Variants are written as overrides of the game on the command line
+     */
+    @Test
+    public void testVariant() {
+        assertEquals(GameOfWar.variant(FOUR_PLAYERS, "players=5"), new GameConfig(4, 13, 5));
+        assertEquals(GameOfWar.variant(FOUR_PLAYERS, "suits=2, ranks=26"), new GameConfig(2, 26, 4));
+    }
+
+    /**
+     * Variants must stay within the bounds of the command line
+     */
+    @Test (expected = InvalidParameterException.class)
+    public void testVariantOutOfBounds() {
+        GameOfWar.variant(FOUR_PLAYERS, "players=1");
+    }
+
+    /**
+     * Only suits, ranks and players can be varied
+     */
+    @Test (expected = InvalidParameterException.class)
+    public void testUnknownVariant() {
+        GameOfWar.variant(FOUR_PLAYERS, "colour=2");
+    }
+
+    /**
+     * @param rounds
+     * @return a game of that many rounds
+     */
+    private static GameResult result(final long rounds) {
+        return new GameResult(Collections.singletonList(new Player(1)), 52, rounds, 0, 0);
+    }
+}
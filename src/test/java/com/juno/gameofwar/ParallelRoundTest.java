@@ -0,0 +1,138 @@
+package com.juno.gameofwar;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+
+/**
+ * The parallel round has to give exactly the same results as the sequential one
+ */
+public class ParallelRoundTest {
+
+    // enough players to split into several slices
+    private static final int NUM_PLAYERS = 5000;
+    private static final int CARDS_PER_PLAYER = 20;
+    // few ranks so there are plenty of ties
+    private static final int NUM_RANKS = 8;
+    private static final long SEED = 7;
+
+    /**
+     * Play the same hands round by round both ways and compare every result
+     */
+    @Test
+    public void testMatchesSequentialRounds() {
+        List<Player> sequentialPlayers = new ArrayList<>();
+        List<Player> parallelPlayers = new ArrayList<>();
+        Random random = new Random(SEED);
+
+        for (int i = 0; i < NUM_PLAYERS; i++) {
+            sequentialPlayers.add(new Player(i + 1));
+            parallelPlayers.add(new Player(i + 1));
+
+            // uneven hands so players drop out at different times
+            final int cards = random.nextInt(CARDS_PER_PLAYER);
+            for (int c = 0; c < cards; c++) {
+                Card card = new Card(0, random.nextInt(NUM_RANKS));
+                sequentialPlayers.get(i).addCardToHand(card);
+                parallelPlayers.get(i).addCardToHand(card);
+            }
+        }
+
+        War sequential = new War();
+        sequential.setParallelRoundThreshold(Integer.MAX_VALUE);
+        War parallel = new War();
+        parallel.setParallelRoundThreshold(2);
+
+        // one extra round checks the everyone-is-out policy
+        for (int round = 0; round <= CARDS_PER_PLAYER; round++) {
+            RoundResult expected = sequential.playRound(sequentialPlayers, round);
+            RoundResult actual = parallel.playRound(parallelPlayers, round);
+
+            assertEquals(actual.getScore(), expected.getScore());
+            assertEquals(actual.isTie(), expected.isTie());
+            if (expected.isTie()) {
+                assertEquals(ids(actual.getTiedPlayers()), ids(expected.getTiedPlayers()));
+            } else {
+                assertEquals(actual.getWinner().getId(), expected.getWinner().getId());
+            }
+        }
+    }
+
+    /**
+     * Once a round has fewer players still in than the threshold, the rounds after it aren't split however many
+     * seats there are
+     */
+    @Test
+    public void testThresholdCountsPlayersStillIn() {
+        final int[] splits = new int[1];
+        War war = new War(CardStorage.HEAP) {
+            @Override
+            boolean splitsRound(final List<Player> players) {
+                final boolean split = super.splitsRound(players);
+                if (split) {
+                    splits[0]++;
+                }
+                return split;
+            }
+        };
+        war.setDeck(new UnevenDeck());
+        war.setParallelRoundThreshold(200);
+
+        GameResult result = war.playGame(1, 1000, 300);
+
+        // 300 players play the first round and 100 the other four. The second is still split because the round
+        // before it had 300, the rest aren't.
+        assertEquals(result.getRounds(), 5L);
+        assertEquals(result.getWars(), 0L);
+        assertEquals(splits[0], 2);
+    }
+
+    /**
+     * @param players
+     * @return the ids of the players in order
+     */
+    private static List<Integer> ids(final List<Player> players) {
+        List<Integer> ids = new ArrayList<>();
+        players.forEach(player -> ids.add(player.getId()));
+        return ids;
+    }
+
+    /**
+     * Deals five cards to each of the first 100 seats and one to the rest, every card a different rank so no
+     * round goes to war
+     */
+    private static final class UnevenDeck implements Deck {
+
+        @Override
+        public void create(final int numberOfSuits, final int numberOfRanks) {
+        }
+
+        @Override
+        public void shuffle() {
+        }
+
+        @Override
+        public Card deal() {
+            return null;
+        }
+
+        @Override
+        public int dealTo(final List<Player> players) {
+            int rank = 0;
+            for (int i = 0; i < players.size(); i++) {
+                int cards = 1;
+                if (i < 100) {
+                    cards = 5;
+                }
+                for (int c = 0; c < cards; c++) {
+                    players.get(i).addCardToHand(new Card(0, rank++));
+                }
+            }
+            return rank;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.juno.gameofwar;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The shuffle used for big decks
+ */
+public class ParallelShuffleTest {
+
+    private static final int NUM_CARDS = 200000;
+    private static final long SEED = 77;
+
+    /**
+     * The same seed gives the same shuffle whatever the number of threads, and every card is still there
+     */
+    @Test
+    public void testSameShuffleForAnyThreadCount() {
+        int[] expectedSuits = null;
+        int[] expectedRanks = null;
+
+        for (int threads = 1; threads <= 4; threads++) {
+            int[] suits = new int[NUM_CARDS];
+            int[] ranks = new int[NUM_CARDS];
+            for (int i = 0; i < NUM_CARDS; i++) {
+                suits[i] = i % 4;
+                ranks[i] = i;
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                ParallelShuffle.shuffle(suits, ranks, SEED, pool);
+            } finally {
+                pool.shutdown();
+            }
+
+            if (expectedSuits == null) {
+                expectedSuits = suits;
+                expectedRanks = ranks;
+            }
+            assertArrayEquals(suits, expectedSuits);
+            assertArrayEquals(ranks, expectedRanks);
+        }
+
+        boolean[] seen = new boolean[NUM_CARDS];
+        boolean moved = false;
+        for (int i = 0; i < NUM_CARDS; i++) {
+            assertFalse(seen[expectedRanks[i]]);
+            assertEquals(expectedSuits[i], expectedRanks[i] % 4);
+            seen[expectedRanks[i]] = true;
+            moved |= expectedRanks[i] != i;
+        }
+        assertTrue(moved);
+    }
+
+    /**
+     * With many small buckets every order of four cards comes up about as often
+     */
+    @Test
+    public void testUniform() {
+        final int shuffles = 24000;
+        Map<String, Integer> orders = new HashMap<>();
+
+        for (int seed = 0; seed < shuffles; seed++) {
+            int[] suits = new int[4];
+            int[] ranks = {0, 1, 2, 3};
+            ParallelShuffle.shuffle(suits, ranks, seed, ForkJoinPool.commonPool(), 2, 1);
+            orders.merge(Arrays.toString(ranks), 1, Integer::sum);
+        }
+
+        // 24 orders, 1000 expected each
+        assertEquals(orders.size(), 24);
+        for (int count : orders.values()) {
+            assertTrue(count > 850 && count < 1150);
+        }
+    }
+
+    /**
+     * Big decks are shuffled the same way on and off the heap and packed
+     */
+    @Test
+    public void testBigDeckInEveryStorage() {
+        WarDeck heap = new WarDeck(CardStorage.HEAP, SEED);
+        heap.create(4, WarDeck.PARALLEL_SHUFFLE_THRESHOLD / 4);
+        heap.shuffle();
+        int[] suits = new int[WarDeck.PARALLEL_SHUFFLE_THRESHOLD];
+        int[] ranks = new int[WarDeck.PARALLEL_SHUFFLE_THRESHOLD];
+        for (int i = 0; i < suits.length; i++) {
+            Card card = heap.deal();
+            suits[i] = card.getSuit();
+            ranks[i] = card.getRank();
+        }
+
+        for (CardStorage storage : CardStorage.values()) {
+            WarDeck deck = new WarDeck(storage, SEED);
+            deck.create(4, WarDeck.PARALLEL_SHUFFLE_THRESHOLD / 4);
+            deck.shuffle();
+            for (int i = 0; i < suits.length; i++) {
+                Card card = deck.deal();
+                assertEquals(card.getRank(), ranks[i]);
+                if (storage.keepsSuits()) {
+                    assertEquals(card.getSuit(), suits[i]);
+                }
+            }
+            assertEquals(deck.numberOfUndealtCards(), 0);
+        }
+    }
+}
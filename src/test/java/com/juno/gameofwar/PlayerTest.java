@@ -51,4 +51,19 @@ public class PlayerTest {
         assertEquals(p.playCardFromHand(), c1);
         assertEquals(p.playCardFromHand(), c2);
     }
+
+    /**
+     * A hand kept off the heap behaves exactly like the default hand
+     */
+    @Test
+    public void testOffHeapHand() {
+        Player p = new Player(0, CardStorage.OFF_HEAP.newStore(1));
+        p.addCardToHand(new Card(5, 3));
+        p.addCardToHand(new Card(6, 7));
+
+        assertEquals(p.numberOfCards(), 2);
+        assertEquals(p.playCardFromHand(), new Card(5, 3));
+        assertEquals(p.playCardFromHand(), new Card(6, 7));
+        assertEquals(p.playCardFromHand(), null);
+    }
 }
@@ -0,0 +1,157 @@
+package com.juno.gameofwar;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The in memory and on disk result cache
+ */
+public class ResultCacheTest {
+
+    private static final int NUM_GAMES = 500;
+    private static final int NUM_PLAYERS = 3;
+    private static final long SEED = 5;
+    private static final int THREADS = 4;
+    private static final int MEMORY_ENTRIES = 100;
+    private static final long DISK_BYTES = 1 << 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A batch run a second time, by a new process, is answered from disk and gives the same stats
+     */
+    @Test
+    public void testSecondRunIsServedFromDisk() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        BatchRunner batch = new BatchRunner(GameOfWar.DEFAULT_NUM_SUITS, GameOfWar.DEFAULT_NUM_RANKS,
+                NUM_PLAYERS, SEED, CardStorage.HEAP);
+
+        ResultCache first = new ResultCache(MEMORY_ENTRIES, directory, DISK_BYTES);
+        batch.setCache(first);
+        GameStats played = batch.run(NUM_GAMES, THREADS);
+        first.close();
+        assertEquals(first.getMisses(), NUM_GAMES);
+
+        ResultCache second = new ResultCache(MEMORY_ENTRIES, directory, DISK_BYTES);
+        batch.setCache(second);
+        GameStats cached = batch.run(NUM_GAMES, THREADS);
+        second.close();
+
+        assertEquals(second.getHits(), NUM_GAMES);
+        assertEquals(second.getMisses(), 0);
+        assertEquals(cached.getRounds().getSum(), played.getRounds().getSum());
+        assertEquals(cached.getHighScore().getSum(), played.getHighScore().getSum());
+        assertEquals(cached.getSeatWins(1), played.getSeatWins(1));
+    }
+
+    /**
+     * With one rank the seed doesn't matter so every game shares one entry
+     */
+    @Test
+    public void testOneRankIgnoresSeed() {
+        ResultCache cache = new ResultCache(MEMORY_ENTRIES, null);
+        GameConfig config = new GameConfig(GameOfWar.DEFAULT_NUM_SUITS, 1, NUM_PLAYERS);
+
+        for (long seed = 0; seed < MEMORY_ENTRIES; seed++) {
+            cache.play(config, seed, CardStorage.HEAP);
+        }
+        assertEquals(cache.getMisses(), 1);
+    }
+
+    /**
+     * Results served from memory keep who won but not the players, so the hands they played with can be freed
+     */
+    @Test
+    public void testCachedWinnersHoldNoCards() {
+        ResultCache cache = new ResultCache(MEMORY_ENTRIES, null);
+        GameConfig config = new GameConfig(GameOfWar.DEFAULT_NUM_SUITS, GameOfWar.DEFAULT_NUM_RANKS, NUM_PLAYERS);
+
+        GameResult played = cache.play(config, SEED, CardStorage.HEAP);
+
+        GameResult cached = cache.play(config, SEED, CardStorage.HEAP);
+        assertEquals(cache.getHits(), 1);
+        assertEquals(cached.getWinners().size(), played.getWinners().size());
+        assertEquals(cached.getWinners().get(0).getId(), played.getWinners().get(0).getId());
+        assertNotSame(cached.getWinners().get(0), played.getWinners().get(0));
+        assertNotSame(cached.getWinners().get(0).getHand(), played.getWinners().get(0).getHand());
+        assertEquals(cached.getRounds(), played.getRounds());
+        assertEquals(cached.getHighScore(), played.getHighScore());
+    }
+
+    /**
+     * Old results age out once the disk budget is used up but recent ones stay
+     */
+    @Test
+    public void testEvictionBySize() throws IOException {
+        // the smallest store holds a little over a thousand results per generation
+        DiskResultStore disk = new DiskResultStore(folder.newFolder().toPath(), 1);
+        GameConfig config = new GameConfig(GameOfWar.DEFAULT_NUM_SUITS, GameOfWar.DEFAULT_NUM_RANKS, NUM_PLAYERS);
+        GameResult result = config.play(SEED, CardStorage.HEAP);
+
+        final int puts = 5000;
+        for (int seed = 0; seed < puts; seed++) {
+            disk.put(new ResultCache.Key(config, seed), result);
+        }
+
+        assertNull(disk.get(new ResultCache.Key(config, 0)));
+        GameResult recent = disk.get(new ResultCache.Key(config, puts - 1));
+        assertTrue(recent != null);
+        assertEquals(recent.getRounds(), result.getRounds());
+        assertEquals(recent.getWinners().get(0).getId(), result.getWinners().get(0).getId());
+        disk.close();
+    }
+
+    /**
+     * However big the budget, the index of a generation can be mapped and addressed by int
+     */
+    @Test
+    public void testIndexAtCap() {
+        assertEquals(DiskResultStore.slotsFor(Long.MAX_VALUE), DiskResultStore.MAX_SLOTS);
+        // a generation of 2 GB, from a 4 GB budget, already wants more slots than the cap
+        assertEquals(DiskResultStore.slotsFor(1L << 31), DiskResultStore.MAX_SLOTS);
+        assertEquals(DiskResultStore.slotsFor(1L << 30), DiskResultStore.MAX_SLOTS / 2);
+        assertTrue((long) DiskResultStore.MAX_SLOTS * DiskResultStore.SLOT_BYTES <= Integer.MAX_VALUE);
+    }
+
+    /**
+     * Results stored under another format version, which may come from a different shuffle, are never served
+     */
+    @Test
+    public void testOtherVersionDropped() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        GameConfig config = new GameConfig(GameOfWar.DEFAULT_NUM_SUITS, GameOfWar.DEFAULT_NUM_RANKS, NUM_PLAYERS);
+        GameResult result = config.play(SEED, CardStorage.HEAP);
+        ResultCache.Key key = new ResultCache.Key(config, SEED);
+
+        DiskResultStore disk = new DiskResultStore(directory, DISK_BYTES);
+        disk.put(key, result);
+        disk.close();
+        disk = new DiskResultStore(directory, DISK_BYTES);
+        assertTrue(disk.get(key) != null);
+        disk.close();
+
+        // the version follows the magic number at the start of the log
+        try (FileChannel log = FileChannel.open(directory.resolve("results-0.log"), StandardOpenOption.WRITE)) {
+            log.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, DiskResultStore.FORMAT_VERSION - 1),
+                    Integer.BYTES);
+        }
+        disk = new DiskResultStore(directory, DISK_BYTES);
+        assertNull(disk.get(key));
+        disk.put(key, result);
+        assertTrue(disk.get(key) != null);
+        disk.close();
+    }
+}
@@ -0,0 +1,218 @@
+package com.juno.gameofwar;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.InvalidParameterException;
+
+import static com.juno.gameofwar.GameResults.assertSameGame;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * House rules and the engine that plays them
+ */
+public class RulesTest {
+
+    private static final int GAMES = 200;
+    private static final long SEED = 17;
+    private static final long CHECKPOINT_INTERVAL = 5;
+    private static final String VARIANT = "discards=3,out=last,scoring=face";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Rules are read from name=value pairs and the standard ones code to zero
+     */
+    @Test
+    public void testWith() {
+        Rules rules = Rules.STANDARD.with("discards=3, out=last,scoring=face");
+
+        assertEquals(rules.getWarDiscards(), 3);
+        assertEquals(rules.getOutOfCards(), Rules.OutOfCards.LAST_PLAYER);
+        assertEquals(rules.getScoring(), Rules.Scoring.FACE_VALUE);
+        assertFalse(rules.isStandard());
+        assertEquals(Rules.STANDARD.with(rules.toString()), rules);
+
+        assertTrue(Rules.STANDARD.with("discards=1").isStandard());
+        assertEquals(Rules.STANDARD.getCode(), 0);
+        assertFalse(rules.getCode() == Rules.STANDARD.with("discards=3").getCode());
+    }
+
+    /**
+     * Every set of rules comes back from its code
+     */
+    @Test
+    public void testFromCode() {
+        for (int discards = 0; discards <= Rules.MAX_WAR_DISCARDS; discards++) {
+            for (Rules.OutOfCards outOfCards : Rules.OutOfCards.values()) {
+                for (Rules.Scoring scoring : Rules.Scoring.values()) {
+                    Rules rules = new Rules(discards, outOfCards, scoring);
+                    assertEquals(Rules.fromCode(rules.getCode()), rules);
+                }
+            }
+        }
+    }
+
+    /**
+     * A code no rules have is rejected
+     */
+    @Test (expected = InvalidParameterException.class)
+    public void testUnknownCode() {
+        Rules.fromCode(Rules.Scoring.values().length << 16);
+    }
+
+    /**
+     * A checkpoint of a variant remembers its rules, and the game resumed from it plays on by them
+     */
+    @Test
+    public void testCheckpointKeepsRules() throws IOException {
+        Path file = folder.newFile().toPath();
+        Rules rules = Rules.STANDARD.with(VARIANT);
+        War war = War.forRules(CardStorage.HEAP, rules);
+        war.setSeed(SEED);
+        war.enableCheckpoints(file, CHECKPOINT_INTERVAL);
+        GameResult expected = war.playGame(4, 13, 3);
+
+        War resumer = War.forCheckpoint(CardStorage.HEAP, file);
+        assertEquals(resumer.getRules(), rules);
+        assertSameGame(resumer.resumeGame(file), expected);
+    }
+
+    /**
+     * A game saved playing by a variant isn't resumed by the standard rules
+     */
+    @Test (expected = InvalidParameterException.class)
+    public void testResumeByOtherRules() throws IOException {
+        Path file = folder.newFile().toPath();
+        War war = War.forRules(CardStorage.HEAP, Rules.STANDARD.with(VARIANT));
+        war.setSeed(SEED);
+        war.enableCheckpoints(file, CHECKPOINT_INTERVAL);
+        war.playGame(4, 13, 3);
+
+        new War(CardStorage.HEAP).resumeGame(file);
+    }
+
+    /**
+     * An unknown rule is rejected
+     */
+    @Test (expected = InvalidParameterException.class)
+    public void testUnknownRule() {
+        Rules.STANDARD.with("jokers=2");
+    }
+
+    /**
+     * Too many discards are rejected
+     */
+    @Test (expected = InvalidParameterException.class)
+    public void testTooManyDiscards() {
+        Rules.STANDARD.with("discards=11");
+    }
+
+    /**
+     * The rule engine plays the standard rules exactly as War does
+     */
+    @Test
+    public void testRuleWarMatchesWar() {
+        for (int players = 2; players <= 5; players++) {
+            for (long seed = 0; seed < GAMES; seed++) {
+                War war = new War(CardStorage.HEAP);
+                war.setSeed(seed);
+                War ruleWar = new RuleWar(CardStorage.HEAP, Rules.STANDARD);
+                ruleWar.setSeed(seed);
+                assertSameGame(ruleWar.playGame(4, 13, players), war.playGame(4, 13, players));
+            }
+        }
+    }
+
+    /**
+     * When every player runs out of cards in a war, the out of cards rule decides who wins what was played
+     */
+    @Test
+    public void testOutOfCards() {
+        // one card each, all the same rank, so the first round ties and nobody has a card to go to war with
+        for (int players = 2; players <= 4; players++) {
+            assertEquals(outOfCardsWinner(Rules.STANDARD, players), 1);
+            assertEquals(outOfCardsWinner(Rules.STANDARD.with("discards=2"), players), 1);
+            assertEquals(outOfCardsWinner(Rules.STANDARD.with("out=last"), players), players);
+            assertEquals(outOfCardsWinner(Rules.STANDARD.with("out=last,discards=0"), players), players);
+        }
+    }
+
+    /**
+     * Face value scoring moves the same cards but scores them by rank
+     */
+    @Test
+    public void testFaceValue() {
+        Rules face = Rules.STANDARD.with("scoring=face");
+        GameResult cards = new GameConfig(4, 13, 2).play(SEED, CardStorage.HEAP);
+        GameResult points = new GameConfig(4, 13, 2, face).play(SEED, CardStorage.HEAP);
+
+        assertEquals(points.getRounds(), cards.getRounds());
+        assertEquals(points.getWars(), cards.getWars());
+        assertTrue(points.getHighScore() > cards.getHighScore());
+    }
+
+    /**
+     * More cards down per war changes the games played
+     */
+    @Test
+    public void testDiscards() {
+        GameConfig standard = new GameConfig(4, 13, 3);
+        GameConfig three = new GameConfig(4, 13, 3, Rules.STANDARD.with("discards=3"));
+        assertFalse(standard.equals(three));
+
+        long different = 0;
+        for (long seed = 0; seed < GAMES; seed++) {
+            if (standard.play(seed, CardStorage.HEAP).getRounds() != three.play(seed, CardStorage.HEAP).getRounds()) {
+                different++;
+            }
+        }
+        assertTrue(different > 0);
+    }
+
+    /**
+     * Variants can be compared on their rules
+     */
+    @Test
+    public void testVariantRules() {
+        GameConfig base = new GameConfig(4, 13, 4);
+        GameConfig variant = GameOfWar.variant(base, "players=3,out=last");
+
+        assertEquals(variant, new GameConfig(4, 13, 3, Rules.STANDARD.with("out=last")));
+    }
+
+    /**
+     * Only the standard rules can be played with parallel rounds
+     */
+    @Test
+    public void testParallelRoundsNeedStandardRules() {
+        assertTrue(Engine.PARALLEL_ROUNDS.supports(new GameConfig(4, 13, 4)));
+        assertFalse(Engine.PARALLEL_ROUNDS.supports(new GameConfig(4, 13, 4, Rules.STANDARD.with("discards=2"))));
+    }
+
+    /**
+     * Play a deck of one card of the same rank for each player
+     * @param rules
+     * @param players
+     * @return the id of the only winner
+     */
+    private static int outOfCardsWinner(final Rules rules, final int players) {
+        TestDeck deck = new TestDeck();
+        deck.create(players, 1);
+        War war = War.forRules(CardStorage.HEAP, rules);
+        war.setDeck(deck);
+        GameResult result = war.playGame(players, 1, players);
+
+        assertEquals(result.getRounds(), 1L);
+        assertEquals(result.getWars(), 1L);
+        assertEquals(result.getHighScore(), players);
+        assertEquals(result.getWinners().size(), 1);
+        return result.getWinners().get(0).getId();
+    }
+}
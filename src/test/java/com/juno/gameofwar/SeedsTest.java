@@ -0,0 +1,56 @@
+package com.juno.gameofwar;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+
+/**
+ * The seed tree
+ */
+public class SeedsTest {
+
+    /**
+     * Game seeds are the ones batches were always played with, so saved records and cached results still match
+     */
+    @Test
+    public void testGameSeedsUnchanged() {
+        assertEquals(Seeds.of(46, 0), -4976944935746785273L);
+        assertEquals(Seeds.of(46, 1000000007L), -8461929276767708011L);
+        assertEquals(Seeds.of(-1, -1), -5417735806833148549L);
+        assertEquals(BatchRunner.gameSeed(46, 0), Seeds.of(46, 0));
+    }
+
+    /**
+     * Children of one parent, and the same index under neighbouring parents, all get different seeds
+     */
+    @Test
+    public void testChildrenDiffer() {
+        Set<Long> seeds = new HashSet<>();
+        for (long parent = 0; parent < 100; parent++) {
+            for (long index = 0; index < 100; index++) {
+                seeds.add(Seeds.of(parent, index));
+            }
+        }
+        assertEquals(seeds.size(), 100 * 100);
+        assertFalse(Seeds.fresh() == Seeds.fresh());
+    }
+
+    /**
+     * A game of a batch played on its own is the game the batch played
+     */
+    @Test
+    public void testGameOnItsOwn() {
+        GameConfig config = new GameConfig(4, 13, 3);
+        BatchRunner batch = new BatchRunner(config, 47, CardStorage.HEAP);
+        for (long game = 0; game < 50; game++) {
+            GameResult inBatch = batch.playGame(game);
+            GameResult alone = config.play(Seeds.of(47, game), CardStorage.HEAP);
+            assertEquals(alone.getRounds(), inBatch.getRounds());
+            assertEquals(alone.getHighScore(), inBatch.getHighScore());
+        }
+    }
+}
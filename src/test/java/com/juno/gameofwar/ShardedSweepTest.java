@@ -0,0 +1,167 @@
+package com.juno.gameofwar;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+
+/**
+ * Sweeps split across worker JVMs
+ */
+public class ShardedSweepTest {
+
+    private static final long SEED = 5;
+    private static final long GAMES = 250;
+    private static final long ANSWER_TIMEOUT_MILLIS = 1000;
+    private static final List<GameConfig> GRID = Arrays.asList(new GameConfig(4, 13, 2), new GameConfig(4, 13, 5));
+
+    /**
+     * Every grid point comes out the same as a batch of the same games
+     */
+    @Test
+    public void testSameAsBatch() {
+        ShardedSweep sweep = new ShardedSweep(2, ShardedSweep.defaultWorkerCommand(CardStorage.HEAP));
+        sweep.setShardSize(40);
+
+        List<GameStats> stats = sweep.run(GRID, GAMES, SEED);
+
+        assertEquals(stats.size(), GRID.size());
+        for (int point = 0; point < GRID.size(); point++) {
+            assertSame(stats.get(point), batch(GRID.get(point)));
+        }
+        assertEquals(sweep.getLostShards(), 0);
+    }
+
+    /**
+     * A worker that dies loses its shard to another worker and nothing else changes
+     */
+    @Test
+    public void testWorkerCrash() throws IOException {
+        Path crashOnce = Files.createTempFile("war", ".crash");
+        try {
+            ShardedSweep sweep = new ShardedSweep(2, workerCommand(CrashingWorker.class, crashOnce));
+            sweep.setShardSize(40);
+
+            List<GameStats> stats = sweep.run(GRID.subList(0, 1), GAMES, SEED);
+
+            assertSame(stats.get(0), batch(GRID.get(0)));
+            assertEquals(sweep.getLostShards(), 1);
+        } finally {
+            Files.deleteIfExists(crashOnce);
+        }
+    }
+
+    /**
+     * A worker that stops answering is killed once the answer timeout is up and loses its shard to another worker
+     */
+    @Test
+    public void testWorkerHangs() throws IOException {
+        Path hangOnce = Files.createTempFile("war", ".hang");
+        try {
+            ShardedSweep sweep = new ShardedSweep(2, workerCommand(HangingWorker.class, hangOnce));
+            sweep.setShardSize(40);
+            sweep.setAnswerTimeout(ANSWER_TIMEOUT_MILLIS);
+
+            List<GameStats> stats = sweep.run(GRID.subList(0, 1), GAMES, SEED);
+
+            assertSame(stats.get(0), batch(GRID.get(0)));
+            assertEquals(sweep.getLostShards(), 1);
+        } finally {
+            Files.deleteIfExists(hangOnce);
+        }
+    }
+
+    /**
+     * @param worker - the class whose main the worker JVM runs
+     * @param file - given to the worker
+     * @return
+     */
+    private static List<String> workerCommand(final Class<?> worker, final Path file) {
+        return Arrays.asList(
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                "-cp", System.getProperty("java.class.path"),
+                worker.getName(), file.toString());
+    }
+
+    /**
+     * Stats of the same games played in one batch
+     * @param config
+     * @return
+     */
+    private static GameStats batch(final GameConfig config) {
+        BatchRunner batch = new BatchRunner(config.getNumberOfSuits(), config.getNumberOfRanks(),
+                config.getNumberOfPlayers(), SEED, CardStorage.HEAP);
+        return batch.run(GAMES, 1);
+    }
+
+    /**
+     * @param actual
+     * @param expected
+     */
+    private static void assertSame(final GameStats actual, final GameStats expected) {
+        assertEquals(actual.getGames(), expected.getGames());
+        assertEquals(actual.getSharedWins(), expected.getSharedWins());
+        assertEquals(actual.getRounds().getMean(), expected.getRounds().getMean());
+        assertEquals(actual.getRounds().getMax(), expected.getRounds().getMax());
+        assertEquals(actual.getWars().getMean(), expected.getWars().getMean());
+        assertEquals(actual.getHighScore().getMean(), expected.getHighScore().getMean());
+        for (int seat = 1; seat <= 5; seat++) {
+            assertEquals(actual.getSeatWins(seat), expected.getSeatWins(seat));
+        }
+    }
+
+    /**
+     * A worker that dies the first time it is started, as long as the file it is given still exists
+     */
+    public static final class CrashingWorker {
+
+        /**
+         * Private constructor
+         */
+        private CrashingWorker() { }
+
+        /**
+         * @param args - the file that is deleted by the one worker that crashes
+         * @throws IOException
+         */
+        public static void main(final String[] args) throws IOException {
+            if (Files.deleteIfExists(Paths.get(args[0]))) {
+                // take a request and die without answering it
+                System.in.read();
+                System.exit(1);
+            }
+            GameOfWar.main(new String[] {"-daemon", "-threads", "1"});
+        }
+    }
+
+    /**
+     * A worker that takes a request and never answers it the first time it is started, as long as the file it is
+     * given still exists
+     */
+    public static final class HangingWorker {
+
+        /**
+         * Private constructor
+         */
+        private HangingWorker() { }
+
+        /**
+         * @param args - the file that is deleted by the one worker that hangs
+         * @throws Exception
+         */
+        public static void main(final String[] args) throws Exception {
+            if (Files.deleteIfExists(Paths.get(args[0]))) {
+                System.in.read();
+                Thread.sleep(Long.MAX_VALUE);
+            }
+            GameOfWar.main(new String[] {"-daemon", "-threads", "1"});
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.juno.gameofwar;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The long running daemon that answers game requests
+ */
+public class SimulationDaemonTest {
+
+    private static final int THREADS = 3;
+    private static final long SEED = 11;
+
+    private final SimulationDaemon daemon = new SimulationDaemon(THREADS, CardStorage.HEAP);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        daemon.shutdown();
+    }
+
+    /**
+     * Answers come back in request order and match the games of a batch with the same seed
+     */
+    @Test
+    public void testAnswersInOrder() throws IOException {
+        StringBuilder requests = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int players = 2; players < 20; players++) {
+            requests.append("4 13 ").append(players).append(' ').append(SEED).append(" 3\n");
+
+            BatchRunner batch = new BatchRunner(4, 13, players, SEED, CardStorage.HEAP);
+            for (int game = 0; game < 3; game++) {
+                GameResult result = batch.playGame(game);
+                expected.append(players - 1).append(' ').append(BatchRunner.gameSeed(SEED, game))
+                        .append(' ').append(result.getHighScore())
+                        .append(' ').append(result.getRounds())
+                        .append(' ').append(result.getWars())
+                        .append(' ').append(result.getMaxWarDepth())
+                        .append(' ').append(result.getWinners().get(0).getId());
+                for (int i = 1; i < result.getWinners().size(); i++) {
+                    expected.append(',').append(result.getWinners().get(i).getId());
+                }
+                expected.append('\n');
+            }
+        }
+
+        assertEquals(serve(requests.toString()), expected.toString());
+    }
+
+    /**
+     * Bad requests are answered with an error and don't stop the ones after them
+     */
+    @Test
+    public void testBadRequests() throws IOException {
+        String answers = serve("4 13 2 1\n\n4 13 x 1 1\n1 1 2 1 1\n4 13 2 1 1");
+        String[] lines = answers.split("\n");
+
+        assertEquals(lines.length, 4);
+        assertTrue(lines[0].startsWith("1 error"));
+        assertTrue(lines[1].startsWith("3 error"));
+        assertTrue(lines[2].startsWith("4 error"));
+        assertTrue(lines[3].startsWith("5 " + BatchRunner.gameSeed(1, 0) + " "));
+    }
+
+    /**
+     * A cache that fails only fails the request it was used for, the rest of the session is still answered
+     */
+    @Test
+    public void testFailingCache() throws IOException {
+        ResultCache cache = new ResultCache(1, folder.newFolder().toPath(), 1);
+        // storing a result in a closed cache fails
+        cache.close();
+        daemon.setCache(cache);
+
+        String[] lines = serve("4 13 2 1 1\n4 13 x 1 1\n4 13 2 2 1\n").split("\n");
+
+        assertEquals(lines.length, 3);
+        assertTrue(lines[0].startsWith("1 error "));
+        assertTrue(lines[1].startsWith("2 error "));
+        assertTrue(lines[2].startsWith("3 error "));
+
+        daemon.setCache(null);
+        assertTrue(serve("4 13 2 1 1\n").startsWith("1 " + BatchRunner.gameSeed(1, 0) + " "));
+    }
+
+    /**
+     * A request can start part way into a batch
+     */
+    @Test
+    public void testFirstGame() throws IOException {
+        String[] lines = serve("4 13 2 " + SEED + " 2 7\n").split("\n");
+
+        assertEquals(lines.length, 2);
+        assertTrue(lines[0].startsWith("1 " + BatchRunner.gameSeed(SEED, 7) + " "));
+        assertTrue(lines[1].startsWith("1 " + BatchRunner.gameSeed(SEED, 8) + " "));
+    }
+
+    /**
+     * Connections to the loopback port are answered like stdin
+     */
+    @Test
+    public void testLoopbackPort() throws Exception {
+        String request = "4 13 3 " + SEED + " 2\n";
+
+        final ServerSocketChannel server = SimulationDaemon.bindLoopback(0);
+        Thread listener = new Thread(() -> {
+            try {
+                daemon.listen(server);
+            } catch (IOException ioe) {
+                throw new IllegalStateException(ioe);
+            }
+        });
+        try {
+            listener.start();
+
+            try (SocketChannel client = SocketChannel.open(server.getLocalAddress())) {
+                client.write(ByteBuffer.wrap(request.getBytes(StandardCharsets.US_ASCII)));
+                client.shutdownOutput();
+
+                ByteArrayOutputStream answer = new ByteArrayOutputStream();
+                ByteBuffer buffer = ByteBuffer.allocate(1024);
+                while (client.read(buffer) >= 0) {
+                    answer.write(buffer.array(), 0, buffer.position());
+                    buffer.clear();
+                }
+                assertEquals(new String(answer.toByteArray(), StandardCharsets.US_ASCII), serve(request));
+            }
+        } finally {
+            // closing the channel stops the listener
+            server.close();
+        }
+        listener.join();
+    }
+
+    /**
+     * Serve the requests and return the answers
+     * @param requests
+     * @return
+     * @throws IOException
+     */
+    private String serve(final String requests) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        daemon.serve(Channels.newChannel(new ByteArrayInputStream(requests.getBytes(StandardCharsets.US_ASCII))),
+                Channels.newChannel(out));
+        return new String(out.toByteArray(), StandardCharsets.US_ASCII);
+    }
+}
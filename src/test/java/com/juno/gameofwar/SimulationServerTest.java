@@ -0,0 +1,121 @@
+package com.juno.gameofwar;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * Games played over HTTP
+ */
+public class SimulationServerTest {
+
+    private static final int THREADS = 2;
+    private static final long SEED = 46;
+
+    private final SimulationServer server = new SimulationServer(THREADS, CardStorage.HEAP);
+    private String base;
+
+    @Before
+    public void setUp() throws IOException {
+        base = "http://127.0.0.1:" + server.start(0).getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * One game is answered with the same line the daemon answers it with
+     */
+    @Test
+    public void testGame() throws IOException {
+        StringBuilder expected = new StringBuilder();
+        SimulationDaemon.appendResult(expected, SEED, new GameConfig(4, 13, 3).play(SEED, CardStorage.HEAP));
+
+        assertEquals(get("/game?suits=4&ranks=13&players=3&seed=" + SEED), expected.toString());
+    }
+
+    /**
+     * A stream is every game of the batch in game order, across many blocks
+     */
+    @Test
+    public void testStream() throws IOException {
+        final int first = 100;
+        final int count = SimulationServer.BLOCK_GAMES * 5 + 7;
+        GameConfig config = new GameConfig(4, 13, 4);
+        BatchRunner batch = new BatchRunner(config, SEED, CardStorage.HEAP);
+        StringBuilder expected = new StringBuilder();
+        for (long game = first; game < first + count; game++) {
+            SimulationDaemon.appendResult(expected, BatchRunner.gameSeed(SEED, game), batch.playGame(game));
+        }
+
+        assertEquals(get("/stream?players=4&seed=" + SEED + "&count=" + count + "&first=" + first),
+                expected.toString());
+    }
+
+    /**
+     * A batch is answered with the summary the batch options print
+     */
+    @Test
+    public void testBatch() throws IOException {
+        GameConfig config = new GameConfig(4, 13, 2);
+        GameStats stats = new BatchRunner(config, SEED, CardStorage.HEAP).run(1000, 1);
+
+        assertEquals(get("/batch?games=1000&seed=" + SEED), config + ", seed " + SEED + "\n" + stats.summary());
+    }
+
+    /**
+     * Bad requests are answered with an error and don't stop the server
+     */
+    @Test
+    public void testErrors() throws IOException {
+        assertEquals(status("/game?players=1"), 400);
+        assertEquals(status("/game?seed=x"), 400);
+        assertEquals(status("/batch?games=0"), 400);
+        assertEquals(status("/stream?rules=discards%3D99"), 400);
+        assertTrue(get("/game").length() > 0);
+    }
+
+    /**
+     * @param path
+     * @return the body of a successful answer
+     * @throws IOException
+     */
+    private String get(final String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(base + path).openConnection();
+        assertEquals(connection.getResponseCode(), 200);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[4096];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @param path
+     * @return the status of the answer
+     * @throws IOException
+     */
+    private int status(final String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(base + path).openConnection();
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
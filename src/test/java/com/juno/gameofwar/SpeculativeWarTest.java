@@ -0,0 +1,57 @@
+package com.juno.gameofwar;
+
+import org.junit.Test;
+
+import static com.juno.gameofwar.GameResults.assertSameGame;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * The speculative engine against the two player one
+ */
+public class SpeculativeWarTest {
+
+    private static final int SEEDS = 200;
+
+    /**
+     * Tiny segments put wars across segment starts all the time, and every game still comes out the same,
+     * whether the replays meet their speculation or give up on it
+     */
+    @Test
+    public void testSameAsTwoPlayer() {
+        final int[][] decks = {{4, 13}, {3, 5}, {10, 3}, {13, 2}, {50, 1}, {7, 11}, {4, 250}};
+        for (int[] deck : decks) {
+            for (long seed = 0; seed < SEEDS; seed++) {
+                int[][] hands = TwoPlayerWar.deal(deck[0], deck[1], seed, CardStorage.HEAP);
+                GameResult expected = TwoPlayerWar.play(hands[0], hands[1]);
+                assertSameGame(SpeculativeWar.play(hands[0], hands[1], 5, 3), expected);
+                assertSameGame(SpeculativeWar.play(hands[0], hands[1], 8, 1), expected);
+                assertSameGame(SpeculativeWar.play(hands[0], hands[1], 16, 16), expected);
+            }
+        }
+    }
+
+    /**
+     * A game big enough to be split plays the same as War
+     */
+    @Test
+    public void testLargeGame() {
+        GameConfig config = new GameConfig(100, 2700, 2);
+        assertTrue(Engine.SPECULATIVE.usesAllCores(config));
+
+        War war = new War(CardStorage.PACKED);
+        war.setSeed(45);
+        assertSameGame(Engine.SPECULATIVE.play(config, 45, CardStorage.PACKED), war.playGame(100, 2700, 2));
+    }
+
+    /**
+     * The engine is only offered standard two player games
+     */
+    @Test
+    public void testSupports() {
+        assertTrue(Engine.SPECULATIVE.supports(new GameConfig(4, 13, 2)));
+        assertFalse(Engine.SPECULATIVE.supports(new GameConfig(4, 13, 3)));
+        assertFalse(Engine.SPECULATIVE.supports(new GameConfig(4, 13, 2, Rules.STANDARD.with("out=last"))));
+        assertFalse(Engine.SPECULATIVE.usesAllCores(new GameConfig(4, 13, 2)));
+    }
+}
@@ -0,0 +1,76 @@
+package com.juno.gameofwar;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Knockout tournaments
+ */
+public class TournamentTest {
+
+    private static final int NUM_SUITS = 4;
+    private static final int NUM_RANKS = 13;
+    private static final long SEED = 11;
+    private static final int THREADS = 4;
+
+    /**
+     * Tables are as even as possible and nobody is left out
+     */
+    @Test
+    public void testSplitEvenly() {
+        assertArrayEquals(Tournament.splitEvenly(10, 4), new int[] {4, 3, 3});
+        assertArrayEquals(Tournament.splitEvenly(8, 4), new int[] {4, 4});
+        assertArrayEquals(Tournament.splitEvenly(3, 4), new int[] {3});
+    }
+
+    /**
+     * The same seed crowns the same champion no matter how many threads run the tables
+     */
+    @Test
+    public void testChampionDoesNotDependOnThreads() {
+        final int entrants = 1000;
+        final int tableSize = 6;
+
+        TournamentResult single = run(entrants, tableSize, 1);
+        TournamentResult parallel = run(entrants, tableSize, THREADS);
+
+        assertEquals(parallel.getChampion(), single.getChampion());
+        assertEquals(parallel.getRounds(), single.getRounds());
+        assertTrue(single.getChampion() >= 1 && single.getChampion() <= entrants);
+        // 1000 -> 167 -> 28 -> 5 -> 1
+        assertEquals(single.getStages(), 4);
+        assertEquals(single.getTables(), 167 + 28 + 5 + 1);
+    }
+
+    /**
+     * A table with one seat is a bye and doesn't play
+     */
+    @Test
+    public void testBye() {
+        // 3 entrants at tables of 2 -> a game and a bye, then a final
+        TournamentResult result = run(3, 2, 1);
+        assertEquals(result.getStages(), 2);
+        assertEquals(result.getTables(), 2);
+    }
+
+    /**
+     * @param entrants
+     * @param tableSize
+     * @param threads
+     * @return
+     */
+    private static TournamentResult run(final int entrants, final int tableSize, final int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            return new Tournament(NUM_SUITS, NUM_RANKS, tableSize, SEED, CardStorage.HEAP).run(entrants, executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.juno.gameofwar;
+
+import org.junit.Test;
+
+import java.security.InvalidParameterException;
+
+import static com.juno.gameofwar.GameResults.assertSameGame;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * The two player engine against the standard game
+ */
+public class TwoPlayerWarTest {
+
+    private static final int SEEDS = 500;
+
+    /**
+     * Every game comes out exactly as War plays it, including odd decks and decks full of ties
+     */
+    @Test
+    public void testSameAsWar() {
+        final int[][] decks = {{4, 13}, {1, 2}, {1, 3}, {3, 5}, {10, 3}, {13, 2}, {50, 1}, {7, 11}};
+        for (int[] deck : decks) {
+            for (long seed = 0; seed < SEEDS; seed++) {
+                War war = new War(CardStorage.HEAP);
+                war.setSeed(seed);
+                assertSameGame(TwoPlayerWar.play(deck[0], deck[1], seed, CardStorage.HEAP),
+                        war.playGame(deck[0], deck[1], 2));
+            }
+        }
+    }
+
+    /**
+     * A war that runs both players out of cards goes to the first player, and only they can hold the odd card
+     */
+    @Test
+    public void testWarToTheLastCard() {
+        // tie, discard, tie, discard and nothing left to play
+        GameResult result = TwoPlayerWar.play(new int[] {5, 0, 3, 1}, new int[] {5, 2, 3, 4});
+        assertEquals(result.getRounds(), 1);
+        assertEquals(result.getWars(), 1);
+        assertEquals(result.getMaxWarDepth(), 2);
+        assertEquals(result.getHighScore(), 8);
+        assertEquals(result.getWinners().size(), 1);
+        assertEquals(result.getWinners().get(0).getId(), 1);
+
+        // a tie, then the first player discards and plays the odd card alone
+        result = TwoPlayerWar.play(new int[] {2, 7, 0}, new int[] {2, 9});
+        assertEquals(result.getRounds(), 1);
+        assertEquals(result.getHighScore(), 5);
+        assertEquals(result.getWinners().get(0).getId(), 1);
+    }
+
+    /**
+     * Equal scores share the win
+     */
+    @Test
+    public void testSharedWin() {
+        GameResult result = TwoPlayerWar.play(new int[] {3, 1}, new int[] {2, 4});
+        assertEquals(result.getHighScore(), 2);
+        assertEquals(result.getWinners().size(), 2);
+    }
+
+    /**
+     * The engine is only offered standard two player games
+     */
+    @Test
+    public void testSupports() {
+        assertTrue(Engine.TWO_PLAYER.supports(new GameConfig(4, 13, 2)));
+        assertFalse(Engine.TWO_PLAYER.supports(new GameConfig(4, 13, 3)));
+        assertFalse(Engine.TWO_PLAYER.supports(new GameConfig(4, 13, 2, Rules.STANDARD.with("discards=2"))));
+    }
+
+    /**
+     * One card can't be dealt to two players
+     */
+    @Test (expected = InvalidParameterException.class)
+    public void testTooFewCards() {
+        TwoPlayerWar.play(1, 1, 0, CardStorage.HEAP);
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.Test;
 import java.security.InvalidParameterException;
 
 import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created by Joe Teibel.
@@ -55,4 +56,25 @@ public class WarDeckTest {
         assertEquals(deck.numberOfUndealtCards(), TOTAL_CARDS);
     }
 
+    /**
+     * Shuffling keeps every card and an off-heap deck deals all of them
+     */
+    @Test
+    public void validateOffHeapShuffleAndDeal() {
+        WarDeck offHeapDeck = new WarDeck(CardStorage.OFF_HEAP);
+        offHeapDeck.create(NUMBER_OF_SUITS, NUMBER_OF_RANKS);
+        offHeapDeck.shuffle();
+
+        boolean[] seen = new boolean[TOTAL_CARDS];
+        Card c = offHeapDeck.deal();
+        while (c != null) {
+            seen[c.getSuit() * NUMBER_OF_RANKS + c.getRank()] = true;
+            c = offHeapDeck.deal();
+        }
+
+        for (int i = 0; i < TOTAL_CARDS; i++) {
+            assertTrue(seen[i]);
+        }
+        assertEquals(offHeapDeck.numberOfUndealtCards(), 0);
+    }
 }
@@ -0,0 +1,94 @@
+package com.juno.gameofwar;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static com.juno.gameofwar.GameResults.assertSameGame;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * What-ifs against playing the changed game from the start
+ */
+public class WhatIfWarTest {
+
+    private static final int SEEDS = 50;
+    private static final int SWAPS = 20;
+
+    /**
+     * Swapped cards anywhere in decks with long and short wars play the same game as the changed deck played in
+     * full, with snapshots close together and far apart
+     */
+    @Test
+    public void testSameAsFullGame() {
+        final int[][] decks = {{4, 13}, {3, 5}, {13, 2}, {50, 1}, {7, 11}, {4, 250}};
+        final int[] snapshots = {1, 3, 16, 1000};
+        for (int[] deck : decks) {
+            for (long seed = 0; seed < SEEDS; seed++) {
+                final int[][] hands = TwoPlayerWar.deal(deck[0], deck[1], seed, CardStorage.HEAP);
+                final WhatIfWar whatIf = new WhatIfWar(copy(hands), snapshots[(int) (seed % snapshots.length)]);
+                assertSameGame(whatIf.getBaseline(), TwoPlayerWar.play(hands[0], hands[1]));
+
+                final SplittableRandom random = new SplittableRandom(seed);
+                for (int i = 0; i < SWAPS; i++) {
+                    final int a = random.nextInt(whatIf.getNumberOfCards());
+                    final int b = random.nextInt(whatIf.getNumberOfCards());
+                    final int[][] swapped = copy(hands);
+                    swapped[a % 2][a / 2] = hands[b % 2][b / 2];
+                    swapped[b % 2][b / 2] = hands[a % 2][a / 2];
+                    assertSameGame(whatIf.swap(a, b), TwoPlayerWar.play(swapped[0], swapped[1]));
+                }
+
+                // the hands are left as dealt
+                for (int card = 0; card < whatIf.getNumberOfCards(); card++) {
+                    assertEquals(whatIf.rankAt(card), hands[card % 2][card / 2]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Several cards given new ranks at once
+     */
+    @Test
+    public void testWithRanks() {
+        final int[][] hands = TwoPlayerWar.deal(4, 13, 50, CardStorage.HEAP);
+        final WhatIfWar whatIf = new WhatIfWar(copy(hands), 4);
+
+        final int[][] changed = copy(hands);
+        changed[0][3] = 12;
+        changed[1][3] = 12;
+        changed[0][20] = 0;
+        assertSameGame(whatIf.withRanks(new int[] {6, 7, 40}, new int[] {12, 12, 0}),
+                TwoPlayerWar.play(changed[0], changed[1]));
+        assertSameGame(whatIf.withRanks(new int[0], new int[0]), whatIf.getBaseline());
+    }
+
+    /**
+     * Swapping two neighbouring cards of a million card game plays a small part of it again
+     */
+    @Test
+    public void testSmallChangeReplaysLittle() {
+        final WhatIfWar whatIf = new WhatIfWar(4, 250000, 50, CardStorage.HEAP);
+        assertEquals(whatIf.getNumberOfCards(), 1000000);
+
+        final SplittableRandom random = new SplittableRandom(50);
+        long replayed = 0;
+        for (int i = 0; i < SWAPS; i++) {
+            final int card = random.nextInt(whatIf.getNumberOfCards() - 2);
+            whatIf.swap(card, card + 2);
+            replayed += whatIf.getReplayedCards();
+        }
+        // a tenth of the first player's half of the deck on average, and far less for most swaps
+        assertTrue(replayed / SWAPS < whatIf.getNumberOfCards() / 2 / 10);
+    }
+
+    /**
+     * @param hands
+     * @return a copy that can be changed without changing hands
+     */
+    private static int[][] copy(final int[][] hands) {
+        return new int[][] {hands[0].clone(), hands[1].clone()};
+    }
+}